@@ -0,0 +1,200 @@
+import parse.BinaryCorpus;
+import parse.BinaryCorpusParser;
+import parse.DocumentParser;
+import parse.ParsedDocument;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Export of the corpus in {@code docs_path} to the binary format of {@link BinaryCorpus}, for rebuilding the indexes
+ * without parsing the JSON again: set {@code docs_path} to the output directory and {@code extension} to
+ * {@value BinaryCorpus#EXTENSION}, and the runs read it with {@link BinaryCorpusParser}.
+ * <p>
+ * After the export the documents read back are compared with the original ones, then the report has the time of a
+ * full pass over the corpus with the JSON parser, with the binary parser one file after the other, and with the
+ * binary parser over the splits of the files on {@code numThreads} threads.
+ * <p>
+ * Usage: CorpusExport [output_dir] (defaults to {@code <work_folder>/corpus-binary})
+ */
+public class CorpusExport {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1) {
+            System.out.println("Usage: CorpusExport [output_dir]");
+            System.exit(1);
+        }
+        final var props = Main.loadProps();
+        final var data = Main.createData(props);
+        if (data.extension.equals(BinaryCorpus.EXTENSION)) {
+            throw new IllegalArgumentException("The corpus in %s is already binary.".formatted(data.docsPath));
+        }
+        final var docsDir = Path.of(data.docsPath);
+        final var outDir = Path.of(args.length > 0 ? args[0] : props.getProperty("work_folder") + "/corpus-binary");
+        final var cs = Charset.forName(data.charsetName);
+
+        long start = System.currentTimeMillis();
+        final var stats = BinaryCorpus.export(docsDir, data.extension, cs, data.documentParser(), outDir);
+        System.out.printf("%d document(s) of %d file(s) exported to %s in %.1f seconds: %d Mbytes -> %d Mbytes.%n",
+                stats.documents(), stats.files(), outDir, (System.currentTimeMillis() - start) / 1000.0,
+                stats.sourceBytes() / (1024 * 1024), stats.bytes() / (1024 * 1024));
+
+        final var sources = files(docsDir, data.extension);
+        final var exported = files(outDir, BinaryCorpus.EXTENSION);
+        final long different = compare(sources, exported, data.documentParser(), cs);
+        System.out.printf("Documents read back: %s.%n",
+                different == 0 ? "identical" : "%d differ".formatted(different));
+
+        System.out.printf("%n%-16s %10s %12s %12s%n", "parser", "docs", "seconds", "docs/s");
+        start = System.currentTimeMillis();
+        report("json", countAll(sources, data.documentParser(), cs), start);
+        start = System.currentTimeMillis();
+        report("binary", countAll(exported, BinaryCorpusParser.class, cs), start);
+        start = System.currentTimeMillis();
+        report("binary splits", countSplits(exported, data.numThreads), start);
+
+        System.out.printf("%nTo index the binary corpus: docs_path=%s and extension=%s%n", outDir.toAbsolutePath(),
+                BinaryCorpus.EXTENSION);
+    }
+
+    private static void report(String parser, long documents, long start) {
+        final double seconds = (System.currentTimeMillis() - start) / 1000.0;
+        System.out.printf("%-16s %10d %12.2f %12.0f%n", parser, documents, seconds,
+                seconds == 0 ? 0.0 : documents / seconds);
+    }
+
+    /**
+     * Returns the files with an extension of a tree, in the order the indexers visit them
+     */
+    private static List<Path> files(Path dir, String extension) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().endsWith(extension)) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Compare the documents of the original files with the ones of the binary files
+     * @return the number of documents that differ or are missing
+     */
+    private static long compare(List<Path> sources, List<Path> exported, Class<? extends DocumentParser> parser,
+                                Charset cs) throws IOException {
+        final Iterator<ParsedDocument> original = documents(sources, parser, cs).iterator();
+        final Iterator<ParsedDocument> binary = documents(exported, BinaryCorpusParser.class, cs).iterator();
+        long different = 0;
+        while (original.hasNext() || binary.hasNext()) {
+            if (!original.hasNext() || !binary.hasNext()) {
+                different++;
+                (original.hasNext() ? original : binary).next();
+                continue;
+            }
+            final var a = original.next();
+            final var b = binary.next();
+            if (!a.getIdentifier().equals(b.getIdentifier()) || !a.getTitle().equals(b.getTitle())
+                    || !a.getBody().equals(b.getBody()) || !a.getDomain().equals(b.getDomain())) {
+                different++;
+            }
+        }
+        return different;
+    }
+
+    /**
+     * Returns the documents of some files, one file after the other
+     */
+    private static Iterable<ParsedDocument> documents(List<Path> files, Class<? extends DocumentParser> parser,
+                                                      Charset cs) {
+        return () -> new Iterator<>() {
+            private int file = 0;
+            private Iterator<ParsedDocument> current = null;
+            private ParsedDocument pending = null;
+
+            @Override
+            public boolean hasNext() {
+                // the parsers are asked only once for each document: some fail when asked again at the end
+                while (pending == null) {
+                    if (current != null && current.hasNext()) {
+                        pending = current.next();
+                        continue;
+                    }
+                    current = null;
+                    if (file == files.size()) {
+                        return false;
+                    } else {
+                        try {
+                            current = DocumentParser.open(parser, files.get(file++), cs);
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Unable to open %s.".formatted(files.get(file - 1)), e);
+                        }
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public ParsedDocument next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more documents.");
+                }
+                final var document = pending;
+                pending = null;
+                return document;
+            }
+        };
+    }
+
+    private static long countAll(List<Path> files, Class<? extends DocumentParser> parser, Charset cs) {
+        long documents = 0;
+        for (final var ignored : documents(files, parser, cs)) {
+            documents++;
+        }
+        return documents;
+    }
+
+    /**
+     * Count the documents of the binary files reading the splits of each one in parallel
+     */
+    private static long countSplits(List<Path> files, int threads) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Long>> futures = new ArrayList<>();
+            for (final var file : files) {
+                for (final var split : BinaryCorpus.splits(file, threads)) {
+                    futures.add(executor.submit(() -> {
+                        long documents = 0;
+                        for (final var ignored : BinaryCorpusParser.open(file, split)) {
+                            documents++;
+                        }
+                        return documents;
+                    }));
+                }
+            }
+            long documents = 0;
+            for (final var future : futures) {
+                documents += future.get();
+            }
+            return documents;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import utils.ExecutionMode;
+import utils.RunDiff;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+
+/**
+ * Benchmark of the {@link ExecutionMode}s: indexing and searching a run on platform threads and on virtual threads.
+ * <p>
+ * For each mode it builds the index of the run in {@code <work_folder>/index-mode-<mode>}, then searches the topics
+ * {@code REPETITIONS} times after one warm-up search, reporting the indexing time, the garbage collections meanwhile
+ * and the average search time. The rankings of the two modes must be the same, up to the order of tied documents.
+ * Only the indexer and the {@code OpenNlpRun} searcher have a virtual-thread mode; on JDKs before 21
+ * {@link ExecutionMode#VIRTUAL} falls back to platform threads, as printed in the report.
+ * <p>
+ * Usage: ExecutionModeBenchmark run_name
+ */
+public class ExecutionModeBenchmark {
+    /**
+     * Number of timed searches for each mode, after one warm-up search
+     */
+    private static final int REPETITIONS = 3;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: ExecutionModeBenchmark run_name");
+            System.exit(1);
+        }
+        final var run = PreparedRuns.fromName(args[0]);
+        final var data = Main.createData(Main.loadProps());
+
+        final StringBuilder report = new StringBuilder("%n%-10s %10s %14s %8s %12s %14s%n".formatted(
+                "mode", "effective", "index (s)", "GCs", "GC (ms)", "search (ms)"));
+        Path platformRun = null;
+        Path virtualRun = null;
+        for (final var mode : ExecutionMode.values()) {
+            final var modeData = data.withExecutionMode(mode)
+                    .withIndexPath("%s/index-mode-%s".formatted(data.runPath, mode.name().toLowerCase()));
+            final var runId = "%s-%s".formatted(run.getRunId(), mode);
+
+            final long[] gcBefore = gcTotals();
+            final long start = System.nanoTime();
+            run.createIndexer(modeData).index();
+            final double indexSeconds = (System.nanoTime() - start) / 1e9;
+            final long[] gcAfter = gcTotals();
+
+            run.createSearcher(modeData, runId).search();
+            long total = 0;
+            for (int i = 0; i < REPETITIONS; i++) {
+                final var searcher = run.createSearcher(modeData, runId);
+                searcher.search();
+                total += searcher.getElapsedTime();
+            }
+
+            report.append("%-10s %10s %14.1f %8d %12d %14.1f%n".formatted(mode, mode.effective(), indexSeconds,
+                    gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], (double) total / REPETITIONS));
+            final var runFile = Path.of(data.runPath, runId + ".txt");
+            if (mode == ExecutionMode.PLATFORM) {
+                platformRun = runFile;
+            } else {
+                virtualRun = runFile;
+            }
+        }
+
+        final var diff = RunDiff.compareIgnoringTies(platformRun, virtualRun);
+        report.append("Rankings: %s%n".formatted(diff.sameRankings() ? "same"
+                : "%d differ".formatted(diff.differentRankings())));
+        System.out.print(report);
+    }
+
+    private static long[] gcTotals() {
+        final long[] totals = new long[2];
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+}
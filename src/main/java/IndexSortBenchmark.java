@@ -0,0 +1,188 @@
+import index.DocumentOrder;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.FSDirectory;
+import parse.ParsedDocument;
+import utils.RunDiff;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark of the index sorted by domain and length prior against the order of arrival, see {@link DocumentOrder}.
+ * <p>
+ * The index of the run is built once for each order in {@code <work_folder>/index-order-<order>}, with the
+ * {@code BULK} segment profile (no compound files) force merged into one segment, so that the sizes of the postings,
+ * stored fields and doc values files can be compared. Then the topics are searched on each index (one warm-up search,
+ * then the average of the timed ones) and the rankings compared with the ones of {@link DocumentOrder#ARRIVAL}, up to
+ * the order of tied documents. Last, the indexes with priors answer the prior-ordered query of the most frequent
+ * domains, their longest documents, which on the sorted index stops after the first hits.
+ * <p>
+ * Usage: IndexSortBenchmark run_name
+ */
+public class IndexSortBenchmark {
+    /**
+     * Number of timed repetitions of each search, after one warm-up
+     */
+    private static final int REPETITIONS = 3;
+
+    /**
+     * Number of domains of the prior-ordered queries
+     */
+    private static final int DOMAINS = 5;
+
+    /**
+     * Extensions of the files of each part of the index
+     */
+    private static final Map<String, List<String>> PARTS = Map.of(
+            "postings", List.of("doc", "pos", "pay", "tim", "tip", "tmd"),
+            "stored", List.of("fdt", "fdx", "fdm"),
+            "docvalues", List.of("dvd", "dvm"));
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.out.println("Usage: IndexSortBenchmark run_name");
+            System.exit(1);
+        }
+        final var run = PreparedRuns.fromName(args[0]);
+        final var props = Main.loadProps();
+        props.setProperty("segmentProfile", "BULK");
+        props.setProperty("forceMergeSegments", "1");
+
+        final StringBuilder report = new StringBuilder(
+                "%n%-20s %10s %10s %10s %10s %10s %12s %10s %14s %12s%n".formatted("order", "build (s)", "size (MB)",
+                        "postings", "stored", "docvalues", "search (ms)", "rankings", "by prior (us)",
+                        "early stop"));
+        Path reference = null;
+        for (final var order : DocumentOrder.values()) {
+            props.setProperty("documentOrder", order.name());
+            final var data = Main.createData(props)
+                    .withIndexPath("%s/index-order-%s".formatted(props.getProperty("work_folder"),
+                            order.name().toLowerCase()));
+
+            final long start = System.currentTimeMillis();
+            run.createIndexer(data).index();
+            final long build = System.currentTimeMillis() - start;
+
+            final var runId = "%s-order-%s".formatted(run.getRunId(), order.name().toLowerCase());
+            final double searchMs = time(run, data, runId);
+            final var runFile = Path.of(data.runPath, runId + ".txt");
+            final String rankings;
+            if (reference == null) {
+                reference = runFile;
+                rankings = "reference";
+            } else {
+                final var diff = RunDiff.compareIgnoringTies(reference, runFile);
+                rankings = diff.sameRankings() ? "same" : "%d differ".formatted(diff.differentRankings());
+            }
+
+            final var indexDir = Path.of(data.indexPath);
+            report.append("%-20s %10.1f %10.2f %10.2f %10.2f %10.2f %12.1f %10s ".formatted(order, build / 1000.0,
+                    megabytes(indexDir, null), megabytes(indexDir, PARTS.get("postings")),
+                    megabytes(indexDir, PARTS.get("stored")), megabytes(indexDir, PARTS.get("docvalues")), searchMs,
+                    rankings));
+            if (order == DocumentOrder.ARRIVAL) {
+                report.append("%14s %12s%n".formatted("n/a", "n/a"));
+            } else {
+                final var byPrior = searchByPrior(indexDir, data.maxDocsRetrieved);
+                report.append("%14.1f %12s%n".formatted(byPrior[0], "%d/%d".formatted((int) byPrior[1],
+                        (int) byPrior[2])));
+            }
+        }
+        System.out.print(report);
+    }
+
+    /**
+     * Average search time of a run
+     * @return average elapsed time in milliseconds, excluding the warm-up search
+     */
+    private static double time(PreparedRuns run, PreparedRuns.Data data, String runId) throws Exception {
+        run.createSearcher(data, runId).search();
+        long total = 0;
+        for (int i = 0; i < REPETITIONS; i++) {
+            final var searcher = run.createSearcher(data, runId);
+            searcher.search();
+            total += searcher.getElapsedTime();
+        }
+        return (double) total / REPETITIONS;
+    }
+
+    /**
+     * Size of the files of an index
+     * @param extensions the extensions of the files to sum, {@code null} for all
+     */
+    private static double megabytes(Path indexDir, List<String> extensions) throws IOException {
+        long bytes = 0;
+        try (final var files = Files.list(indexDir)) {
+            for (final var file : (Iterable<Path>) files::iterator) {
+                final var name = file.getFileName().toString();
+                if (extensions == null || extensions.contains(name.substring(name.lastIndexOf('.') + 1))) {
+                    bytes += Files.size(file);
+                }
+            }
+        }
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    /**
+     * Search the longest documents of the most frequent domains, sorted as {@link DocumentOrder#DOMAIN_LENGTH}
+     * @return average microseconds per query, queries stopped early, queries
+     */
+    private static double[] searchByPrior(Path indexDir, int k) throws IOException {
+        try (final var directory = FSDirectory.open(indexDir);
+             final var reader = DirectoryReader.open(directory)) {
+            final var searcher = new IndexSearcher(reader);
+            final var sort = DocumentOrder.DOMAIN_LENGTH.getSort();
+            final var domains = topDomains(reader);
+
+            long nanos = 0;
+            int early = 0;
+            for (int i = 0; i <= REPETITIONS; i++) {
+                for (final var domain : domains) {
+                    final long start = System.nanoTime();
+                    final var collector = TopFieldCollector.create(sort, k, k);
+                    searcher.search(new TermQuery(new Term(ParsedDocument.FIELDS.DOMAIN, domain)), collector);
+                    final var docs = collector.topDocs();
+                    // the first round is the warm-up
+                    if (i > 0) {
+                        nanos += System.nanoTime() - start;
+                        if (docs.totalHits.relation == TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO) {
+                            early++;
+                        }
+                    }
+                }
+            }
+            final int queries = domains.size() * REPETITIONS;
+            return new double[]{queries == 0 ? 0 : nanos / 1e3 / queries, early, queries};
+        }
+    }
+
+    /**
+     * Returns the most frequent domains of an index
+     */
+    private static List<String> topDomains(IndexReader reader) throws IOException {
+        record Domain(String name, int docs) {
+        }
+        final List<Domain> domains = new ArrayList<>();
+        final var terms = MultiTerms.getTerms(reader, ParsedDocument.FIELDS.DOMAIN);
+        if (terms != null) {
+            final var termsEnum = terms.iterator();
+            while (termsEnum.next() != null) {
+                domains.add(new Domain(termsEnum.term().utf8ToString(), termsEnum.docFreq()));
+            }
+        }
+        domains.sort(Comparator.comparingInt(Domain::docs).reversed());
+        return domains.stream().limit(DOMAINS).map(Domain::name).toList();
+    }
+}
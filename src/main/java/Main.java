@@ -1,19 +1,32 @@
+import analyzers.POSBackend;
+import eval.Evaluator;
+import eval.Qrels;
+import index.FieldProfile;
+import index.DocumentOrder;
+import index.IndexStorage;
+import index.NearDuplicates;
+import index.SegmentProfile;
+import metrics.Metrics;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import search.Run;
+import utils.ExecutionMode;
 import utils.Props;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Properties;
 
 public class Main {
-    private static Properties loadProps() {
+    static Properties loadProps() {
         try {
             return Props.loadProps(Main.class, "data.properties");
         } catch (IllegalArgumentException e) {
@@ -21,11 +34,15 @@ public class Main {
         }
     }
 
-    public static void main(String[] args) throws Exception {
-        final var props = loadProps();
-        parseOptionAndEditProps(args, props);
-
-        final int ramBuffer = 256;
+    /**
+     * Create the data for executing a run from the properties
+     * @param props the loaded {@link Properties}
+     * @return the {@link PreparedRuns.Data} of the run
+     */
+    static PreparedRuns.Data createData(final Properties props) {
+        final var ramBufferProp = props.getProperty("ramBufferSizeMB", "256");
+        final int ramBuffer = ramBufferProp.equals("auto") ? SegmentProfile.heapSizedRamBufferMB(1)
+                : Integer.parseInt(ramBufferProp);
 
         new File(props.getProperty("work_folder")).mkdir();
         final var docsPath = props.getProperty("docs_path");
@@ -35,41 +52,106 @@ public class Main {
         final String charsetName = props.getProperty("charsetName");
 
         final int numThreads = Integer.parseInt(props.getProperty("numThreads"));
-        final double threadQueueFactor = Double.parseDouble(props.getProperty("threadQueueFactor"));
 
         final String runPath = props.getProperty("work_folder");
         final int maxDocsRetrieved = Integer.parseInt(props.getProperty("maxDocsRetrieved"));
+        final int totalHitsThreshold = Integer.parseInt(
+                props.getProperty("totalHitsThreshold", Integer.toString(maxDocsRetrieved)));
         final int expectedTopics = Integer.parseInt(props.getProperty("expectedTopics"));
         final var topics = props.getProperty("topics_path");
 
         final String indexPath = "%s/index-task1parser".formatted(props.getProperty("work_folder"));
+        final int shingleSize = Integer.parseInt(props.getProperty("shingleSize", "0"));
+        final var fieldProfile = FieldProfile.valueOf(props.getProperty("fieldProfile", "MINIMAL"));
+        final var segmentProfile = SegmentProfile.valueOf(props.getProperty("segmentProfile", "DEFAULT"));
+        final int forceMergeSegments = Integer.parseInt(props.getProperty("forceMergeSegments", "0"));
+        final int inFlightMB = Integer.parseInt(props.getProperty("indexingInFlightMB", "0"));
+        final var executionMode = ExecutionMode.valueOf(props.getProperty("executionMode", "PLATFORM"));
+        final int titleCacheMB = Integer.parseInt(props.getProperty("titleCacheMB", "64"));
+        final int shards = Integer.parseInt(props.getProperty("indexingShards", "0"));
+        final var shardPaths = Arrays.stream(props.getProperty("shardPaths", "").split(","))
+                .map(String::trim).filter(path -> !path.isEmpty()).toList();
+        final boolean keepShards = Boolean.parseBoolean(props.getProperty("keepShards", "false"));
+        final var indexStorage = IndexStorage.valueOf(props.getProperty("indexStorage", "FS"));
+        final int warmUpQueries = Integer.parseInt(props.getProperty("warmUpQueries", "0"));
+        final var documentOrder = DocumentOrder.valueOf(props.getProperty("documentOrder", "ARRIVAL"));
+        final var nearDuplicates = NearDuplicates.valueOf(props.getProperty("nearDuplicates", "KEEP"));
+        final double nearDuplicateThreshold = Double.parseDouble(props.getProperty("nearDuplicateThreshold", "0.9"));
+        final var posBackendProp = props.getProperty("posBackend");
+        final var posBackend = posBackendProp == null ? POSBackend.defaultBackend()
+                : POSBackend.valueOf(posBackendProp);
+        if (!posBackend.isAvailable()) {
+            throw new IllegalArgumentException("The model of the POS backend %s is not in the classpath."
+                    .formatted(posBackend));
+        }
 
-        final var data = new PreparedRuns.Data(
+        return new PreparedRuns.Data(
                 ramBuffer,
                 extension,
                 expectedDocs,
                 charsetName,
                 numThreads,
-                threadQueueFactor,
                 runPath,
                 maxDocsRetrieved,
+                totalHitsThreshold,
                 expectedTopics,
                 topics,
                 indexPath,
-                docsPath
+                docsPath,
+                shingleSize,
+                fieldProfile,
+                segmentProfile,
+                forceMergeSegments,
+                inFlightMB,
+                executionMode,
+                titleCacheMB,
+                shards,
+                shardPaths,
+                keepShards,
+                indexStorage,
+                warmUpQueries,
+                documentOrder,
+                nearDuplicates,
+                nearDuplicateThreshold,
+                posBackend
         );
+    }
+
+    /**
+     * Create the evaluator of the runs from the {@code qrels_path} property
+     * @param props the loaded {@link Properties}
+     * @param numThreads the number of threads evaluating the topics
+     * @return the {@link Evaluator}, {@code null} if no qrels are configured
+     * @throws IOException if the qrels cannot be read
+     */
+    static Evaluator createEvaluator(final Properties props, final int numThreads) throws IOException {
+        final var qrelsPath = props.getProperty("qrels_path");
+        if (qrelsPath == null || qrelsPath.isBlank()) return null;
+        return new Evaluator(Qrels.load(Path.of(qrelsPath)), numThreads);
+    }
+
+    @SuppressWarnings("try")
+    public static void main(String[] args) throws Exception {
+        final var props = loadProps();
+        parseOptionAndEditProps(args, props);
+        if (Boolean.parseBoolean(props.getProperty("metrics_jmx", "false"))) {
+            Metrics.registerMXBean();
+        }
+
+        final var data = createData(props);
+        final var runPath = data.runPath;
+        // loaded before the run, so that a wrong qrels path does not waste it
+        final var evaluator = createEvaluator(props, data.numThreads);
 
         final long startTime = System.currentTimeMillis();
 
-        final String runId = switch(props.getProperty("RunToExecute")) {
-            case "OpenNlpRun" -> PreparedRuns.OPEN_NLP.execute(data);
-            case "TaskBodyRun" -> PreparedRuns.TASK_BODY_SEARCHER.execute(data);
-            case "KRun" -> PreparedRuns.K_RUN.execute(data);
-            case "SimpleRun" -> PreparedRuns.SIMPLE_RUN.execute(data);
-            default -> {
-                throw new IllegalArgumentException("Command line parsing messed up");
-            }
-        };
+        final PreparedRuns preparedRun;
+        try {
+            preparedRun = PreparedRuns.fromName(props.getProperty("RunToExecute"));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Command line parsing messed up", e);
+        }
+        final String runId = preparedRun.execute(data);
 
         if (props.getProperty("output_run") != null) {
             final var src = Path.of(runPath + "/" + runId + ".txt");
@@ -77,6 +159,18 @@ public class Main {
             Files.copy(src, dst, StandardCopyOption.REPLACE_EXISTING);
         }
 
+        if (evaluator != null) {
+            try (final var ignored = Metrics.phase("evaluate")) {
+                final var evaluation = evaluator.evaluateAndWrite(Run.read(Path.of(runPath, runId + ".txt")),
+                        Path.of(runPath));
+                System.out.println(evaluation.summary());
+            }
+        }
+
+        final var metricsFile = Path.of(runPath, runId + ".metrics.json");
+        Metrics.writeReport(metricsFile, runId);
+        System.out.printf("Metrics written to %s%n", metricsFile);
+
         final long endTime = System.currentTimeMillis();
 
         System.out.printf("Total execution time %f seconds%n", (endTime - startTime) / 1000.0);
@@ -85,9 +179,10 @@ public class Main {
     private static void errorAndPrintHelp(final String error) {
         System.err.println(error);
         System.err.println("""
-                Usage: this_program [-i input folder] [-o output dir] run_name
+                Usage: this_program [-i input folder] [-o output dir] [-q qrels] run_name
                 -i     Replace input directory (for TIRA)
                 -o     Run output directory (for TIRA)
+                -q     Evaluate the run against the qrels file, writing <run_id>.eval next to the run
                 Possible run names:
                                SimpleRun
                                KRun
@@ -101,6 +196,7 @@ public class Main {
 
         options.addOption("i", true, "Input dir for both dataset and topics");
         options.addOption("o", true, "Output dir");
+        options.addOption("q", true, "Qrels file");
 
         CommandLine cmd = null;
         try {
@@ -119,6 +215,7 @@ public class Main {
 
         final var i = cmd.getOptionValue("i");
         final var o = cmd.getOptionValue("o");
+        final var q = cmd.getOptionValue("q");
         if (i != null) {
             System.out.printf("Replacing input props value with %s%n", i);
             props.setProperty("docs_path", i);
@@ -128,5 +225,8 @@ public class Main {
             System.out.printf("Setting run output dir with %s%n", o);
             props.setProperty("output_run", o + "/" + "run.txt");
         }
+        if (q != null) {
+            props.setProperty("qrels_path", q);
+        }
     }
 }
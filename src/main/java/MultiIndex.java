@@ -0,0 +1,82 @@
+import index.DirectoryIndexerMT;
+import index.IndexTarget;
+import index.IndexingOptions;
+import index.MultiDirectoryIndexer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds the indexes of several runs with a single scan of the corpus, then searches the topics with each run.
+ * <p>
+ * By default every run gets its own index in {@code <work_folder>/index-<run_id>}, built together by
+ * {@link MultiDirectoryIndexer}, so the runs do not overwrite each other as they do with {@link Main}.
+ * With {@code -s} the runs share a single index in {@code <work_folder>/index-shared}, where each run has its own
+ * title and body fields (see {@link index.MultiAnalyzerSchema}) and the ids are stored once.
+ * <p>
+ * Usage: MultiIndex [-s] [-n] [run_name...] (default: all the runs; -n only builds the indexes)
+ */
+public class MultiIndex {
+    public static void main(String[] args) throws Exception {
+        final var argList = new ArrayList<>(Arrays.asList(args));
+        final boolean search = !argList.remove("-n");
+        final boolean shared = argList.remove("-s");
+        final List<String> runNames = argList.isEmpty() ? List.of("SimpleRun", "KRun", "TaskBodyRun", "OpenNlpRun")
+                : argList;
+
+        final var data = Main.createData(Main.loadProps());
+        final long startTime = System.currentTimeMillis();
+
+        final List<PreparedRuns> runs = new ArrayList<>();
+        for (final var name : runNames) {
+            runs.add(PreparedRuns.fromName(name));
+        }
+
+        if (shared) {
+            final var sharedData = data.withIndexPath("%s/index-shared".formatted(data.runPath));
+            final var schema = PreparedRuns.createSchema(runs, data);
+            new DirectoryIndexerMT(schema.indexAnalyzer(), schema.similarity(), data.ramBuffer, sharedData.indexPath,
+                    data.docsPath, data.extension, data.charsetName, data.expectedDocs, data.documentParser(),
+                    data.numThreads,
+                    new IndexingOptions().setFieldProfile(data.fieldProfile).setFieldVariants(schema.variants())
+                            .setSegmentProfile(data.segmentProfile).setForceMergeSegments(data.forceMergeSegments)
+                            .setInFlightMB(data.inFlightMB).setExecutionMode(data.executionMode)
+                            .setTitleCacheMB(data.titleCacheMB).setShards(data.shards)
+                            .setShardPaths(data.shardPaths).setKeepShards(data.keepShards)
+                            .setStorage(data.indexStorage).setDocumentOrder(data.documentOrder)
+                            .setNearDuplicates(data.nearDuplicates)
+                            .setNearDuplicateThreshold(data.nearDuplicateThreshold))
+                    .index();
+
+            if (search) {
+                for (final var run : runs) {
+                    run.createSearcher(sharedData, run.getRunId(), run.getFieldVariant()).search();
+                }
+            }
+        } else {
+            final List<IndexTarget> targets = new ArrayList<>();
+            for (final var run : runs) {
+                targets.add(run.createIndexTarget(data, indexPath(data, run)));
+            }
+
+            new MultiDirectoryIndexer(targets, data.ramBuffer, data.docsPath, data.extension, data.charsetName,
+                    data.expectedDocs, data.documentParser(), data.numThreads).index();
+
+            if (search) {
+                for (final var run : runs) {
+                    run.createSearcher(data.withIndexPath(indexPath(data, run)), run.getRunId()).search();
+                }
+            }
+        }
+
+        System.out.printf("Total execution time %f seconds%n", (System.currentTimeMillis() - startTime) / 1000.0);
+    }
+
+    /**
+     * Returns the directory of the index of a run
+     */
+    static String indexPath(PreparedRuns.Data data, PreparedRuns run) {
+        return "%s/index-%s".formatted(data.runPath, run.getRunId());
+    }
+}
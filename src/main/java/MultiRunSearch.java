@@ -0,0 +1,60 @@
+import eval.Evaluation;
+import eval.Measure;
+import search.Fusion;
+import search.MultiRunSearcher;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Searches the topics with several runs over the shared index built by {@code MultiIndex -s}, writing each run and
+ * their fusions ({@code ElrondFused-<fusion>}), see {@link MultiRunSearcher}.
+ * <p>
+ * Usage: MultiRunSearch [-f fusion[,fusion...]] [run_name...] (default: all the runs, fused with RRF, COMB_SUM and
+ * COMB_MNZ)
+ * <p>
+ * If {@code qrels_path} is set, the runs and fusions are also evaluated in memory, see {@link eval.Evaluator}.
+ */
+public class MultiRunSearch {
+    public static void main(String[] args) throws Exception {
+        final var argList = new ArrayList<>(Arrays.asList(args));
+        final List<Fusion> fusions = new ArrayList<>(List.of(Fusion.values()));
+        final int f = argList.indexOf("-f");
+        if (f >= 0) {
+            if (f + 1 >= argList.size()) {
+                System.out.println("Usage: MultiRunSearch [-f fusion[,fusion...]] [run_name...]");
+                System.exit(1);
+            }
+            fusions.clear();
+            for (final var name : argList.get(f + 1).split(",")) {
+                fusions.add(Fusion.fromName(name));
+            }
+            argList.subList(f, f + 2).clear();
+        }
+        final List<String> runNames = argList.isEmpty() ? List.of("SimpleRun", "KRun", "TaskBodyRun", "OpenNlpRun")
+                : argList;
+
+        final var props = Main.loadProps();
+        final var data = Main.createData(props);
+        final var evaluator = Main.createEvaluator(props, data.numThreads);
+
+        final List<MultiRunSearcher.RunSpec> specs = new ArrayList<>();
+        for (final var name : runNames) {
+            final var run = PreparedRuns.fromName(name);
+            specs.add(new MultiRunSearcher.RunSpec(run.getRunId(), run.getSimilarity(),
+                    run.createQueryShape(data, run.getFieldVariant())));
+        }
+
+        final var searcher = new MultiRunSearcher(specs, fusions, "ElrondFused",
+                "%s/index-shared".formatted(data.runPath), data.indexStorage, data.topics, data.runPath,
+                data.maxDocsRetrieved, data.totalHitsThreshold);
+        searcher.search();
+
+        if (evaluator != null) {
+            Evaluation.printTable(evaluator.evaluateAndWrite(searcher.getResults(), Path.of(data.runPath)),
+                    Measure.NDCG_10, System.out);
+        }
+    }
+}
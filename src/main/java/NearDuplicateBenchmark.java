@@ -0,0 +1,141 @@
+import eval.Measure;
+import index.NearDuplicateDetector;
+import index.NearDuplicates;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiBits;
+import org.apache.lucene.index.MultiDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import parse.ParsedDocument;
+import search.Run;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Benchmark of the near-duplicate detection at index time, see {@link NearDuplicates}.
+ * <p>
+ * The index of the run is built once for each policy in {@code <work_folder>/index-duplicates-<policy>} and the
+ * report has the build time, the size of the index, the documents, the ones indexed in full (with a body), the
+ * clusters and the share of near duplicates. Then the topics are searched on each index (one warm-up search, then the
+ * average of the timed ones) and the runs compared with the one of {@link NearDuplicates#KEEP}: the share of its
+ * retrieved documents still retrieved and, with the {@code qrels_path}, the nDCG@10.
+ * <p>
+ * Usage: NearDuplicateBenchmark run_name
+ */
+public class NearDuplicateBenchmark {
+    /**
+     * Number of timed repetitions of each search, after one warm-up
+     */
+    private static final int REPETITIONS = 3;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.out.println("Usage: NearDuplicateBenchmark run_name");
+            System.exit(1);
+        }
+        final var run = PreparedRuns.fromName(args[0]);
+        final var props = Main.loadProps();
+        final var evaluator = Main.createEvaluator(props, Main.createData(props).numThreads);
+
+        final StringBuilder report = new StringBuilder("%n%-9s %10s %10s %9s %9s %9s %11s %12s %10s %9s%n".formatted(
+                "policy", "build (s)", "size (MB)", "docs", "in full", "clusters", "duplicates", "search (ms)",
+                "overlap", "nDCG@10"));
+        Run reference = null;
+        for (final var policy : NearDuplicates.values()) {
+            props.setProperty("nearDuplicates", policy.name());
+            final var data = Main.createData(props)
+                    .withIndexPath("%s/index-duplicates-%s".formatted(props.getProperty("work_folder"),
+                            policy.name().toLowerCase()));
+
+            final long start = System.currentTimeMillis();
+            run.createIndexer(data).index();
+            final long build = System.currentTimeMillis() - start;
+
+            final var runId = "%s-duplicates-%s".formatted(run.getRunId(), policy.name().toLowerCase());
+            final double searchMs = time(run, data, runId);
+            final var searched = Run.read(Path.of(data.runPath, runId + ".txt"));
+            if (reference == null) {
+                reference = searched;
+            }
+
+            final var indexDir = Path.of(data.indexPath);
+            long bytes = 0;
+            try (final var files = Files.list(indexDir)) {
+                for (final var file : (Iterable<Path>) files::iterator) {
+                    bytes += Files.size(file);
+                }
+            }
+            try (final var directory = FSDirectory.open(indexDir);
+                 final var reader = DirectoryReader.open(directory)) {
+                final int docs = reader.numDocs();
+                final long clusterCount = clusterCount(reader);
+                report.append("%-9s %10.1f %10.2f %9d %9d %9d %10.1f%% %12.1f %9.1f%% %9s%n".formatted(policy,
+                        build / 1000.0, bytes / (1024.0 * 1024.0), docs, reader.getDocCount(ParsedDocument.FIELDS.BODY),
+                        clusterCount, docs == 0 ? 0.0 : 100.0 * (docs - clusterCount) / docs, searchMs,
+                        100 * overlap(reference, searched), evaluator == null ? "n/a"
+                                : "%.4f".formatted(evaluator.evaluate(searched).mean(Measure.NDCG_10))));
+            }
+        }
+        System.out.print(report);
+    }
+
+    /**
+     * Average search time of a run
+     * @return average elapsed time in milliseconds, excluding the warm-up search
+     */
+    private static double time(PreparedRuns run, PreparedRuns.Data data, String runId) throws Exception {
+        run.createSearcher(data, runId).search();
+        long total = 0;
+        for (int i = 0; i < REPETITIONS; i++) {
+            final var searcher = run.createSearcher(data, runId);
+            searcher.search();
+            total += searcher.getElapsedTime();
+        }
+        return (double) total / REPETITIONS;
+    }
+
+    /**
+     * Returns the number of clusters of an index: the distinct identifiers of the cluster doc values of its live
+     * documents, the documents themselves if the near duplicates have not been detected
+     */
+    private static long clusterCount(IndexReader reader) throws IOException {
+        final var clusters = MultiDocValues.getBinaryValues(reader, NearDuplicateDetector.CLUSTER);
+        if (clusters == null) {
+            return reader.numDocs();
+        }
+        final Bits live = MultiBits.getLiveDocs(reader);
+        final Set<BytesRef> distinct = new HashSet<>();
+        for (int doc = clusters.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = clusters.nextDoc()) {
+            if (live == null || live.get(doc)) {
+                distinct.add(BytesRef.deepCopyOf(clusters.binaryValue()));
+            }
+        }
+        return distinct.size();
+    }
+
+    /**
+     * Returns the share of the documents retrieved by a run for its topics which are retrieved by another run too
+     */
+    private static double overlap(Run reference, Run other) {
+        long retrieved = 0;
+        long shared = 0;
+        for (final var topic : reference.topics()) {
+            final Set<String> others = new HashSet<>();
+            other.ranking(topic).forEach(entry -> others.add(entry.docId()));
+            for (final var entry : reference.ranking(topic)) {
+                retrieved++;
+                if (others.contains(entry.docId())) {
+                    shared++;
+                }
+            }
+        }
+        return retrieved == 0 ? 1 : (double) shared / retrieved;
+    }
+}
@@ -0,0 +1,104 @@
+import analyzers.OpenNlpAnalyzer;
+import analyzers.POSBackend;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import parse.DocumentParser;
+import parse.Task1Parser;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark of the {@link POSBackend}s of {@link OpenNlpAnalyzer} on the documents of the corpus.
+ * <p>
+ * Each available backend tags the titles and bodies of the first N documents (default 2000) after a warm-up pass,
+ * and is compared with the most accurate available one, the reference: the speed in tokens per second, the agreement
+ * on the exact tags and the agreement on the decision that matters to the analyzer, i.e. whether the token is removed
+ * as one of the {@link OpenNlpAnalyzer#STOP_TYPES}.
+ * <p>
+ * Usage: POSBackendBenchmark [documents]
+ */
+public class POSBackendBenchmark {
+    public static void main(String[] args) throws Exception {
+        final var data = Main.createData(Main.loadProps());
+        final int maxDocs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final var texts = loadTexts(data, maxDocs);
+
+        final List<POSBackend> backends = Stream.of(POSBackend.values()).filter(POSBackend::isAvailable).toList();
+        System.out.printf("%d texts, backends %s, reference %s%n", texts.size(), backends, backends.get(0));
+
+        List<String> reference = null;
+        System.out.printf("%-14s %12s %14s %16s%n", "backend", "tokens/s", "same tag", "same stop type");
+        for (final var backend : backends) {
+            final var analyzer = backend.taggingAnalyzer();
+            // warm up the JIT and load the model
+            tag(analyzer, texts.subList(0, Math.min(texts.size(), 200)), new ArrayList<>());
+
+            final List<String> tags = new ArrayList<>();
+            final long start = System.nanoTime();
+            tag(analyzer, texts, tags);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+
+            if (reference == null) {
+                reference = tags;
+            }
+            int sameTag = 0;
+            int sameStop = 0;
+            final int n = Math.min(tags.size(), reference.size());
+            for (int i = 0; i < n; i++) {
+                final var tag = tags.get(i);
+                final var ref = reference.get(i);
+                if (tag.equals(ref)) sameTag++;
+                if (OpenNlpAnalyzer.STOP_TYPES.contains(tag) == OpenNlpAnalyzer.STOP_TYPES.contains(ref)) sameStop++;
+            }
+            if (tags.size() != reference.size()) {
+                System.out.printf("%s produced %d tokens instead of %d.%n", backend, tags.size(), reference.size());
+            }
+            System.out.printf("%-14s %12.0f %13.2f%% %15.2f%%%n", backend, tags.size() / seconds,
+                    100.0 * sameTag / Math.max(1, n), 100.0 * sameStop / Math.max(1, n));
+        }
+    }
+
+    /**
+     * Tag the texts, appending the tag of each token
+     */
+    private static void tag(Analyzer analyzer, List<String> texts, List<String> tags) throws IOException {
+        for (final var text : texts) {
+            try (final var stream = analyzer.tokenStream("body", text)) {
+                final var typeAtt = stream.addAttribute(TypeAttribute.class);
+                stream.reset();
+                while (stream.incrementToken()) {
+                    tags.add(typeAtt.type());
+                }
+                stream.end();
+            }
+        }
+    }
+
+    /**
+     * Read the title and the body of the first documents of the corpus
+     */
+    private static List<String> loadTexts(PreparedRuns.Data data, int maxDocs) throws IOException {
+        final List<Path> files;
+        try (final Stream<Path> walk = Files.walk(Path.of(data.docsPath))) {
+            files = walk.filter(file -> file.getFileName().toString().endsWith(data.extension)).sorted().toList();
+        }
+        final List<String> texts = new ArrayList<>();
+        for (final var file : files) {
+            final var dp = DocumentParser.create(Task1Parser.class,
+                    Files.newBufferedReader(file, Charset.forName(data.charsetName)));
+            while (dp.hasNext() && texts.size() < 2 * maxDocs) {
+                final var pd = dp.next();
+                texts.add(pd.getTitle());
+                texts.add(pd.getBody());
+            }
+            if (texts.size() >= 2 * maxDocs) break;
+        }
+        return texts;
+    }
+}
@@ -1,27 +1,46 @@
 import analyzers.KAnalyzer;
 import analyzers.OpenNlpAnalyzer;
+import analyzers.POSBackend;
 import analyzers.SimpleAnalyzer;
 import analyzers.TaskAnalyzer;
 import index.DirectoryIndexerMT;
+import index.DocumentOrder;
+import index.FieldProfile;
+import index.IndexTarget;
 import index.Indexer;
+import index.IndexStorage;
+import index.IndexingOptions;
+import index.MultiAnalyzerSchema;
+import index.NearDuplicates;
+import index.SegmentProfile;
+import metrics.Metrics;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.similarities.*;
+import parse.BinaryCorpus;
+import parse.BinaryCorpusParser;
+import parse.DocumentParser;
+import parse.ParsedDocument;
 import parse.Task1Parser;
 import search.*;
+import utils.ExecutionMode;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Enum for executing different runs
  */
 public enum PreparedRuns {
-    SIMPLE_RUN("SimpleAnalyzer", "SimpleSearcher") {
+    SIMPLE_RUN("ElrondSimpleRun", "SimpleAnalyzer", "SimpleSearcher", "simple") {
+        private final Analyzer analyzer = new SimpleAnalyzer();
+        private final Similarity similarity = new BM25Similarity();
+
         @Override
-        public String execute(Data data) {
-            final String runId = "ElrondSimpleRun";
-            final Analyzer analyzer = new SimpleAnalyzer();
-            final Similarity similarity = new BM25Similarity();
-            indexer = new DirectoryIndexerMT(
+        public Indexer createIndexer(Data data) {
+            return new DirectoryIndexerMT(
                     analyzer,
                     similarity,
                     data.ramBuffer,
@@ -30,31 +49,52 @@ public enum PreparedRuns {
                     data.extension,
                     data.charsetName,
                     data.expectedDocs,
-                    Task1Parser.class,
+                    data.documentParser(),
                     data.numThreads,
-                    data.threadQueueFactor);
-            index();
-            searcher = new SimpleSearcher(
+                    indexingOptions(data, FieldProfile.MINIMAL));
+        }
+
+        @Override
+        public BasicSearcher createSearcher(Data data, String runId, String fieldVariant) {
+            return new SimpleSearcher(
                     analyzer,
                     similarity,
                     data.indexPath,
+                    data.indexStorage,
                     data.topics,
                     data.expectedTopics,
                     runId,
                     data.runPath,
-                    data.maxDocsRetrieved
+                    data.maxDocsRetrieved,
+                    data.totalHitsThreshold,
+                    fieldVariant
             );
-            search();
-            return runId;
+        }
+
+        @Override
+        public Analyzer getIndexAnalyzer(Data data) {
+            return analyzer;
+        }
+
+        @Override
+        public Similarity getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public QueryShape createQueryShape(Data data, String fieldVariant) {
+            return QueryShapes.bodyAndTitle(analyzer, BooleanClause.Occur.SHOULD,
+                    MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.BODY, fieldVariant),
+                    MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.TITLE, fieldVariant));
         }
     },
-    K_RUN("KAnalyzer", "TaskSearcher1") {
+    K_RUN("ElrondKRun", "KAnalyzer", "TaskSearcher1", "kstem") {
+        private final Analyzer analyzer = new KAnalyzer();
+        private final Similarity similarity = new LMDirichletSimilarity();
+
         @Override
-        public String execute(Data data) {
-            final String runId = "ElrondKRun";
-            final Analyzer analyzer = new KAnalyzer();
-            final Similarity similarity = new LMDirichletSimilarity();
-            indexer = new DirectoryIndexerMT(
+        public Indexer createIndexer(Data data) {
+            return new DirectoryIndexerMT(
                     analyzer,
                     similarity,
                     data.ramBuffer,
@@ -63,33 +103,54 @@ public enum PreparedRuns {
                     data.extension,
                     data.charsetName,
                     data.expectedDocs,
-                    Task1Parser.class,
+                    data.documentParser(),
                     data.numThreads,
-                    data.threadQueueFactor);
-            index();
-            searcher = new TaskSearcher1(analyzer,
+                    indexingOptions(data, FieldProfile.MINIMAL));
+        }
+
+        @Override
+        public BasicSearcher createSearcher(Data data, String runId, String fieldVariant) {
+            return new TaskSearcher1(analyzer,
                     similarity,
                     data.indexPath,
+                    data.indexStorage,
                     data.topics,
                     data.expectedTopics,
                     runId,
                     data.runPath,
-                    data.maxDocsRetrieved);
+                    data.maxDocsRetrieved,
+                    data.totalHitsThreshold,
+                    fieldVariant);
+        }
+
+        @Override
+        public Analyzer getIndexAnalyzer(Data data) {
+            return analyzer;
+        }
+
+        @Override
+        public Similarity getSimilarity() {
+            return similarity;
+        }
 
-            search();
-            return runId;
+        @Override
+        public QueryShape createQueryShape(Data data, String fieldVariant) {
+            return QueryShapes.bodyAndTitle(analyzer, BooleanClause.Occur.MUST,
+                    MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.BODY, fieldVariant),
+                    MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.TITLE, fieldVariant));
         }
     },
-    OPEN_NLP("OpenNlpAnalyzer", "OpennlpSearcher") {
-        @Override
-        public String execute(Data data) {
-            final String runId = "ElrondOpenNlpRun";
-            final Analyzer indexAnalyzer = new OpenNlpAnalyzer();
-            final Analyzer queryAnalyzer = new OpenNlpAnalyzer(OpenNlpAnalyzer.FilterStrategy.ORIGINAL_ONLY);
-            final Analyzer typedQueryAnalyzer = new OpenNlpAnalyzer(OpenNlpAnalyzer.FilterStrategy.TYPED_ONLY);
-            final Similarity similarity = new LMDirichletSimilarity();
-            indexer = new DirectoryIndexerMT(
-                    indexAnalyzer,
+    OPEN_NLP("ElrondOpenNlpRun", "OpenNlpAnalyzer", "OpennlpSearcher", "nlp") {
+        // the analyzers of each POS backend, created once like the ones of the other runs
+        private final Map<POSBackend, Analyzer> indexAnalyzers = new ConcurrentHashMap<>();
+        private final Map<POSBackend, Analyzer> queryAnalyzers = new ConcurrentHashMap<>();
+        private final Map<POSBackend, Analyzer> typedQueryAnalyzers = new ConcurrentHashMap<>();
+        private final Similarity similarity = new LMDirichletSimilarity();
+
+        @Override
+        public Indexer createIndexer(Data data) {
+            return new DirectoryIndexerMT(
+                    getIndexAnalyzer(data),
                     similarity,
                     data.ramBuffer,
                     data.indexPath,
@@ -97,34 +158,66 @@ public enum PreparedRuns {
                     data.extension,
                     data.charsetName,
                     data.expectedDocs,
-                    Task1Parser.class,
+                    data.documentParser(),
                     data.numThreads,
-                    data.threadQueueFactor);
-            index();
-            searcher = new OpenNlpTaskSearcher(
-                    queryAnalyzer,
-                    typedQueryAnalyzer,
+                    indexingOptions(data, FieldProfile.MINIMAL));
+        }
+
+        @Override
+        public BasicSearcher createSearcher(Data data, String runId, String fieldVariant) {
+            return new OpenNlpTaskSearcher(
+                    queryAnalyzer(data),
+                    typedQueryAnalyzer(data),
                     similarity,
                     data.indexPath,
+                    data.indexStorage,
                     data.topics,
                     data.expectedTopics,
                     runId,
                     data.runPath,
                     data.maxDocsRetrieved,
+                    data.totalHitsThreshold,
                     data.numThreads,
-                    data.threadQueueFactor
+                    data.executionMode,
+                    fieldVariant
             );
-            search();
-            return runId;
+        }
+
+        @Override
+        public Analyzer getIndexAnalyzer(Data data) {
+            return indexAnalyzers.computeIfAbsent(data.posBackend,
+                    backend -> new OpenNlpAnalyzer(OpenNlpAnalyzer.FilterStrategy.NONE, backend));
+        }
+
+        private Analyzer queryAnalyzer(Data data) {
+            return queryAnalyzers.computeIfAbsent(data.posBackend,
+                    backend -> new OpenNlpAnalyzer(OpenNlpAnalyzer.FilterStrategy.ORIGINAL_ONLY, backend));
+        }
+
+        private Analyzer typedQueryAnalyzer(Data data) {
+            return typedQueryAnalyzers.computeIfAbsent(data.posBackend,
+                    backend -> new OpenNlpAnalyzer(OpenNlpAnalyzer.FilterStrategy.TYPED_ONLY, backend));
+        }
+
+        @Override
+        public Similarity getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public QueryShape createQueryShape(Data data, String fieldVariant) {
+            return QueryShapes.openNlp(queryAnalyzer(data), typedQueryAnalyzer(data),
+                    MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.BODY, fieldVariant),
+                    MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.TITLE, fieldVariant));
         }
     },
-    TASK_BODY_SEARCHER("TaskAnalyzer", "TaskBodySearcher") {
+    TASK_BODY_SEARCHER("ElrondTaskBodyRun", "TaskAnalyzer", "TaskBodySearcher", "lovins") {
+        private final Analyzer analyzer = new TaskAnalyzer();
+        private final Similarity similarity = new DFISimilarity(new IndependenceStandardized());
+
         @Override
-        public String execute(Data data) {
-            final String runId = "ElrondTaskBodyRun";
-            final Analyzer analyzer = new TaskAnalyzer();
-            final Similarity similarity = new DFISimilarity(new IndependenceStandardized());
-            indexer = new DirectoryIndexerMT(
+        public Indexer createIndexer(Data data) {
+            return new DirectoryIndexerMT(
                     analyzer,
                     similarity,
                     data.ramBuffer,
@@ -133,40 +226,212 @@ public enum PreparedRuns {
                     data.extension,
                     data.charsetName,
                     data.expectedDocs,
-                    Task1Parser.class,
+                    data.documentParser(),
                     data.numThreads,
-                    data.threadQueueFactor);
-            index();
-            searcher = new TaskBodySearcher(
+                    indexingOptions(data, FieldProfile.MINIMAL));
+        }
+
+        @Override
+        public BasicSearcher createSearcher(Data data, String runId, String fieldVariant) {
+            return new TaskBodySearcher(
                     analyzer,
                     similarity,
                     data.indexPath,
+                    data.indexStorage,
                     data.topics,
                     data.expectedTopics,
                     runId,
                     data.runPath,
-                    data.maxDocsRetrieved
+                    data.maxDocsRetrieved,
+                    data.totalHitsThreshold,
+                    fieldVariant
             );
-            search();
-            return runId;
+        }
+
+        @Override
+        public Analyzer getIndexAnalyzer(Data data) {
+            return analyzer;
+        }
+
+        @Override
+        public Similarity getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public QueryShape createQueryShape(Data data, String fieldVariant) {
+            return QueryShapes.body(analyzer, MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.BODY, fieldVariant));
         }
     };
 
+    private final String runId;
     private final String analyzerName;
     private final String searcherName;
+    private final String fieldVariant;
 
     protected Indexer indexer;
     protected BasicSearcher searcher;
 
-    PreparedRuns(String analyzerName, String searcherName) {
+    PreparedRuns(String runId, String analyzerName, String searcherName, String fieldVariant) {
+        this.runId = runId;
         this.analyzerName = analyzerName;
         this.searcherName = searcherName;
+        this.fieldVariant = fieldVariant;
+    }
+
+    /**
+     * Create the indexer of the run
+     * @param data data for executing the run
+     * @return a new {@link Indexer}
+     */
+    public abstract Indexer createIndexer(Data data);
+
+    /**
+     * Create the searcher of the run
+     * @param data data for executing the run
+     * @param runId the identifier of the run to be written
+     * @return a new {@link BasicSearcher}
+     */
+    public BasicSearcher createSearcher(Data data, String runId) {
+        return createSearcher(data, runId, null);
     }
 
-    public abstract String execute(Data data);
+    /**
+     * Create the searcher of the run
+     * @param data data for executing the run
+     * @param runId the identifier of the run to be written
+     * @param fieldVariant the variant of the fields to search in an index built with a {@link MultiAnalyzerSchema},
+     *                     {@code null} for the index of the run
+     * @return a new {@link BasicSearcher}
+     */
+    public abstract BasicSearcher createSearcher(Data data, String runId, String fieldVariant);
+
+    /**
+     * Create the shape of the queries of the run, the same used by its searcher
+     * @param data data for executing the run
+     * @return a new {@link QueryShape}
+     */
+    public QueryShape createQueryShape(Data data) {
+        return createQueryShape(data, null);
+    }
+
+    /**
+     * Create the shape of the queries of the run, the same used by its searcher
+     * @param data data for executing the run
+     * @param fieldVariant the variant of the fields to search in an index built with a {@link MultiAnalyzerSchema},
+     *                     {@code null} for the index of the run
+     * @return a new {@link QueryShape}
+     */
+    public abstract QueryShape createQueryShape(Data data, String fieldVariant);
+
+    /**
+     * Returns the similarity of the run, used both for indexing and searching
+     * @return the {@link Similarity} of the run
+     */
+    public abstract Similarity getSimilarity();
+
+    /**
+     * Returns the analyzer used for indexing the title and body of the documents
+     * @param data data for executing the run
+     * @return the index {@link Analyzer} of the run
+     */
+    public abstract Analyzer getIndexAnalyzer(Data data);
+
+    /**
+     * Create the description of the index of the run, for building it together with other indexes
+     * @param data data for executing the run
+     * @param indexPath the directory where to store the index
+     * @return a new {@link IndexTarget}
+     */
+    public IndexTarget createIndexTarget(Data data, String indexPath) {
+        return new IndexTarget(runId, getIndexAnalyzer(data), getSimilarity(), indexPath,
+                indexingOptions(data, FieldProfile.MINIMAL));
+    }
+
+    /**
+     * Index the documents and search the topics
+     * @param data data for executing the run
+     * @return the identifier of the written run
+     */
+    public String execute(Data data) {
+        indexer = createIndexer(data);
+        index();
+        searcher = createSearcher(data, runId);
+        warmUp(data.warmUpQueries);
+        search();
+        return runId;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    /**
+     * Returns the variant of the fields of the run in an index built with a {@link MultiAnalyzerSchema}
+     * @return the name of the variant
+     */
+    public String getFieldVariant() {
+        return fieldVariant;
+    }
+
+    /**
+     * Create the schema of an index shared by several runs, each with its own fields, analyzer and similarity
+     * @param runs the runs sharing the index
+     * @param data data for executing the runs
+     * @return a new {@link MultiAnalyzerSchema}
+     */
+    public static MultiAnalyzerSchema createSchema(Iterable<PreparedRuns> runs, Data data) {
+        final var schema = new MultiAnalyzerSchema();
+        for (final var run : runs) {
+            schema.addVariant(run.fieldVariant, run.getIndexAnalyzer(data), run.getSimilarity());
+        }
+        return schema;
+    }
+
+    /**
+     * Find the run with the given command line name
+     * @param name name of the run (SimpleRun, KRun, TaskBodyRun, OpenNlpRun)
+     * @return the corresponding {@link PreparedRuns}
+     * @throws IllegalArgumentException if the name is not recognised
+     */
+    public static PreparedRuns fromName(String name) {
+        return switch (name) {
+            case "OpenNlpRun" -> OPEN_NLP;
+            case "TaskBodyRun" -> TASK_BODY_SEARCHER;
+            case "KRun" -> K_RUN;
+            case "SimpleRun" -> SIMPLE_RUN;
+            default -> throw new IllegalArgumentException("Unknown run %s".formatted(name));
+        };
+    }
+
+    /**
+     * Create the optional settings of the index of a run
+     * @param data data for executing the run
+     * @param required the {@link FieldProfile} needed by the queries of the run
+     * @return new {@link IndexingOptions}
+     */
+    protected static IndexingOptions indexingOptions(Data data, FieldProfile required) {
+        // the queries of the prepared runs have no phrases, so their indexes have no shingles (see Sweep)
+        return new IndexingOptions()
+                .setFieldProfile(required.union(data.fieldProfile))
+                .setSegmentProfile(data.segmentProfile)
+                .setForceMergeSegments(data.forceMergeSegments)
+                .setInFlightMB(data.inFlightMB)
+                .setExecutionMode(data.executionMode)
+                .setTitleCacheMB(data.titleCacheMB)
+                .setShards(data.shards)
+                .setShardPaths(data.shardPaths)
+                .setKeepShards(data.keepShards)
+                .setStorage(data.indexStorage)
+                .setDocumentOrder(data.documentOrder)
+                .setNearDuplicates(data.nearDuplicates)
+                .setNearDuplicateThreshold(data.nearDuplicateThreshold);
+    }
+
+    @SuppressWarnings("try")
     protected void index() {
         System.out.printf("Started indexing with '%s'...%n", analyzerName);
-        try {
+        try (final var ignored = Metrics.phase("index")) {
             indexer.index();
             System.out.println("Indexing succeeded");
         } catch (IOException e) {
@@ -175,9 +440,25 @@ public enum PreparedRuns {
             System.exit(1);
         }
     }
+    @SuppressWarnings("try")
+    protected void warmUp(int queries) {
+        if (queries <= 0) {
+            return;
+        }
+        System.out.printf("Warming up '%s' with %d queries...%n", searcherName, queries);
+        try (final var ignored = Metrics.phase("search.warm_up")) {
+            searcher.warmUp(queries);
+        } catch (Exception e) {
+            System.out.println("  Warm-up failed");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    @SuppressWarnings("try")
     protected void search() {
         System.out.printf("Started searching with '%s'...%n", searcherName);
-        try {
+        try (final var ignored = Metrics.phase("search")) {
             searcher.search();
             System.out.println("  Search succeeded");
         } catch (Exception e) {
@@ -196,29 +477,221 @@ public enum PreparedRuns {
         public final int expectedDocs;
         public final String charsetName;
         public final int numThreads;
-        public final double threadQueueFactor;
         public final String runPath;
         public final int maxDocsRetrieved;
+        public final int totalHitsThreshold;
         public final int expectedTopics;
         public final String topics;
         public final String indexPath;
         public final String docsPath;
+        public final int shingleSize;
+        public final FieldProfile fieldProfile;
+        public final SegmentProfile segmentProfile;
+        public final int forceMergeSegments;
+        public final int inFlightMB;
+        public final ExecutionMode executionMode;
+        public final int titleCacheMB;
+        public final int shards;
+        public final List<String> shardPaths;
+        public final boolean keepShards;
+        public final IndexStorage indexStorage;
+        public final int warmUpQueries;
+        public final DocumentOrder documentOrder;
+        public final NearDuplicates nearDuplicates;
+        public final double nearDuplicateThreshold;
+        public final POSBackend posBackend;
 
         public Data(int ramBuffer, String extension, int expectedDocs, String charsetName, int numThreads,
-                    double threadQueueFactor, String runPath, int maxDocsRetrieved, int expectedTopics,
-                    String topics, String indexPath, String docsPath) {
+                    String runPath, int maxDocsRetrieved, int totalHitsThreshold, int expectedTopics, String topics,
+                    String indexPath, String docsPath, int shingleSize, FieldProfile fieldProfile,
+                    SegmentProfile segmentProfile, int forceMergeSegments, int inFlightMB, ExecutionMode executionMode,
+                    int titleCacheMB, int shards, List<String> shardPaths, boolean keepShards,
+                    IndexStorage indexStorage, int warmUpQueries, DocumentOrder documentOrder,
+                    NearDuplicates nearDuplicates, double nearDuplicateThreshold, POSBackend posBackend) {
             this.ramBuffer = ramBuffer;
             this.extension = extension;
             this.expectedDocs = expectedDocs;
             this.charsetName = charsetName;
             this.numThreads = numThreads;
-            this.threadQueueFactor = threadQueueFactor;
             this.runPath = runPath;
             this.maxDocsRetrieved = maxDocsRetrieved;
+            this.totalHitsThreshold = totalHitsThreshold;
             this.expectedTopics = expectedTopics;
             this.topics = topics;
             this.indexPath = indexPath;
             this.docsPath = docsPath;
+            this.shingleSize = shingleSize;
+            this.fieldProfile = fieldProfile;
+            this.segmentProfile = segmentProfile;
+            this.forceMergeSegments = forceMergeSegments;
+            this.inFlightMB = inFlightMB;
+            this.executionMode = executionMode;
+            this.titleCacheMB = titleCacheMB;
+            this.shards = shards;
+            this.shardPaths = shardPaths;
+            this.keepShards = keepShards;
+            this.indexStorage = indexStorage;
+            this.warmUpQueries = warmUpQueries;
+            this.documentOrder = documentOrder;
+            this.nearDuplicates = nearDuplicates;
+            this.nearDuplicateThreshold = nearDuplicateThreshold;
+            this.posBackend = posBackend;
+        }
+
+        /**
+         * Creates the data of a {@link Copy}
+         */
+        private Data(Copy copy) {
+            this.ramBuffer = copy.ramBuffer;
+            this.extension = copy.extension;
+            this.expectedDocs = copy.expectedDocs;
+            this.charsetName = copy.charsetName;
+            this.numThreads = copy.numThreads;
+            this.runPath = copy.runPath;
+            this.maxDocsRetrieved = copy.maxDocsRetrieved;
+            this.totalHitsThreshold = copy.totalHitsThreshold;
+            this.expectedTopics = copy.expectedTopics;
+            this.topics = copy.topics;
+            this.indexPath = copy.indexPath;
+            this.docsPath = copy.docsPath;
+            this.shingleSize = copy.shingleSize;
+            this.fieldProfile = copy.fieldProfile;
+            this.segmentProfile = copy.segmentProfile;
+            this.forceMergeSegments = copy.forceMergeSegments;
+            this.inFlightMB = copy.inFlightMB;
+            this.executionMode = copy.executionMode;
+            this.titleCacheMB = copy.titleCacheMB;
+            this.shards = copy.shards;
+            this.shardPaths = copy.shardPaths;
+            this.keepShards = copy.keepShards;
+            this.indexStorage = copy.indexStorage;
+            this.warmUpQueries = copy.warmUpQueries;
+            this.documentOrder = copy.documentOrder;
+            this.nearDuplicates = copy.nearDuplicates;
+            this.nearDuplicateThreshold = copy.nearDuplicateThreshold;
+            this.posBackend = copy.posBackend;
+        }
+
+        /**
+         * Returns the parser of the documents: {@link BinaryCorpusParser} for the files exported by
+         * {@link BinaryCorpus}, {@link Task1Parser} for the original corpus
+         * @return the class of the {@link DocumentParser}
+         */
+        public Class<? extends DocumentParser> documentParser() {
+            return BinaryCorpus.EXTENSION.equals(extension) ? BinaryCorpusParser.class : Task1Parser.class;
+        }
+
+        /**
+         * Returns a copy of this data with a different index
+         * @param indexPath the directory of the index
+         * @return a new {@link Data}
+         */
+        public Data withIndexPath(String indexPath) {
+            final var copy = new Copy(this);
+            copy.indexPath = indexPath;
+            return new Data(copy);
+        }
+
+        /**
+         * Returns a copy of this data running its tasks on other threads
+         * @param executionMode the threads of the indexer and searcher
+         * @return a new {@link Data}
+         */
+        public Data withExecutionMode(ExecutionMode executionMode) {
+            final var copy = new Copy(this);
+            copy.executionMode = executionMode;
+            return new Data(copy);
+        }
+
+        /**
+         * Returns a copy of this data building the index with another number of shards
+         * @param shards the number of private writers, 0 for a single shared writer
+         * @param keepShards whether the shards are kept after being added to the index
+         * @return a new {@link Data}
+         */
+        public Data withShards(int shards, boolean keepShards) {
+            final var copy = new Copy(this);
+            copy.shards = shards;
+            copy.keepShards = keepShards;
+            return new Data(copy);
+        }
+
+        /**
+         * Returns a copy of this data searching the index from another storage
+         * @param indexStorage where the index is stored
+         * @param warmUpQueries the number of queries replayed before searching, 0 for none
+         * @return a new {@link Data}
+         */
+        public Data withStorage(IndexStorage indexStorage, int warmUpQueries) {
+            final var copy = new Copy(this);
+            copy.indexStorage = indexStorage;
+            copy.warmUpQueries = warmUpQueries;
+            return new Data(copy);
+        }
+
+        /**
+         * Mutable copy of a {@link Data}, so that each {@code with} method only sets the fields it changes
+         */
+        private static final class Copy {
+            private int ramBuffer;
+            private String extension;
+            private int expectedDocs;
+            private String charsetName;
+            private int numThreads;
+            private String runPath;
+            private int maxDocsRetrieved;
+            private int totalHitsThreshold;
+            private int expectedTopics;
+            private String topics;
+            private String indexPath;
+            private String docsPath;
+            private int shingleSize;
+            private FieldProfile fieldProfile;
+            private SegmentProfile segmentProfile;
+            private int forceMergeSegments;
+            private int inFlightMB;
+            private ExecutionMode executionMode;
+            private int titleCacheMB;
+            private int shards;
+            private List<String> shardPaths;
+            private boolean keepShards;
+            private IndexStorage indexStorage;
+            private int warmUpQueries;
+            private DocumentOrder documentOrder;
+            private NearDuplicates nearDuplicates;
+            private double nearDuplicateThreshold;
+            private POSBackend posBackend;
+
+            private Copy(Data data) {
+                ramBuffer = data.ramBuffer;
+                extension = data.extension;
+                expectedDocs = data.expectedDocs;
+                charsetName = data.charsetName;
+                numThreads = data.numThreads;
+                runPath = data.runPath;
+                maxDocsRetrieved = data.maxDocsRetrieved;
+                totalHitsThreshold = data.totalHitsThreshold;
+                expectedTopics = data.expectedTopics;
+                topics = data.topics;
+                indexPath = data.indexPath;
+                docsPath = data.docsPath;
+                shingleSize = data.shingleSize;
+                fieldProfile = data.fieldProfile;
+                segmentProfile = data.segmentProfile;
+                forceMergeSegments = data.forceMergeSegments;
+                inFlightMB = data.inFlightMB;
+                executionMode = data.executionMode;
+                titleCacheMB = data.titleCacheMB;
+                shards = data.shards;
+                shardPaths = data.shardPaths;
+                keepShards = data.keepShards;
+                indexStorage = data.indexStorage;
+                warmUpQueries = data.warmUpQueries;
+                documentOrder = data.documentOrder;
+                nearDuplicates = data.nearDuplicates;
+                nearDuplicateThreshold = data.nearDuplicateThreshold;
+                posBackend = data.posBackend;
+            }
         }
     }
 }
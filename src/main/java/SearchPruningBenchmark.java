@@ -0,0 +1,64 @@
+import search.TopKSearch;
+import utils.RunDiff;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmark of the search latency with and without dynamic pruning of non-competitive documents.
+ * <p>
+ * For each run it searches the topics counting every hit ({@link TopKSearch#EXACT_TOTAL_HITS}, no pruning) and with
+ * the bounded total hits threshold used by the runs, then checks that the rankings are unchanged.
+ * The index in {@code work_folder} must have been built by the same run, e.g. with a previous execution of
+ * {@link Main}.
+ * <p>
+ * Usage: SearchPruningBenchmark [run_name...] (default: all the runs)
+ */
+public class SearchPruningBenchmark {
+    /**
+     * Number of timed repetitions for each mode, after one warm-up search
+     */
+    private static final int REPETITIONS = 3;
+
+    public static void main(String[] args) throws Exception {
+        final List<String> runNames = args.length > 0 ? Arrays.asList(args)
+                : List.of("SimpleRun", "KRun", "TaskBodyRun", "OpenNlpRun");
+
+        final var props = Main.loadProps();
+        final var bounded = Main.createData(props);
+        props.setProperty("totalHitsThreshold", Integer.toString(TopKSearch.EXACT_TOTAL_HITS));
+        final var exact = Main.createData(props);
+
+        System.out.printf("%-12s %14s %14s %10s %10s%n", "run", "exact (ms)", "bounded (ms)", "speedup", "rankings");
+        for (final var name : runNames) {
+            final var run = PreparedRuns.fromName(name);
+            final var exactRunId = run.getRunId() + "-exact";
+            final var boundedRunId = run.getRunId() + "-bounded";
+
+            final double exactMs = time(run, exact, exactRunId);
+            final double boundedMs = time(run, bounded, boundedRunId);
+
+            final var diff = RunDiff.compare(Path.of(exact.runPath, exactRunId + ".txt"),
+                    Path.of(bounded.runPath, boundedRunId + ".txt"));
+
+            System.out.printf("%-12s %14.1f %14.1f %9.2fx %10s%n", name, exactMs, boundedMs, exactMs / boundedMs,
+                    diff.sameRankings() ? "same" : "%d differ".formatted(diff.differentRankings()));
+        }
+    }
+
+    /**
+     * Average search time of a run
+     * @return average elapsed time in milliseconds, excluding the warm-up search
+     */
+    private static double time(PreparedRuns run, PreparedRuns.Data data, String runId) throws Exception {
+        run.createSearcher(data, runId).search();
+        long total = 0;
+        for (int i = 0; i < REPETITIONS; i++) {
+            final var searcher = run.createSearcher(data, runId);
+            searcher.search();
+            total += searcher.getElapsedTime();
+        }
+        return (double) total / REPETITIONS;
+    }
+}
@@ -0,0 +1,158 @@
+import index.IndexStorage;
+import metrics.Metrics;
+import utils.RunDiff;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark of the per-topic search latency from the first query, with the index opened from each
+ * {@link IndexStorage} on disk and with or without the warm-up pass (see {@link search.WarmUp}).
+ * <p>
+ * The index of the run is built once on disk, then each configuration searches the topics in its own JVM, with the
+ * same classpath and JVM options of this one, so that the JIT and the reader start cold; the page cache is dropped
+ * too when the process is allowed to (root on Linux), otherwise the index files are already cached by the build and
+ * only the JVM is cold. The report has the time to open the reader (including the preload), the time of the warm-up,
+ * the percentiles and the max of the per-topic search latency (the max being the cold first queries) and the
+ * comparison of the rankings with the ones of {@link IndexStorage#FS}.
+ * <p>
+ * Usage: SearchWarmUpBenchmark run_name [warm_up_queries] (defaults to warmUpQueries, or 50)
+ */
+public class SearchWarmUpBenchmark {
+    private static final String SEARCH = "--search";
+    private static final String RESULT = "RESULT";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 4) {
+            System.out.println("Usage: SearchWarmUpBenchmark run_name [warm_up_queries]");
+            System.exit(1);
+        }
+        if (args[0].equals(SEARCH)) {
+            search(args[1], IndexStorage.valueOf(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+
+        final var run = PreparedRuns.fromName(args[0]);
+        final var base = Main.createData(Main.loadProps());
+        final int warmUpQueries = args.length > 1 ? Integer.parseInt(args[1])
+                : base.warmUpQueries > 0 ? base.warmUpQueries : 50;
+
+        System.out.println("Building the index on disk...");
+        run.createIndexer(base.withStorage(IndexStorage.FS, 0)).index();
+
+        final List<Object[]> configurations = List.of(
+                new Object[]{IndexStorage.FS, 0},
+                new Object[]{IndexStorage.MMAP, 0},
+                new Object[]{IndexStorage.MMAP_HOT, 0},
+                new Object[]{IndexStorage.MMAP_HOT, warmUpQueries});
+
+        final StringBuilder report = new StringBuilder("%n%-10s %8s %10s %12s %9s %9s %9s %9s %8s %10s%n".formatted(
+                "storage", "warm-up", "open (ms)", "warm-up (ms)", "p50 (ms)", "p90 (ms)", "p99 (ms)", "max (ms)",
+                "max/p50", "rankings"));
+        Path reference = null;
+        String cache = "kept";
+        for (final var configuration : configurations) {
+            final var storage = (IndexStorage) configuration[0];
+            final int queries = (Integer) configuration[1];
+            final var result = searchInChildJvm(args[0], storage, queries, Path.of(base.runPath));
+            if (result[0] == 1) {
+                cache = "dropped";
+            }
+
+            final var runFile = Path.of(base.runPath, runId(run, storage, queries) + ".txt");
+            final String rankings;
+            if (reference == null) {
+                reference = runFile;
+                rankings = "reference";
+            } else {
+                final var diff = RunDiff.compareIgnoringTies(reference, runFile);
+                rankings = diff.sameRankings() ? "same" : "%d differ".formatted(diff.differentRankings());
+            }
+            report.append("%-10s %8d %10d %12d %9.2f %9.2f %9.2f %9.2f %8.1f %10s%n".formatted(storage, queries,
+                    result[1], result[2], result[3] / 1e6, result[4] / 1e6, result[5] / 1e6, result[6] / 1e6,
+                    result[3] == 0 ? 0.0 : (double) result[6] / result[3], rankings));
+        }
+        System.out.print(report);
+        System.out.printf("Page cache %s before each configuration.%n", cache);
+    }
+
+    private static String runId(PreparedRuns run, IndexStorage storage, int warmUpQueries) {
+        return "%s-%s-warm-%d".formatted(run.getRunId(), storage.name().toLowerCase(), warmUpQueries);
+    }
+
+    /**
+     * Search in a new JVM, its output in {@code <work_folder>/<run_id>.log}
+     * @return page cache dropped (0 or 1), open and warm-up milliseconds, p50, p90, p99 and max search nanoseconds
+     */
+    private static long[] searchInChildJvm(String runName, IndexStorage storage, int warmUpQueries, Path runPath)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), SearchWarmUpBenchmark.class.getName(),
+                SEARCH, runName, storage.name(), Integer.toString(warmUpQueries)));
+
+        final var log = runPath.resolve(runId(PreparedRuns.fromName(runName), storage, warmUpQueries) + ".log");
+        System.out.printf("Searching from %s with %d warm-up queries, log in %s%n", storage, warmUpQueries, log);
+        final var process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile())
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Search from %s failed, see %s.".formatted(storage, log));
+        }
+        final var lines = Files.readAllLines(log);
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            if (lines.get(i).startsWith(RESULT)) {
+                final var fields = lines.get(i).split(" ");
+                final long[] result = new long[fields.length - 1];
+                for (int j = 1; j < fields.length; j++) {
+                    result[j - 1] = Long.parseLong(fields[j]);
+                }
+                return result;
+            }
+        }
+        throw new IllegalStateException("No result in %s.".formatted(log));
+    }
+
+    /**
+     * Search the topics in this JVM and print the result line read by the parent
+     */
+    private static void search(String runName, IndexStorage storage, int warmUpQueries) throws Exception {
+        final var run = PreparedRuns.fromName(runName);
+        final var data = Main.createData(Main.loadProps()).withStorage(storage, warmUpQueries);
+        final boolean dropped = dropPageCache();
+
+        long start = System.currentTimeMillis();
+        final var searcher = run.createSearcher(data, runId(run, storage, warmUpQueries));
+        final long open = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        searcher.warmUp(warmUpQueries);
+        final long warmUp = System.currentTimeMillis() - start;
+
+        searcher.search();
+        final var latency = Metrics.timer("search.search").snapshot();
+        System.out.printf("%s %d %d %d %d %d %d %d%n", RESULT, dropped ? 1 : 0, open, warmUp, latency.p50(),
+                latency.p90(), latency.p99(), latency.max());
+    }
+
+    /**
+     * Drop the page cache of the system, Linux only and if allowed
+     * @return whether the page cache has been dropped
+     */
+    private static boolean dropPageCache() {
+        try {
+            new ProcessBuilder("sync").inheritIO().start().waitFor();
+            Files.writeString(Path.of("/proc/sys/vm/drop_caches"), "1");
+            return true;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
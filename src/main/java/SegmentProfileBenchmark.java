@@ -0,0 +1,125 @@
+import index.IndexTarget;
+import index.MultiDirectoryIndexer;
+import index.SegmentProfile;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.FSDirectory;
+import search.TopKSearch;
+import server.LatencyRecorder;
+import topics.Topics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark of the segment layout of the index of a run: the {@link SegmentProfile#DEFAULT} index as built today
+ * against a {@link SegmentProfile#BULK} one force merged to N segments (default {@code numThreads}), both built in
+ * a single scan of the corpus.
+ * <p>
+ * For each index it reports the segments, the size and the latency of the topic queries, searched both by a single
+ * thread and with {@code numThreads} threads searching the segments of each query concurrently.
+ * <p>
+ * Usage: SegmentProfileBenchmark run_name [segments]
+ */
+public class SegmentProfileBenchmark {
+    /**
+     * Number of timed repetitions of all the topics, after one warm-up pass
+     */
+    private static final int REPETITIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: SegmentProfileBenchmark run_name [segments]");
+            System.exit(1);
+        }
+        final var run = PreparedRuns.fromName(args[0]);
+        final var data = Main.createData(Main.loadProps());
+        final int segments = args.length > 1 ? Integer.parseInt(args[1]) : data.numThreads;
+
+        final var defaultData = data.withIndexPath("%s/index-segments-default".formatted(data.runPath));
+        final var bulkData = data.withIndexPath("%s/index-segments-bulk".formatted(data.runPath));
+        final var defaultTarget = target(run, defaultData, SegmentProfile.DEFAULT, 0);
+        final var bulkTarget = target(run, bulkData, SegmentProfile.BULK, segments);
+
+        new MultiDirectoryIndexer(List.of(defaultTarget, bulkTarget), data.ramBuffer, data.docsPath, data.extension,
+                data.charsetName, data.expectedDocs, data.documentParser(), data.numThreads).index();
+
+        final var queryShape = run.createQueryShape(data);
+        final List<Query> queries = new ArrayList<>();
+        for (final var topic : Topics.loadTopics(data.topics).topics) {
+            queries.add(queryShape.create(topic.title));
+        }
+
+        final var executor = Executors.newFixedThreadPool(data.numThreads);
+        try {
+            System.out.printf("%n%-10s %8s %10s %36s %36s%n", "profile", "segments", "size (MB)",
+                    "latency, 1 thread", "latency, %d threads".formatted(data.numThreads));
+            // the first pass only warms up the JIT, so that the first index is not penalized
+            for (final var print : List.of(false, true)) {
+                for (final var target : List.of(defaultTarget, bulkTarget)) {
+                    report(target, queries, data, executor, print);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static IndexTarget target(PreparedRuns run, PreparedRuns.Data data, SegmentProfile profile,
+                                      int segments) {
+        final var target = run.createIndexTarget(data, data.indexPath);
+        target.options().setSegmentProfile(profile).setForceMergeSegments(segments);
+        return new IndexTarget("%s-%s".formatted(target.name(), profile), target.analyzer(), target.similarity(),
+                target.indexPath(), target.options());
+    }
+
+    private static void report(IndexTarget target, List<Query> queries, PreparedRuns.Data data,
+                               ExecutorService executor, boolean print) throws Exception {
+        final var indexDir = Path.of(target.indexPath());
+        long bytes;
+        try (final Stream<Path> files = Files.list(indexDir)) {
+            bytes = files.mapToLong(file -> file.toFile().length()).sum();
+        }
+
+        try (final var directory = FSDirectory.open(indexDir); final var reader = DirectoryReader.open(directory)) {
+            final int segmentCount = SegmentInfos.readLatestCommit(directory).size();
+
+            final var sequential = new IndexSearcher(reader);
+            final var concurrent = new IndexSearcher(reader, executor);
+            for (final var searcher : List.of(sequential, concurrent)) {
+                searcher.setSimilarity(target.similarity());
+            }
+
+            final var sequentialLatency = time(sequential, queries, data);
+            final var concurrentLatency = time(concurrent, queries, data);
+            if (print) {
+                System.out.printf("%-10s %8d %10d %36s %36s%n", target.options().getSegmentProfile(), segmentCount,
+                        bytes / (1024 * 1024), sequentialLatency, concurrentLatency);
+            }
+        }
+    }
+
+    private static String time(IndexSearcher searcher, List<Query> queries, PreparedRuns.Data data)
+            throws Exception {
+        for (final var query : queries) {
+            TopKSearch.search(searcher, query, data.maxDocsRetrieved, data.totalHitsThreshold);
+        }
+        final var latencies = new LatencyRecorder();
+        for (int i = 0; i < REPETITIONS; i++) {
+            for (final var query : queries) {
+                final long start = System.nanoTime();
+                TopKSearch.search(searcher, query, data.maxDocsRetrieved, data.totalHitsThreshold);
+                latencies.record(System.nanoTime() - start);
+            }
+        }
+        final var p = latencies.percentiles();
+        return String.format("p50 %.2f p90 %.2f max %.2f ms", p.p50(), p.p90(), p.max());
+    }
+}
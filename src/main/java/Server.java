@@ -0,0 +1,54 @@
+import server.SearchServer;
+import topics.Topics;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Long-running search server over the index of a run, see {@link SearchServer}.
+ * <p>
+ * The index in {@code work_folder} must have been built by the same run, e.g. with a previous execution of
+ * {@link Main}. The topics file is only used to warm up the server. The latency percentiles are printed on exit.
+ * <p>
+ * Usage: Server run_name [port] (HTTP on the given port of the loopback interface; without a port titles are read
+ * from the standard input, one per line)
+ */
+public class Server {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: Server run_name [port]");
+            System.exit(1);
+        }
+
+        final var run = PreparedRuns.fromName(args[0]);
+        final var data = Main.createData(Main.loadProps());
+        // the line protocol uses the standard output, so diagnostics go to the standard error
+        final var log = args.length == 2 ? System.out : System.err;
+
+        final var server = new SearchServer(data.indexPath, data.indexStorage, run.getSimilarity(),
+                () -> run.createQueryShape(data), data.maxDocsRetrieved, data.totalHitsThreshold, data.numThreads);
+
+        final long start = System.currentTimeMillis();
+        final var titles = new ArrayList<String>();
+        Topics.loadTopics(data.topics).topics.forEach(topic -> titles.add(topic.title));
+        server.warmUp(titles);
+        log.printf("Warmed up %d threads with %d topics in %d ms%n", data.numThreads, titles.size(),
+                System.currentTimeMillis() - start);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> log.printf("Latency: %s%n", server.getLatencies())));
+
+        if (args.length == 2) {
+            final var address = server.startHttp(Integer.parseInt(args[1]));
+            log.printf("Listening on http://%s:%d/search?q=...%n", address.getHostString(), address.getPort());
+        } else {
+            try (server) {
+                server.serveLines(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                        new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+            }
+        }
+    }
+}
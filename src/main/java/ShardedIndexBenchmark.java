@@ -0,0 +1,154 @@
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.FSDirectory;
+import parse.ParsedDocument;
+import utils.RunDiff;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark of the sharded index build against the single shared writer, see
+ * {@link index.IndexingOptions#setShards(int)}.
+ * <p>
+ * Each number of shards (0 being the shared writer) builds the index of the run in
+ * {@code <work_folder>/index-shards-<shards>} in its own JVM, with the same classpath and JVM options of this one, so
+ * that the peak resident memory (VmHWM, Linux only) is the one of that build alone. The report has the wall-clock
+ * time of the build, the peak RSS, the documents and the distinct identifiers of the index; then the topics are
+ * searched on each index and the rankings compared with the ones of the shared writer, up to the order of tied
+ * documents.
+ * <p>
+ * Usage: ShardedIndexBenchmark run_name [shards ...] (defaults to 4 shards)
+ */
+public class ShardedIndexBenchmark {
+    private static final String BUILD = "--build";
+    private static final String RESULT = "RESULT";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: ShardedIndexBenchmark run_name [shards ...]");
+            System.exit(1);
+        }
+        if (args[0].equals(BUILD)) {
+            build(args[1], Integer.parseInt(args[2]));
+            return;
+        }
+
+        final var run = PreparedRuns.fromName(args[0]);
+        final var data = Main.createData(Main.loadProps());
+        final List<Integer> configurations = new ArrayList<>(List.of(0));
+        for (int i = 1; i < args.length; i++) {
+            configurations.add(Integer.parseInt(args[i]));
+        }
+        if (configurations.size() == 1) {
+            configurations.add(4);
+        }
+
+        final StringBuilder report = new StringBuilder("%n%-8s %10s %14s %10s %12s %10s%n".formatted(
+                "shards", "wall (s)", "peak RSS (MB)", "docs", "distinct ids", "rankings"));
+        Path sharedRun = null;
+        for (final int shards : configurations) {
+            final var result = buildInChildJvm(args[0], shards, Path.of(data.runPath));
+
+            final var shardData = data.withShards(shards, false).withIndexPath(indexPath(data, shards));
+            final var runId = "%s-shards-%d".formatted(run.getRunId(), shards);
+            run.createSearcher(shardData, runId).search();
+            final var runFile = Path.of(data.runPath, runId + ".txt");
+            final String rankings;
+            if (sharedRun == null) {
+                sharedRun = runFile;
+                rankings = "reference";
+            } else {
+                final var diff = RunDiff.compareIgnoringTies(sharedRun, runFile);
+                rankings = diff.sameRankings() ? "same" : "%d differ".formatted(diff.differentRankings());
+            }
+            report.append("%-8d %10.1f %14s %10d %12d %10s%n".formatted(shards, result[0] / 1000.0,
+                    result[1] < 0 ? "n/a" : Long.toString(result[1] / 1024), result[2], result[3], rankings));
+        }
+        System.out.print(report);
+    }
+
+    private static String indexPath(PreparedRuns.Data data, int shards) {
+        return "%s/index-shards-%d".formatted(data.runPath, shards);
+    }
+
+    /**
+     * Run the build in a new JVM, its output in {@code <work_folder>/index-shards-<shards>.log}
+     * @return wall milliseconds, peak RSS in kB, documents, distinct identifiers
+     */
+    private static long[] buildInChildJvm(String runName, int shards, Path runPath)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), ShardedIndexBenchmark.class.getName(),
+                BUILD, runName, Integer.toString(shards)));
+
+        final var log = runPath.resolve("index-shards-%d.log".formatted(shards));
+        System.out.printf("Building with %d shard(s), log in %s%n", shards, log);
+        final var process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile())
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Build with %d shard(s) failed, see %s.".formatted(shards, log));
+        }
+        final var lines = Files.readAllLines(log);
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            if (lines.get(i).startsWith(RESULT)) {
+                final var fields = lines.get(i).split(" ");
+                final long[] result = new long[fields.length - 1];
+                for (int j = 1; j < fields.length; j++) {
+                    result[j - 1] = Long.parseLong(fields[j]);
+                }
+                return result;
+            }
+        }
+        throw new IllegalStateException("No result in %s.".formatted(log));
+    }
+
+    /**
+     * Build the index in this JVM and print the result line read by the parent
+     */
+    private static void build(String runName, int shards) throws IOException {
+        final var run = PreparedRuns.fromName(runName);
+        final var base = Main.createData(Main.loadProps());
+        final var data = base.withShards(shards, false).withIndexPath(indexPath(base, shards));
+
+        final long start = System.currentTimeMillis();
+        run.createIndexer(data).index();
+        final long wall = System.currentTimeMillis() - start;
+
+        try (final var directory = FSDirectory.open(Path.of(data.indexPath));
+             final var reader = DirectoryReader.open(directory)) {
+            long ids = 0;
+            final var terms = MultiTerms.getTerms(reader, ParsedDocument.FIELDS.ID);
+            if (terms != null) {
+                final TermsEnum termsEnum = terms.iterator();
+                while (termsEnum.next() != null) {
+                    ids++;
+                }
+            }
+            System.out.printf("%s %d %d %d %d%n", RESULT, wall, peakRssKB(), reader.numDocs(), ids);
+        }
+    }
+
+    /**
+     * Returns the peak resident set size of this process, -1 if unknown
+     */
+    private static long peakRssKB() {
+        try {
+            for (final var line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // not on Linux
+        }
+        return -1;
+    }
+}
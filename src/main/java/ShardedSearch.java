@@ -0,0 +1,184 @@
+import index.DirectoryIndexerMT;
+import index.IndexingOptions;
+import server.ScatterGatherSearcher;
+import server.ShardServer;
+import utils.RunDiff;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Scatter-gather search of a run over the shards of its index, each one served by a {@link ShardServer} in its own
+ * local process, see {@link ScatterGatherSearcher}.
+ * <p>
+ * The index of the run is built in shards, which are kept next to the whole index (see
+ * {@link IndexingOptions#setKeepShards(boolean)}). One worker JVM is started for each shard, with the same classpath
+ * and JVM options of this one, and the topics are searched over localhost sockets into {@code <run_id>-sharded.txt}.
+ * Then the run is searched on the whole index too and the rankings are compared, up to the order of tied documents:
+ * with the global statistics they are the same.
+ * <p>
+ * Usage: ShardedSearch run_name [shards] (defaults to indexingShards, or 4)
+ */
+public class ShardedSearch {
+    private static final String WORKER = "--worker";
+    private static final String LISTENING = "LISTENING";
+
+    /**
+     * Seconds a worker has to open its shard and report its port
+     */
+    private static final int START_SECONDS = 120;
+
+    /**
+     * Seconds a worker has to stop once its standard input is closed, before being killed
+     */
+    private static final int STOP_SECONDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("Usage: ShardedSearch run_name [shards]");
+            System.exit(1);
+        }
+        if (args[0].equals(WORKER)) {
+            serveShard(args[1], args[2]);
+            return;
+        }
+
+        final var run = PreparedRuns.fromName(args[0]);
+        final var data = Main.createData(Main.loadProps());
+        if (!data.indexStorage.isOnDisk()) {
+            throw new IllegalArgumentException(
+                    "The shards are served by other processes: index storage %s is not on disk.".formatted(
+                            data.indexStorage));
+        }
+        final int shards = args.length > 1 ? Integer.parseInt(args[1]) : data.shards > 0 ? data.shards : 4;
+
+        final var indexDir = Path.of(data.indexPath);
+        final var options = new IndexingOptions().setShardPaths(data.shardPaths);
+        final List<Path> shardDirs = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            shardDirs.add(DirectoryIndexerMT.shardDir(indexDir, options, i));
+        }
+        // like Main, the index is rebuilt by each run: the runs share the index path but not the analyzer
+        System.out.printf("Building the index in %d shards...%n", shards);
+        run.createIndexer(data.withShards(shards, true)).index();
+
+        final List<Process> workers = new ArrayList<>(shards);
+        try {
+            final List<InetSocketAddress> addresses = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                final var worker = startWorker(args[0], shardDirs.get(i));
+                workers.add(worker);
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), awaitPort(worker, i)));
+            }
+            System.out.printf("%d shard worker(s) listening on %s%n", shards, addresses);
+
+            final var runId = run.getRunId() + "-sharded";
+            final var searcher = new ScatterGatherSearcher(addresses, data.topics, data.expectedTopics, runId,
+                    data.runPath, data.maxDocsRetrieved);
+            searcher.search();
+
+            final var singleRunId = run.getRunId() + "-single";
+            run.createSearcher(data, singleRunId).search();
+            final var diff = RunDiff.compareIgnoringTies(Path.of(data.runPath, singleRunId + ".txt"),
+                    Path.of(data.runPath, runId + ".txt"));
+            System.out.printf("%nRankings of %d shards and of the whole index: %s%n", shards,
+                    diff.sameRankings() ? "same" : "%d differ".formatted(diff.differentRankings()));
+        } finally {
+            stopWorkers(workers);
+        }
+    }
+
+    /**
+     * Start the worker JVM of a shard
+     */
+    private static Process startWorker(String runName, Path shardDir) throws IOException {
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), ShardedSearch.class.getName(), WORKER,
+                runName, shardDir.toString()));
+        return new ProcessBuilder(command).redirectErrorStream(true).start();
+    }
+
+    /**
+     * Stop the workers closing their standard input, then kill the ones still running after {@link #STOP_SECONDS}
+     */
+    private static void stopWorkers(List<Process> workers) throws InterruptedException {
+        for (final var worker : workers) {
+            try {
+                worker.getOutputStream().close();
+            } catch (IOException e) {
+                // the worker is gone
+            }
+        }
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STOP_SECONDS);
+        for (final var worker : workers) {
+            if (!worker.waitFor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                System.out.printf("Killing the shard worker %d, still running after %d seconds.%n", worker.pid(),
+                        STOP_SECONDS);
+                worker.destroyForcibly().waitFor(STOP_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Forward the output of a worker, waiting at most {@link #START_SECONDS} for its port
+     */
+    private static int awaitPort(Process worker, int shard) throws InterruptedException {
+        final var port = new CompletableFuture<Integer>();
+        final var forwarder = new Thread(() -> {
+            final var in = new BufferedReader(new InputStreamReader(worker.getInputStream(), StandardCharsets.UTF_8));
+            try {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    if (!port.isDone() && line.startsWith(LISTENING)) {
+                        port.complete(Integer.parseInt(line.substring(LISTENING.length()).trim()));
+                    } else {
+                        System.out.printf("[shard %d] %s%n", shard, line);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                port.completeExceptionally(e);
+            }
+            port.completeExceptionally(new IllegalStateException(
+                    "Worker of shard %d exited before listening.".formatted(shard)));
+        }, "shard-%d-output".formatted(shard));
+        forwarder.setDaemon(true);
+        forwarder.start();
+        try {
+            return port.get(START_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Worker of shard %d failed to start.".formatted(shard), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Worker of shard %d not listening after %d seconds.".formatted(shard,
+                    START_SECONDS));
+        }
+    }
+
+    /**
+     * Serve a shard until the end of the standard input
+     */
+    private static void serveShard(String runName, String shardPath) throws IOException {
+        final var run = PreparedRuns.fromName(runName);
+        final var data = Main.createData(Main.loadProps());
+        try (final var server = new ShardServer(shardPath, data.indexStorage, run.getSimilarity(),
+                () -> run.createQueryShape(data), data.totalHitsThreshold)) {
+            System.out.printf("%s %d%n", LISTENING, server.start(0));
+            System.out.flush();
+            while (System.in.read() != -1) {
+                // nothing to read, only waiting for the coordinator to close the stream
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import eval.Evaluation;
+import eval.Measure;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.Query;
+import scoring.OfflineScorer;
+import scoring.SimilaritySpecs;
+import scoring.TermStatsSnapshot;
+import search.TopicAnalysisCache;
+import topics.Topics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sweep of similarities and parameters without searching the index again.
+ * <p>
+ * The term statistics and postings of the candidate documents of the topics are extracted once from the index of the
+ * run into {@code <run_path>/<run_id>.postings}, and reused as long as the index is not rebuilt and the topics, the
+ * shape of the queries and the analyzer do not change. Then every similarity of the grid rescores the topics in
+ * parallel and writes {@code <run_path>/<run_id>-<similarity>.txt}.
+ * The index in {@code work_folder} must have been built by the same run, e.g. with a previous execution of
+ * {@link Main}.
+ * <p>
+ * Usage: SimilaritySweep run_name similarity_grid... (e.g. {@code KRun "BM25(k1=0.9|1.2,b=0.4|0.75)"
+ * "LMDirichlet(mu=500|1000|2000)"}, see {@link SimilaritySpecs})
+ * <p>
+ * If {@code qrels_path} is set, the scored runs are also evaluated in memory and ranked by nDCG@10.
+ */
+public class SimilaritySweep {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: SimilaritySweep run_name similarity_grid...");
+            System.exit(1);
+        }
+
+        final var run = PreparedRuns.fromName(args[0]);
+        final Map<String, org.apache.lucene.search.similarities.Similarity> similarities = new LinkedHashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            SimilaritySpecs.parse(args[i]).forEach((name, similarity) ->
+                    similarities.put(run.getRunId() + "-" + SimilaritySpecs.slug(name), similarity));
+        }
+
+        final var props = Main.loadProps();
+        final var data = Main.createData(props);
+        final var evaluator = Main.createEvaluator(props, data.numThreads);
+        final var snapshotFile = Path.of(data.runPath, run.getRunId() + ".postings");
+
+        long start = System.currentTimeMillis();
+        TermStatsSnapshot snapshot;
+        try (final var reader = DirectoryReader.open(data.indexStorage.open(Path.of(data.indexPath)))) {
+            final var commit = TermStatsSnapshot.commitOf(reader);
+            // the shape of the queries is the code of the run, the same code source of its analyzer
+            final var queriesKey = TermStatsSnapshot.queriesKeyOf(Path.of(data.topics),
+                    run.getRunId() + ":" + TopicAnalysisCache.fingerprint(run.getIndexAnalyzer(data)));
+            snapshot = null;
+            if (Files.exists(snapshotFile)) {
+                try {
+                    snapshot = TermStatsSnapshot.read(snapshotFile);
+                } catch (IOException e) {
+                    System.out.printf("Ignoring snapshot %s: %s%n", snapshotFile, e.getMessage());
+                }
+            }
+            if (snapshot != null && snapshot.getIndexCommit().equals(commit)
+                    && snapshot.getQueriesKey().equals(queriesKey)) {
+                System.out.printf("Snapshot loaded from %s in %d ms%n", snapshotFile,
+                        System.currentTimeMillis() - start);
+            } else {
+                final var queryShape = run.createQueryShape(data);
+                final Map<String, Query> queries = new LinkedHashMap<>();
+                for (final var topic : Topics.loadTopics(data.topics).topics) {
+                    queries.put(Integer.toString(topic.number), queryShape.create(topic.title));
+                }
+                snapshot = TermStatsSnapshot.extract(reader, queries, queriesKey);
+                Files.createDirectories(snapshotFile.getParent());
+                snapshot.write(snapshotFile);
+                System.out.printf("Snapshot of %d topics extracted to %s in %d ms%n", queries.size(), snapshotFile,
+                        System.currentTimeMillis() - start);
+            }
+        }
+
+        start = System.currentTimeMillis();
+        final var runs = new OfflineScorer(snapshot).sweep(similarities, data.maxDocsRetrieved, data.numThreads);
+        final long elapsed = System.currentTimeMillis() - start;
+        for (final var scored : runs.values()) {
+            scored.write(Path.of(data.runPath, scored.getRunId() + ".txt"));
+        }
+        System.out.printf("Scored %d similarities in %d ms (%.1f ms each)%n", runs.size(), elapsed,
+                (double) elapsed / runs.size());
+
+        if (evaluator != null) {
+            Evaluation.printTable(evaluator.evaluateAndWrite(new ArrayList<>(runs.values()), Path.of(data.runPath)),
+                    Measure.NDCG_10, System.out);
+        }
+    }
+}
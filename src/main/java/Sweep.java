@@ -0,0 +1,267 @@
+import analyzers.OpenNlpAnalyzer;
+import analyzers.TaskAnalyzer;
+import eval.Evaluation;
+import eval.Measure;
+import index.FieldProfile;
+import index.IndexTarget;
+import index.IndexingOptions;
+import index.MultiDirectoryIndexer;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.similarities.Similarity;
+import parse.ParsedDocument;
+import scoring.SimilaritySpecs;
+import search.QueryShape;
+import search.QueryShapes;
+import sweep.SweepConfig;
+import sweep.SweepRunner;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Parameter sweep over the prepared runs: every combination of the grid is searched in parallel, evaluated in
+ * memory and ranked by nDCG@10.
+ * <p>
+ * The grid is made of the similarities ({@link SimilaritySpecs} syntax), the {@link TaskAnalyzer.ExpansionStrategy}
+ * of TaskBodyRun, the {@link OpenNlpAnalyzer.FilterStrategy} of the OpenNlpRun queries (ORIGINAL_ONLY, TYPED_ONLY or
+ * NONE for both), the size of the phrases matched on the body and the body:title boosts. Only the analyzer decides
+ * the index, so every run (and expansion strategy) is indexed once in {@code <work_folder>/index-sweep-<key>}, all
+ * the missing indexes with a single scan of the corpus, and reused by the following sweeps. When phrases are swept
+ * the body is indexed with positions and, if {@code shingleSize} is set, with shingles of that size, which match the
+ * phrases of the same size as single terms.
+ * <p>
+ * The ranked table is printed and written in full to {@code <work_folder>/sweep.tsv}; the runs are not written.
+ * Needs {@code qrels_path} in the properties.
+ */
+public class Sweep {
+    public static void main(String[] args) throws Exception {
+        final var cmd = parseOptions(args);
+        final var props = Main.loadProps();
+        final var data = Main.createData(props);
+        final var evaluator = Main.createEvaluator(props, data.numThreads);
+        if (evaluator == null) {
+            System.err.println("Set qrels_path in the properties for evaluating the sweep");
+            System.exit(1);
+        }
+
+        final List<PreparedRuns> runs = new ArrayList<>();
+        for (final var name : cmd.getOptionValue("r", "SimpleRun,KRun,TaskBodyRun").split(",")) {
+            runs.add(PreparedRuns.fromName(name.trim()));
+        }
+        final List<TaskAnalyzer.ExpansionStrategy> expansions = new ArrayList<>();
+        for (final var name : cmd.getOptionValue("e", "NONE").split(",")) {
+            expansions.add(TaskAnalyzer.ExpansionStrategy.valueOf(name.trim()));
+        }
+        final List<OpenNlpAnalyzer.FilterStrategy> filters = new ArrayList<>();
+        for (final var name : cmd.getOptionValue("f", "NONE").split(",")) {
+            filters.add(OpenNlpAnalyzer.FilterStrategy.valueOf(name.trim()));
+        }
+        final List<Integer> phraseSizes = new ArrayList<>();
+        for (final var size : cmd.getOptionValue("p", "0").split(",")) {
+            phraseSizes.add(Integer.parseInt(size.trim()));
+        }
+        final List<float[]> boosts = new ArrayList<>();
+        for (final var pair : cmd.getOptionValue("b", "1:1").split(",")) {
+            final var parts = pair.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Boosts must be body:title pairs, got %s".formatted(pair));
+            }
+            boosts.add(new float[]{Float.parseFloat(parts[0]), Float.parseFloat(parts[1])});
+        }
+        final var similaritySpecs = cmd.getOptionValues("s");
+        final int rows = Integer.parseInt(cmd.getOptionValue("t", "20"));
+
+        // index key -> index analyzer, and whether its configurations need positions
+        final Map<String, Analyzer> indexAnalyzers = new LinkedHashMap<>();
+        final Map<String, Boolean> indexPositions = new HashMap<>();
+        // analyzers are shared by the configurations, each thread reusing its own token streams
+        final Map<String, Analyzer> queryAnalyzers = new HashMap<>();
+
+        final List<SweepConfig> configs = new ArrayList<>();
+        final Set<String> names = new HashSet<>();
+        for (final var run : runs) {
+            final Map<String, Similarity> similarities = new LinkedHashMap<>();
+            if (similaritySpecs == null) {
+                similarities.put("default", run.getSimilarity());
+            } else {
+                for (final var spec : similaritySpecs) {
+                    SimilaritySpecs.parse(spec).forEach((name, similarity) ->
+                            similarities.put(SimilaritySpecs.slug(name), similarity));
+                }
+            }
+            final var runExpansions = run == PreparedRuns.TASK_BODY_SEARCHER ? expansions
+                    : List.of(TaskAnalyzer.ExpansionStrategy.NONE);
+            final var runFilters = run == PreparedRuns.OPEN_NLP ? filters : List.of(OpenNlpAnalyzer.FilterStrategy.NONE);
+
+            for (final var expansion : runExpansions) {
+                final var indexKey = run == PreparedRuns.TASK_BODY_SEARCHER
+                        ? "%s-%s".formatted(run.getRunId(), expansion) : run.getRunId();
+                indexAnalyzers.computeIfAbsent(indexKey, k -> run == PreparedRuns.TASK_BODY_SEARCHER
+                        ? new TaskAnalyzer(expansion) : run.getIndexAnalyzer(data));
+
+                for (final var filter : runFilters) {
+                    for (final int phraseSize : phraseSizes) {
+                        if (phraseSize > 0) indexPositions.put(indexKey, true);
+                        for (final var boost : boosts) {
+                            final var name = configName(run, expansion, filter, phraseSize, boost);
+                            final var shape = queryShape(run, data, expansion, filter, phraseSize, boost,
+                                    queryAnalyzers);
+                            similarities.forEach((simName, similarity) -> {
+                                // boosts of a missing title collapse onto the same configuration
+                                if (names.add(name + "-" + simName)) {
+                                    configs.add(new SweepConfig(name + "-" + simName, indexKey, similarity, shape));
+                                }
+                            });
+                        }
+                    }
+                }
+            }
+        }
+        System.out.printf("Sweeping %d configurations over %d indexes%n", configs.size(), indexAnalyzers.size());
+
+        final long startTime = System.currentTimeMillis();
+        final Map<String, String> indexPaths = new HashMap<>();
+        final List<IndexTarget> targets = new ArrayList<>();
+        for (final var entry : indexAnalyzers.entrySet()) {
+            final var indexPath = "%s/index-sweep-%s".formatted(data.runPath, entry.getKey());
+            indexPaths.put(entry.getKey(), indexPath);
+            final boolean positions = indexPositions.getOrDefault(entry.getKey(), false);
+            // the phrases of the shingle size are matched as terms of the shingle fields
+            final int shingleSize = positions ? data.shingleSize : 0;
+            if (!cmd.hasOption("R") && SweepRunner.isReusable(indexPath, data.indexStorage, positions, shingleSize)) {
+                System.out.printf("Reusing index %s%n", indexPath);
+                continue;
+            }
+            final var profile = positions ? data.fieldProfile.union(FieldProfile.PHRASE) : data.fieldProfile;
+            // the similarity only matters for the norms, which are the same for all the supported similarities
+            targets.add(new IndexTarget(entry.getKey(), entry.getValue(), PreparedRuns.SIMPLE_RUN.getSimilarity(),
+                    indexPath, new IndexingOptions().setFieldProfile(profile).setSegmentProfile(data.segmentProfile)
+                    .setForceMergeSegments(data.forceMergeSegments).setShingleSize(shingleSize)
+                    .setStorage(data.indexStorage)));
+        }
+        if (!targets.isEmpty()) {
+            new MultiDirectoryIndexer(targets, data.ramBuffer, data.docsPath, data.extension, data.charsetName,
+                    data.expectedDocs, data.documentParser(), data.numThreads).index();
+        }
+        final long indexTime = System.currentTimeMillis() - startTime;
+
+        final var searchStart = System.currentTimeMillis();
+        final var results = new SweepRunner(indexPaths, data.indexStorage, data.topics, data.maxDocsRetrieved,
+                data.totalHitsThreshold, data.numThreads).run(configs);
+        final long searchTime = System.currentTimeMillis() - searchStart;
+
+        final var evalStart = System.currentTimeMillis();
+        final var evaluations = new ArrayList<>(evaluator.evaluate(results));
+        final long evalTime = System.currentTimeMillis() - evalStart;
+
+        evaluations.sort(Comparator.comparingDouble((Evaluation e) -> e.mean(Measure.NDCG_10)).reversed());
+        System.out.println();
+        Evaluation.printTable(evaluations.subList(0, Math.min(rows, evaluations.size())), Measure.NDCG_10,
+                System.out);
+        final var tableFile = Path.of(data.runPath, "sweep.tsv");
+        try (final var out = new PrintStream(tableFile.toFile(), StandardCharsets.UTF_8)) {
+            Evaluation.printTable(evaluations, Measure.NDCG_10, out);
+        }
+
+        System.out.printf("%nIndexing %d ms, searching %d configurations %d ms (%.1f ms each), evaluating %d ms%n",
+                indexTime, configs.size(), searchTime, (double) searchTime / configs.size(), evalTime);
+        System.out.printf("Full table written to %s%n", tableFile);
+    }
+
+    /**
+     * Returns the name of a configuration, with the values that differ from the prepared run
+     */
+    private static String configName(final PreparedRuns run, final TaskAnalyzer.ExpansionStrategy expansion,
+                                     final OpenNlpAnalyzer.FilterStrategy filter, final int phraseSize,
+                                     final float[] boost) {
+        final var name = new StringBuilder(run.getRunId());
+        if (expansion != TaskAnalyzer.ExpansionStrategy.NONE) name.append('-').append(expansion);
+        if (filter != OpenNlpAnalyzer.FilterStrategy.NONE) name.append('-').append(filter);
+        if (phraseSize > 0) name.append("-p").append(phraseSize);
+        final boolean hasTitle = run != PreparedRuns.TASK_BODY_SEARCHER;
+        if (boost[0] != 1f || (hasTitle && boost[1] != 1f)) {
+            name.append("-b").append(boost[0]);
+            if (hasTitle) name.append('_').append(boost[1]);
+        }
+        return name.toString();
+    }
+
+    /**
+     * Returns the factory of the query shapes of a configuration, the same as the prepared run with unit boosts,
+     * no phrases and no filter; the phrases are matched on the shingles of the searched index when it has them
+     */
+    private static Function<IndexReader, QueryShape> queryShape(final PreparedRuns run, final PreparedRuns.Data data,
+                                                                final TaskAnalyzer.ExpansionStrategy expansion,
+                                                                final OpenNlpAnalyzer.FilterStrategy filter,
+                                                                final int phraseSize, final float[] boost,
+                                                                final Map<String, Analyzer> analyzers) {
+        final var body = ParsedDocument.FIELDS.BODY;
+        final var title = ParsedDocument.FIELDS.TITLE;
+        return switch (run) {
+            case SIMPLE_RUN -> reader -> QueryShapes.weighted(run.getIndexAnalyzer(data), BooleanClause.Occur.SHOULD,
+                    body, boost[0], title, boost[1], phraseSize, reader);
+            case K_RUN -> reader -> QueryShapes.weighted(run.getIndexAnalyzer(data), BooleanClause.Occur.MUST, body,
+                    boost[0], title, boost[1], phraseSize, reader);
+            case TASK_BODY_SEARCHER -> {
+                final var analyzer = analyzers.computeIfAbsent(expansion.name(), k -> new TaskAnalyzer(expansion));
+                yield reader -> QueryShapes.weighted(analyzer, BooleanClause.Occur.MUST, body, boost[0], null, 1f,
+                        phraseSize, reader);
+            }
+            case OPEN_NLP -> {
+                final var original = analyzers.computeIfAbsent(OpenNlpAnalyzer.FilterStrategy.ORIGINAL_ONLY.name(),
+                        k -> new OpenNlpAnalyzer(OpenNlpAnalyzer.FilterStrategy.ORIGINAL_ONLY, data.posBackend));
+                final var typed = analyzers.computeIfAbsent(OpenNlpAnalyzer.FilterStrategy.TYPED_ONLY.name(),
+                        k -> new OpenNlpAnalyzer(OpenNlpAnalyzer.FilterStrategy.TYPED_ONLY, data.posBackend));
+                yield reader -> {
+                    final var originalShape = QueryShapes.weighted(original, BooleanClause.Occur.SHOULD, body,
+                            boost[0], title, boost[1], phraseSize, reader);
+                    final var typedShape = QueryShapes.weighted(typed, BooleanClause.Occur.SHOULD, body, boost[0],
+                            title, boost[1], 0, reader);
+                    return switch (filter) {
+                        case ORIGINAL_ONLY -> originalShape;
+                        case TYPED_ONLY -> typedShape;
+                        case NONE -> QueryShapes.any(originalShape, typedShape);
+                    };
+                };
+            }
+        };
+    }
+
+    private static CommandLine parseOptions(final String[] args) {
+        final var options = new Options();
+        options.addOption("r", true, "Comma separated runs (default SimpleRun,KRun,TaskBodyRun)");
+        options.addOption("s", true, "Similarity grid, repeatable (default: the similarity of each run)");
+        options.addOption("e", true, "Comma separated expansion strategies of TaskBodyRun (default NONE)");
+        options.addOption("f", true, "Comma separated filter strategies of the OpenNlpRun queries (default NONE)");
+        options.addOption("p", true, "Comma separated phrase sizes, 0 for no phrases (default 0)");
+        options.addOption("b", true, "Comma separated body:title boosts (default 1:1)");
+        options.addOption("t", true, "Number of rows printed (default 20)");
+        options.addOption("R", false, "Rebuild the indexes");
+
+        try {
+            final var cmd = new DefaultParser().parse(options, args);
+            if (cmd.getArgs().length > 0) {
+                throw new ParseException("Unexpected arguments " + Arrays.toString(cmd.getArgs()));
+            }
+            return cmd;
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            System.err.println("""
+                    Usage: Sweep [-r runs] [-s similarity_grid]... [-e expansions] [-f filters] [-p phrase_sizes]
+                                 [-b body:title,...] [-t rows] [-R]
+                    e.g. Sweep -r KRun,TaskBodyRun -s "BM25(k1=0.9|1.2,b=0.4|0.75)" -s "LMDirichlet(mu=500|2000)"
+                               -e NONE,SYNONYMS -p 0,2 -b 1:1,1:2""");
+            System.exit(1);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package analyzers;
+
+/**
+ * Analyzer that can describe its configuration, so that the output of the analysis can be cached across executions.
+ * <p>
+ * Two analyzers of the same class with the same fingerprint must produce the same tokens for the same text and
+ * field. The code and the resources of the build (filters, stop lists, models) are accounted for by the caches, the
+ * fingerprint only needs to cover the parameters of the instance.
+ */
+public interface AnalyzerFingerprint {
+    /**
+     * Returns the fingerprint of the analyzer
+     * @return a string describing the parameters of the analyzer
+     */
+    String fingerprint();
+}
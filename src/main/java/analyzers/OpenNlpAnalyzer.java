@@ -3,7 +3,6 @@ package analyzers;
 import analyzers.filters.*;
 import org.apache.lucene.analysis.*;
 import org.apache.lucene.analysis.en.PorterStemFilter;
-import org.apache.lucene.analysis.opennlp.OpenNLPPOSFilter;
 import org.apache.lucene.analysis.opennlp.OpenNLPTokenizer;
 import org.apache.lucene.analysis.opennlp.tools.*;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
@@ -16,6 +15,7 @@ import utils.StopWords;
 
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -23,9 +23,12 @@ import java.util.stream.Stream;
 /**
  * Analyzer that use OpenNLP for tokenization and part-of-the-speech tagging
  */
-public class OpenNlpAnalyzer extends Analyzer {
+public class OpenNlpAnalyzer extends Analyzer implements AnalyzerFingerprint {
     private final FilterStrategy filterStrategy;
-    final Set<String> stopTypes = Stream.of(
+    /**
+     * The part-of-speech tags of the tokens removed from the stream
+     */
+    public static final Set<String> STOP_TYPES = Set.copyOf(Stream.of(
             //https://dpdearing.com/posts/2011/12/opennlp-part-of-speech-pos-tags-penn-english-treebank/
             ".", ",", ":", "\"", "(", ")", "<", ">", "``", "''", "-LRB-", "-RRB-", "-RSB-", "-RSB-", "-LCB-", "-RCB-",
             "IN", //Preposition or subordinating conjunction
@@ -45,15 +48,42 @@ public class OpenNlpAnalyzer extends Analyzer {
             "WRB", //Whadverb
             "CD", //Cardinal number
             "date", "time"
-    ).collect(Collectors.toCollection(HashSet::new));
+    ).collect(Collectors.toCollection(HashSet::new)));
     private final CharArraySet stopWords; //for caching purpose
+    private final POSBackend posBackend;
+    private final List<String> nerModels;
 
     /**
-     * Create a new OpenNlpAnalyzer
+     * Create a new OpenNlpAnalyzer with the {@link POSBackend#defaultBackend()} tagger
      * @param filterStrategy how to filter the output tokens
      */
     public OpenNlpAnalyzer(FilterStrategy filterStrategy) {
+        this(filterStrategy, POSBackend.defaultBackend(), List.of());
+    }
+
+    /**
+     * Create a new OpenNlpAnalyzer
+     * @param filterStrategy how to filter the output tokens
+     * @param posBackend the part-of-speech tagger
+     */
+    public OpenNlpAnalyzer(FilterStrategy filterStrategy, POSBackend posBackend) {
+        this(filterStrategy, posBackend, List.of());
+    }
+
+    /**
+     * Create a new OpenNlpAnalyzer that also recognizes named entities, each one becoming a single token typed with
+     * its entity type
+     * @param filterStrategy how to filter the output tokens
+     * @param posBackend the part-of-speech tagger
+     * @param nerModels the names of the NER models in the {@code opennlp} resources, e.g. {@code en-ner-person.bin}
+     */
+    public OpenNlpAnalyzer(FilterStrategy filterStrategy, POSBackend posBackend, List<String> nerModels) {
+        if (posBackend == null) {
+            throw new NullPointerException("POS backend cannot be null.");
+        }
         this.filterStrategy = filterStrategy;
+        this.posBackend = posBackend;
+        this.nerModels = List.copyOf(nerModels);
         stopWords = CharArraySet.unmodifiableSet(StopWords.loadStopWords("99webtools.txt"));
     }
 
@@ -75,9 +105,12 @@ public class OpenNlpAnalyzer extends Analyzer {
         final Tokenizer tokenizer = createTokenizer(loader);
         TokenStream stream;
 
-            stream = createNLPPOSFilter(tokenizer, loader);
+            stream = posBackend.createFilter(tokenizer, loader);
+            for (final var nerModel : nerModels) {
+                stream = createNLPNERFilter(stream, loader, nerModel);
+            }
 
-            stream = new RemoveTypesFilter(stream, stopTypes);
+            stream = new RemoveTypesFilter(stream, STOP_TYPES);
             stream = new BreakHyphensFilter(stream);
             stream = new LowerCaseFilter(stream);
             stream = new StringReplaceFilter(stream, "'s", "is");
@@ -94,37 +127,15 @@ public class OpenNlpAnalyzer extends Analyzer {
 
     /**
      * Create a new NLP-NER Tagger Filter
-     * It's not actually used in the final version of the analyzer
+     * It's not used by the prepared runs, the NER models are not in the resources
      * @param stream input {@link TokenStream}
      * @param loader The {@link ClasspathResourceLoader} to use
      * @param name The name of the .bin ner-file to load
      * @return a new TokenStream with the type attribute update according
      */
     private TokenStream createNLPNERFilter(TokenStream stream, ClasspathResourceLoader loader, String name) {
-        try {
-            final var nerMd = OpenNLPOpsFactory.getNERTaggerModel("opennlp/" + name, loader);
-            final var tag = new NLPNERTaggerOp(nerMd);
-            return new OpenNLPNERFilter(stream, tag);
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-    /**
-     * Create a new NLP-POS Tagger Filter
-     * @param tokenizer {@link Tokenizer} to use
-     * @param loader {@link ClasspathResourceLoader} to use
-     * @return a new TokenStream with the type attribute update according
-     */
-    private TokenStream createNLPPOSFilter(Tokenizer tokenizer, ClasspathResourceLoader loader) {
-        try {
-            final var posMd = OpenNLPOpsFactory.getPOSTaggerModel("opennlp/en-pos-maxent.bin", loader);
-//            final var posMd = OpenNLPOpsFactory.getPOSTaggerModel("opennlp/en-pos-perceptron.bin", loader);
-            final var tagOp = new NLPPOSTaggerOp(posMd);
-            return new OpenNLPPOSFilter(tokenizer, tagOp);
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
-        }
+        // the taggers are shared by all the streams of all the threads through the pool
+        return new OpenNLPNERFilter(stream, NERTaggerPool.forModel("opennlp/" + name, loader));
     }
 
     /**
@@ -132,7 +143,7 @@ public class OpenNlpAnalyzer extends Analyzer {
      * @param loader the {@link ClasspathResourceLoader} to use for loading the nlp file
      * @return a new {@link OpenNLPTokenizer}
      */
-    private Tokenizer createTokenizer(ClasspathResourceLoader loader) {
+    static Tokenizer createTokenizer(ClasspathResourceLoader loader) {
         try {
             final var tokOpModel = OpenNLPOpsFactory
                     .getTokenizerModel("opennlp/en-token.bin", loader);
@@ -145,6 +156,12 @@ public class OpenNlpAnalyzer extends Analyzer {
         }
     }
 
+    @Override
+    public String fingerprint() {
+        return nerModels.isEmpty() ? "%s,%s".formatted(filterStrategy, posBackend)
+                : "%s,%s%s".formatted(filterStrategy, posBackend, nerModels);
+    }
+
     /**
      * Enum that define the filter strategy to apply in the {@link OpenNlpAnalyzer} token stream
      */
@@ -0,0 +1,97 @@
+package analyzers;
+
+import analyzers.filters.ClosedClassPOSFilter;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.opennlp.OpenNLPPOSFilter;
+import org.apache.lucene.analysis.opennlp.tools.NLPPOSTaggerOp;
+import org.apache.lucene.analysis.opennlp.tools.OpenNLPOpsFactory;
+import org.apache.lucene.analysis.util.ClasspathResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoader;
+
+import java.io.IOException;
+
+/**
+ * Enum that define the part-of-speech tagger of {@link OpenNlpAnalyzer}, setting the Penn Treebank tag of each token
+ * as its type
+ */
+public enum POSBackend {
+    /**
+     * OpenNLP maximum entropy model, the most accurate and the slowest; its model is not in the resources
+     */
+    MAXENT("opennlp/en-pos-maxent.bin"),
+    /**
+     * OpenNLP perceptron model
+     */
+    PERCEPTRON("opennlp/en-pos-perceptron.bin"),
+    /**
+     * Dictionary of the closed-class words plus suffix rules for the open-class ones, see
+     * {@link ClosedClassPOSFilter}: no model and no sentence context, so only the types removed by
+     * {@link OpenNlpAnalyzer#STOP_TYPES} are reliable
+     */
+    CLOSED_CLASS(null) {
+        @Override
+        public TokenStream createFilter(TokenStream tokenizer, ResourceLoader loader) {
+            return new ClosedClassPOSFilter(tokenizer);
+        }
+    };
+
+    /**
+     * The resource of the OpenNLP model, {@code null} if none
+     */
+    private final String model;
+
+    POSBackend(final String model) {
+        this.model = model;
+    }
+
+    /**
+     * Create the filter tagging the tokens
+     * @param tokenizer the {@link org.apache.lucene.analysis.opennlp.OpenNLPTokenizer} of the analyzer
+     * @param loader the loader of the model
+     * @return the tagging {@link TokenStream}
+     * @throws IllegalStateException if the model cannot be loaded
+     */
+    public TokenStream createFilter(TokenStream tokenizer, ResourceLoader loader) {
+        try {
+            // the model is loaded once and cached by the factory, the tagger is per stream
+            return new OpenNLPPOSFilter(tokenizer, new NLPPOSTaggerOp(OpenNLPOpsFactory.getPOSTaggerModel(model,
+                    loader)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load the POS model %s.".formatted(model), e);
+        }
+    }
+
+    /**
+     * Returns whether the backend can be used, i.e. its model is in the classpath
+     * @return {@code true} if available
+     */
+    public boolean isAvailable() {
+        return model == null || ClassLoader.getSystemResource(model) != null;
+    }
+
+    /**
+     * Returns an analyzer that only tokenizes the text and tags the tokens with this backend, for comparing the
+     * backends on the same tokens
+     * @return the tagging {@link Analyzer}
+     */
+    public Analyzer taggingAnalyzer() {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                final var loader = new ClasspathResourceLoader(ClassLoader.getSystemClassLoader());
+                final var tokenizer = OpenNlpAnalyzer.createTokenizer(loader);
+                return new TokenStreamComponents(tokenizer, createFilter(tokenizer, loader));
+            }
+        };
+    }
+
+    /**
+     * Returns the backend of the prepared runs when the {@code posBackend} property is not set: {@link #MAXENT} if
+     * its model is available, {@link #PERCEPTRON} otherwise
+     * @return the default {@link POSBackend}
+     */
+    public static POSBackend defaultBackend() {
+        return MAXENT.isAvailable() ? MAXENT : PERCEPTRON;
+    }
+}
@@ -0,0 +1,55 @@
+package analyzers;
+
+import analyzers.filters.RemoveStackedTokensFilter;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.AnalyzerWrapper;
+import org.apache.lucene.analysis.shingle.ShingleFilter;
+
+/**
+ * Analyzer that turns the tokens of another analyzer into shingles of a fixed size,
+ * used for indexing the n-grams matched by {@link search.queries.PhraseQueryGenerator} as plain terms.
+ * <p>
+ * Stacked tokens (synonyms) are dropped, gaps left by removed tokens are filled with
+ * {@link ShingleFilter#DEFAULT_FILLER_TOKEN}, so a shingle matches exactly the tokens found at consecutive positions.
+ */
+public class ShingleAnalyzer extends AnalyzerWrapper {
+    /**
+     * Separator between the tokens of a shingle
+     */
+    public static final String TOKEN_SEPARATOR = ShingleFilter.DEFAULT_TOKEN_SEPARATOR;
+
+    private final Analyzer delegate;
+    private final int size;
+
+    /**
+     * Create a new {@link ShingleAnalyzer}
+     * @param delegate the analyzer producing the tokens
+     * @param size number of tokens in each shingle (at least 2)
+     */
+    public ShingleAnalyzer(final Analyzer delegate, final int size) {
+        super(delegate.getReuseStrategy());
+        if (size < 2) {
+            throw new IllegalArgumentException("Shingle size must be at least 2");
+        }
+        this.delegate = delegate;
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    protected Analyzer getWrappedAnalyzer(String fieldName) {
+        return delegate;
+    }
+
+    @Override
+    protected TokenStreamComponents wrapComponents(String fieldName, TokenStreamComponents components) {
+        final var shingles = new ShingleFilter(new RemoveStackedTokensFilter(components.getTokenStream()), size, size);
+        shingles.setOutputUnigrams(false);
+        shingles.setOutputUnigramsIfNoShingles(false);
+        shingles.setTokenSeparator(TOKEN_SEPARATOR);
+        return new TokenStreamComponents(components.getSource(), shingles);
+    }
+}
@@ -20,7 +20,7 @@ import java.util.Set;
  * Analyzer fro Task1
  * It uses the Lovin Stemmer and the 99webtools stop-list
  */
-public class TaskAnalyzer extends Analyzer {
+public class TaskAnalyzer extends Analyzer implements AnalyzerFingerprint {
     /**
      * The expansion strategy to use
      */
@@ -87,6 +87,11 @@ public class TaskAnalyzer extends Analyzer {
         return new LowerCaseFilter(in);
     }
 
+    @Override
+    public String fingerprint() {
+        return expansionStrategy.name();
+    }
+
     /**
      * Enum that define the query expansion strategy for {@link TaskAnalyzer}
      */
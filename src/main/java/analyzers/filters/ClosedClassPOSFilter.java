@@ -0,0 +1,164 @@
+package analyzers.filters;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.opennlp.OpenNLPTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.FlagsAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Filter that sets the Penn Treebank part-of-speech tag of each token as its type, without a model: closed-class
+ * words (determiners, prepositions, pronouns, auxiliaries...) are looked up in a dictionary, punctuation and numbers
+ * are recognized by their characters and the open-class words are guessed from their suffix and capitalization.
+ * <p>
+ * Each token is tagged on its own, so it is much faster than the OpenNLP taggers; the closed classes, which are the
+ * types removed by {@link analyzers.OpenNlpAnalyzer#STOP_TYPES}, are tagged about as well, the open ones less so.
+ */
+public final class ClosedClassPOSFilter extends TokenFilter {
+    /**
+     * Lower case closed-class word -> tag
+     */
+    private static final Map<String, String> DICTIONARY = new HashMap<>();
+
+    static {
+        tag("DT", "the", "a", "an", "this", "these", "those", "each", "every", "some", "any", "no", "all", "both",
+                "another", "either", "neither");
+        tag("IN", "of", "in", "on", "at", "by", "for", "with", "about", "against", "between", "into", "through",
+                "during", "before", "after", "above", "below", "from", "over", "under", "since", "until", "because",
+                "although", "though", "if", "unless", "whether", "than", "as", "like", "per", "among", "without",
+                "within", "upon", "towards", "toward", "across", "behind", "beyond", "despite", "near", "that",
+                "while", "whereas", "via", "throughout", "onto");
+        tag("CC", "and", "or", "but", "nor", "plus", "&");
+        tag("PRP", "i", "you", "he", "she", "it", "we", "they", "me", "him", "us", "them", "myself", "yourself",
+                "himself", "herself", "itself", "ourselves", "yourselves", "themselves");
+        tag("PRP$", "my", "your", "his", "her", "its", "our", "their");
+        tag("MD", "can", "could", "may", "might", "must", "shall", "should", "will", "would", "ca", "wo");
+        tag("TO", "to");
+        tag("WDT", "which", "whatever", "whichever");
+        tag("WP", "who", "whom", "what", "whoever");
+        tag("WP$", "whose");
+        tag("WRB", "when", "where", "why", "how", "whenever", "wherever");
+        tag("EX", "there");
+        tag("PDT", "such", "half");
+        tag("RB", "not", "n't", "very", "also", "too", "just", "only", "even", "never", "always", "often", "still",
+                "already", "however", "then", "so", "now", "here", "rather", "quite", "almost", "perhaps", "ever",
+                "again", "once", "yet", "instead", "therefore", "thus", "else", "maybe", "soon", "far", "much");
+        tag("RP", "up", "out", "off", "down", "away", "back");
+        tag("UH", "yes", "oh", "hello", "ok", "okay", "well", "please");
+        tag("POS", "'s", "'");
+        tag("VBZ", "is", "has", "does");
+        tag("VBP", "are", "am", "have", "do", "'m", "'re", "'ve");
+        tag("VBD", "was", "were", "had", "did");
+        tag("VB", "be");
+        tag("VBN", "been");
+        tag("VBG", "being");
+        tag("CD", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten", "hundred",
+                "thousand", "million", "billion");
+        tag(",", ",");
+        tag(".", ".", "?", "!");
+        tag(":", ":", ";", "-", "--", "...");
+        tag("-LRB-", "(", "[", "{");
+        tag("-RRB-", ")", "]", "}");
+        tag("``", "``", "\"");
+        tag("''", "''");
+        tag("$", "$", "€", "£");
+        tag("#", "#");
+    }
+
+    private static void tag(final String tag, final String... words) {
+        for (final var word : words) {
+            DICTIONARY.put(word, tag);
+        }
+    }
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+    private final FlagsAttribute flagsAtt = addAttribute(FlagsAttribute.class);
+
+    /**
+     * Whether the next token starts a sentence, so its capitalization does not make it a proper noun
+     */
+    private boolean sentenceStart = true;
+
+    /**
+     * Create a new {@link ClosedClassPOSFilter}
+     * @param input the stream of an {@link OpenNLPTokenizer}, which marks the ends of the sentences
+     */
+    public ClosedClassPOSFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (!input.incrementToken()) {
+            return false;
+        }
+        typeAtt.setType(tag(termAtt.toString(), sentenceStart));
+        sentenceStart = 0 != (flagsAtt.getFlags() & OpenNLPTokenizer.EOS_FLAG_BIT);
+        return true;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        sentenceStart = true;
+    }
+
+    /**
+     * Returns the tag of a token
+     * @param term the token
+     * @param sentenceStart whether the token starts a sentence
+     * @return the Penn Treebank tag
+     */
+    static String tag(final String term, final boolean sentenceStart) {
+        final var lower = term.toLowerCase(Locale.ROOT);
+        final var known = DICTIONARY.get(lower);
+        if (known != null) {
+            return known;
+        }
+
+        final char first = term.charAt(0);
+        if (isNumber(term)) {
+            return "CD";
+        }
+        if (!Character.isLetterOrDigit(first) && term.codePoints().noneMatch(Character::isLetterOrDigit)) {
+            return "SYM";
+        }
+        if (Character.isUpperCase(first) && !sentenceStart) {
+            return "NNP";
+        }
+
+        if (lower.endsWith("ly")) return "RB";
+        if (lower.endsWith("ing")) return "VBG";
+        if (lower.endsWith("ed")) return "VBN";
+        if (lower.endsWith("est")) return "JJS";
+        if (lower.endsWith("able") || lower.endsWith("ible") || lower.endsWith("ful") || lower.endsWith("ous")
+                || lower.endsWith("ive") || lower.endsWith("less") || lower.endsWith("ic") || lower.endsWith("al")) {
+            return "JJ";
+        }
+        if (lower.endsWith("s") && !lower.endsWith("ss") && !lower.endsWith("us") && !lower.endsWith("is")
+                && lower.length() > 3) {
+            return "NNS";
+        }
+        return "NN";
+    }
+
+    private static boolean isNumber(final String term) {
+        boolean digit = false;
+        for (int i = 0; i < term.length(); i++) {
+            final char c = term.charAt(i);
+            if (Character.isDigit(c)) {
+                digit = true;
+            } else if (c != '.' && c != ',' && c != '-' && c != '%') {
+                return false;
+            }
+        }
+        return digit;
+    }
+}
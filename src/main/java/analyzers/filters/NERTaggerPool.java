@@ -0,0 +1,93 @@
+package analyzers.filters;
+
+import org.apache.lucene.analysis.opennlp.tools.NLPNERTaggerOp;
+import org.apache.lucene.analysis.opennlp.tools.OpenNLPOpsFactory;
+import org.apache.lucene.analysis.util.ResourceLoader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of Apache OpenNLP NER taggers of the same model, shared by all the {@link OpenNLPNERFilter}s.
+ * <p>
+ * A tagger is not thread-safe, while its model is: every filter borrows a tagger for one stream, from
+ * {@link OpenNLPNERFilter#reset()} to {@link OpenNLPNERFilter#close()}, and gives it back for the next stream of any
+ * thread. So the threads never wait for each other, and there are at most as many taggers as threads analyzing at
+ * the same time, instead of one per thread that ever analyzed a text (e.g. a virtual thread per document).
+ */
+public final class NERTaggerPool {
+    /**
+     * The pools of the models loaded so far, by model name
+     */
+    private static final Map<String, NERTaggerPool> pools = new ConcurrentHashMap<>();
+
+    private final String modelName;
+    private final ResourceLoader loader;
+    private final Queue<NLPNERTaggerOp> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger created = new AtomicInteger();
+
+    private NERTaggerPool(final String modelName, final ResourceLoader loader) {
+        this.modelName = modelName;
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the pool of the taggers of a model, created on first use
+     * @param modelName the name of the model resource, e.g. {@code opennlp/en-ner-person.bin}
+     * @param loader the loader of the model, used only the first time
+     * @return the {@link NERTaggerPool} of the model
+     * @throws NullPointerException if any of the parameters is {@code null}
+     */
+    public static NERTaggerPool forModel(final String modelName, final ResourceLoader loader) {
+        if (modelName == null) {
+            throw new NullPointerException("Model name cannot be null.");
+        }
+        if (loader == null) {
+            throw new NullPointerException("Resource loader cannot be null.");
+        }
+        return pools.computeIfAbsent(modelName, name -> new NERTaggerPool(name, loader));
+    }
+
+    /**
+     * Borrow a tagger, creating a new one if all of them are in use
+     * @return a tagger, with the adaptive data of previous texts cleared
+     * @throws UncheckedIOException if the model cannot be loaded
+     */
+    NLPNERTaggerOp borrow() {
+        final var tagger = idle.poll();
+        if (tagger != null) {
+            return tagger;
+        }
+        try {
+            // the model is loaded once and cached by the factory, a tagger only wraps it
+            final var model = OpenNLPOpsFactory.getNERTaggerModel(modelName, loader);
+            created.incrementAndGet();
+            return new NLPNERTaggerOp(model);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load the NER model %s.".formatted(modelName), e);
+        }
+    }
+
+    /**
+     * Give back a borrowed tagger
+     * @param tagger the tagger
+     */
+    void release(final NLPNERTaggerOp tagger) {
+        // forget all the adaptive data collected on the text, so that the next one starts from scratch
+        tagger.reset();
+        idle.offer(tagger);
+    }
+
+    /**
+     * Returns the number of taggers created so far, i.e. the max number of texts tagged at the same time
+     * @return the number of taggers
+     */
+    public int getCreated() {
+        return created.get();
+    }
+}
@@ -26,12 +26,16 @@ import org.apache.lucene.util.AttributeSource;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
 /**
  * A filter that relies on the <a href="http://opennlp.apache.org/" target="_blank">Apache OpenNLP</a>
  * Named Entity Recognizer (NER) to detect different types of entities.
+ * <p>
+ * The tagger is borrowed from a {@link NERTaggerPool} for each stream, so that concurrent streams never share it, and
+ * the tokens of each sentence are copied into buffers reused across sentences and streams.
  *
  * @author Nicola Ferro (ferro@dei.unipd.it)
  * @version 1.0
@@ -40,9 +44,14 @@ import java.util.List;
 public final class OpenNLPNERFilter extends TokenFilter {
 
 	/**
-	 * The wrapper around the Apache OpenNLP NER tagger
+	 * The pool of the Apache OpenNLP NER taggers
 	 */
-	private final NLPNERTaggerOp nerTaggerOp;
+	private final NERTaggerPool pool;
+
+	/**
+	 * The tagger borrowed for the current stream, {@code null} if none
+	 */
+	private NLPNERTaggerOp nerTaggerOp;
 
 	/**
 	 * The classes of relevant {@code Attribute}s of a token
@@ -53,6 +62,18 @@ public final class OpenNLPNERFilter extends TokenFilter {
 	private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
 	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
 	private final FlagsAttribute flagsAtt = addAttribute(FlagsAttribute.class);
+	// set on the entity tokens: added here so that all the copies of the tokens have the same attributes
+	private final KeywordAttribute keywordAtt = addAttribute(KeywordAttribute.class);
+
+	/**
+	 * The copies of the tokens of the current sentence, reused for the next sentences
+	 */
+	private final List<AttributeSource> tokenBuffer = new ArrayList<>();
+
+	/**
+	 * The terms of the current sentence, reused for the next sentences
+	 */
+	private String[] termBuffer = new String[32];
 
 	/**
 	 * The list of the actual attribute values for the tokens in the current sentence
@@ -68,16 +89,16 @@ public final class OpenNLPNERFilter extends TokenFilter {
 	/**
 	 * Creates a new Named Entity Recognizer (NER) filter.
 	 *
-	 * @param input       the source of tokens for this filter.
-	 * @param nerTaggerOp the NER tagger to use.
+	 * @param input the source of tokens for this filter.
+	 * @param pool  the pool of the NER taggers to use.
 	 */
-	public OpenNLPNERFilter(TokenStream input, NLPNERTaggerOp nerTaggerOp) {
+	public OpenNLPNERFilter(TokenStream input, NERTaggerPool pool) {
 		super(input);
 
-		this.nerTaggerOp = nerTaggerOp;
-
-		// Forget all adaptive data collected during previous calls
-		this.nerTaggerOp.reset();
+		if (pool == null) {
+			throw new NullPointerException("NER tagger pool cannot be null.");
+		}
+		this.pool = pool;
 	}
 
 	@Override
@@ -122,11 +143,8 @@ public final class OpenNLPNERFilter extends TokenFilter {
 		sentenceTokens.clear();
 		iterator = sentenceTokens.iterator();
 
-		// the attributes for the tokens in the current sentence
-		final List<AttributeSource> localAttrs = new ArrayList<>();
-
-		// the list of terms in the sentence
-		final List<String> termList = new ArrayList<>();
+		// the number of tokens in the current sentence
+		int n = 0;
 
 		boolean endOfSentence = false;
 
@@ -134,40 +152,44 @@ public final class OpenNLPNERFilter extends TokenFilter {
 		while (!endOfSentence && (moreTokensAvailable = input.incrementToken())) {
 
 			// get the term from the current token
-			termList.add(termAtt.toString());
+			if (n == termBuffer.length) {
+				termBuffer = Arrays.copyOf(termBuffer, n * 2);
+			}
+			termBuffer[n] = termAtt.toString();
 
 			// check whether the current token marks the end of the sentence
 			endOfSentence = 0 != (flagsAtt.getFlags() & OpenNLPTokenizer.EOS_FLAG_BIT);
 
-			// copy all the attributes for the current token
-			localAttrs.add(input.cloneAttributes());
+			// copy all the attributes for the current token, in a buffer of a previous token if any
+			if (n == tokenBuffer.size()) {
+				tokenBuffer.add(input.cloneAttributes());
+			} else {
+				final AttributeSource copy = tokenBuffer.get(n);
+				copy.clearAttributes();
+				input.copyTo(copy);
+			}
+			n++;
 		}
 
 		// there was no next sentence
-		if (localAttrs.isEmpty()) {
+		if (n == 0) {
 			return false;
 		}
 
-		// the identified entities, if any
-		Span[] spans = null;
+		// the identified entities, if any: the tagger is used only by this stream, no need to synchronize
+		final Span[] spans = nerTaggerOp.getNames(Arrays.copyOf(termBuffer, n));
 		int spanCount = 0;
 
-		// Apache OpenNLP NER Tagger is not thread-safe
-		synchronized (nerTaggerOp) {
-			// recognize entities
-			spans = nerTaggerOp.getNames(termList.toArray(new String[termList.size()]));
-		}
-
 		// go through each local token:
 		// 1) if it is (part of) an entity, merge it with the other tokens in the same entity and add it back to the stream
 		// 2) if it is not (part of) an entity add it back to the stream
-		for (int i = 0, n = localAttrs.size(); i < n; ) {
+		for (int i = 0; i < n; ) {
 
 			// the token is (part of) an entity
 			if (spanCount < spans.length && spans[spanCount].getStart() == i) {
 
 				// get the first token in the entity
-				AttributeSource as = localAttrs.get(i++);
+				AttributeSource as = tokenBuffer.get(i++);
 
 				StringBuilder tmp = new StringBuilder(as.getAttribute(CharTermAttribute.class).toString());
 				String entityType = spans[spanCount].getType();
@@ -179,7 +201,7 @@ public final class OpenNLPNERFilter extends TokenFilter {
 				while (i < spans[spanCount].getEnd()) {
 
 					// get the next token in the entity
-					as = localAttrs.get(i++);
+					as = tokenBuffer.get(i++);
 
 					// append the term of the token
 					tmp.append(" ").append(as.getAttribute(CharTermAttribute.class).toString());
@@ -211,7 +233,7 @@ public final class OpenNLPNERFilter extends TokenFilter {
 
 			} else {
 				// get the next token in the current sentence and add it back to the stream
-				sentenceTokens.add(localAttrs.get(i++));
+				sentenceTokens.add(tokenBuffer.get(i++));
 			}
 
 		}
@@ -224,16 +246,26 @@ public final class OpenNLPNERFilter extends TokenFilter {
 
 	@Override
 	public void reset() throws IOException {
+		super.reset();
+		moreTokensAvailable = true;
+		sentenceTokens.clear();
+		iterator = sentenceTokens.iterator();
 
-		// Apache OpenNLP NER Tagger is not thread-safe
-		synchronized (nerTaggerOp) {
-			super.reset();
-			moreTokensAvailable = true;
-			sentenceTokens.clear();
-			iterator = sentenceTokens.iterator();
+		// a tagger without the adaptive data collected on previous texts, used by this stream until closed
+		if (nerTaggerOp == null) {
+			nerTaggerOp = pool.borrow();
+		}
+	}
 
-			// Forget all adaptive data collected during previous calls
-			nerTaggerOp.reset();
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			if (nerTaggerOp != null) {
+				pool.release(nerTaggerOp);
+				nerTaggerOp = null;
+			}
 		}
 	}
 
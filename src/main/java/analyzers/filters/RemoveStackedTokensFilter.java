@@ -0,0 +1,32 @@
+package analyzers.filters;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+import java.io.IOException;
+
+/**
+ * Filter that remove the tokens stacked at the position of the previous one (synonyms, types, categories),
+ * keeping only the first token of each position
+ */
+public class RemoveStackedTokensFilter extends TokenFilter {
+    private final PositionIncrementAttribute positionIncrementAttribute;
+
+    /**
+     * Create a new {@link RemoveStackedTokensFilter}
+     * @param input input stream
+     */
+    public RemoveStackedTokensFilter(TokenStream input) {
+        super(input);
+        positionIncrementAttribute = addAttribute(PositionIncrementAttribute.class);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        while (true) {
+            if (!input.incrementToken()) return false;
+            if (positionIncrementAttribute.getPositionIncrement() > 0) return true;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package eval;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The measures of a run, for each evaluated topic and averaged over them
+ */
+public class Evaluation {
+    /**
+     * The identifier of the evaluated run
+     */
+    private final String runId;
+
+    /**
+     * The computed measures
+     */
+    private final List<Measure> measures;
+
+    /**
+     * topic id -> value of each measure, in the order of the run
+     */
+    private final Map<String, double[]> topics;
+
+    /**
+     * Mean of each measure over the topics
+     */
+    private final double[] means;
+
+    Evaluation(final String runId, final List<Measure> measures, final Map<String, double[]> topics) {
+        this.runId = runId;
+        this.measures = List.copyOf(measures);
+        this.topics = topics;
+
+        means = new double[measures.size()];
+        for (final var values : topics.values()) {
+            for (int m = 0; m < means.length; m++) {
+                means[m] += values[m];
+            }
+        }
+        for (int m = 0; m < means.length; m++) {
+            means[m] = topics.isEmpty() ? 0 : means[m] / topics.size();
+        }
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public List<Measure> getMeasures() {
+        return measures;
+    }
+
+    /**
+     * Returns the number of evaluated topics, those both in the run and in the qrels
+     * @return the number of topics
+     */
+    public int getTopicCount() {
+        return topics.size();
+    }
+
+    /**
+     * Returns the mean of a measure over the topics
+     * @param measure the measure
+     * @return the mean value
+     * @throws IllegalArgumentException if the measure has not been computed
+     */
+    public double mean(final Measure measure) {
+        return means[indexOf(measure)];
+    }
+
+    /**
+     * Returns the value of a measure for a topic
+     * @param topicId the identifier of the topic
+     * @param measure the measure
+     * @return the value, {@link Double#NaN} if the topic has not been evaluated
+     * @throws IllegalArgumentException if the measure has not been computed
+     */
+    public double get(final String topicId, final Measure measure) {
+        final int m = indexOf(measure);
+        final var values = topics.get(topicId);
+        return values == null ? Double.NaN : values[m];
+    }
+
+    private int indexOf(final Measure measure) {
+        final int m = measures.indexOf(measure);
+        if (m < 0) {
+            throw new IllegalArgumentException("Measure %s has not been computed.".formatted(measure));
+        }
+        return m;
+    }
+
+    /**
+     * Write the measures like {@code trec_eval -q}: one {@code measure topic value} line for each topic, followed by
+     * the means with topic {@code all}
+     * @param out where to write the measures
+     */
+    public void write(final PrintWriter out) {
+        for (int m = 0; m < measures.size(); m++) {
+            final var name = measures.get(m).getTrecName();
+            for (final var entry : topics.entrySet()) {
+                out.printf(Locale.ENGLISH, "%-22s\t%s\t%.4f%n", name, entry.getKey(), entry.getValue()[m]);
+            }
+        }
+        out.printf(Locale.ENGLISH, "%-22s\tall\t%s%n", "runid", runId);
+        out.printf(Locale.ENGLISH, "%-22s\tall\t%d%n", "num_q", topics.size());
+        for (int m = 0; m < measures.size(); m++) {
+            out.printf(Locale.ENGLISH, "%-22s\tall\t%.4f%n", measures.get(m).getTrecName(), means[m]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Write the measures like {@code trec_eval -q}
+     * @param file the file to be (over)written
+     * @throws IOException if the file cannot be written
+     */
+    public void write(final Path file) throws IOException {
+        try (final var out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            write(out);
+        }
+    }
+
+    /**
+     * Print the means of several evaluations as a table, ranked by a measure
+     * @param evaluations the evaluations, with the same measures
+     * @param rankBy the measure ranking the rows, in decreasing order
+     * @param out where to print the table
+     */
+    public static void printTable(final List<Evaluation> evaluations, final Measure rankBy, final PrintStream out) {
+        if (evaluations.isEmpty()) return;
+        final var sorted = new ArrayList<>(evaluations);
+        sorted.sort(Comparator.comparingDouble((Evaluation e) -> e.mean(rankBy)).reversed());
+
+        final int width = Math.max(6, sorted.stream().mapToInt(e -> e.runId.length()).max().orElse(0));
+        final var measures = sorted.get(0).measures;
+        out.printf("%-" + width + "s", "run");
+        for (final var measure : measures) {
+            out.printf(" %12s", measure.getTrecName());
+        }
+        out.println();
+        for (final var evaluation : sorted) {
+            out.printf("%-" + width + "s", evaluation.runId);
+            for (final var measure : measures) {
+                out.printf(Locale.ENGLISH, " %12.4f", evaluation.mean(measure));
+            }
+            out.println();
+        }
+    }
+
+    /**
+     * Returns the means in one line, e.g. {@code KRun: map=0.2512 P_5=0.4000 ...}
+     * @return the summary of the evaluation
+     */
+    public String summary() {
+        final var sb = new StringBuilder(runId).append(':');
+        for (int m = 0; m < measures.size(); m++) {
+            sb.append(String.format(Locale.ENGLISH, " %s=%.4f", measures.get(m).getTrecName(), means[m]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,177 @@
+package eval;
+
+import search.Run;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates in-memory {@link Run}s against {@link Qrels}, without writing the runs and calling {@code trec_eval}.
+ * <p>
+ * As {@code trec_eval} does by default, only the topics both in the run and in the qrels are evaluated, and the
+ * documents of each topic are ranked by decreasing score with ties broken by decreasing document id.
+ */
+public class Evaluator {
+    /**
+     * The measures computed by default: nDCG@5, nDCG@10, MAP, P@5, P@10 and recall@1000
+     */
+    public static final List<Measure> DEFAULT_MEASURES = List.of(Measure.NDCG_5, Measure.NDCG_10, Measure.MAP,
+            Measure.P_5, Measure.P_10, Measure.RECALL_1000);
+
+    /**
+     * The relevance judgments
+     */
+    private final Qrels qrels;
+
+    /**
+     * The measures to compute
+     */
+    private final List<Measure> measures;
+
+    /**
+     * The number of threads evaluating the topics
+     */
+    private final int numThreads;
+
+    /**
+     * Create a new evaluator of the {@link #DEFAULT_MEASURES}
+     * @param qrels the relevance judgments
+     * @param numThreads the number of threads evaluating the topics
+     */
+    public Evaluator(final Qrels qrels, final int numThreads) {
+        this(qrels, DEFAULT_MEASURES, numThreads);
+    }
+
+    /**
+     * Create a new evaluator
+     * @param qrels the relevance judgments
+     * @param measures the measures to compute
+     * @param numThreads the number of threads evaluating the topics
+     * @throws NullPointerException if any of the parameters is {@code null}
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values
+     */
+    public Evaluator(final Qrels qrels, final List<Measure> measures, final int numThreads) {
+        if (qrels == null) {
+            throw new NullPointerException("Qrels cannot be null.");
+        }
+        this.qrels = qrels;
+
+        if (measures == null) {
+            throw new NullPointerException("Measures cannot be null.");
+        }
+        if (measures.isEmpty()) {
+            throw new IllegalArgumentException("Measures cannot be empty.");
+        }
+        this.measures = List.copyOf(measures);
+
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads cannot be less than 1.");
+        }
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Evaluate a run
+     * @param run the run to evaluate
+     * @return the {@link Evaluation} of the run
+     * @throws InterruptedException if interrupted while waiting for the evaluating threads
+     * @throws ExecutionException if the evaluation of a topic fails
+     */
+    public Evaluation evaluate(final Run run) throws InterruptedException, ExecutionException {
+        return evaluate(List.of(run)).get(0);
+    }
+
+    /**
+     * Evaluate several runs, all their topics in parallel
+     * @param runs the runs to evaluate
+     * @return the {@link Evaluation} of each run, in the same order
+     * @throws InterruptedException if interrupted while waiting for the evaluating threads
+     * @throws ExecutionException if the evaluation of a topic fails
+     */
+    public List<Evaluation> evaluate(final List<Run> runs) throws InterruptedException, ExecutionException {
+        final List<Map<String, double[]>> values = new ArrayList<>();
+        final var executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final var run : runs) {
+                final Map<String, double[]> runValues = new ConcurrentHashMap<>();
+                values.add(runValues);
+                for (final var topicId : run.topics()) {
+                    final var judgments = qrels.get(topicId);
+                    if (judgments == null) continue;
+                    futures.add(executor.submit(() ->
+                            runValues.put(topicId, evaluate(run.ranking(topicId), judgments))));
+                }
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final List<Evaluation> evaluations = new ArrayList<>(runs.size());
+        for (int r = 0; r < runs.size(); r++) {
+            // topics are evaluated in a different order than the run, restore it
+            final Map<String, double[]> topics = new LinkedHashMap<>();
+            for (final var topicId : runs.get(r).topics()) {
+                final var topicValues = values.get(r).get(topicId);
+                if (topicValues != null) topics.put(topicId, topicValues);
+            }
+            evaluations.add(new Evaluation(runs.get(r).getRunId(), measures, topics));
+        }
+        return evaluations;
+    }
+
+    /**
+     * Evaluate a run and write its measures next to it, in {@code <run_path>/<run_id>.eval}
+     * @param run the run to evaluate
+     * @param runPath the directory of the run
+     * @return the {@link Evaluation} of the run
+     * @throws IOException if the measures cannot be written
+     * @throws InterruptedException if interrupted while waiting for the evaluating threads
+     * @throws ExecutionException if the evaluation of a topic fails
+     */
+    public Evaluation evaluateAndWrite(final Run run, final Path runPath)
+            throws IOException, InterruptedException, ExecutionException {
+        return evaluateAndWrite(List.of(run), runPath).get(0);
+    }
+
+    /**
+     * Evaluate several runs and write the measures of each next to it, in {@code <run_path>/<run_id>.eval}
+     * @param runs the runs to evaluate
+     * @param runPath the directory of the runs
+     * @return the {@link Evaluation} of each run, in the same order
+     * @throws IOException if the measures cannot be written
+     * @throws InterruptedException if interrupted while waiting for the evaluating threads
+     * @throws ExecutionException if the evaluation of a topic fails
+     */
+    public List<Evaluation> evaluateAndWrite(final List<Run> runs, final Path runPath)
+            throws IOException, InterruptedException, ExecutionException {
+        final var evaluations = evaluate(runs);
+        for (final var evaluation : evaluations) {
+            evaluation.write(runPath.resolve(evaluation.getRunId() + ".eval"));
+        }
+        return evaluations;
+    }
+
+    private double[] evaluate(final List<Run.Entry> ranking, final Qrels.Judgments judgments) {
+        final var sorted = new ArrayList<>(ranking);
+        sorted.sort(Comparator.comparing(Run.Entry::score).thenComparing(Run.Entry::docId).reversed());
+        final int[] grades = new int[sorted.size()];
+        for (int i = 0; i < grades.length; i++) {
+            grades[i] = judgments.grade(sorted.get(i).docId());
+        }
+
+        final double[] values = new double[measures.size()];
+        for (int m = 0; m < values.length; m++) {
+            values[m] = measures.get(m).compute(grades, judgments);
+        }
+        return values;
+    }
+}
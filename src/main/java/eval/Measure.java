@@ -0,0 +1,104 @@
+package eval;
+
+/**
+ * Enum of the evaluation measures, named and computed as {@code trec_eval} does
+ */
+public enum Measure {
+    MAP("map") {
+        @Override
+        protected double compute(int[] grades, Qrels.Judgments judgments) {
+            if (judgments.relevant() == 0) return 0;
+            double sum = 0;
+            int found = 0;
+            for (int i = 0; i < grades.length; i++) {
+                if (grades[i] > 0) {
+                    found++;
+                    sum += (double) found / (i + 1);
+                }
+            }
+            return sum / judgments.relevant();
+        }
+    },
+    P_5("P_5") {
+        @Override
+        protected double compute(int[] grades, Qrels.Judgments judgments) {
+            return precision(grades, 5);
+        }
+    },
+    P_10("P_10") {
+        @Override
+        protected double compute(int[] grades, Qrels.Judgments judgments) {
+            return precision(grades, 10);
+        }
+    },
+    RECALL_1000("recall_1000") {
+        @Override
+        protected double compute(int[] grades, Qrels.Judgments judgments) {
+            if (judgments.relevant() == 0) return 0;
+            return (double) relevantIn(grades, 1000) / judgments.relevant();
+        }
+    },
+    NDCG_5("ndcg_cut_5") {
+        @Override
+        protected double compute(int[] grades, Qrels.Judgments judgments) {
+            return ndcg(grades, judgments, 5);
+        }
+    },
+    NDCG_10("ndcg_cut_10") {
+        @Override
+        protected double compute(int[] grades, Qrels.Judgments judgments) {
+            return ndcg(grades, judgments, 10);
+        }
+    };
+
+    /**
+     * The name of the measure in the output of {@code trec_eval}
+     */
+    private final String trecName;
+
+    Measure(final String trecName) {
+        this.trecName = trecName;
+    }
+
+    public String getTrecName() {
+        return trecName;
+    }
+
+    /**
+     * Compute the measure for a topic
+     * @param grades the relevance grade of each retrieved document, in rank order
+     * @param judgments the judgments of the topic
+     * @return the value of the measure
+     */
+    protected abstract double compute(int[] grades, Qrels.Judgments judgments);
+
+    private static int relevantIn(int[] grades, int cutoff) {
+        int relevant = 0;
+        for (int i = 0; i < Math.min(cutoff, grades.length); i++) {
+            if (grades[i] > 0) relevant++;
+        }
+        return relevant;
+    }
+
+    private static double precision(int[] grades, int cutoff) {
+        // trec_eval divides by the cutoff even if fewer documents are retrieved
+        return (double) relevantIn(grades, cutoff) / cutoff;
+    }
+
+    private static double ndcg(int[] grades, Qrels.Judgments judgments, int cutoff) {
+        double dcg = 0;
+        for (int i = 0; i < Math.min(cutoff, grades.length); i++) {
+            if (grades[i] > 0) dcg += grades[i] / log2(i + 2);
+        }
+        double idcg = 0;
+        final int[] ideal = judgments.idealGains();
+        for (int i = 0; i < Math.min(cutoff, ideal.length); i++) {
+            idcg += ideal[i] / log2(i + 2);
+        }
+        return idcg == 0 ? 0 : dcg / idcg;
+    }
+
+    private static double log2(double x) {
+        return Math.log(x) / Math.log(2);
+    }
+}
@@ -0,0 +1,90 @@
+package eval;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Relevance judgments in TREC format ({@code topic iteration document relevance}), loaded once and shared by all the
+ * evaluations
+ */
+public class Qrels {
+    /**
+     * The judgments of a topic
+     * @param relevance document id -> relevance grade
+     * @param relevant number of documents with a positive grade
+     * @param idealGains the positive grades in decreasing order, for the ideal ranking of nDCG
+     */
+    public record Judgments(Map<String, Integer> relevance, int relevant, int[] idealGains) {
+        /**
+         * Returns the relevance grade of a document
+         * @param docId the identifier of the document
+         * @return the grade, 0 for documents not judged
+         */
+        public int grade(final String docId) {
+            return relevance.getOrDefault(docId, 0);
+        }
+    }
+
+    /**
+     * topic id -> judgments
+     */
+    private final Map<String, Judgments> judgments;
+
+    private Qrels(final Map<String, Judgments> judgments) {
+        this.judgments = judgments;
+    }
+
+    /**
+     * Load the judgments from a file
+     * @param file the qrels file
+     * @return the loaded {@link Qrels}
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line is not valid
+     */
+    public static Qrels load(final Path file) throws IOException {
+        final Map<String, Map<String, Integer>> grades = new LinkedHashMap<>();
+        int lineNumber = 0;
+        for (final var line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+            final var cols = line.trim().split("\\s+");
+            if (cols.length != 4) {
+                throw new IllegalArgumentException("Invalid qrels line %d in %s: %s".formatted(lineNumber, file, line));
+            }
+            try {
+                grades.computeIfAbsent(cols[0], k -> new HashMap<>()).put(cols[2], Integer.parseInt(cols[3]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid relevance at line %d in %s: %s"
+                        .formatted(lineNumber, file, line), e);
+            }
+        }
+
+        final Map<String, Judgments> judgments = new LinkedHashMap<>();
+        grades.forEach((topic, relevance) -> {
+            final int[] ideal = relevance.values().stream().filter(g -> g > 0)
+                    .sorted(Comparator.reverseOrder()).mapToInt(Integer::intValue).toArray();
+            judgments.put(topic, new Judgments(Map.copyOf(relevance), ideal.length, ideal));
+        });
+        return new Qrels(judgments);
+    }
+
+    /**
+     * Returns the judgments of a topic
+     * @param topicId the identifier of the topic
+     * @return the judgments, {@code null} if the topic has not been judged
+     */
+    public Judgments get(final String topicId) {
+        return judgments.get(topicId);
+    }
+
+    /**
+     * Returns the judged topics
+     * @return the topic identifiers, in the order of the file
+     */
+    public Set<String> topics() {
+        return Collections.unmodifiableSet(judgments.keySet());
+    }
+}
@@ -17,7 +17,6 @@
 package index;
 
 import org.apache.lucene.document.Field;
-import org.apache.lucene.document.FieldType;
 import org.apache.lucene.index.IndexOptions;
 import parse.ParsedDocument;
 
@@ -26,8 +25,10 @@ import java.io.Reader;
 /**
  * Represents a {@link Field} for containing the body of a document.
  * <p>
- * It is a tokenized field, not stored, keeping only document ids and term frequencies (see {@link
- * IndexOptions#DOCS_AND_FREQS} in order to minimize the space occupation.
+ * It is a tokenized field whose index options and storage depend on the {@link FieldProfile}: the default constructors
+ * use {@link FieldProfile#FULL}, keeping positions, offsets and the stored text (see {@link
+ * IndexOptions#DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS}), while {@link FieldProfile#MINIMAL} keeps only document ids
+ * and term frequencies in order to minimize the space occupation.
  *
  * @author Nicola Ferro (ferro@dei.unipd.it)
  * @version 1.00
@@ -36,33 +37,42 @@ import java.io.Reader;
 public class BodyField extends Field {
 
     /**
-     * The type of the document body field
+     * Create a new field for the body of a document.
+     *
+     * @param value the contents of the body of a document.
      */
-    private static final FieldType BODY_TYPE = new FieldType();
-
-    static {
-        BODY_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
-        BODY_TYPE.setTokenized(true);
-        BODY_TYPE.setStored(true);
+    public BodyField(final Reader value) {
+        super(ParsedDocument.FIELDS.BODY, value, FieldProfile.FULL.fieldType());
     }
 
-
     /**
      * Create a new field for the body of a document.
      *
      * @param value the contents of the body of a document.
      */
-    public BodyField(final Reader value) {
-        super(ParsedDocument.FIELDS.BODY, value, BODY_TYPE);
+    public BodyField(final String value) {
+        super(ParsedDocument.FIELDS.BODY, value, FieldProfile.FULL.fieldType());
     }
 
     /**
      * Create a new field for the body of a document.
      *
-     * @param value the contents of the body of a document.
+     * @param value   the contents of the body of a document.
+     * @param profile the {@link FieldProfile} of the text fields of the index.
      */
-    public BodyField(final String value) {
-        super(ParsedDocument.FIELDS.BODY, value, BODY_TYPE);
+    public BodyField(final String value, final FieldProfile profile) {
+        super(ParsedDocument.FIELDS.BODY, value, profile.fieldType());
+    }
+
+    /**
+     * Create a new field for the body of a document analyzed by one of the analyzers of a {@link MultiAnalyzerSchema}.
+     *
+     * @param value   the contents of the body of a document.
+     * @param profile the {@link FieldProfile} of the text fields of the index.
+     * @param variant the variant of the field, see {@link MultiAnalyzerSchema#nameFor(String, String)}.
+     */
+    public BodyField(final String value, final FieldProfile profile, final String variant) {
+        super(MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.BODY, variant), value, profile.fieldType());
     }
 
 }
@@ -0,0 +1,106 @@
+package index;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Memory ceiling of the documents parsed and not yet indexed: the parser acquires the estimated size of each document
+ * before handing it to the indexing threads, which release it as soon as the document is indexed, in whatever order
+ * they complete. The parser blocks only when the ceiling is reached, so small documents keep all the threads busy
+ * and large ones cannot exhaust the heap.
+ */
+public class ByteBudget {
+    /**
+     * Estimated fixed cost of a document: the {@link parse.ParsedDocument}, its strings and the task indexing it
+     */
+    private static final long DOCUMENT_OVERHEAD = 256;
+
+    private final long capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long inFlight;
+
+    /**
+     * Creates a budget.
+     *
+     * @param capacity the max number of bytes in flight.
+     * @throws IllegalArgumentException if the capacity is less than or equal to zero.
+     */
+    public ByteBudget(final long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Byte budget cannot be less than or equal to zero.");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the estimated heap footprint of a document: its characters, two bytes each, plus a fixed overhead.
+     *
+     * @param fields the text fields of the document.
+     * @return the estimated size in bytes.
+     */
+    public static long estimate(final String... fields) {
+        long bytes = DOCUMENT_OVERHEAD;
+        for (final var field : fields) {
+            if (field != null) {
+                bytes += 2L * field.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Waits until {@code bytes} fit in the budget and takes them. A document larger than the whole budget takes all
+     * of it, so it is indexed alone instead of blocking forever.
+     *
+     * @param bytes the bytes to take.
+     * @return the bytes actually taken, to be passed to {@link #release(long)}.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public long acquire(final long bytes) throws InterruptedException {
+        final long taken = Math.min(bytes, capacity);
+        lock.lock();
+        try {
+            while (inFlight + taken > capacity) {
+                released.await();
+            }
+            inFlight += taken;
+            return taken;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back the bytes taken by {@link #acquire(long)}.
+     *
+     * @param bytes the bytes to give back.
+     */
+    public void release(final long bytes) {
+        lock.lock();
+        try {
+            inFlight -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the bytes currently in flight.
+     *
+     * @return the bytes taken and not yet given back.
+     */
+    public long inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+}
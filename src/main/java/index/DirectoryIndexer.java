@@ -260,7 +260,7 @@ public class DirectoryIndexer {
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
                 if (file.getFileName().toString().endsWith(extension)) {
 
-                    DocumentParser dp = DocumentParser.create(dpCls, Files.newBufferedReader(file, cs));
+                    DocumentParser dp = DocumentParser.open(dpCls, file, cs);
 
                     bytesCount += Files.size(file);
 
@@ -16,28 +16,47 @@
 
 package index;
 
+import analyzers.ShingleAnalyzer;
+import metrics.IndexWriterMetrics;
+import metrics.Metrics;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
 import parse.DocumentParser;
 import parse.ParsedDocument;
+import utils.ExecutionMode;
+import utils.TaskScope;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Indexes documents processing a whole directory tree.
- * This variant execute the indexing with multiple thread
+ * This variant execute the indexing with multiple thread, optionally on private shards added to the index at the end
+ * (see {@link IndexingOptions#setShards(int)})
  *
  * @author Nicola Ferro
  * @author elrond-group
@@ -56,6 +75,17 @@ public class DirectoryIndexerMT implements Indexer {
      */
     private final IndexWriter writer;
 
+    /**
+     * The private writers of the shards, empty if all the threads share {@link #writer}; the shards are added to
+     * {@link #writer} after indexing.
+     */
+    private final List<IndexWriter> shardWriters = new ArrayList<>();
+
+    /**
+     * The paths of the shards, in the same order of {@link #shardWriters}
+     */
+    private final List<Path> shardDirs = new ArrayList<>();
+
     /**
      * The class of the {@code DocumentParser} to be used.
      */
@@ -89,7 +119,7 @@ public class DirectoryIndexerMT implements Indexer {
     /**
      * The total number of indexed files.
      */
-    private long filesCount;
+    private final AtomicLong filesCount = new AtomicLong();
 
     /**
      * The total number of indexed documents.
@@ -99,12 +129,19 @@ public class DirectoryIndexerMT implements Indexer {
     /**
      * The total number of indexed bytes
      */
-    private long bytesCount;
+    private final AtomicLong bytesCount = new AtomicLong();
+
+    /**
+     * Set for removing duplicate documents, shared by the parsers and by the shards: the first parser adding an
+     * identifier indexes it
+     */
+    private final Set<String> idSet = ConcurrentHashMap.newKeySet();
 
     /**
-     * Set for removing duplicate documents
+     * The detector of the near-duplicate documents, filled by a pass over the documents before indexing them;
+     * {@code null} if disabled
      */
-    private Set<String> idSet = new HashSet<>();
+    private final NearDuplicateDetector nearDuplicates;
 
     /**
      * Number ot thread to use
@@ -112,9 +149,48 @@ public class DirectoryIndexerMT implements Indexer {
     private final int numThreads;
 
     /**
-     * Dimension of the thread-task queue as a factor of @numThreads
+     * Memory ceiling of the documents parsed and not yet indexed
+     */
+    private final ByteBudget budget;
+
+    /**
+     * The optional settings of the index
+     */
+    private final IndexingOptions options;
+
+    /**
+     * The cache of the analysis of the titles, {@code null} if disabled
+     */
+    private final TitleAnalysisCache titleCache;
+
+    /**
+     * Number of documents submitted and not yet indexed, exposed as the {@code index.queue_depth} gauge
      */
-    private final double threadsQueueFactor;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    /**
+     * Creates a new indexer with the default {@link IndexingOptions}.
+     *
+     * @param analyzer           the {@code Analyzer} to be used.
+     * @param similarity         the {@code Similarity} to be used.
+     * @param ramBufferSizeMB    the size in megabytes of the RAM buffer for indexing documents.
+     * @param indexPath          the directory where to store the index.
+     * @param docsPath           the directory from which documents have to be read.
+     * @param extension          the extension of the files to be indexed.
+     * @param charsetName        the name of the charset used for encoding documents.
+     * @param expectedDocs       the total number of documents expected to be indexed
+     * @param dpCls              the class of the {@code DocumentParser} to be used.
+     * @param numThreads         number of threads to use
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     */
+    public DirectoryIndexerMT(final Analyzer analyzer, final Similarity similarity, final int ramBufferSizeMB,
+                              final String indexPath, final String docsPath, final String extension,
+                              final String charsetName, final long expectedDocs,
+                              final Class<? extends DocumentParser> dpCls, int numThreads) {
+        this(analyzer, similarity, ramBufferSizeMB, indexPath, docsPath, extension, charsetName, expectedDocs, dpCls,
+                numThreads, new IndexingOptions());
+    }
 
     /**
      * Creates a new indexer.
@@ -129,15 +205,15 @@ public class DirectoryIndexerMT implements Indexer {
      * @param expectedDocs       the total number of documents expected to be indexed
      * @param dpCls              the class of the {@code DocumentParser} to be used.
      * @param numThreads         number of threads to use
-     * @param threadsQueueFactor max dimension of threads-task queue as a factor of @numThreads (suggested 2 or 3
-     *                           but might be lower if saving ram is important)
+     * @param options            the optional settings of the index.
      * @throws NullPointerException     if any of the parameters is {@code null}.
      * @throws IllegalArgumentException if any of the parameters assumes invalid values.
      */
     public DirectoryIndexerMT(final Analyzer analyzer, final Similarity similarity, final int ramBufferSizeMB,
                               final String indexPath, final String docsPath, final String extension,
                               final String charsetName, final long expectedDocs,
-                              final Class<? extends DocumentParser> dpCls, int numThreads, double threadsQueueFactor) {
+                              final Class<? extends DocumentParser> dpCls, int numThreads,
+                              final IndexingOptions options) {
 
         if (dpCls == null) {
             throw new NullPointerException("Document parser class cannot be null.");
@@ -157,11 +233,20 @@ public class DirectoryIndexerMT implements Indexer {
             throw new IllegalArgumentException("RAM buffer size cannot be less than or equal to zero.");
         }
 
-        final IndexWriterConfig iwc = new IndexWriterConfig(analyzer);
-        iwc.setSimilarity(similarity);
-        iwc.setRAMBufferSizeMB(ramBufferSizeMB);
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
-        iwc.setCommitOnClose(true);
+        if (options == null) {
+            throw new NullPointerException("Indexing options cannot be null.");
+        }
+
+        this.options = options;
+        this.nearDuplicates = options.getNearDuplicates().isDetected()
+                ? new NearDuplicateDetector(options.getNearDuplicateThreshold()) : null;
+
+        if (options.getShingleSize() > 0 && !options.getFieldVariants().isEmpty()) {
+            throw new IllegalArgumentException("Shingles are not supported together with field variants.");
+        }
+
+        this.titleCache = TitleAnalysisCache.create(analyzer, options);
+        final Analyzer indexAnalyzer = createIndexAnalyzer(analyzer, options, titleCache);
 
         if (indexPath == null) {
             throw new NullPointerException("Index path cannot be null.");
@@ -172,9 +257,10 @@ public class DirectoryIndexerMT implements Indexer {
         }
 
         final Path indexDir = Paths.get(indexPath);
+        final IndexStorage storage = options.getStorage();
 
         // if the directory does not already exist, create it
-        if (Files.notExists(indexDir)) {
+        if (storage.isOnDisk() && Files.notExists(indexDir)) {
             try {
                 Files.createDirectory(indexDir);
             } catch (Exception e) {
@@ -184,12 +270,12 @@ public class DirectoryIndexerMT implements Indexer {
             }
         }
 
-        if (!Files.isWritable(indexDir)) {
+        if (storage.isOnDisk() && !Files.isWritable(indexDir)) {
             throw new IllegalArgumentException(
                     String.format("Index directory %s cannot be written.", indexDir.toAbsolutePath().toString()));
         }
 
-        if (!Files.isDirectory(indexDir)) {
+        if (storage.isOnDisk() && !Files.isDirectory(indexDir)) {
             throw new IllegalArgumentException(String.format("%s expected to be a directory where to write the index.",
                                                              indexDir.toAbsolutePath().toString()));
         }
@@ -245,112 +331,567 @@ public class DirectoryIndexerMT implements Indexer {
         }
         this.expectedDocs = expectedDocs;
 
-        this.docsCount = new AtomicLong(0);
-
-        this.bytesCount = 0;
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads cannot be less than or equal to zero.");
+        }
+        this.numThreads = numThreads;
+        this.budget = new ByteBudget(options.getInFlightBytes());
 
-        this.filesCount = 0;
+        this.docsCount = new AtomicLong(0);
 
         try {
-            writer = new IndexWriter(FSDirectory.open(indexDir), iwc);
+            writer = new IndexWriter(storage.create(indexDir),
+                    createConfig(indexAnalyzer, similarity, ramBufferSizeMB, options));
         } catch (IOException e) {
             throw new IllegalArgumentException(String.format("Unable to create the index writer in directory %s: %s.",
                                                              indexDir.toAbsolutePath().toString(), e.getMessage()), e);
         }
 
-        this.numThreads = numThreads;
-        this.threadsQueueFactor = threadsQueueFactor;
+        setCommitData(writer, options);
+
+        // the shards share the RAM buffer of the index, which is not used until they are added to it
+        for (int i = 0; i < options.getShards(); i++) {
+            final Path shardDir = shardDir(indexDir, options, i);
+            try {
+                final var shardWriter = new IndexWriter(storage.create(shardDir), createConfig(indexAnalyzer,
+                        similarity, Math.max(1, ramBufferSizeMB / options.getShards()), options));
+                setCommitData(shardWriter, options);
+                shardWriters.add(shardWriter);
+                shardDirs.add(shardDir);
+            } catch (IOException | RuntimeException e) {
+                // the writers already open keep the write locks of their directories
+                abort(writer);
+                shardWriters.forEach(DirectoryIndexerMT::abort);
+                if (e instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw new IllegalArgumentException(String.format("Unable to create the shard writer in directory %s: %s.",
+                        shardDir.toAbsolutePath().toString(), e.getMessage()), e);
+            }
+        }
+
+        Metrics.gauge("index.queue_depth", queueDepth::get);
+        Metrics.gauge("index.in_flight_bytes", budget::inFlight);
 
         this.start = System.currentTimeMillis();
 
     }
 
     /**
-     * Indexes the documents.
+     * Closes a writer without committing, releasing the write lock of its directory.
      *
-     * @throws IOException if something goes wrong while indexing.
+     * @param writer the writer to be closed.
      */
-    public void index() throws IOException {
+    private static void abort(final IndexWriter writer) {
+        final var directory = writer.getDirectory();
+        try {
+            writer.rollback();
+        } catch (IOException | RuntimeException e) {
+            // the writer is being discarded because of an earlier failure, which is the one reported
+        }
+        IOUtils.closeWhileHandlingException(directory);
+    }
 
-        System.out.printf("%n#### Start indexing ####%n");
+    /**
+     * Creates the analyzer of the {@link IndexWriter}, adding the shingle fields analyzers and the title cache if
+     * needed.
+     *
+     * @param analyzer   the analyzer of the title and body fields.
+     * @param options    the optional settings of the index.
+     * @param titleCache the cache of the analysis of the titles, {@code null} if disabled.
+     * @return the analyzer for all the fields of the index.
+     */
+    static Analyzer createIndexAnalyzer(final Analyzer analyzer, final IndexingOptions options,
+                                       final TitleAnalysisCache titleCache) {
+        final Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        if (titleCache != null) {
+            TitleAnalysisCache.titleFields(options).forEach(field -> fieldAnalyzers.put(field, titleCache.analyzer()));
+        }
+        if (options.getShingleSize() > 0) {
+            final var shingleAnalyzer = new ShingleAnalyzer(analyzer, options.getShingleSize());
+            fieldAnalyzers.put(ShingleField.nameFor(ParsedDocument.FIELDS.TITLE), shingleAnalyzer);
+            fieldAnalyzers.put(ShingleField.nameFor(ParsedDocument.FIELDS.BODY), shingleAnalyzer);
+        }
+        return fieldAnalyzers.isEmpty() ? analyzer : new PerFieldAnalyzerWrapper(analyzer, fieldAnalyzers);
+    }
 
-        Files.walkFileTree(docsDir, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                if (file.getFileName().toString().endsWith(extension)) {
-                    final var threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(numThreads);
+    /**
+     * Creates the configuration of a writer.
+     *
+     * @param indexAnalyzer   the analyzer for all the fields of the index.
+     * @param similarity      the {@code Similarity} to be used.
+     * @param ramBufferSizeMB the size in megabytes of the RAM buffer of the writer.
+     * @param options         the optional settings of the index.
+     * @return the configuration of a new writer.
+     */
+    private static IndexWriterConfig createConfig(final Analyzer indexAnalyzer, final Similarity similarity,
+                                                  final int ramBufferSizeMB, final IndexingOptions options) {
+        final IndexWriterConfig iwc = new IndexWriterConfig(indexAnalyzer);
+        iwc.setSimilarity(similarity);
+        iwc.setRAMBufferSizeMB(ramBufferSizeMB);
+        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        iwc.setCommitOnClose(true);
+        options.getSegmentProfile().configure(iwc, IndexWriterMetrics.install(iwc));
+        options.getDocumentOrder().configure(iwc);
+        return iwc;
+    }
 
-                    DocumentParser dp = DocumentParser.create(dpCls, Files.newBufferedReader(file, cs));
+    /**
+     * Returns the directory of a shard of an index.
+     *
+     * @param indexDir the directory of the index.
+     * @param options  the optional settings of the index.
+     * @param shard    the number of the shard.
+     * @return {@code shard-<shard>} in the shard paths of the options, round-robin, or in {@code <index>-shards}.
+     */
+    public static Path shardDir(final Path indexDir, final IndexingOptions options, final int shard) {
+        final var paths = options.getShardPaths();
+        final Path parent = paths.isEmpty() ? indexDir.resolveSibling(indexDir.getFileName() + "-shards")
+                : Paths.get(paths.get(shard % paths.size()));
+        return parent.resolve("shard-" + shard);
+    }
 
-                    bytesCount += Files.size(file);
+    /**
+     * Records in the commit of the index the options needed by the searchers.
+     *
+     * @param writer  the writer of the index.
+     * @param options the optional settings of the index.
+     */
+    static void setCommitData(final IndexWriter writer, final IndexingOptions options) {
+        if (options.getShingleSize() > 0) {
+            // record the shingle size so that searchers know which phrases can be matched as terms
+            writer.setLiveCommitData(
+                    Map.of(ShingleField.SHINGLE_SIZE_KEY, Integer.toString(options.getShingleSize())).entrySet());
+        }
+    }
 
-                    filesCount += 1;
+    /**
+     * Force merges the committed index if requested by the options, then commits the merged segments.
+     *
+     * @param writer  the writer of the index.
+     * @param options the optional settings of the index.
+     * @throws IOException if something goes wrong while merging.
+     */
+    @SuppressWarnings("try")
+    static void forceMerge(final IndexWriter writer, final IndexingOptions options) throws IOException {
+        if (options.getForceMergeSegments() == 0) {
+            return;
+        }
+        try (final var ignored = Metrics.timer("index.force_merge").start()) {
+            writer.forceMerge(options.getForceMergeSegments());
+            writer.commit();
+        }
+    }
 
-                    Queue<Future<?>> futures = new LinkedList<>();
+    /**
+     * Returns the number of segments of the last commit of an index.
+     *
+     * @param directory the directory of the index.
+     * @return the number of segments.
+     * @throws IOException if the commit cannot be read.
+     */
+    static int segmentCount(final Directory directory) throws IOException {
+        return SegmentInfos.readLatestCommit(directory).size();
+    }
 
-                    for (ParsedDocument pd : dp) {
-                        final var f = threadPool.submit(() -> {
-                            Document doc = null;
+    /**
+     * Creates the Lucene document of a parsed document.
+     *
+     * @param pd      the parsed document.
+     * @param options the optional settings of the index.
+     * @return the document to be indexed.
+     */
+    static Document createDocument(final ParsedDocument pd, final IndexingOptions options) {
+        final Document doc = new Document();
+
+        // add the document identifier
+        doc.add(new StringField(ParsedDocument.FIELDS.ID, pd.getIdentifier(), Field.Store.YES));
+
+        if (options.getFieldVariants().isEmpty()) {
+            //add title
+            doc.add(new TitleField(pd.getTitle(), options.getFieldProfile()));
+
+            // add the document body
+            doc.add(new BodyField(pd.getBody(), options.getFieldProfile()));
+        } else {
+            // add title and body once for each analyzer of the schema
+            for (final var variant : options.getFieldVariants()) {
+                doc.add(new TitleField(pd.getTitle(), options.getFieldProfile(), variant));
+                doc.add(new BodyField(pd.getBody(), options.getFieldProfile(), variant));
+            }
+        }
 
-                            if (idSet.contains(pd.getIdentifier())) {
-//                            System.err.printf("Skipped duplicate document %s%n", pd.getIdentifier());
-                                return;
-                            } else idSet.add(pd.getIdentifier());
+        // add the shingles of title and body
+        if (options.getShingleSize() > 0) {
+            doc.add(new ShingleField(ParsedDocument.FIELDS.TITLE, pd.getTitle(), options.getShingleSize()));
+            doc.add(new ShingleField(ParsedDocument.FIELDS.BODY, pd.getBody(), options.getShingleSize()));
+        }
 
-                            doc = new Document();
+        //add domain
+        doc.add(new StringField(ParsedDocument.FIELDS.DOMAIN, pd.getDomain(), Field.Store.YES));
 
-                            // add the document identifier
-                            doc.add(new StringField(ParsedDocument.FIELDS.ID, pd.getIdentifier(), Field.Store.YES));
+        // add the doc values of the index sort
+        options.getDocumentOrder().addPriors(doc, pd);
 
-                            //add title
-                            doc.add(new TitleField(pd.getTitle()));
+        return doc;
+    }
 
-                            // add the document body
-                            doc.add(new BodyField(pd.getBody()));
+    /**
+     * Creates the stub of a near duplicate collapsed into its representative: identifier and domain, without title
+     * and body, so that it is found only through {@link NearDuplicateDetector#DUPLICATE_OF}.
+     *
+     * @param id      the identifier of the near duplicate.
+     * @param domain  the domain of the near duplicate.
+     * @param length  the number of characters of the body of the near duplicate.
+     * @param cluster the identifier of the representative.
+     * @param options the optional settings of the index.
+     * @return the document to be indexed.
+     */
+    static Document createDuplicateDocument(final String id, final String domain, final long length,
+                                            final String cluster, final IndexingOptions options) {
+        final Document doc = new Document();
+        doc.add(new StringField(ParsedDocument.FIELDS.ID, id, Field.Store.YES));
+        doc.add(new StringField(ParsedDocument.FIELDS.DOMAIN, domain, Field.Store.YES));
+        doc.add(new StringField(NearDuplicateDetector.DUPLICATE_OF, cluster, Field.Store.NO));
+        doc.add(new BinaryDocValuesField(NearDuplicateDetector.CLUSTER, new BytesRef(cluster)));
+        options.getDocumentOrder().addPriors(doc, domain, length);
+        return doc;
+    }
 
-                            //add domain
-                            doc.add(new StringField(ParsedDocument.FIELDS.DOMAIN, pd.getDomain(), Field.Store.YES));
+    /**
+     * Parses a file and hands its documents to the indexing tasks, within the byte budget.
+     *
+     * @param file   the file to be parsed.
+     * @param scopes the scopes of the indexing tasks, one for each writer.
+     * @throws IOException          if the file cannot be read.
+     * @throws InterruptedException if interrupted while waiting for the budget.
+     */
+    private void parseFile(final Path file, final List<TaskScope> scopes) throws IOException, InterruptedException {
+        final DocumentParser dp = DocumentParser.open(dpCls, file, cs);
 
-                            try {
-                                writer.addDocument(doc);
-                            } catch (IOException e) {
-                                throw new IllegalArgumentException(e);
-                            }
+        bytesCount.addAndGet(Files.size(file));
+        Metrics.counter("parse.bytes").add(Files.size(file));
+
+        filesCount.incrementAndGet();
+
+        final var parseTimer = Metrics.timer("parse.document");
+        final var queueHistogram = Metrics.histogram("index.queue_depth");
+        while (true) {
+            final var parseSample = parseTimer.start();
+            if (!dp.hasNext()) break;
+            final ParsedDocument pd = dp.next();
+            parseSample.close();
+
+            // stop parsing as soon as an indexing task fails, join() reports the failure
+            if (isFailed(scopes)) {
+                return;
+            }
+
+            if (!idSet.add(pd.getIdentifier())) {
+                Metrics.counter("index.duplicates").increment();
+                continue;
+            }
+
+            final long bytes = budget.acquire(ByteBudget.estimate(pd.getIdentifier(), pd.getTitle(), pd.getBody(),
+                    pd.getDomain()));
+            queueHistogram.record(queueDepth.incrementAndGet());
+            final IndexWriter target = writerOf(pd.getIdentifier());
+            scopes.get(Math.floorMod(pd.getIdentifier().hashCode(), scopes.size())).fork(() -> {
+                indexDocument(pd, target);
+                return null;
+            }).whenComplete((result, failure) -> {
+                // also when the task is skipped after a failure, so that the parser is not left waiting
+                queueDepth.decrementAndGet();
+                budget.release(bytes);
+            });
+        }
+    }
+
+    /**
+     * Indexes a parsed document; called by the indexing threads.
+     *
+     * @param pd     the parsed document.
+     * @param target the writer of the index or of the shard of the document.
+     * @throws IOException if the document cannot be added to the index.
+     */
+    @SuppressWarnings("try")
+    private void indexDocument(final ParsedDocument pd, final IndexWriter target) throws IOException {
+        final Document doc;
+        try (final var ignored = Metrics.timer("index.create_document").start()) {
+            doc = createDocument(pd, options);
+            if (nearDuplicates != null) {
+                // a cluster of its own until the documents are clustered, see clusterNearDuplicates()
+                doc.add(new BinaryDocValuesField(NearDuplicateDetector.CLUSTER, new BytesRef(pd.getIdentifier())));
+            }
+        }
+        if (nearDuplicates != null) {
+            try (final var ignored = Metrics.timer("index.near_duplicates").start()) {
+                nearDuplicates.add(pd.getIdentifier(), pd.getBody());
+            }
+        }
+
+        // the analysis of the fields happens inside addDocument, while inverting them
+        try (final var ignored = Metrics.timer("index.add_document").start()) {
+            target.addDocument(doc);
+        }
+
+        final long indexed = docsCount.incrementAndGet();
+
+        // print progress every 10000 indexed documents
+        if (indexed % 10000 == 0) {
+            System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n",
+                    indexed, filesCount.get(), bytesCount.get() / MBYTE, (System.currentTimeMillis() - start) / 1000);
+        }
+    }
+
+    /**
+     * Clusters the documents added to the near-duplicate detector while indexing them, then moves each near duplicate
+     * to the cluster of its representative: with {@link NearDuplicates#MARK} by updating its
+     * {@link NearDuplicateDetector#CLUSTER} doc values, with {@link NearDuplicates#COLLAPSE} by replacing it with its
+     * stub, built from the domain and the length prior stored in the index. The deletions left by the stubs are merged
+     * away, so that the statistics of the fields are the same as if the near duplicates had been stubs from the start.
+     * <p>
+     * The representatives keep the cluster they were indexed with, their own identifier, so the documents are parsed
+     * only once and the clusters still do not depend on the order the indexing threads see the documents in.
+     *
+     * @throws IOException if something goes wrong while updating the near duplicates.
+     */
+    @SuppressWarnings("try")
+    private void clusterNearDuplicates() throws IOException {
+        final long clusterStart = System.currentTimeMillis();
+        try (final var ignored = Metrics.timer("index.near_duplicates.cluster").start()) {
+            nearDuplicates.cluster();
+            final var representatives = nearDuplicates.getRepresentatives();
+            if (options.getNearDuplicates() != NearDuplicates.COLLAPSE) {
+                for (final var entry : representatives.entrySet()) {
+                    writerOf(entry.getKey()).updateBinaryDocValue(
+                            new Term(ParsedDocument.FIELDS.ID, entry.getKey()), NearDuplicateDetector.CLUSTER,
+                            new BytesRef(entry.getValue()));
+                }
+            } else if (!representatives.isEmpty()) {
+                for (final var target : shardWriters.isEmpty() ? List.of(writer) : shardWriters) {
+                    collapse(target, representatives);
+                }
+            }
+        }
+        System.out.printf("Near duplicates clustered in %d seconds.%n",
+                (System.currentTimeMillis() - clusterStart) / 1000);
+    }
+
+    /**
+     * Replaces the near duplicates indexed by a writer with their stubs.
+     *
+     * @param target          the writer of the index or of a shard.
+     * @param representatives near duplicate -> identifier of its representative.
+     * @throws IOException if something goes wrong while reading or updating the near duplicates.
+     */
+    private void collapse(final IndexWriter target, final Map<String, String> representatives) throws IOException {
+        final List<Document> stubs = new ArrayList<>();
+        try (final var reader = DirectoryReader.open(target)) {
+            PostingsEnum postings = null;
+            for (final var entry : representatives.entrySet()) {
+                if (writerOf(entry.getKey()) != target) {
+                    continue;
+                }
+                final var id = new BytesRef(entry.getKey());
+                for (final var leaf : reader.leaves()) {
+                    final var terms = leaf.reader().terms(ParsedDocument.FIELDS.ID);
+                    final var termsEnum = terms == null ? null : terms.iterator();
+                    if (termsEnum == null || !termsEnum.seekExact(id)) {
+                        continue;
+                    }
+                    postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                    final int doc = postings.nextDoc();
+                    if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+                        continue;
+                    }
+                    final var domain = leaf.reader().document(doc, Set.of(ParsedDocument.FIELDS.DOMAIN))
+                            .get(ParsedDocument.FIELDS.DOMAIN);
+                    final var lengths = DocValues.getNumeric(leaf.reader(), DocumentOrder.LENGTH);
+                    final long length = lengths.advanceExact(doc) ? lengths.longValue() : 0;
+                    stubs.add(createDuplicateDocument(entry.getKey(), domain, length, entry.getValue(), options));
+                    break;
+                }
+            }
+        }
+        for (final var stub : stubs) {
+            target.updateDocument(new Term(ParsedDocument.FIELDS.ID, stub.get(ParsedDocument.FIELDS.ID)), stub);
+        }
+        if (!stubs.isEmpty()) {
+            // all of them, even from the segments with few deletions, which are still counted by the statistics
+            if (target.getConfig().getMergePolicy() instanceof TieredMergePolicy tiered) {
+                tiered.setForceMergeDeletesPctAllowed(0);
+            }
+            target.forceMergeDeletes();
+        }
+    }
+
+    /**
+     * Returns the writer of a document: the one of the index, or the one of its shard.
+     *
+     * @param id the identifier of the document.
+     * @return the writer indexing the document.
+     */
+    private IndexWriter writerOf(final String id) {
+        // routed by identifier, so that a rebuild puts every document in the same shard
+        return shardWriters.isEmpty() ? writer
+                : shardWriters.get(Math.floorMod(id.hashCode(), shardWriters.size()));
+    }
+
+    /**
+     * Returns whether an indexing task of any writer has failed.
+     *
+     * @param scopes the scopes of the indexing tasks.
+     * @return {@code true} if a task has failed.
+     */
+    private static boolean isFailed(final List<TaskScope> scopes) {
+        for (final var scope : scopes) {
+            if (scope.isFailed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Commits the shards and adds them to the index, deleting them unless they have to be kept.
+     *
+     * @throws IOException if something goes wrong while adding the shards.
+     */
+    @SuppressWarnings("try")
+    private void addShards() throws IOException {
+        final long addStart = System.currentTimeMillis();
+        final var directories = new Directory[shardWriters.size()];
+        try (final var ignored = Metrics.timer("index.commit").start()) {
+            for (int i = 0; i < directories.length; i++) {
+                final var shardWriter = shardWriters.get(i);
+                shardWriter.commit();
+                directories[i] = shardWriter.getDirectory();
+                shardWriter.close();
+            }
+        }
+
+        // the segments of the shards are copied as they are, only the final force merge rewrites them
+        try (final var ignored = Metrics.timer("index.add_indexes").start()) {
+            writer.addIndexes(directories);
+            writer.commit();
+        }
+
+        for (final var directory : directories) {
+            directory.close();
+        }
+        if (!options.isKeepShards()) {
+            for (final var shardDir : shardDirs) {
+                if (options.getStorage().isOnDisk()) {
+                    IOUtils.rm(shardDir);
+                } else {
+                    IndexStorage.release(shardDir);
+                }
+            }
+            if (options.getStorage().isOnDisk() && options.getShardPaths().isEmpty()) {
+                // the default parent only holds the shards of this index
+                Files.deleteIfExists(shardDirs.get(0).getParent());
+            }
+        }
+        System.out.printf("%d shard(s) added to the index in %d seconds%s.%n", directories.length,
+                (System.currentTimeMillis() - addStart) / 1000, options.isKeepShards() ? " and kept" : "");
+    }
+
+    /**
+     * Rethrows the failure of an indexing task.
+     *
+     * @param failure the failure.
+     * @throws IOException if the failure is an {@link IOException}.
+     */
+    private static void rethrow(final Throwable failure) throws IOException {
+        if (failure instanceof IOException e) {
+            throw new IOException("Unable to index a document: %s.".formatted(e.getMessage()), e);
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        throw new IllegalStateException("Unable to index a document.", failure);
+    }
+
+    /**
+     * Indexes the documents.
+     *
+     * @throws IOException if something goes wrong while indexing.
+     */
+    @SuppressWarnings("try")
+    public void index() throws IOException {
 
-                            docsCount.incrementAndGet();
+        System.out.printf("%n#### Start indexing ####%n");
 
-                            // print progress every 10000 indexed documents
-                            if (docsCount.get() % 10000 == 0) {
-                                System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n",
-                                        docsCount.get(), filesCount, bytesCount / MBYTE,
-                                        (System.currentTimeMillis() - start) / 1000);
+        // documents are released in completion order: the parser waits only when the budget is full, never on a
+        // specific slow document
+        final boolean parallelParsing = options.getExecutionMode().effective() == ExecutionMode.VIRTUAL;
+        // every open parser holds its buffers and a document being built, so at most numThreads files are parsed
+        final var parsing = new Semaphore(numThreads);
+        // one scope for each writer, splitting the threads among the shards
+        final int writers = Math.max(1, shardWriters.size());
+        final List<TaskScope> scopes = new ArrayList<>(writers);
+        try {
+            for (int i = 0; i < writers; i++) {
+                scopes.add(new TaskScope(options.getExecutionMode(), Math.max(1, numThreads / writers)));
+            }
+            Files.walkFileTree(docsDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (isFailed(scopes)) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    if (file.getFileName().toString().endsWith(extension)) {
+                        if (parallelParsing) {
+                            // each file on its own virtual thread, all sharing the budget
+                            try {
+                                parsing.acquire();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new InterruptedIOException("Interrupted while parsing %s.".formatted(file));
                             }
-                        });
-                        futures.add(f);
-                        //prevent queue to grow too big
-                        while (futures.size() > threadsQueueFactor * numThreads) {
+                            scopes.get(0).fork(() -> {
+                                parseFile(file, scopes);
+                                return null;
+                            }).whenComplete((result, failure) -> parsing.release());
+                        } else {
                             try {
-                                futures.remove().get();
-                            } catch (InterruptedException | ExecutionException e) {
-                                throw new IllegalStateException(e);
+                                parseFile(file, scopes);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new InterruptedIOException("Interrupted while parsing %s.".formatted(file));
                             }
                         }
                     }
-                    //wait for completions
-                    futures.forEach(f -> {
-                        try {
-                            f.get();
-                        } catch (InterruptedException | ExecutionException e) {
-                            throw new IllegalStateException(e);
-                        }
-                    });
-                    threadPool.shutdown();
+                    return FileVisitResult.CONTINUE;
                 }
-                return FileVisitResult.CONTINUE;
+            });
+            // the parsers run in the first scope: once it is joined, no task is forked in the others
+            for (final var scope : scopes) {
+                scope.join();
             }
-        });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while indexing.", e);
+        } catch (ExecutionException e) {
+            rethrow(e.getCause());
+        } finally {
+            scopes.forEach(TaskScope::close);
+        }
 
-        writer.commit();
+        if (nearDuplicates != null) {
+            clusterNearDuplicates();
+        }
+        if (shardWriters.isEmpty()) {
+            try (final var ignored = Metrics.timer("index.commit").start()) {
+                writer.commit();
+            }
+        } else {
+            addShards();
+        }
+        forceMerge(writer, options);
+
+        final var directory = writer.getDirectory();
 
         writer.close();
 
@@ -358,8 +899,27 @@ public class DirectoryIndexerMT implements Indexer {
             System.out.printf("Expected to index %d documents; %d indexed instead.%n", expectedDocs, docsCount.get());
         }
 
-        System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n", docsCount.get(), filesCount,
-                          bytesCount / MBYTE, (System.currentTimeMillis() - start) / 1000);
+        System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n", docsCount.get(),
+                          filesCount.get(), bytesCount.get() / MBYTE, (System.currentTimeMillis() - start) / 1000);
+
+        long indexBytes = 0;
+        final var files = directory.listAll();
+        for (final var file : files) {
+            indexBytes += directory.fileLength(file);
+        }
+        final int segments = segmentCount(directory);
+        Metrics.gauge("index.segments", () -> segments);
+        System.out.printf("Index size %d Mbytes in %d files and %d segments with %s field profile and %s segment profile.%n",
+                indexBytes / MBYTE, files.length, segments, options.getFieldProfile(), options.getSegmentProfile());
+        System.out.printf("Documents waiting to be indexed limited to %d Mbytes.%n", budget.capacity() / MBYTE);
+        if (nearDuplicates != null) {
+            System.out.printf("%d near duplicate(s) in %d cluster(s), %s.%n", nearDuplicates.getDuplicates(),
+                    nearDuplicates.getClusters(), options.getNearDuplicates() == NearDuplicates.COLLAPSE
+                            ? "collapsed into their representatives" : "marked with their cluster");
+        }
+        if (titleCache != null) {
+            titleCache.report();
+        }
 
         System.out.printf("#### Indexing complete ####%n");
     }
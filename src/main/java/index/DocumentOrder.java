@@ -0,0 +1,90 @@
+package index;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+import parse.ParsedDocument;
+
+/**
+ * Enum that define the order of the documents in the segments of an index, and the doc values it needs
+ */
+public enum DocumentOrder {
+    /**
+     * Order of arrival, that is of the files and of the indexing threads, without doc values
+     */
+    ARRIVAL,
+    /**
+     * Order of arrival, with the doc values of {@link #DOMAIN_LENGTH}: the unsorted baseline of the same index
+     */
+    ARRIVAL_WITH_PRIORS {
+        @Override
+        public void addPriors(Document doc, String domain, long length) {
+            DOMAIN_LENGTH.addPriors(doc, domain, length);
+        }
+    },
+    /**
+     * Sorted by domain, then by the length prior, longest first (see {@link #LENGTH}). The postings and stored fields
+     * of a domain and of similar documents are close, so they compress better, and queries sorted by a prefix of
+     * {@link #getSort()}, e.g. the longest documents of a domain, stop collecting after the first hits of each
+     * segment.
+     */
+    DOMAIN_LENGTH {
+        @Override
+        public void addPriors(Document doc, String domain, long length) {
+            doc.add(new SortedDocValuesField(ParsedDocument.FIELDS.DOMAIN, new BytesRef(domain)));
+            doc.add(new NumericDocValuesField(LENGTH, length));
+        }
+
+        @Override
+        public Sort getSort() {
+            return new Sort(new SortField(ParsedDocument.FIELDS.DOMAIN, SortField.Type.STRING),
+                    new SortField(LENGTH, SortField.Type.LONG, true));
+        }
+    };
+
+    /**
+     * Name of the doc values field of the length prior: the number of characters of the body
+     */
+    public static final String LENGTH = "length";
+
+    /**
+     * Add to a document the doc values of the order
+     * @param doc the Lucene document
+     * @param pd the parsed document
+     */
+    public void addPriors(Document doc, ParsedDocument pd) {
+        addPriors(doc, pd.getDomain(), pd.getBody().length());
+    }
+
+    /**
+     * Add to a document the doc values of the order
+     * @param doc the Lucene document
+     * @param domain the domain of the document
+     * @param length the number of characters of the body of the document
+     */
+    public void addPriors(Document doc, String domain, long length) {
+    }
+
+    /**
+     * Returns the sort of the index
+     * @return the {@link Sort}, {@code null} for the order of arrival
+     */
+    public Sort getSort() {
+        return null;
+    }
+
+    /**
+     * Set the index sort of a writer
+     * @param iwc the configuration of the writer
+     */
+    public void configure(IndexWriterConfig iwc) {
+        final var sort = getSort();
+        if (sort != null) {
+            iwc.setIndexSort(sort);
+        }
+    }
+}
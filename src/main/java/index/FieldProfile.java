@@ -0,0 +1,50 @@
+package index;
+
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.IndexOptions;
+
+/**
+ * Enum that define what is kept in the index for the text fields ({@link TitleField} and {@link BodyField}).
+ * Profiles are ordered from the smallest to the largest, each one supporting the queries of the previous ones.
+ */
+public enum FieldProfile {
+    /**
+     * Only document ids and term frequencies, not stored: enough for term and boolean queries
+     */
+    MINIMAL(IndexOptions.DOCS_AND_FREQS, false),
+    /**
+     * Document ids, term frequencies and positions, not stored: needed by phrase queries
+     */
+    PHRASE(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS, false),
+    /**
+     * Positions and offsets, with the stored text: needed for snippets and highlighting
+     */
+    FULL(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS, true);
+
+    private final FieldType fieldType;
+
+    FieldProfile(IndexOptions indexOptions, boolean stored) {
+        fieldType = new FieldType();
+        fieldType.setIndexOptions(indexOptions);
+        fieldType.setTokenized(true);
+        fieldType.setStored(stored);
+        fieldType.freeze();
+    }
+
+    /**
+     * Returns the type of the text fields indexed with this profile
+     * @return a frozen {@link FieldType}
+     */
+    public FieldType fieldType() {
+        return fieldType;
+    }
+
+    /**
+     * Returns the smallest profile supporting the queries of both profiles
+     * @param other the other profile
+     * @return the largest between this profile and @other
+     */
+    public FieldProfile union(FieldProfile other) {
+        return compareTo(other) >= 0 ? this : other;
+    }
+}
@@ -0,0 +1,173 @@
+package index;
+
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FileSwitchDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.MMapDirectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Enum that define where an index is stored, used in place of {@link FSDirectory#open(Path)} by the indexer and the
+ * searchers of a run: the index is still identified by its path, which for {@link #MEMORY} is only a name.
+ */
+public enum IndexStorage {
+    /**
+     * On disk, with the best {@link FSDirectory} of the platform
+     */
+    FS {
+        @Override
+        protected Directory openExisting(Path indexDir) throws IOException {
+            return FSDirectory.open(indexDir);
+        }
+    },
+    /**
+     * On disk, searched through memory-mapped files loaded in the page cache when opened, so that the first queries
+     * do not wait for the disk; written as {@link #FS}
+     */
+    MMAP {
+        @Override
+        protected Directory openExisting(Path indexDir) throws IOException {
+            final var directory = new MMapDirectory(indexDir);
+            directory.setPreload(true);
+            return directory;
+        }
+    },
+    /**
+     * On disk, memory-mapped like {@link #MMAP}, but loading in the page cache only the files read by every query:
+     * terms index and dictionary, norms, doc values, postings lists with their frequencies and the compound files of
+     * the small segments (see {@link #HOT_EXTENSIONS}). Positions, stored fields and term vectors are mapped lazily:
+     * they are touched by the {@code warmUpQueries} of the run instead, as are the pages of the fields queried.
+     * Written as {@link #FS}.
+     */
+    MMAP_HOT {
+        @Override
+        protected Directory openExisting(Path indexDir) throws IOException {
+            final var hot = new MMapDirectory(indexDir);
+            hot.setPreload(true);
+            // both directories read the same files, each one opening the extensions it is given
+            return new FileSwitchDirectory(HOT_EXTENSIONS, hot, new MMapDirectory(indexDir), true);
+        }
+    },
+    /**
+     * In the heap of this process, for small collections and experiments: the searchers of the run open the
+     * {@link ByteBuffersDirectory} written by the indexer, and nothing touches the disk. The index is lost at exit,
+     * or when {@link #release(Path)} is called.
+     */
+    MEMORY {
+        @Override
+        public Directory create(Path indexDir) {
+            final var directory = new ByteBuffersDirectory();
+            final var previous = MEMORY_INDEXES.put(key(indexDir), directory);
+            if (previous != null) {
+                closeQuietly(previous);
+            }
+            return new SharedDirectory(directory);
+        }
+
+        @Override
+        protected Directory openExisting(Path indexDir) throws IOException {
+            final var directory = MEMORY_INDEXES.get(key(indexDir));
+            if (directory == null) {
+                throw new NoSuchFileException(indexDir.toString(), null, "no in-memory index in this process");
+            }
+            return new SharedDirectory(directory);
+        }
+
+        @Override
+        public boolean isOnDisk() {
+            return false;
+        }
+    };
+
+    /**
+     * The extensions of the files preloaded by {@link #MMAP_HOT}: terms index, metadata and dictionary (tip, tmd,
+     * tim), norms (nvd, nvm), doc values (dvd, dvm), postings and frequencies (doc) and compound files (cfs)
+     */
+    private static final Set<String> HOT_EXTENSIONS = Set.of("tip", "tmd", "tim", "nvd", "nvm", "dvd", "dvm", "doc",
+            "cfs");
+
+    /**
+     * The in-memory indexes of this process, by normalized absolute path
+     */
+    private static final Map<Path, ByteBuffersDirectory> MEMORY_INDEXES = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the directory where a new index is written
+     * @param indexDir the path of the index, created on disk if needed
+     * @return the {@link Directory} of the writer
+     * @throws IOException if the directory cannot be created
+     */
+    public Directory create(Path indexDir) throws IOException {
+        Files.createDirectories(indexDir);
+        return FSDirectory.open(indexDir);
+    }
+
+    /**
+     * Returns the directory of an existing index, to be searched
+     * @param indexDir the path of the index
+     * @return the {@link Directory} of the readers
+     * @throws IOException if the index does not exist or cannot be opened
+     */
+    public Directory open(Path indexDir) throws IOException {
+        if (isOnDisk() && !Files.isDirectory(indexDir)) {
+            throw new NoSuchFileException(indexDir.toString(), null, "not a directory");
+        }
+        return openExisting(indexDir);
+    }
+
+    protected abstract Directory openExisting(Path indexDir) throws IOException;
+
+    /**
+     * Returns whether the index is in a directory of the file system
+     * @return {@code true} if on disk
+     */
+    public boolean isOnDisk() {
+        return true;
+    }
+
+    /**
+     * Free the memory of an in-memory index; nothing for the indexes on disk
+     * @param indexDir the path of the index
+     */
+    public static void release(Path indexDir) {
+        final var directory = MEMORY_INDEXES.remove(key(indexDir));
+        if (directory != null) {
+            closeQuietly(directory);
+        }
+    }
+
+    private static Path key(Path indexDir) {
+        return indexDir.toAbsolutePath().normalize();
+    }
+
+    private static void closeQuietly(Directory directory) {
+        try {
+            directory.close();
+        } catch (IOException e) {
+            // nothing to release on disk
+        }
+    }
+
+    /**
+     * View of an in-memory index that outlives the writers and readers closing it
+     */
+    private static final class SharedDirectory extends FilterDirectory {
+        private SharedDirectory(Directory in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // released by IndexStorage.release
+        }
+    }
+}
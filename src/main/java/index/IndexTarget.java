@@ -0,0 +1,36 @@
+package index;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.similarities.Similarity;
+
+/**
+ * One of the indexes built by {@link MultiDirectoryIndexer}
+ * @param name the name of the index, used in the messages
+ * @param analyzer the analyzer of the title and body fields
+ * @param similarity the similarity used at indexing time
+ * @param indexPath the directory where to store the index
+ * @param options the optional settings of the index
+ */
+public record IndexTarget(String name, Analyzer analyzer, Similarity similarity, String indexPath,
+                          IndexingOptions options) {
+    public IndexTarget {
+        if (name == null) {
+            throw new NullPointerException("Name cannot be null.");
+        }
+        if (analyzer == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+        if (indexPath == null) {
+            throw new NullPointerException("Index path cannot be null.");
+        }
+        if (indexPath.isEmpty()) {
+            throw new IllegalArgumentException("Index path cannot be empty.");
+        }
+        if (options == null) {
+            throw new NullPointerException("Indexing options cannot be null.");
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package index;
+
+import utils.ExecutionMode;
+
+import java.util.List;
+
+/**
+ * Optional settings of {@link DirectoryIndexerMT}, on top of the ones required by its constructor.
+ * The defaults reproduce the plain index with only the id, title, body and domain fields.
+ */
+public class IndexingOptions {
+    /**
+     * Number of tokens of the shingles indexed in {@link ShingleField}s, 0 for not indexing shingles
+     */
+    private int shingleSize = 0;
+
+    /**
+     * What is kept in the index for the title and body fields
+     */
+    private FieldProfile fieldProfile = FieldProfile.FULL;
+
+    /**
+     * The variants of the title and body fields, empty for the plain fields
+     */
+    private List<String> fieldVariants = List.of();
+
+    /**
+     * How segments are flushed and merged while indexing
+     */
+    private SegmentProfile segmentProfile = SegmentProfile.DEFAULT;
+
+    /**
+     * Number of segments to force merge the index to after indexing, 0 for leaving the segments as they are
+     */
+    private int forceMergeSegments = 0;
+
+    /**
+     * Max megabytes of documents parsed and not yet indexed, 0 for sizing it to the heap
+     */
+    private int inFlightMB = 0;
+
+    /**
+     * The threads parsing and indexing the documents
+     */
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+    /**
+     * Max megabytes of the cache of the analysis of the titles, 0 for analyzing every title
+     */
+    private int titleCacheMB = 0;
+
+    /**
+     * Number of private writers building the index in parallel, 0 for a single writer shared by all the threads
+     */
+    private int shards = 0;
+
+    /**
+     * Parent directories of the shards, assigned round-robin; empty for a sibling of the index directory
+     */
+    private List<String> shardPaths = List.of();
+
+    /**
+     * Whether the shards are kept after being added to the index
+     */
+    private boolean keepShards = false;
+
+    /**
+     * Where the index and its shards are written
+     */
+    private IndexStorage storage = IndexStorage.FS;
+
+    /**
+     * Order of the documents in the segments
+     */
+    private DocumentOrder documentOrder = DocumentOrder.ARRIVAL;
+
+    /**
+     * What happens to the near-duplicate documents
+     */
+    private NearDuplicates nearDuplicates = NearDuplicates.KEEP;
+
+    /**
+     * Minimum estimated similarity of two near duplicates
+     */
+    private double nearDuplicateThreshold = 0.9;
+
+    /**
+     * Index the body and the title also as shingles of {@code size} tokens
+     * @param size number of tokens of each shingle (at least 2), 0 for disabling shingles
+     * @return this object
+     */
+    public IndexingOptions setShingleSize(final int size) {
+        if (size != 0 && size < 2) {
+            throw new IllegalArgumentException("Shingle size must be 0 (disabled) or at least 2.");
+        }
+        this.shingleSize = size;
+        return this;
+    }
+
+    public int getShingleSize() {
+        return shingleSize;
+    }
+
+    /**
+     * Set what is kept in the index for the title and body fields
+     * @param profile the {@link FieldProfile} needed by the queries of the run
+     * @return this object
+     */
+    public IndexingOptions setFieldProfile(final FieldProfile profile) {
+        if (profile == null) {
+            throw new NullPointerException("Field profile cannot be null.");
+        }
+        this.fieldProfile = profile;
+        return this;
+    }
+
+    public FieldProfile getFieldProfile() {
+        return fieldProfile;
+    }
+
+    /**
+     * Index the title and the body once for each variant of a {@link MultiAnalyzerSchema} instead of in the plain
+     * fields; the analyzer of the index must be the {@link MultiAnalyzerSchema#indexAnalyzer()} of the schema
+     * @param variants the variants of the schema, empty for the plain fields
+     * @return this object
+     */
+    public IndexingOptions setFieldVariants(final List<String> variants) {
+        if (variants == null) {
+            throw new NullPointerException("Field variants cannot be null.");
+        }
+        this.fieldVariants = List.copyOf(variants);
+        return this;
+    }
+
+    public List<String> getFieldVariants() {
+        return fieldVariants;
+    }
+
+    /**
+     * Set how segments are flushed and merged while indexing
+     * @param profile the {@link SegmentProfile} of the writer
+     * @return this object
+     */
+    public IndexingOptions setSegmentProfile(final SegmentProfile profile) {
+        if (profile == null) {
+            throw new NullPointerException("Segment profile cannot be null.");
+        }
+        this.segmentProfile = profile;
+        return this;
+    }
+
+    public SegmentProfile getSegmentProfile() {
+        return segmentProfile;
+    }
+
+    /**
+     * Force merge the index after indexing, e.g. to as many segments as the threads searching it
+     * @param segments the max number of segments of the final index, 0 for not merging
+     * @return this object
+     */
+    public IndexingOptions setForceMergeSegments(final int segments) {
+        if (segments < 0) {
+            throw new IllegalArgumentException("Force merge segments cannot be less than zero.");
+        }
+        this.forceMergeSegments = segments;
+        return this;
+    }
+
+    public int getForceMergeSegments() {
+        return forceMergeSegments;
+    }
+
+    /**
+     * Set the memory ceiling of the documents parsed and waiting to be indexed, see {@link ByteBudget}
+     * @param megabytes the max megabytes in flight, 0 for an eighth of the max heap (between 8 and 1024 MB)
+     * @return this object
+     */
+    public IndexingOptions setInFlightMB(final int megabytes) {
+        if (megabytes < 0) {
+            throw new IllegalArgumentException("In-flight megabytes cannot be less than zero.");
+        }
+        this.inFlightMB = megabytes;
+        return this;
+    }
+
+    public int getInFlightMB() {
+        return inFlightMB;
+    }
+
+    /**
+     * Returns the memory ceiling of the documents in flight, resolving the heap-sized default
+     * @return the max bytes in flight
+     */
+    public long getInFlightBytes() {
+        if (inFlightMB > 0) {
+            return inFlightMB * 1024L * 1024L;
+        }
+        final long heapMB = Runtime.getRuntime().maxMemory() / (1024 * 1024);
+        return Math.max(8, Math.min(1024, heapMB / 8)) * 1024L * 1024L;
+    }
+
+    /**
+     * Set the threads parsing and indexing the documents: with {@link ExecutionMode#VIRTUAL} each file is parsed
+     * and each document indexed on its own virtual thread, at most {@code numThreads} files at a time and the
+     * documents bounded by the in-flight bytes
+     * @param mode the {@link ExecutionMode}
+     * @return this object
+     */
+    public IndexingOptions setExecutionMode(final ExecutionMode mode) {
+        if (mode == null) {
+            throw new NullPointerException("Execution mode cannot be null.");
+        }
+        this.executionMode = mode;
+        return this;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Analyze each distinct title once, replaying the cached tokens for the documents sharing it, see
+     * {@link TitleAnalysisCache}
+     * @param megabytes the max megabytes of the cache, least recently used titles evicted first; 0 for disabling it
+     * @return this object
+     */
+    public IndexingOptions setTitleCacheMB(final int megabytes) {
+        if (megabytes < 0) {
+            throw new IllegalArgumentException("Title cache megabytes cannot be less than zero.");
+        }
+        this.titleCacheMB = megabytes;
+        return this;
+    }
+
+    public int getTitleCacheMB() {
+        return titleCacheMB;
+    }
+
+    /**
+     * Build the index with private writers, each one on its own directory and its own threads, then add the shards
+     * to the index with {@link org.apache.lucene.index.IndexWriter#addIndexes}: flushes and merges of a shard do not
+     * contend with the other shards, and the documents are routed by identifier, so duplicates always meet in the
+     * same shard
+     * @param shards the number of shards, 0 for a single shared writer
+     * @return this object
+     */
+    public IndexingOptions setShards(final int shards) {
+        if (shards < 0) {
+            throw new IllegalArgumentException("Number of shards cannot be less than zero.");
+        }
+        this.shards = shards;
+        return this;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Set where the shards are written, e.g. on different disks or on a tmpfs
+     * @param paths the parent directories of the shards, assigned round-robin; empty for {@code <index>-shards}
+     * @return this object
+     */
+    public IndexingOptions setShardPaths(final List<String> paths) {
+        if (paths == null) {
+            throw new NullPointerException("Shard paths cannot be null.");
+        }
+        this.shardPaths = List.copyOf(paths);
+        return this;
+    }
+
+    public List<String> getShardPaths() {
+        return shardPaths;
+    }
+
+    /**
+     * Keep the shards after adding them to the index, e.g. for searching them separately
+     * @param keep {@code true} for keeping them, {@code false} for deleting them
+     * @return this object
+     */
+    public IndexingOptions setKeepShards(final boolean keep) {
+        this.keepShards = keep;
+        return this;
+    }
+
+    public boolean isKeepShards() {
+        return keepShards;
+    }
+
+    /**
+     * Set where the index and its shards are written, e.g. {@link IndexStorage#MEMORY} for searching a small index
+     * without writing it to disk
+     * @param storage the {@link IndexStorage} of the index
+     * @return this object
+     */
+    public IndexingOptions setStorage(final IndexStorage storage) {
+        if (storage == null) {
+            throw new NullPointerException("Index storage cannot be null.");
+        }
+        this.storage = storage;
+        return this;
+    }
+
+    public IndexStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Set the order of the documents in the segments, e.g. {@link DocumentOrder#DOMAIN_LENGTH} for an index sorted
+     * by domain and length prior
+     * @param order the {@link DocumentOrder} of the index
+     * @return this object
+     */
+    public IndexingOptions setDocumentOrder(final DocumentOrder order) {
+        if (order == null) {
+            throw new NullPointerException("Document order cannot be null.");
+        }
+        this.documentOrder = order;
+        return this;
+    }
+
+    public DocumentOrder getDocumentOrder() {
+        return documentOrder;
+    }
+
+    /**
+     * Set what happens to the near-duplicate documents, detected on their body by a {@link NearDuplicateDetector};
+     * only {@link DirectoryIndexerMT} detects them
+     * @param nearDuplicates the {@link NearDuplicates} policy
+     * @return this object
+     */
+    public IndexingOptions setNearDuplicates(final NearDuplicates nearDuplicates) {
+        if (nearDuplicates == null) {
+            throw new NullPointerException("Near-duplicate policy cannot be null.");
+        }
+        this.nearDuplicates = nearDuplicates;
+        return this;
+    }
+
+    public NearDuplicates getNearDuplicates() {
+        return nearDuplicates;
+    }
+
+    /**
+     * Set the minimum estimated Jaccard similarity of the word shingles of two near duplicates
+     * @param threshold the similarity, in (0, 1]
+     * @return this object
+     */
+    public IndexingOptions setNearDuplicateThreshold(final double threshold) {
+        if (threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException("Near-duplicate threshold must be in (0, 1].");
+        }
+        this.nearDuplicateThreshold = threshold;
+        return this;
+    }
+
+    public double getNearDuplicateThreshold() {
+        return nearDuplicateThreshold;
+    }
+}
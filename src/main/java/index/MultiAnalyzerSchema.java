@@ -0,0 +1,114 @@
+package index;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.PerFieldSimilarityWrapper;
+import org.apache.lucene.search.similarities.Similarity;
+import parse.ParsedDocument;
+
+import java.util.*;
+
+/**
+ * Schema of an index holding the title and body of the documents analyzed by several analyzers.
+ * <p>
+ * Each analyzer has a variant name and its own fields, e.g. {@code title_kstem} and {@code body_kstem} for the
+ * variant {@code kstem}, while the id and the domain are stored only once. The index is built by
+ * {@link DirectoryIndexerMT} with the {@link #indexAnalyzer()} and {@link #similarity()} of the schema and
+ * {@link IndexingOptions#setFieldVariants(List)}; searchers target a variant through {@link #nameFor(String, String)}.
+ */
+public class MultiAnalyzerSchema {
+    /**
+     * variant -> analyzer of its fields
+     */
+    private final Map<String, Analyzer> analyzers = new LinkedHashMap<>();
+
+    /**
+     * variant -> similarity of its fields
+     */
+    private final Map<String, Similarity> similarities = new LinkedHashMap<>();
+
+    /**
+     * Add a variant to the schema
+     * @param variant the name of the variant, made of lower case letters and digits
+     * @param analyzer the analyzer of the title and body of the variant
+     * @param similarity the similarity of the title and body of the variant
+     * @return this object
+     * @throws IllegalArgumentException if the variant name is not valid or already in the schema
+     */
+    public MultiAnalyzerSchema addVariant(final String variant, final Analyzer analyzer,
+                                          final Similarity similarity) {
+        if (variant == null) {
+            throw new NullPointerException("Variant cannot be null.");
+        }
+        if (!variant.matches("[a-z0-9]+")) {
+            throw new IllegalArgumentException("Invalid variant name %s.".formatted(variant));
+        }
+        if (analyzer == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+        if (analyzers.containsKey(variant)) {
+            throw new IllegalArgumentException("Variant %s already in the schema.".formatted(variant));
+        }
+        analyzers.put(variant, analyzer);
+        similarities.put(variant, similarity);
+        return this;
+    }
+
+    /**
+     * Returns the variants of the schema
+     * @return the variant names, in the order they have been added
+     */
+    public List<String> variants() {
+        return List.copyOf(analyzers.keySet());
+    }
+
+    /**
+     * Returns the name of the field of a variant
+     * @param fieldName the base field, {@link ParsedDocument.FIELDS#TITLE} or {@link ParsedDocument.FIELDS#BODY}
+     * @param variant the variant, {@code null} for the field of an index with a single analyzer
+     * @return the name of the field
+     */
+    public static String nameFor(final String fieldName, final String variant) {
+        return variant == null ? fieldName : fieldName + "_" + variant;
+    }
+
+    /**
+     * Returns the analyzer for indexing the documents, dispatching each field to the analyzer of its variant
+     * @return a new {@link PerFieldAnalyzerWrapper}
+     */
+    public Analyzer indexAnalyzer() {
+        if (analyzers.isEmpty()) {
+            throw new IllegalStateException("The schema has no variants.");
+        }
+        final Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        analyzers.forEach((variant, analyzer) -> {
+            fieldAnalyzers.put(nameFor(ParsedDocument.FIELDS.TITLE, variant), analyzer);
+            fieldAnalyzers.put(nameFor(ParsedDocument.FIELDS.BODY, variant), analyzer);
+        });
+        // only the variant fields are tokenized
+        return new PerFieldAnalyzerWrapper(analyzers.values().iterator().next(), fieldAnalyzers);
+    }
+
+    /**
+     * Returns the similarity of the index, dispatching each field to the similarity of its variant
+     * @return a new {@link PerFieldSimilarityWrapper}
+     */
+    public Similarity similarity() {
+        final Map<String, Similarity> fieldSimilarities = new HashMap<>();
+        similarities.forEach((variant, similarity) -> {
+            fieldSimilarities.put(nameFor(ParsedDocument.FIELDS.TITLE, variant), similarity);
+            fieldSimilarities.put(nameFor(ParsedDocument.FIELDS.BODY, variant), similarity);
+        });
+        final Similarity defaultSimilarity = new BM25Similarity();
+        return new PerFieldSimilarityWrapper() {
+            @Override
+            public Similarity get(String name) {
+                return fieldSimilarities.getOrDefault(name, defaultSimilarity);
+            }
+        };
+    }
+}
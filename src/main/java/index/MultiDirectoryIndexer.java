@@ -0,0 +1,321 @@
+package index;
+
+import metrics.IndexWriterMetrics;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import parse.DocumentParser;
+import parse.ParsedDocument;
+import utils.TaskScope;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Indexes documents processing a whole directory tree once, building several indexes at the same time.
+ * <p>
+ * Every document is read, parsed and deduplicated only once, then handed to each {@link IndexTarget}, which has its
+ * own {@link IndexWriter}, analyzer, similarity and pool of threads. The documents in flight are bounded by a
+ * {@link ByteBudget}: each one holds its estimated size until the last target has indexed it, in whatever order the
+ * targets complete, so the scan proceeds at the pace of the slowest analyzer without buffering the corpus.
+ */
+public class MultiDirectoryIndexer implements Indexer {
+    /**
+     * One megabyte
+     */
+    private static final int MBYTE = 1024 * 1024;
+
+    /**
+     * An index being built
+     */
+    private static final class Writer {
+        private final IndexTarget target;
+        private final IndexWriter writer;
+        private final TitleAnalysisCache titleCache;
+        private long nanos;
+
+        private Writer(final IndexTarget target, final IndexWriter writer, final TitleAnalysisCache titleCache) {
+            this.target = target;
+            this.writer = writer;
+            this.titleCache = titleCache;
+        }
+    }
+
+    /**
+     * The indexes being built
+     */
+    private final List<Writer> writers = new ArrayList<>();
+
+    /**
+     * The class of the {@code DocumentParser} to be used.
+     */
+    private final Class<? extends DocumentParser> dpCls;
+
+    /**
+     * The directory (and sub-directories) where documents are stored.
+     */
+    private final Path docsDir;
+
+    /**
+     * The extension of the files to be indexed.
+     */
+    private final String extension;
+
+    /**
+     * The charset used for encoding documents.
+     */
+    private final Charset cs;
+
+    /**
+     * The total number of documents expected to be indexed.
+     */
+    private final long expectedDocs;
+
+    /**
+     * Number of threads of each index
+     */
+    private final int numThreads;
+
+    /**
+     * Memory ceiling of the documents parsed and not yet indexed by all the targets
+     */
+    private final ByteBudget budget;
+
+    /**
+     * Creates a new indexer.
+     *
+     * @param targets            the indexes to build.
+     * @param ramBufferSizeMB    the size in megabytes of the RAM buffer shared by all the indexes.
+     * @param docsPath           the directory from which documents have to be read.
+     * @param extension          the extension of the files to be indexed.
+     * @param charsetName        the name of the charset used for encoding documents.
+     * @param expectedDocs       the total number of documents expected to be indexed
+     * @param dpCls              the class of the {@code DocumentParser} to be used.
+     * @param numThreads         number of threads of each index
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     */
+    public MultiDirectoryIndexer(final List<IndexTarget> targets, final int ramBufferSizeMB, final String docsPath,
+                                 final String extension, final String charsetName, final long expectedDocs,
+                                 final Class<? extends DocumentParser> dpCls, final int numThreads) {
+        if (targets == null) {
+            throw new NullPointerException("Index targets cannot be null.");
+        }
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("Index targets cannot be empty.");
+        }
+        if (ramBufferSizeMB <= 0) {
+            throw new IllegalArgumentException("RAM buffer size cannot be less than or equal to zero.");
+        }
+        if (dpCls == null) {
+            throw new NullPointerException("Document parser class cannot be null.");
+        }
+        this.dpCls = dpCls;
+
+        if (docsPath == null) {
+            throw new NullPointerException("Documents path cannot be null.");
+        }
+        if (docsPath.isEmpty()) {
+            throw new IllegalArgumentException("Documents path cannot be empty.");
+        }
+        docsDir = Paths.get(docsPath);
+        if (!Files.isReadable(docsDir) || !Files.isDirectory(docsDir)) {
+            throw new IllegalArgumentException(
+                    String.format("%s expected to be a readable directory of documents.", docsDir.toAbsolutePath()));
+        }
+
+        if (extension == null) {
+            throw new NullPointerException("File extension cannot be null.");
+        }
+        if (extension.isEmpty()) {
+            throw new IllegalArgumentException("File extension cannot be empty.");
+        }
+        this.extension = extension;
+
+        if (charsetName == null) {
+            throw new NullPointerException("Charset name cannot be null.");
+        }
+        try {
+            cs = Charset.forName(charsetName);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(
+                    String.format("Unable to create the charset %s: %s.", charsetName, e.getMessage()), e);
+        }
+
+        if (expectedDocs <= 0) {
+            throw new IllegalArgumentException(
+                    "The expected number of documents to be indexed cannot be less than or equal to zero.");
+        }
+        this.expectedDocs = expectedDocs;
+
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads cannot be less than 1.");
+        }
+        this.numThreads = numThreads;
+        // every document is held by all the targets, so the smallest ceiling applies to all of them
+        budget = new ByteBudget(targets.stream().mapToLong(target -> target.options().getInFlightBytes()).min()
+                .getAsLong());
+
+        final Set<String> indexPaths = new HashSet<>();
+        // the writers fill their RAM buffers at the same time, so they share the budget like the shards of an index
+        final int writerRamBufferSizeMB = Math.max(1, ramBufferSizeMB / targets.size());
+        for (final var target : targets) {
+            if (!indexPaths.add(target.indexPath())) {
+                throw new IllegalArgumentException("Index directory %s used by more than one target."
+                        .formatted(target.indexPath()));
+            }
+            final var titleCache = TitleAnalysisCache.create(target.analyzer(), target.options());
+            final var iwc = new IndexWriterConfig(
+                    DirectoryIndexerMT.createIndexAnalyzer(target.analyzer(), target.options(), titleCache));
+            iwc.setSimilarity(target.similarity());
+            iwc.setRAMBufferSizeMB(writerRamBufferSizeMB);
+            iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+            iwc.setCommitOnClose(true);
+            target.options().getSegmentProfile().configure(iwc, IndexWriterMetrics.install(iwc));
+            target.options().getDocumentOrder().configure(iwc);
+
+            final Path indexDir = Paths.get(target.indexPath());
+            try {
+                final var writer = new IndexWriter(target.options().getStorage().create(indexDir), iwc);
+                DirectoryIndexerMT.setCommitData(writer, target.options());
+                writers.add(new Writer(target, writer, titleCache));
+            } catch (IOException e) {
+                throw new IllegalArgumentException(String.format("Unable to create the index writer in directory %s: %s.",
+                        indexDir.toAbsolutePath(), e.getMessage()), e);
+            }
+        }
+    }
+
+    /**
+     * Indexes the documents in all the targets.
+     *
+     * @throws IOException if something goes wrong while indexing.
+     */
+    public void index() throws IOException {
+        System.out.printf("%n#### Start indexing %d indexes in one pass ####%n", writers.size());
+
+        final long start = System.currentTimeMillis();
+        final Set<String> idSet = new HashSet<>();
+        final long[] counts = new long[3]; // files, bytes, documents
+        long parseNanos = 0;
+        boolean completed = false;
+
+        final List<TaskScope> scopes = new ArrayList<>(writers.size());
+        try {
+            for (final var w : writers) {
+                scopes.add(new TaskScope(w.target.options().getExecutionMode(), numThreads));
+            }
+
+            final List<Path> files = new ArrayList<>();
+            Files.walkFileTree(docsDir, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (file.getFileName().toString().endsWith(extension)) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+
+            for (final var file : files) {
+                if (scopes.stream().anyMatch(TaskScope::isFailed)) break;
+                counts[0]++;
+                counts[1] += Files.size(file);
+                final var dp = DocumentParser.open(dpCls, file, cs);
+                while (true) {
+                    final long parseStart = System.nanoTime();
+                    if (!dp.hasNext()) break;
+                    final ParsedDocument pd = dp.next();
+                    parseNanos += System.nanoTime() - parseStart;
+
+                    if (!idSet.add(pd.getIdentifier())) continue;
+
+                    // stop parsing as soon as an indexing task fails, join() reports the failure
+                    if (scopes.stream().anyMatch(TaskScope::isFailed)) break;
+
+                    final long bytes = budget.acquire(ByteBudget.estimate(pd.getIdentifier(), pd.getTitle(),
+                            pd.getBody(), pd.getDomain()));
+                    final var remaining = new AtomicInteger(writers.size());
+                    for (int i = 0; i < writers.size(); i++) {
+                        final var w = writers.get(i);
+                        scopes.get(i).fork(() -> {
+                            final long t = System.nanoTime();
+                            w.writer.addDocument(DirectoryIndexerMT.createDocument(pd, w.target.options()));
+                            synchronized (w) {
+                                w.nanos += System.nanoTime() - t;
+                            }
+                            return null;
+                        }).whenComplete((result, failure) -> {
+                            // also when the task is skipped after a failure, so that the scan is not left waiting
+                            if (remaining.decrementAndGet() == 0) {
+                                budget.release(bytes);
+                            }
+                        });
+                    }
+
+                    // print progress every 10000 indexed documents
+                    if (++counts[2] % 10000 == 0) {
+                        System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds.%n",
+                                counts[2], counts[0], counts[1] / MBYTE, (System.currentTimeMillis() - start) / 1000);
+                    }
+                }
+            }
+
+            for (final var scope : scopes) {
+                scope.join();
+            }
+            for (final var w : writers) {
+                w.writer.commit();
+                DirectoryIndexerMT.forceMerge(w.writer, w.target.options());
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            scopes.forEach(TaskScope::close);
+            for (final var w : writers) {
+                if (completed) {
+                    w.writer.close();
+                } else {
+                    // closing would commit a partial index, which could then be mistaken for a complete one
+                    w.writer.rollback();
+                }
+            }
+        }
+
+        if (counts[2] != expectedDocs) {
+            System.out.printf("Expected to index %d documents; %d indexed instead.%n", expectedDocs, counts[2]);
+        }
+        System.out.printf("%d document(s) (%d files, %d Mbytes) indexed in %d seconds, %d ms spent parsing.%n",
+                counts[2], counts[0], counts[1] / MBYTE, (System.currentTimeMillis() - start) / 1000,
+                parseNanos / 1_000_000);
+        System.out.printf("Documents waiting to be indexed limited to %d Mbytes.%n", budget.capacity() / MBYTE);
+        for (final var w : writers) {
+            long indexBytes = 0;
+            final var directory = w.writer.getDirectory();
+            final var files = directory.listAll();
+            for (final var file : files) {
+                indexBytes += directory.fileLength(file);
+            }
+            System.out.printf("  %-24s %6d Mbytes in %3d files and %3d segments, %8d ms of analysis and indexing%n",
+                    w.target.name(), indexBytes / MBYTE, files.length, DirectoryIndexerMT.segmentCount(directory),
+                    w.nanos / 1_000_000);
+            if (w.titleCache != null) {
+                System.out.print("  ");
+                w.titleCache.report();
+            }
+            directory.close();
+        }
+        System.out.printf("#### Indexing complete ####%n");
+    }
+
+}
@@ -0,0 +1,359 @@
+package index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Detector of the near-duplicate documents of an index.
+ * <p>
+ * Each text is reduced to the MinHash signature of its word shingles, whose bands are the keys of a
+ * locality-sensitive hash table: texts sharing a band are candidates, and a candidate whose signature agrees on at
+ * least {@code threshold} of the hashes (the estimated Jaccard similarity of the shingles) is a near duplicate.
+ * <p>
+ * The signatures are added by the indexing threads with {@link #add(String, String)}, then {@link #cluster()} visits
+ * the documents by increasing identifier: a document joins the most similar representative already seen, or becomes the
+ * representative of a new cluster. The clusters do not depend on the order the documents are parsed in, and the
+ * representative of a cluster is the document with the smallest identifier. The table only holds the
+ * representatives, in primitive arrays, so a cluster never drifts away from its representative.
+ */
+public class NearDuplicateDetector {
+    /**
+     * Name of the binary doc values field with the cluster of a document: the identifier of its representative. It is
+     * binary, not sorted, so that it can be updated once the documents are clustered.
+     */
+    public static final String CLUSTER = "cluster";
+
+    /**
+     * Name of the field of the near duplicates collapsed into their representative (see {@link NearDuplicates#COLLAPSE}),
+     * indexed with the identifier of the representative
+     */
+    public static final String DUPLICATE_OF = "duplicate_of";
+
+    /**
+     * Number of hashes of a signature
+     */
+    private static final int HASHES = 64;
+
+    /**
+     * Number of bands of a signature, each one of {@code HASHES / BANDS} hashes
+     */
+    private static final int BANDS = 16;
+
+    /**
+     * Number of words of a shingle
+     */
+    private static final int SHINGLE = 3;
+
+    /**
+     * The seeds of the hash functions
+     */
+    private final long[] seeds = new long[HASHES];
+
+    /**
+     * Minimum fraction of equal hashes of two near duplicates
+     */
+    private final double threshold;
+
+    /**
+     * The identifiers of the documents with a signature, in the order they have been added
+     */
+    private List<String> ids = new ArrayList<>();
+
+    /**
+     * The signatures of the documents, {@code HASHES} values for each identifier of {@link #ids}
+     */
+    private int[] signatures = new int[HASHES * 1024];
+
+    /**
+     * Number of documents without words, each one a cluster of its own
+     */
+    private long empty;
+
+    /**
+     * near duplicate -> representative, by increasing identifier of the near duplicates, {@code null} until
+     * {@link #cluster()}
+     */
+    private Map<String, String> representatives;
+
+    private long clusters;
+    private long duplicates;
+
+    /**
+     * Create a new detector
+     * @param threshold minimum estimated Jaccard similarity of the shingles of two near duplicates
+     * @throws IllegalArgumentException if the threshold is not in (0, 1]
+     */
+    public NearDuplicateDetector(final double threshold) {
+        if (threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException("Near-duplicate threshold must be in (0, 1].");
+        }
+        this.threshold = threshold;
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            seeds[i] = seed;
+        }
+    }
+
+    /**
+     * Add the signature of a document; called concurrently by the indexing threads, before {@link #cluster()}
+     * @param id the identifier of the document
+     * @param text the text compared
+     * @throws IllegalStateException if the documents have already been clustered
+     */
+    public void add(final String id, final String text) {
+        final int[] signature = signature(text);
+        synchronized (this) {
+            if (representatives != null) {
+                throw new IllegalStateException("Documents already clustered.");
+            }
+            if (signature == null) {
+                // too short to be compared, a cluster of its own
+                empty++;
+                return;
+            }
+            final int offset = ids.size() * HASHES;
+            if (offset == signatures.length) {
+                signatures = Arrays.copyOf(signatures, signatures.length * 2);
+            }
+            System.arraycopy(signature, 0, signatures, offset, HASHES);
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Group the documents added into clusters, by increasing identifier; the signatures are released
+     */
+    public synchronized void cluster() {
+        if (representatives != null) {
+            return;
+        }
+        final int n = ids.size();
+        final Integer[] order = new Integer[n];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> ids.get(a).compareTo(ids.get(b)));
+
+        representatives = new LinkedHashMap<>();
+        final var table = new BandTable();
+        final long[] keys = new long[BANDS];
+        // the position in signatures of each representative, in the order they are found
+        int[] found = new int[1024];
+        int count = 0;
+        String previous = null;
+        for (final int doc : order) {
+            final var id = ids.get(doc);
+            if (id.equals(previous)) {
+                // the same document parsed twice, indexed only once
+                continue;
+            }
+            previous = id;
+
+            final int offset = doc * HASHES;
+            bandKeys(offset, keys);
+            int best = -1;
+            double bestSimilarity = 0;
+            for (int band = 0; band < BANDS; band++) {
+                for (int entry = table.head(keys[band]); entry >= 0; entry = table.next(entry)) {
+                    final int candidate = found[entry / BANDS];
+                    final double similarity = similarity(offset, candidate);
+                    if (similarity >= threshold && similarity > bestSimilarity) {
+                        best = candidate;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+            if (best >= 0) {
+                representatives.put(id, ids.get(best / HASHES));
+                duplicates++;
+                continue;
+            }
+
+            if (count == found.length) {
+                found = Arrays.copyOf(found, found.length * 2);
+            }
+            for (int band = 0; band < BANDS; band++) {
+                table.add(keys[band], count * BANDS + band);
+            }
+            found[count++] = offset;
+        }
+        clusters = empty + count;
+        ids = null;
+        signatures = null;
+    }
+
+    /**
+     * Returns the representatives of the near duplicates; the other documents are the representatives of their own
+     * cluster
+     * @return near duplicate -> identifier of its representative, by increasing identifier of the near duplicates
+     * @throws IllegalStateException if the documents have not been clustered yet
+     */
+    public synchronized Map<String, String> getRepresentatives() {
+        if (representatives == null) {
+            throw new IllegalStateException("Documents not clustered yet.");
+        }
+        return Collections.unmodifiableMap(representatives);
+    }
+
+    /**
+     * Returns the number of clusters, that is of representatives
+     * @return the number of clusters, 0 before {@link #cluster()}
+     */
+    public synchronized long getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Returns the number of near duplicates, the documents that are not representatives
+     * @return the number of near duplicates, 0 before {@link #cluster()}
+     */
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Returns the MinHash signature of the word shingles of a text, lower-cased
+     * @return the signature, {@code null} if the text has no words
+     */
+    private int[] signature(final String text) {
+        final List<String> words = new ArrayList<>();
+        for (final var word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        if (words.isEmpty()) {
+            return null;
+        }
+
+        final int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        final int shingles = Math.max(1, words.size() - SHINGLE + 1);
+        for (int i = 0; i < shingles; i++) {
+            long shingle = 0;
+            for (int j = i; j < Math.min(i + SHINGLE, words.size()); j++) {
+                shingle = shingle * 31 + words.get(j).hashCode();
+            }
+            for (int h = 0; h < HASHES; h++) {
+                final int value = (int) (mix(shingle ^ seeds[h]) >>> 33);
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Computes the keys of the bands of a signature
+     */
+    private void bandKeys(final int offset, final long[] keys) {
+        final int rows = HASHES / BANDS;
+        for (int band = 0; band < BANDS; band++) {
+            long key = band;
+            for (int row = band * rows; row < (band + 1) * rows; row++) {
+                key = key * 0x100000001B3L + signatures[offset + row];
+            }
+            keys[band] = mix(key);
+        }
+    }
+
+    /**
+     * Returns the fraction of equal hashes of two signatures, given their positions in {@link #signatures}
+     */
+    private double similarity(final int a, final int b) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (signatures[a + i] == signatures[b + i]) {
+                equal++;
+            }
+        }
+        return (double) equal / HASHES;
+    }
+
+    /**
+     * The finalizer of SplitMix64
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Hash table of the bands of the representatives: band key -> entries, with open addressing on the keys and the
+     * entries of a key chained, all in primitive arrays. An entry is {@code representative * BANDS + band}.
+     */
+    private static final class BandTable {
+        private long[] keys = new long[1024];
+        private int[] heads = new int[keys.length];
+        private int[] next = new int[1024];
+        private int size;
+
+        private BandTable() {
+            Arrays.fill(heads, -1);
+        }
+
+        /**
+         * Returns the last entry added with a key, -1 if none
+         */
+        int head(final long key) {
+            for (int slot = (int) key & (keys.length - 1); heads[slot] >= 0; slot = (slot + 1) & (keys.length - 1)) {
+                if (keys[slot] == key) {
+                    return heads[slot];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the entry added before another one with the same key, -1 if none
+         */
+        int next(final int entry) {
+            return next[entry];
+        }
+
+        void add(final long key, final int entry) {
+            if (entry >= next.length) {
+                next = Arrays.copyOf(next, Math.max(next.length * 2, entry + 1));
+            }
+            int slot = (int) key & (keys.length - 1);
+            while (heads[slot] >= 0 && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if (heads[slot] < 0) {
+                keys[slot] = key;
+                next[entry] = -1;
+                size++;
+            } else {
+                next[entry] = heads[slot];
+            }
+            heads[slot] = entry;
+            if (size * 4L > keys.length * 3L) {
+                rehash();
+            }
+        }
+
+        private void rehash() {
+            final long[] oldKeys = keys;
+            final int[] oldHeads = heads;
+            keys = new long[oldKeys.length * 2];
+            heads = new int[keys.length];
+            Arrays.fill(heads, -1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldHeads[i] >= 0) {
+                    int slot = (int) oldKeys[i] & (keys.length - 1);
+                    while (heads[slot] >= 0) {
+                        slot = (slot + 1) & (keys.length - 1);
+                    }
+                    keys[slot] = oldKeys[i];
+                    heads[slot] = oldHeads[i];
+                }
+            }
+        }
+    }
+}
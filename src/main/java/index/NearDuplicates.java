@@ -0,0 +1,31 @@
+package index;
+
+/**
+ * Enum that define what happens to the near-duplicate documents of an index, detected by a
+ * {@link NearDuplicateDetector}
+ */
+public enum NearDuplicates {
+    /**
+     * No detection: only the documents with the same identifier are removed
+     */
+    KEEP,
+    /**
+     * Every document is indexed, with its cluster in the {@link NearDuplicateDetector#CLUSTER} doc values
+     */
+    MARK,
+    /**
+     * Only the representatives of the clusters are indexed in full, with their cluster as in {@link #MARK}; the near
+     * duplicates are kept as stubs with their identifier and the {@link NearDuplicateDetector#DUPLICATE_OF} field,
+     * which do not match any query and are put back in the run next to their representative by
+     * {@link search.TopKSearch}
+     */
+    COLLAPSE;
+
+    /**
+     * Returns whether the near duplicates are detected
+     * @return {@code false} for {@link #KEEP}
+     */
+    public boolean isDetected() {
+        return this != KEEP;
+    }
+}
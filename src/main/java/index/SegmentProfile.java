@@ -0,0 +1,57 @@
+package index;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+
+/**
+ * Enum that define how the {@link org.apache.lucene.index.IndexWriter} flushes and merges segments while indexing
+ */
+public enum SegmentProfile {
+    /**
+     * Lucene defaults: merges throttled and limited to a few threads, to leave room to concurrent searches
+     */
+    DEFAULT {
+        @Override
+        public void configure(IndexWriterConfig iwc, ConcurrentMergeScheduler scheduler) {
+        }
+    },
+    /**
+     * Bulk build of a write-once index, nobody searching it meanwhile: unthrottled merges on half of the cores,
+     * wider tiers for merging less during the build (a final force merge is expected to consolidate the segments)
+     * and no compound files
+     */
+    BULK {
+        @Override
+        public void configure(IndexWriterConfig iwc, ConcurrentMergeScheduler scheduler) {
+            final int mergeThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            scheduler.setMaxMergesAndThreads(mergeThreads + 5, mergeThreads);
+            scheduler.disableAutoIOThrottle();
+
+            final var mergePolicy = new TieredMergePolicy();
+            mergePolicy.setSegmentsPerTier(20);
+            mergePolicy.setMaxMergeAtOnce(20);
+            mergePolicy.setNoCFSRatio(0.0);
+            iwc.setMergePolicy(mergePolicy);
+            iwc.setUseCompoundFile(false);
+        }
+    };
+
+    /**
+     * Configure the flushes and merges of a writer
+     * @param iwc the configuration of the writer
+     * @param scheduler the merge scheduler of the writer
+     */
+    public abstract void configure(IndexWriterConfig iwc, ConcurrentMergeScheduler scheduler);
+
+    /**
+     * Returns a RAM buffer sized to the heap: a quarter of the max heap, between 16 and 2048 MB.
+     * Larger buffers flush fewer and larger segments, so there is less to merge.
+     * @param writers the number of writers sharing the heap
+     * @return the size in megabytes of the RAM buffer of each writer
+     */
+    public static int heapSizedRamBufferMB(final int writers) {
+        final long heapMB = Runtime.getRuntime().maxMemory() / (1024 * 1024);
+        return (int) Math.max(16, Math.min(2048, heapMB / 4 / Math.max(1, writers)));
+    }
+}
@@ -0,0 +1,85 @@
+package index;
+
+import analyzers.ShingleAnalyzer;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import parse.ParsedDocument;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents a {@link Field} containing the shingles of another field, analyzed with a {@link ShingleAnalyzer}.
+ * <p>
+ * It is a tokenized field, not stored, keeping only document ids and term frequencies (see {@link
+ * IndexOptions#DOCS_AND_FREQS}): a phrase of consecutive tokens becomes a single term, so it can be matched without
+ * positions.
+ */
+public class ShingleField extends Field {
+
+    /**
+     * Key of the field attribute (and of the commit user data) storing the size of the indexed shingles
+     */
+    public static final String SHINGLE_SIZE_KEY = "shingleSize";
+
+    /**
+     * The types of the shingles fields, by size of the shingles
+     */
+    private static final Map<Integer, FieldType> SHINGLE_TYPES = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new field for the shingles of a field.
+     *
+     * @param fieldName the name of the field containing the text, see {@link #nameFor(String)}.
+     * @param value     the text of the field.
+     * @param size      the number of tokens of each shingle, recorded in the field infos of the index.
+     */
+    public ShingleField(final String fieldName, final String value, final int size) {
+        super(nameFor(fieldName), value, SHINGLE_TYPES.computeIfAbsent(size, ShingleField::createType));
+    }
+
+    private static FieldType createType(final int size) {
+        final var type = new FieldType();
+        type.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+        type.setTokenized(true);
+        type.setStored(false);
+        type.putAttribute(SHINGLE_SIZE_KEY, Integer.toString(size));
+        type.freeze();
+        return type;
+    }
+
+    /**
+     * Returns the name of the field containing the shingles of another field
+     *
+     * @param fieldName name of the field containing the text
+     * @return the name of the shingles field
+     */
+    public static String nameFor(final String fieldName) {
+        return fieldName + ParsedDocument.FIELDS.SHINGLES_SUFFIX;
+    }
+
+    /**
+     * Returns the size of the shingles indexed for a field, read from the attributes of the shingles field so that
+     * any reader of the index works, wrapped or not; the commit user data is the fallback for the indexes whose
+     * fields have no size attribute
+     *
+     * @param reader    the reader of the index
+     * @param fieldName name of the field containing the text
+     * @return the number of tokens of each shingle, 0 if the index has no shingles for the field
+     * @throws IOException if the commit of the index cannot be read
+     */
+    public static int indexedSize(final IndexReader reader, final String fieldName) throws IOException {
+        final var info = FieldInfos.getMergedFieldInfos(reader).fieldInfo(nameFor(fieldName));
+        if (info == null) return 0;
+        var size = info.getAttribute(SHINGLE_SIZE_KEY);
+        if (size == null && reader instanceof DirectoryReader directoryReader) {
+            size = directoryReader.getIndexCommit().getUserData().get(SHINGLE_SIZE_KEY);
+        }
+        return size == null ? 0 : Integer.parseInt(size);
+    }
+}
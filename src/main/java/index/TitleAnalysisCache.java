@@ -0,0 +1,300 @@
+package index;
+
+import metrics.Histogram;
+import metrics.Metrics;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import parse.ParsedDocument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the analysis of the titles of the documents, shared by the indexing threads.
+ * <p>
+ * In args.me the title of a document is the title of its discussion, so the same title is indexed once for each
+ * argument of the discussion. The {@link #analyzer()} of the cache replays the indexed attributes (terms, position
+ * increments and offsets) of the titles already analyzed and runs the real analyzer only on the new ones, which for
+ * {@link analyzers.OpenNlpAnalyzer} saves the sentence detection and tagging of thousands of identical strings.
+ * <p>
+ * The cache is bounded in bytes and split in stripes, each one a synchronized LRU map, so that the threads seldom
+ * contend for the same lock. Hits, misses, evictions and the analysis time saved are reported by {@link #report()}.
+ */
+public class TitleAnalysisCache {
+    /**
+     * Number of independently locked stripes
+     */
+    private static final int STRIPES = 16;
+
+    /**
+     * Estimated fixed cost of a cached entry and of each of its tokens, on top of their characters
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int TOKEN_OVERHEAD = 64;
+
+    /**
+     * An analyzed token, with the attributes consumed by the indexing chain
+     */
+    private record Token(String term, int positionIncrement, int startOffset, int endOffset) {
+    }
+
+    /**
+     * The analysis of a title
+     * @param tokens the tokens
+     * @param finalPositionIncrement the position increment after the last token, set by {@link TokenStream#end()}
+     * @param finalOffset the offset after the last token, set by {@link TokenStream#end()}
+     * @param bytes the estimated size of the entry
+     */
+    private record Analysis(List<Token> tokens, int finalPositionIncrement, int finalOffset, long bytes) {
+    }
+
+    /**
+     * A stripe of the cache: an LRU map, only accessed while holding the lock of the stripe
+     */
+    private final class Stripe {
+        private final LinkedHashMap<String, Analysis> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes;
+
+        private synchronized Analysis lookup(final String key) {
+            return entries.get(key);
+        }
+
+        private synchronized void add(final String key, final Analysis analysis) {
+            final var previous = entries.put(key, analysis);
+            bytes += analysis.bytes() - (previous == null ? 0 : previous.bytes());
+            final var eldest = entries.values().iterator();
+            while (bytes > stripeBytes && eldest.hasNext()) {
+                final var entry = eldest.next();
+                if (entry == analysis) break;
+                bytes -= entry.bytes();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * The real analyzer
+     */
+    private final Analyzer delegate;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long stripeBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Time taken by the real analyzer for each title, the median being the time saved by each hit: the first titles
+     * analyzed by each thread also pay the creation of the analysis components
+     */
+    private final Histogram missNanos = new Histogram();
+
+    /**
+     * The analyzer replaying the cached tokens
+     */
+    private final Analyzer analyzer = new Analyzer(Analyzer.PER_FIELD_REUSE_STRATEGY) {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            return new TokenStreamComponents(new ReplayTokenizer(fieldName));
+        }
+
+        @Override
+        public int getPositionIncrementGap(String fieldName) {
+            return delegate.getPositionIncrementGap(fieldName);
+        }
+
+        @Override
+        public int getOffsetGap(String fieldName) {
+            return delegate.getOffsetGap(fieldName);
+        }
+    };
+
+    /**
+     * Creates a cache.
+     *
+     * @param delegate the analyzer of the titles.
+     * @param maxBytes the max estimated size of the cached entries.
+     * @throws NullPointerException     if the analyzer is {@code null}.
+     * @throws IllegalArgumentException if the size is less than or equal to zero.
+     */
+    public TitleAnalysisCache(final Analyzer delegate, final long maxBytes) {
+        if (delegate == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Title cache size cannot be less than or equal to zero.");
+        }
+        this.delegate = delegate;
+        this.stripeBytes = Math.max(1, maxBytes / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Creates the cache requested by the options of an index.
+     *
+     * @param analyzer the analyzer of the titles.
+     * @param options  the optional settings of the index.
+     * @return the cache, {@code null} if disabled.
+     */
+    static TitleAnalysisCache create(final Analyzer analyzer, final IndexingOptions options) {
+        return options.getTitleCacheMB() == 0 ? null
+                : new TitleAnalysisCache(analyzer, options.getTitleCacheMB() * 1024L * 1024L);
+    }
+
+    /**
+     * Returns the names of the title fields of an index, whose analysis is cached.
+     *
+     * @param options the optional settings of the index.
+     * @return the plain title field, or its variants.
+     */
+    static List<String> titleFields(final IndexingOptions options) {
+        if (options.getFieldVariants().isEmpty()) {
+            return List.of(ParsedDocument.FIELDS.TITLE);
+        }
+        return options.getFieldVariants().stream()
+                .map(variant -> MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.TITLE, variant)).toList();
+    }
+
+    /**
+     * Returns the analyzer replaying the cached analysis, to be used in place of the real one for the title fields
+     * @return the caching {@link Analyzer}
+     */
+    public Analyzer analyzer() {
+        return analyzer;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the time the real analyzer would have taken for the titles replayed from the cache, estimated as the
+     * median time of the analyzed titles
+     * @return the saved time in nanoseconds
+     */
+    public long getSavedNanos() {
+        return hits.get() * missNanos.snapshot().p50();
+    }
+
+    /**
+     * Print the statistics of the cache and add them to the {@code index.title_cache} counters of {@link Metrics}.
+     */
+    public void report() {
+        final long lookups = hits.get() + misses.get();
+        System.out.printf("Title analysis cache: %d hits, %d misses (%.1f%% hit rate), %d evicted, %.1f seconds of " +
+                        "analysis saved.%n", hits.get(), misses.get(), lookups == 0 ? 0 : 100.0 * hits.get() / lookups,
+                evictions.get(), getSavedNanos() / 1e9);
+        Metrics.counter("index.title_cache.hits").add(hits.get());
+        Metrics.counter("index.title_cache.misses").add(misses.get());
+        Metrics.counter("index.title_cache.evictions").add(evictions.get());
+        Metrics.counter("index.title_cache.saved_micros").add(getSavedNanos() / 1000);
+    }
+
+    /**
+     * Returns the analysis of a title, analyzing it with the real analyzer if it is not cached
+     */
+    private Analysis analysis(final String field, final String text) throws IOException {
+        final var key = field + '\u0000' + text;
+        final var stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        final var cached = stripe.lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        // two threads may analyze the same new title at the same time: both results are equal, the last one is kept
+        final long start = System.nanoTime();
+        final var tokens = new ArrayList<Token>();
+        long bytes = ENTRY_OVERHEAD + 2L * key.length();
+        final int finalPositionIncrement;
+        final int finalOffset;
+        try (final TokenStream stream = delegate.tokenStream(field, text)) {
+            final var termAtt = stream.addAttribute(CharTermAttribute.class);
+            final var posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+            final var offsetAtt = stream.addAttribute(OffsetAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens.add(new Token(termAtt.toString(), posIncAtt.getPositionIncrement(), offsetAtt.startOffset(),
+                        offsetAtt.endOffset()));
+                bytes += TOKEN_OVERHEAD + 2L * termAtt.length();
+            }
+            stream.end();
+            finalPositionIncrement = posIncAtt.getPositionIncrement();
+            finalOffset = offsetAtt.endOffset();
+        }
+        missNanos.record(System.nanoTime() - start);
+        final var analysis = new Analysis(List.copyOf(tokens), finalPositionIncrement, finalOffset, bytes);
+        stripe.add(key, analysis);
+        return analysis;
+    }
+
+    /**
+     * Tokenizer replaying the cached analysis of its whole input
+     */
+    private final class ReplayTokenizer extends Tokenizer {
+        private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+        private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+        private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+
+        private final String field;
+        private final StringBuilder text = new StringBuilder();
+        private final char[] buffer = new char[1024];
+        private Analysis analysis;
+        private int next;
+
+        private ReplayTokenizer(final String field) {
+            this.field = field;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            text.setLength(0);
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                text.append(buffer, 0, read);
+            }
+            analysis = analysis(field, text.toString());
+            next = 0;
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (next >= analysis.tokens().size()) {
+                return false;
+            }
+            clearAttributes();
+            final var token = analysis.tokens().get(next++);
+            termAtt.setEmpty().append(token.term());
+            posIncAtt.setPositionIncrement(token.positionIncrement());
+            offsetAtt.setOffset(token.startOffset(), token.endOffset());
+            return true;
+        }
+
+        @Override
+        public void end() throws IOException {
+            super.end();
+            posIncAtt.setPositionIncrement(analysis.finalPositionIncrement());
+            offsetAtt.setOffset(analysis.finalOffset(), analysis.finalOffset());
+        }
+    }
+}
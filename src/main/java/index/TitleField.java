@@ -17,7 +17,6 @@
 package index;
 
 import org.apache.lucene.document.Field;
-import org.apache.lucene.document.FieldType;
 import org.apache.lucene.index.IndexOptions;
 import parse.ParsedDocument;
 
@@ -26,8 +25,10 @@ import java.io.Reader;
 /**
  * Represents a {@link Field} for containing the body of a document.
  * <p>
- * It is a tokenized field, not stored, keeping only document ids and term frequencies (see {@link
- * IndexOptions#DOCS_AND_FREQS} in order to minimize the space occupation.
+ * It is a tokenized field whose index options and storage depend on the {@link FieldProfile}: the default constructors
+ * use {@link FieldProfile#FULL}, keeping positions, offsets and the stored text (see {@link
+ * IndexOptions#DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS}), while {@link FieldProfile#MINIMAL} keeps only document ids
+ * and term frequencies in order to minimize the space occupation.
  *
  * @author Nicola Ferro (ferro@dei.unipd.it)
  * @version 1.00
@@ -35,25 +36,13 @@ import java.io.Reader;
  */
 public class TitleField extends Field {
 
-    /**
-     * The type of the document body field
-     */
-    private static final FieldType TITLE_TYPE = new FieldType();
-
-    static {
-        TITLE_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
-        TITLE_TYPE.setTokenized(true);
-        TITLE_TYPE.setStored(true);
-    }
-
-
     /**
      * Create a new field for the body of a document.
      *
      * @param value the contents of the body of a document.
      */
     public TitleField(final Reader value) {
-        super(ParsedDocument.FIELDS.TITLE, value, TITLE_TYPE);
+        super(ParsedDocument.FIELDS.TITLE, value, FieldProfile.FULL.fieldType());
     }
 
     /**
@@ -62,7 +51,28 @@ public class TitleField extends Field {
      * @param value the contents of the body of a document.
      */
     public TitleField(final String value) {
-        super(ParsedDocument.FIELDS.TITLE, value, TITLE_TYPE);
+        super(ParsedDocument.FIELDS.TITLE, value, FieldProfile.FULL.fieldType());
+    }
+
+    /**
+     * Create a new field for the title of a document.
+     *
+     * @param value   the contents of the title of a document.
+     * @param profile the {@link FieldProfile} of the text fields of the index.
+     */
+    public TitleField(final String value, final FieldProfile profile) {
+        super(ParsedDocument.FIELDS.TITLE, value, profile.fieldType());
+    }
+
+    /**
+     * Create a new field for the title of a document analyzed by one of the analyzers of a {@link MultiAnalyzerSchema}.
+     *
+     * @param value   the contents of the title of a document.
+     * @param profile the {@link FieldProfile} of the text fields of the index.
+     * @param variant the variant of the field, see {@link MultiAnalyzerSchema#nameFor(String, String)}.
+     */
+    public TitleField(final String value, final FieldProfile profile, final String variant) {
+        super(MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.TITLE, variant), value, profile.fieldType());
     }
 
 }
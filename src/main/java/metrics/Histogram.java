@@ -0,0 +1,103 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values, e.g. latencies in nanoseconds or queue depths.
+ * <p>
+ * Values are counted in log-linear buckets (16 for each power of two), so the percentiles have a relative error
+ * below 1/16 while recording costs a few atomic increments and no allocation, whatever the number of samples.
+ */
+public class Histogram {
+    /**
+     * Number of sub-buckets for each power of two, as a power of two
+     */
+    private static final int SUB_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Record a value
+     * @param value the value, negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest value counted in a bucket
+     */
+    private static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        final int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        final long sub = bucket % SUB_BUCKETS;
+        final long lower = (1L << exponent) + (sub << (exponent - SUB_BITS));
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Snapshot of the recorded values
+     * @param count number of values
+     * @param sum sum of the values
+     * @param min smallest value
+     * @param max largest value
+     * @param p50 median
+     * @param p90 90th percentile
+     * @param p99 99th percentile
+     */
+    public record Snapshot(long count, long sum, long min, long max, long p50, long p90, long p99) {
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+    }
+
+    /**
+     * Returns the statistics of the values recorded so far, consistent only if no value is being recorded
+     * @return a new {@link Snapshot}, all zeros if nothing has been recorded
+     */
+    public Snapshot snapshot() {
+        final long n = count.sum();
+        if (n == 0) {
+            return new Snapshot(0, 0, 0, 0, 0, 0, 0);
+        }
+        final long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        final long lo = min.get(), hi = max.get();
+        return new Snapshot(n, sum.sum(), lo, hi, percentile(counts, n, 0.50, lo, hi),
+                percentile(counts, n, 0.90, lo, hi), percentile(counts, n, 0.99, lo, hi));
+    }
+
+    private static long percentile(final long[] counts, final long n, final double p, final long lo, final long hi) {
+        final long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(lo, Math.min(hi, upperBoundOf(i)));
+            }
+        }
+        return hi;
+    }
+}
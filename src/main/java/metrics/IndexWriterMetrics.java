@@ -0,0 +1,73 @@
+package metrics;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.util.InfoStream;
+
+import java.io.IOException;
+
+/**
+ * Hooks of the {@link org.apache.lucene.index.IndexWriter} recording the flushes and merges in {@link Metrics}:
+ * {@code index.flush} and {@code index.merge} timers, {@code index.merged_docs} counter.
+ */
+public class IndexWriterMetrics {
+    /**
+     * Install the hooks in a writer configuration, replacing its merge scheduler and info stream
+     * @param iwc the configuration of the writer
+     * @return the installed {@link ConcurrentMergeScheduler}, for tuning it
+     */
+    public static ConcurrentMergeScheduler install(final IndexWriterConfig iwc) {
+        final var scheduler = new TimedMergeScheduler();
+        iwc.setMergeScheduler(scheduler);
+        iwc.setInfoStream(new FlushInfoStream());
+        return scheduler;
+    }
+
+    /**
+     * Merge scheduler timing each merge
+     */
+    private static class TimedMergeScheduler extends ConcurrentMergeScheduler {
+        @Override
+        @SuppressWarnings("try")
+        protected void doMerge(MergeSource mergeSource, MergePolicy.OneMerge merge) throws IOException {
+            try (final var ignored = Metrics.timer("index.merge").start()) {
+                super.doMerge(mergeSource, merge);
+            }
+            final var mergedDocs = Metrics.counter("index.merged_docs");
+            merge.segments.forEach(segment -> mergedDocs.add(segment.info.maxDoc()));
+        }
+    }
+
+    /**
+     * Info stream listening only to the messages of the flushes of the writer threads, the only place where Lucene
+     * reports their duration
+     */
+    private static class FlushInfoStream extends InfoStream {
+        private static final String COMPONENT = "DWPT";
+        private static final String PREFIX = "flush time ";
+
+        @Override
+        public void message(String component, String message) {
+            if (message.startsWith(PREFIX)) {
+                try {
+                    final double millis = Double.parseDouble(message.substring(PREFIX.length(),
+                            message.indexOf(' ', PREFIX.length())));
+                    Metrics.timer("index.flush").record((long) (millis * 1e6));
+                } catch (RuntimeException e) {
+                    // unexpected format from another Lucene version: count the flush anyway
+                    Metrics.counter("index.flush_unparsed").increment();
+                }
+            }
+        }
+
+        @Override
+        public boolean isEnabled(String component) {
+            return COMPONENT.equals(component);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
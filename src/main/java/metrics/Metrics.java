@@ -0,0 +1,256 @@
+package metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of the pipeline metrics: counters, histograms, gauges, timers of the fine-grained stages
+ * (e.g. {@code index.add_document}, {@code search.query_parse}) and phases for the coarse ones (e.g. indexing the
+ * whole corpus), with the garbage collections happened meanwhile.
+ * <p>
+ * Metrics are created on first use and are always on. Recording a value in a counter, histogram or timer is lock-free
+ * and allocation-free; timing with {@link Timer#start()} allocates a small {@link Timer.Sample} and reads the clock
+ * and the allocated bytes of the thread, and {@link #phase(String)} a {@link Phase} reading the garbage collector
+ * beans when it starts and when it ends, so phases are meant for the coarse stages only. Names are dotted, prefixed by
+ * the component ({@code parse}, {@code index}, {@code search}).
+ */
+public final class Metrics {
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+    private static final Map<String, PhaseStats> phases = new ConcurrentHashMap<>();
+
+    private static final long startMillis = System.currentTimeMillis();
+
+    private Metrics() {
+    }
+
+    /**
+     * Statistics of a phase
+     * @param wallMillis elapsed time
+     * @param gcCount number of garbage collections
+     * @param gcMillis time spent in garbage collections, by all the collectors
+     */
+    public record PhaseStats(long wallMillis, long gcCount, long gcMillis) {
+    }
+
+    /**
+     * A running phase, recorded when closed
+     */
+    public static class Phase implements AutoCloseable {
+        private final String name;
+        private final long start = System.currentTimeMillis();
+        private final long[] startGc = gcTotals();
+
+        private Phase(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            final long[] gc = gcTotals();
+            phases.merge(name, new PhaseStats(System.currentTimeMillis() - start, gc[0] - startGc[0],
+                    gc[1] - startGc[1]), (a, b) -> new PhaseStats(a.wallMillis + b.wallMillis,
+                    a.gcCount + b.gcCount, a.gcMillis + b.gcMillis));
+        }
+    }
+
+    private static long[] gcTotals() {
+        final long[] totals = new long[2];
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    /**
+     * Returns a counter, created on first use
+     * @param name the name of the counter
+     * @return the {@link LongAdder} of the counter
+     */
+    public static LongAdder counter(final String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * Returns a histogram, created on first use
+     * @param name the name of the histogram
+     * @return the {@link Histogram}
+     */
+    public static Histogram histogram(final String name) {
+        return histograms.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    /**
+     * Returns the timer of a stage, created on first use
+     * @param name the name of the stage
+     * @return the {@link Timer}
+     */
+    public static Timer timer(final String name) {
+        return timers.computeIfAbsent(name, k -> new Timer());
+    }
+
+    /**
+     * Register a gauge, replacing the previous one with the same name
+     * @param name the name of the gauge
+     * @param value supplies the current value, called when reporting
+     */
+    public static void gauge(final String name, final Supplier<? extends Number> value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Start a phase, to be used with try-with-resources; phases with the same name are summed
+     * @param name the name of the phase
+     * @return the running {@link Phase}
+     */
+    public static Phase phase(final String name) {
+        return new Phase(name);
+    }
+
+    /**
+     * Returns all the metrics recorded so far as nested maps, the structure of the JSON report
+     * @param runId the identifier of the run, {@code null} if none
+     * @return the report
+     */
+    public static Map<String, Object> report(final String runId) {
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("runId", runId);
+        report.put("started", Instant.ofEpochMilli(startMillis).toString());
+        report.put("wallMillis", System.currentTimeMillis() - startMillis);
+
+        final Map<String, Object> phaseReport = new TreeMap<>(phases);
+        report.put("phases", phaseReport);
+
+        final Map<String, Object> timerReport = new TreeMap<>();
+        timers.forEach((name, timer) -> {
+            final var s = timer.snapshot();
+            final Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", s.count());
+            values.put("totalMillis", s.sum() / 1e6);
+            values.put("meanMicros", s.mean() / 1e3);
+            values.put("p50Micros", s.p50() / 1e3);
+            values.put("p90Micros", s.p90() / 1e3);
+            values.put("p99Micros", s.p99() / 1e3);
+            values.put("maxMicros", s.max() / 1e3);
+            values.put("allocatedMBytes", timer.getAllocatedBytes() / (1024.0 * 1024.0));
+            timerReport.put(name, values);
+        });
+        report.put("timers", timerReport);
+
+        final Map<String, Object> histogramReport = new TreeMap<>();
+        histograms.forEach((name, histogram) -> histogramReport.put(name, histogram.snapshot()));
+        report.put("histograms", histogramReport);
+
+        final Map<String, Object> counterReport = new TreeMap<>();
+        counters.forEach((name, counter) -> counterReport.put(name, counter.sum()));
+        report.put("counters", counterReport);
+
+        final Map<String, Object> gaugeReport = new TreeMap<>();
+        gauges.forEach((name, gauge) -> gaugeReport.put(name, gauge.get()));
+        final long[] gc = gcTotals();
+        final var runtime = Runtime.getRuntime();
+        gaugeReport.put("jvm.gc_count", gc[0]);
+        gaugeReport.put("jvm.gc_millis", gc[1]);
+        gaugeReport.put("jvm.heap_used_mbytes", (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+        gaugeReport.put("jvm.heap_max_mbytes", runtime.maxMemory() / (1024 * 1024));
+        report.put("gauges", gaugeReport);
+        return report;
+    }
+
+    /**
+     * Returns the report as JSON
+     * @param runId the identifier of the run, {@code null} if none
+     * @return the JSON report
+     */
+    public static String toJson(final String runId) {
+        try {
+            return new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report(runId));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to serialize the metrics.", e);
+        }
+    }
+
+    /**
+     * Write the JSON report
+     * @param file the file to be (over)written, e.g. {@code <run_path>/<run_id>.metrics.json}
+     * @param runId the identifier of the run, {@code null} if none
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeReport(final Path file, final String runId) throws IOException {
+        Files.writeString(file, toJson(runId));
+    }
+
+    /**
+     * Expose the metrics as the MXBean {@code elrond:type=Metrics} of the platform MBean server, e.g. for JConsole
+     * @throws IllegalStateException if the bean cannot be registered
+     */
+    public static void registerMXBean() {
+        try {
+            final var name = new ObjectName("elrond:type=Metrics");
+            final var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMXBeanImpl(), name);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to register the metrics MXBean.", e);
+        }
+    }
+
+    /**
+     * Read-only view of the metrics for JMX
+     */
+    public interface MetricsMXBean {
+        Map<String, Long> getCounters();
+
+        Map<String, Double> getGauges();
+
+        Map<String, Double> getTimerTotalMillis();
+
+        String getReport();
+    }
+
+    private static class MetricsMXBeanImpl implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            final Map<String, Long> values = new TreeMap<>();
+            counters.forEach((name, counter) -> values.put(name, counter.sum()));
+            return values;
+        }
+
+        @Override
+        public Map<String, Double> getGauges() {
+            final Map<String, Double> values = new TreeMap<>();
+            gauges.forEach((name, gauge) -> values.put(name, gauge.get().doubleValue()));
+            return values;
+        }
+
+        @Override
+        public Map<String, Double> getTimerTotalMillis() {
+            final Map<String, Double> values = new TreeMap<>();
+            timers.forEach((name, timer) -> values.put(name, timer.snapshot().sum() / 1e6));
+            return values;
+        }
+
+        @Override
+        public String getReport() {
+            return toJson(null);
+        }
+    }
+}
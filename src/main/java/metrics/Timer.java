@@ -0,0 +1,82 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times the executions of a pipeline stage, with the bytes allocated by the executing thread
+ */
+public class Timer {
+    /**
+     * Thread MX bean of HotSpot, {@code null} if the allocated bytes of the threads are not available
+     */
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private final Histogram nanos = new Histogram();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean;
+        }
+        return null;
+    }
+
+    private static long currentAllocatedBytes() {
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * An execution of the stage, recorded when closed
+     */
+    public class Sample implements AutoCloseable {
+        private final long start = System.nanoTime();
+        private final long startBytes = currentAllocatedBytes();
+
+        private Sample() {
+        }
+
+        /**
+         * Record the execution, on the same thread that started it
+         */
+        @Override
+        public void close() {
+            nanos.record(System.nanoTime() - start);
+            allocatedBytes.add(currentAllocatedBytes() - startBytes);
+        }
+    }
+
+    /**
+     * Start timing an execution, to be used with try-with-resources; the resource is usually not referenced in the
+     * block, hence the {@code @SuppressWarnings("try")} of the methods timing their stages
+     * @return the new {@link Sample}, one for each execution
+     */
+    public Sample start() {
+        return new Sample();
+    }
+
+    /**
+     * Record an execution timed elsewhere, without its allocated bytes
+     * @param elapsedNanos the duration of the execution
+     */
+    public void record(final long elapsedNanos) {
+        nanos.record(elapsedNanos);
+    }
+
+    /**
+     * Returns the durations in nanoseconds recorded so far
+     * @return a new {@link Histogram.Snapshot}
+     */
+    public Histogram.Snapshot snapshot() {
+        return nanos.snapshot();
+    }
+
+    /**
+     * Returns the bytes allocated by the executions recorded so far
+     * @return the allocated bytes, 0 if not supported by the JVM
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+}
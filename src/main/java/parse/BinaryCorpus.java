@@ -0,0 +1,271 @@
+package parse;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Compact binary format of the parsed documents, written once from the original corpus so that the rebuilds of the
+ * index skip its parsing (see {@link BinaryCorpusParser}).
+ * <p>
+ * A file starts with {@link #MAGIC} and is a sequence of blocks, each one with the number of its documents, the
+ * length of their records and the length of the records compressed with {@link Deflater} (raw, fastest level). The
+ * record of a document is its identifier, title, body and domain, each one as a variable-length byte count followed by
+ * its UTF-8 bytes. A block with no documents ends the blocks; then the footer has the offset of each block, the number
+ * of documents, the number of blocks and {@link #MAGIC} again, so that a file can be split into runs of blocks read in
+ * parallel (see {@link #splits(Path, int)}).
+ */
+public final class BinaryCorpus {
+    /**
+     * Extension of the binary corpus files
+     */
+    public static final String EXTENSION = "elrb";
+
+    /**
+     * Magic number at the start and at the end of a file
+     */
+    static final int MAGIC = 0x454C5242; // "ELRB"
+
+    /**
+     * Uncompressed size of the records of a block, beyond which the block is written
+     */
+    static final int BLOCK_SIZE = 256 * 1024;
+
+    /**
+     * Size of the fixed part of the footer: documents, blocks, magic
+     */
+    private static final int TRAILER = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private BinaryCorpus() {
+    }
+
+    /**
+     * A run of consecutive blocks of a file
+     * @param offset the position of the first block
+     * @param blocks the number of blocks
+     */
+    public record Split(long offset, int blocks) {
+    }
+
+    /**
+     * Statistics of an export
+     * @param files the number of files written
+     * @param documents the number of documents written
+     * @param sourceBytes the size of the original files
+     * @param bytes the size of the binary files
+     */
+    public record ExportStats(long files, long documents, long sourceBytes, long bytes) {
+    }
+
+    /**
+     * Writer of a binary corpus file
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        private final List<Long> offsets = new ArrayList<>();
+        private byte[] records = new byte[BLOCK_SIZE + BLOCK_SIZE / 4];
+        private byte[] compressed = new byte[records.length];
+        private int length;
+        private int blockDocuments;
+        private long documents;
+        private long position;
+
+        /**
+         * Create a new file, replacing an existing one
+         * @param file the path of the file
+         * @throws IOException if the file cannot be created
+         */
+        public Writer(final Path file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            position = Integer.BYTES;
+        }
+
+        /**
+         * Append a document
+         * @param pd the parsed document
+         * @throws IOException if the document cannot be written
+         */
+        public void write(final ParsedDocument pd) throws IOException {
+            writeString(pd.getIdentifier());
+            writeString(pd.getTitle());
+            writeString(pd.getBody());
+            writeString(pd.getDomain());
+            blockDocuments++;
+            documents++;
+            if (length >= BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        /**
+         * Returns the number of documents written
+         * @return the number of documents
+         */
+        public long getDocuments() {
+            return documents;
+        }
+
+        private void writeString(final String value) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(5 + bytes.length);
+            int n = bytes.length;
+            while ((n & ~0x7F) != 0) {
+                records[length++] = (byte) ((n & 0x7F) | 0x80);
+                n >>>= 7;
+            }
+            records[length++] = (byte) n;
+            System.arraycopy(bytes, 0, records, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void ensureCapacity(final int more) {
+            if (length + more > records.length) {
+                records = Arrays.copyOf(records, Math.max(records.length * 2, length + more));
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockDocuments == 0) {
+                return;
+            }
+            deflater.reset();
+            deflater.setInput(records, 0, length);
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength,
+                        compressed.length - compressedLength);
+            }
+
+            offsets.add(position);
+            out.writeInt(blockDocuments);
+            out.writeInt(length);
+            out.writeInt(compressedLength);
+            out.write(compressed, 0, compressedLength);
+            position += 3L * Integer.BYTES + compressedLength;
+            length = 0;
+            blockDocuments = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (out) {
+                flushBlock();
+                out.writeInt(0);
+                for (final long offset : offsets) {
+                    out.writeLong(offset);
+                }
+                out.writeLong(documents);
+                out.writeInt(offsets.size());
+                out.writeInt(MAGIC);
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Returns the offsets of the blocks of a file, read from its footer
+     * @param file the binary corpus file
+     * @return the position of each block, in order
+     * @throws IOException if the file cannot be read or is not a binary corpus
+     */
+    public static long[] blockOffsets(final Path file) throws IOException {
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < Integer.BYTES + Integer.BYTES + TRAILER) {
+                throw new IOException("%s is not a binary corpus: too short.".formatted(file));
+            }
+            final var in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(size - TRAILER))));
+            in.readLong();
+            final int blocks = in.readInt();
+            if (in.readInt() != MAGIC || blocks < 0 || size - TRAILER - (long) blocks * Long.BYTES < Integer.BYTES) {
+                throw new IOException("%s is not a binary corpus: no footer.".formatted(file));
+            }
+            final var offsets = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(size - TRAILER - (long) blocks * Long.BYTES))));
+            final long[] result = new long[blocks];
+            for (int i = 0; i < blocks; i++) {
+                result[i] = offsets.readLong();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Split a file into runs of consecutive blocks, to be read in parallel with
+     * {@link BinaryCorpusParser#open(Path, Split)}
+     * @param file the binary corpus file
+     * @param splits the maximum number of splits
+     * @return at most {@code splits} splits, together covering all the blocks
+     * @throws IOException if the file cannot be read or is not a binary corpus
+     */
+    public static List<Split> splits(final Path file, final int splits) throws IOException {
+        if (splits <= 0) {
+            throw new IllegalArgumentException("Number of splits cannot be less than or equal to zero.");
+        }
+        final long[] offsets = blockOffsets(file);
+        final List<Split> result = new ArrayList<>(splits);
+        for (int i = 0; i < splits; i++) {
+            final int first = (int) ((long) i * offsets.length / splits);
+            final int last = (int) ((long) (i + 1) * offsets.length / splits);
+            if (last > first) {
+                result.add(new Split(offsets[first], last - first));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Write the documents of a corpus as binary files, one for each original file, in the same tree
+     * @param docsDir the directory of the original corpus
+     * @param extension the extension of the original files
+     * @param cs the charset of the original files
+     * @param parser the parser of the original files
+     * @param outDir the directory of the binary corpus, created if needed
+     * @return the {@link ExportStats}
+     * @throws IOException if a file cannot be read or written
+     */
+    public static ExportStats export(final Path docsDir, final String extension, final Charset cs,
+                                     final Class<? extends DocumentParser> parser, final Path outDir)
+            throws IOException {
+        final long[] stats = new long[4];
+        Files.walkFileTree(docsDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                final var name = file.getFileName().toString();
+                if (!name.endsWith(extension)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                final var target = outDir.resolve(docsDir.relativize(file).toString())
+                        .resolveSibling(name.substring(0, name.length() - extension.length()) + EXTENSION);
+                Files.createDirectories(target.getParent());
+                try (final var writer = new Writer(target)) {
+                    for (final var pd : DocumentParser.open(parser, file, cs)) {
+                        writer.write(pd);
+                    }
+                    stats[1] += writer.getDocuments();
+                }
+                stats[0]++;
+                stats[2] += attrs.size();
+                stats[3] += Files.size(target);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new ExportStats(stats[0], stats[1], stats[2], stats[3]);
+    }
+}
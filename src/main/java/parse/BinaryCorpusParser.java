@@ -0,0 +1,175 @@
+package parse;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Parser of the binary corpus files written by {@link BinaryCorpus}, without any JSON parsing: the documents are
+ * decoded block by block from their length-prefixed records.
+ * <p>
+ * The bytes of the file are read from an {@link InputStream} (see {@link DocumentParser#open(Class, Path,
+ * java.nio.charset.Charset)}), the reader of the base class being empty.
+ */
+public class BinaryCorpusParser extends DocumentParser {
+    private final DataInputStream input;
+    private final Inflater inflater = new Inflater(true);
+
+    /**
+     * Blocks still to be read, negative for all the blocks of the file
+     */
+    private int blocks;
+
+    private byte[] records = new byte[BinaryCorpus.BLOCK_SIZE + BinaryCorpus.BLOCK_SIZE / 4];
+    private byte[] compressed = new byte[records.length];
+    private int position;
+
+    /**
+     * Length of the records of the current block, the end of the valid bytes of {@link #records}
+     */
+    private int limit;
+    private int remaining;
+    private ParsedDocument document = null;
+
+    /**
+     * Creates a new parser of a whole binary corpus file.
+     *
+     * @param in the stream of the file.
+     * @throws NullPointerException     if {@code in} is {@code null}.
+     * @throws IllegalArgumentException if the stream is not a binary corpus.
+     */
+    public BinaryCorpusParser(final InputStream in) {
+        this(in, -1);
+        try {
+            if (input.readInt() != BinaryCorpus.MAGIC) {
+                throw new IllegalArgumentException("Not a binary corpus.");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read the binary corpus.", e);
+        }
+    }
+
+    /**
+     * Creates a new parser of a run of blocks, the stream being at the first one.
+     *
+     * @param in     the stream of the file.
+     * @param blocks the number of blocks, negative for all the blocks up to the end of the file.
+     */
+    private BinaryCorpusParser(final InputStream in, final int blocks) {
+        super(Reader.nullReader());
+        if (in == null) {
+            throw new NullPointerException("Input stream cannot be null.");
+        }
+        this.input = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        this.blocks = blocks;
+    }
+
+    /**
+     * Creates a new parser of a split of a binary corpus file, see {@link BinaryCorpus#splits(Path, int)}.
+     *
+     * @param file  the binary corpus file.
+     * @param split the blocks to be parsed.
+     * @return a new parser, reading only the blocks of the split.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static BinaryCorpusParser open(final Path file, final BinaryCorpus.Split split) throws IOException {
+        final var channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(split.offset());
+        return new BinaryCorpusParser(Channels.newInputStream(channel), split.blocks());
+    }
+
+    @Override
+    protected ParsedDocument parse() {
+        return document;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!next) {
+            return false;
+        }
+        try {
+            if (remaining == 0 && !readBlock()) {
+                next = false;
+                input.close();
+                inflater.end();
+                return false;
+            }
+            document = new ParsedDocument(readString(), readString(), readString(), readString());
+            remaining--;
+            return true;
+        } catch (IOException | DataFormatException e) {
+            throw new IllegalArgumentException("Read failed", e);
+        }
+    }
+
+    /**
+     * Reads and decompresses the next block
+     * @return {@code false} at the end of the blocks
+     */
+    private boolean readBlock() throws IOException, DataFormatException {
+        if (blocks == 0) {
+            return false;
+        }
+        final int documents = input.readInt();
+        if (documents == 0) {
+            return false;
+        }
+        final int length = input.readInt();
+        final int compressedLength = input.readInt();
+        if (documents < 0 || length < 0 || compressedLength < 0) {
+            throw new IOException("Corrupt block header.");
+        }
+        if (records.length < length) {
+            records = new byte[length];
+        }
+        if (compressed.length < compressedLength) {
+            compressed = new byte[compressedLength];
+        }
+        input.readFully(compressed, 0, compressedLength);
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        int inflated = 0;
+        while (inflated < length) {
+            final int n = inflater.inflate(records, inflated, length - inflated);
+            if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                throw new EOFException("Truncated block.");
+            }
+            inflated += n;
+        }
+
+        position = 0;
+        limit = length;
+        remaining = documents;
+        if (blocks > 0) {
+            blocks--;
+        }
+        return true;
+    }
+
+    private String readString() throws EOFException {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (position == limit || shift > 28) {
+                throw new EOFException("Truncated or corrupt record length.");
+            }
+            final byte b = records[position++];
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        if (length < 0 || length > limit - position) {
+            throw new EOFException("Truncated record.");
+        }
+        final var value = new String(records, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+}
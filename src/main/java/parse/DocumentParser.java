@@ -17,7 +17,12 @@
 package parse;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -121,6 +126,49 @@ public abstract class DocumentParser
 
     }
 
+    /**
+     * Creates a new {@code DocumentParser} of a file.
+     * <p>
+     * Parsers of binary files, such as {@link BinaryCorpusParser}, have a single-parameter constructor which takes an
+     * {@code InputStream} of the bytes of the file; the others are created by {@link #create(Class, Reader)} with a
+     * reader of the file.
+     *
+     * @param cls  the class of the document parser to be instantiated.
+     * @param file the file of the document(s) to be parsed.
+     * @param cs   the charset of the file, for the parsers taking a {@code Reader}.
+     * @return a new instance of {@code DocumentParser} for the given class.
+     * @throws IOException           if the file cannot be opened.
+     * @throws NullPointerException  if any of the parameters is {@code null}.
+     * @throws IllegalStateException if something goes wrong in instantiating the class.
+     */
+    public static DocumentParser open(Class<? extends DocumentParser> cls, Path file, Charset cs) throws IOException {
+
+        if (cls == null) {
+            throw new NullPointerException("Document parser class cannot be null.");
+        }
+
+        if (file == null) {
+            throw new NullPointerException("File cannot be null.");
+        }
+
+        final Constructor<? extends DocumentParser> constructor;
+        try {
+            constructor = cls.getConstructor(InputStream.class);
+        } catch (NoSuchMethodException e) {
+            return create(cls, Files.newBufferedReader(file, cs));
+        }
+
+        final var in = Files.newInputStream(file);
+        try {
+            return constructor.newInstance(in);
+        } catch (Exception e) {
+            in.close();
+            throw new IllegalStateException(String.format("Unable to instantiate document parser %s.", cls.getName()),
+                                            e);
+        }
+
+    }
+
     /**
      * Performs the actual parsing of the document.
      *
@@ -51,6 +51,11 @@ public class ParsedDocument {
         public static final String DOMAIN = "domain";
 
         public static final String TITLE = "title";
+
+        /**
+         * Suffix of the fields containing the shingles of another field
+         */
+        public static final String SHINGLES_SUFFIX = "_shingles";
     }
 
 
@@ -0,0 +1,137 @@
+package scoring;
+
+import org.apache.lucene.search.similarities.Similarity;
+import search.Run;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Scores the topics of a {@link TermStatsSnapshot} with a {@link Similarity}, without searching the index.
+ * <p>
+ * The score of a document is the sum of the scores of the query terms it contains, as computed by the
+ * {@link Similarity.SimScorer} of each term, which is what Lucene does for term and boolean queries. Documents missing
+ * a required group of terms are not retrieved; ties are broken by increasing docid, like {@link
+ * org.apache.lucene.search.TopScoreDocCollector}.
+ */
+public class OfflineScorer {
+    /**
+     * The snapshot to score
+     */
+    private final TermStatsSnapshot snapshot;
+
+    /**
+     * Create a new scorer
+     * @param snapshot the snapshot to score
+     */
+    public OfflineScorer(final TermStatsSnapshot snapshot) {
+        if (snapshot == null) {
+            throw new NullPointerException("Snapshot cannot be null.");
+        }
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Score all the topics with a similarity
+     * @param runId the identifier of the returned run
+     * @param similarity the similarity to use
+     * @param k the max number of documents retrieved for each topic
+     * @return the new {@link Run}
+     */
+    public Run rescore(final String runId, final Similarity similarity, final int k) {
+        final var run = new Run(runId);
+        for (final var topic : snapshot.getTopics()) {
+            run.add(topic.topicId(), rank(topic, similarity, k));
+        }
+        return run;
+    }
+
+    /**
+     * Score all the topics with several similarities in parallel
+     * @param similarities run id -> similarity of the run
+     * @param k the max number of documents retrieved for each topic
+     * @param numThreads number of threads to use
+     * @return run id -> scored run, in the order of @similarities
+     * @throws InterruptedException if interrupted while waiting for the scoring threads
+     * @throws ExecutionException if a similarity fails
+     */
+    public Map<String, Run> sweep(final Map<String, Similarity> similarities, final int k, final int numThreads)
+            throws InterruptedException, ExecutionException {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads cannot be less than 1.");
+        }
+
+        final Map<String, Run> runs = new LinkedHashMap<>();
+        similarities.keySet().forEach(runId -> runs.put(runId, new Run(runId)));
+
+        final var executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            // topics are added in a different order than the snapshot, restore it at the end
+            final Map<String, Map<String, List<Run.Entry>>> rankings = new ConcurrentHashMap<>();
+            for (final var entry : similarities.entrySet()) {
+                final var topicRankings = new ConcurrentHashMap<String, List<Run.Entry>>();
+                rankings.put(entry.getKey(), topicRankings);
+                for (final var topic : snapshot.getTopics()) {
+                    futures.add(executor.submit(() ->
+                            topicRankings.put(topic.topicId(), rank(topic, entry.getValue(), k))));
+                }
+            }
+            for (final var future : futures) {
+                future.get();
+            }
+            runs.forEach((runId, run) -> {
+                for (final var topic : snapshot.getTopics()) {
+                    run.add(topic.topicId(), rankings.get(runId).get(topic.topicId()));
+                }
+            });
+        } finally {
+            executor.shutdownNow();
+        }
+        return runs;
+    }
+
+    /**
+     * Score the candidate documents of a topic
+     * @return the top-k documents by decreasing score
+     */
+    private List<Run.Entry> rank(final TermStatsSnapshot.TopicPostings topic, final Similarity similarity,
+                                 final int k) {
+        final int numDocs = topic.docs().length;
+        final double[] scores = new double[numDocs];
+        final long[] matchedGroups = new long[numDocs];
+
+        for (final var term : topic.terms()) {
+            final var scorer = similarity.scorer(term.boost(),
+                    snapshot.getCollectionStatistics(term.field()), TermStatsSnapshot.termStatistics(term));
+            final long groupBit = term.group() < 0 ? 0L : 1L << term.group();
+            final int[] docs = term.docs();
+            final int[] freqs = term.freqs();
+            for (int i = 0; i < docs.length; i++) {
+                final int doc = docs[i];
+                scores[doc] += scorer.score(freqs[i], snapshot.getNorm(term.field(), topic.docs()[doc]));
+                matchedGroups[doc] |= groupBit;
+            }
+        }
+
+        final long allGroups = topic.groups() == 0 ? 0L : (1L << topic.groups()) - 1;
+        // min-heap of the best documents: lowest score first, highest docid first among ties
+        final var heap = new PriorityQueue<Integer>(k + 1, (a, b) -> {
+            final int cmp = Float.compare((float) scores[a], (float) scores[b]);
+            return cmp != 0 ? cmp : Integer.compare(b, a);
+        });
+        for (int doc = 0; doc < numDocs; doc++) {
+            if ((matchedGroups[doc] & allGroups) != allGroups) continue;
+            heap.add(doc);
+            if (heap.size() > k) heap.poll();
+        }
+
+        final var ranking = new ArrayList<Run.Entry>(heap.size());
+        while (!heap.isEmpty()) {
+            final int doc = heap.poll();
+            ranking.add(new Run.Entry(snapshot.getDocId(topic.docs()[doc]), (float) scores[doc]));
+        }
+        Collections.reverse(ranking);
+        return ranking;
+    }
+}
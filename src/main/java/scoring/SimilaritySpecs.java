@@ -0,0 +1,121 @@
+package scoring;
+
+import org.apache.lucene.search.similarities.*;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Parser of similarity grids, e.g. {@code BM25(k1=0.9|1.2,b=0.4|0.75)} for the four combinations of the parameters.
+ * <p>
+ * Supported similarities (unspecified parameters take the Lucene defaults):
+ * <ul>
+ *     <li>{@code BM25(k1,b)}</li>
+ *     <li>{@code LMDirichlet(mu)}</li>
+ *     <li>{@code LMJelinekMercer(lambda)}</li>
+ *     <li>{@code DFI(measure)} with measure {@code standardized}, {@code saturated} or {@code chisquared}</li>
+ * </ul>
+ */
+public class SimilaritySpecs {
+    /**
+     * Parse a grid of similarities
+     * @param spec the grid specification
+     * @return canonical name -> similarity, for each combination of the parameters
+     * @throws IllegalArgumentException if the specification is not valid
+     */
+    public static Map<String, Similarity> parse(final String spec) {
+        if (spec == null) {
+            throw new NullPointerException("Similarity specification cannot be null.");
+        }
+        final var trimmed = spec.replaceAll("\\s+", "");
+        final int open = trimmed.indexOf('(');
+        final String name = open < 0 ? trimmed : trimmed.substring(0, open);
+        final Map<String, String[]> params = new LinkedHashMap<>();
+        if (open >= 0) {
+            if (!trimmed.endsWith(")")) {
+                throw new IllegalArgumentException("Missing ')' in %s".formatted(spec));
+            }
+            final var body = trimmed.substring(open + 1, trimmed.length() - 1);
+            for (final var param : body.split(",")) {
+                if (param.isEmpty()) continue;
+                final var kv = param.split("=", 2);
+                if (kv.length != 2 || kv[1].isEmpty()) {
+                    throw new IllegalArgumentException("Invalid parameter '%s' in %s".formatted(param, spec));
+                }
+                params.put(kv[0], kv[1].split("\\|"));
+            }
+        }
+
+        return switch (name) {
+            case "BM25" -> grid(name, params, List.of("k1", "b"),
+                    p -> new BM25Similarity(number(p, "k1", 1.2f), number(p, "b", 0.75f)));
+            case "LMDirichlet" -> grid(name, params, List.of("mu"),
+                    p -> new LMDirichletSimilarity(number(p, "mu", 2000f)));
+            case "LMJelinekMercer" -> grid(name, params, List.of("lambda"),
+                    p -> new LMJelinekMercerSimilarity(number(p, "lambda", 0.7f)));
+            case "DFI" -> grid(name, params, List.of("measure"),
+                    p -> new DFISimilarity(independence(p.getOrDefault("measure", "standardized"))));
+            default -> throw new IllegalArgumentException("Unknown similarity %s".formatted(name));
+        };
+    }
+
+    /**
+     * Build a similarity for each combination of the parameters
+     */
+    private static Map<String, Similarity> grid(String name, Map<String, String[]> params, List<String> allowed,
+                                                Function<Map<String, String>, Similarity> factory) {
+        for (final var param : params.keySet()) {
+            if (!allowed.contains(param)) {
+                throw new IllegalArgumentException("Unknown parameter %s of %s".formatted(param, name));
+            }
+        }
+        List<Map<String, String>> combinations = List.of(new LinkedHashMap<>());
+        for (final var param : params.entrySet()) {
+            final List<Map<String, String>> next = new ArrayList<>();
+            for (final var combination : combinations) {
+                for (final var value : param.getValue()) {
+                    final var extended = new LinkedHashMap<>(combination);
+                    extended.put(param.getKey(), value);
+                    next.add(extended);
+                }
+            }
+            combinations = next;
+        }
+
+        final Map<String, Similarity> similarities = new LinkedHashMap<>();
+        for (final var combination : combinations) {
+            final var canonical = new StringJoiner(",", name + "(", ")");
+            combination.forEach((k, v) -> canonical.add(k + "=" + v));
+            similarities.put(combination.isEmpty() ? name : canonical.toString(), factory.apply(combination));
+        }
+        return similarities;
+    }
+
+    private static float number(Map<String, String> params, String name, float defaultValue) {
+        final var value = params.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value %s for %s".formatted(value, name), e);
+        }
+    }
+
+    private static Independence independence(String measure) {
+        return switch (measure) {
+            case "standardized" -> new IndependenceStandardized();
+            case "saturated" -> new IndependenceSaturated();
+            case "chisquared" -> new IndependenceChiSquared();
+            default -> throw new IllegalArgumentException("Unknown independence measure %s".formatted(measure));
+        };
+    }
+
+    /**
+     * Returns a file name friendly version of a canonical similarity name
+     * @param canonical the name returned by {@link #parse(String)}
+     * @return the name with only letters, digits, dots and dashes
+     */
+    public static String slug(final String canonical) {
+        return canonical.replaceAll("[^A-Za-z0-9.]+", "-").replaceAll("-+$", "");
+    }
+}
@@ -0,0 +1,450 @@
+package scoring;
+
+import org.apache.lucene.index.*;
+import org.apache.lucene.search.*;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import parse.ParsedDocument;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot of everything a {@link org.apache.lucene.search.similarities.Similarity} needs for scoring the candidate
+ * documents of a set of topics: collection statistics, term statistics, postings (term frequencies) and norms.
+ * <p>
+ * It is extracted once from the index and stored in a compact columnar file, so that {@link OfflineScorer} can rescore
+ * the topics with any number of similarities without searching the index again. The norms are computed by the
+ * similarity at indexing time, but all the Lucene similarities used by the runs encode the same field length.
+ * <p>
+ * Only queries made of {@link TermQuery}s combined by {@link BooleanQuery}s (SHOULD clauses, MUST clauses at the top
+ * level) and {@link BoostQuery}s are supported, which covers the queries of all the runs.
+ */
+public class TermStatsSnapshot {
+    /**
+     * Magic number of the snapshot file
+     */
+    private static final int MAGIC = 0x54535332; // "TSS2"
+
+    /**
+     * A term of the query of a topic with its postings
+     * @param field ordinal of the field of the term
+     * @param text the text of the term
+     * @param boost the boost of the term in the query
+     * @param group index of the required group of the term, -1 if the term is optional
+     * @param docFreq number of documents containing the term
+     * @param totalTermFreq number of occurrences of the term
+     * @param docs the documents containing the term, as indexes in {@link TopicPostings#docs()}
+     * @param freqs the frequency of the term in each document of @docs
+     */
+    public record TermColumn(int field, String text, float boost, int group, long docFreq, long totalTermFreq,
+                             int[] docs, int[] freqs) {
+    }
+
+    /**
+     * The candidate documents of a topic with the postings of its query terms
+     * @param topicId the identifier of the topic
+     * @param docs the candidate documents, as ordinals of the snapshot in increasing Lucene docid order
+     * @param groups number of required groups: a document must match at least one term of each group
+     * @param terms the terms of the query
+     */
+    public record TopicPostings(String topicId, int[] docs, int groups, TermColumn[] terms) {
+    }
+
+    /**
+     * Commit of the index the snapshot has been extracted from
+     */
+    private final String indexCommit;
+
+    /**
+     * Key of the queries the snapshot has been extracted for
+     */
+    private final String queriesKey;
+
+    /**
+     * The fields of the index used by the queries
+     */
+    private final String[] fields;
+
+    /**
+     * Collection statistics of each field
+     */
+    private final CollectionStatistics[] collectionStats;
+
+    /**
+     * The external identifier of each document of the snapshot
+     */
+    private final String[] docIds;
+
+    /**
+     * field ordinal -> norm of each document of the snapshot
+     */
+    private final long[][] norms;
+
+    /**
+     * The postings of each topic
+     */
+    private final List<TopicPostings> topics;
+
+    private TermStatsSnapshot(String indexCommit, String queriesKey, String[] fields,
+                              CollectionStatistics[] collectionStats, String[] docIds, long[][] norms,
+                              List<TopicPostings> topics) {
+        this.indexCommit = indexCommit;
+        this.queriesKey = queriesKey;
+        this.fields = fields;
+        this.collectionStats = collectionStats;
+        this.docIds = docIds;
+        this.norms = norms;
+        this.topics = topics;
+    }
+
+    public String getIndexCommit() {
+        return indexCommit;
+    }
+
+    public String getQueriesKey() {
+        return queriesKey;
+    }
+
+    public String[] getFields() {
+        return fields;
+    }
+
+    public CollectionStatistics getCollectionStatistics(int field) {
+        return collectionStats[field];
+    }
+
+    public String getDocId(int doc) {
+        return docIds[doc];
+    }
+
+    public long getNorm(int field, int doc) {
+        return norms[field][doc];
+    }
+
+    public List<TopicPostings> getTopics() {
+        return topics;
+    }
+
+    /**
+     * Returns an identifier of the commit of an index, for checking that a snapshot is still valid. The name of the
+     * segments file is not enough: an index rebuilt from scratch starts again from the same generation, while the id
+     * of the segment infos is unique to each commit.
+     * @param reader the reader of the index
+     * @return the generation and the id of the segment infos of the commit
+     * @throws IOException if the commit cannot be read
+     */
+    public static String commitOf(final DirectoryReader reader) throws IOException {
+        final var commit = reader.getIndexCommit();
+        final var infos = SegmentInfos.readCommit(commit.getDirectory(), commit.getSegmentsFileName());
+        return "%d:%s".formatted(infos.getGeneration(), StringHelper.idToString(infos.getId()));
+    }
+
+    /**
+     * Returns a key of the queries of a set of topics, for checking that a snapshot is still valid
+     * @param topicsFile the file of the topics
+     * @param queryShape the fingerprint of the shape of the queries and of their analyzer
+     * @return the checksum of the topics file followed by the fingerprint of the shape
+     * @throws IOException if the topics file cannot be read
+     */
+    public static String queriesKeyOf(final Path topicsFile, final String queryShape) throws IOException {
+        final var crc = new CRC32();
+        crc.update(Files.readAllBytes(topicsFile));
+        return "%08x:%s".formatted(crc.getValue(), queryShape);
+    }
+
+    /**
+     * Extract the snapshot for a set of queries
+     * @param reader the reader of the index
+     * @param queries topic id -> query of the topic
+     * @param queriesKey the key of the queries, see {@link #queriesKeyOf(Path, String)}
+     * @return the extracted snapshot
+     * @throws IOException if the index cannot be read
+     * @throws IllegalArgumentException if a query is not supported
+     */
+    public static TermStatsSnapshot extract(final DirectoryReader reader, final Map<String, Query> queries,
+                                            final String queriesKey) throws IOException {
+        final var searcher = new IndexSearcher(reader);
+        final Map<String, Integer> fieldOrds = new LinkedHashMap<>();
+        final List<CollectionStatistics> collectionStats = new ArrayList<>();
+
+        // lucene docid -> global ordinal, assigned at the end
+        final SortedSet<Integer> allDocs = new TreeSet<>();
+        final List<Object[]> extracted = new ArrayList<>();
+
+        for (final var entry : queries.entrySet()) {
+            final var clauses = new ArrayList<Clause>();
+            final int groups = flatten(entry.getValue(), 1f, -1, true, new int[]{0}, clauses);
+            // terms missing from the index are not scored, but their required groups still have to match
+            clauses.removeIf(clause -> {
+                try {
+                    return reader.docFreq(clause.term) == 0;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            final List<int[][]> postings = new ArrayList<>(); // {luceneDocs, freqs}
+            final SortedSet<Integer> topicDocs = new TreeSet<>();
+            for (final var clause : clauses) {
+                final var luceneDocs = new ArrayList<Integer>();
+                final var freqs = new ArrayList<Integer>();
+                for (final var leaf : reader.leaves()) {
+                    final var pe = leaf.reader().postings(clause.term, PostingsEnum.FREQS);
+                    if (pe == null) continue;
+                    for (int doc = pe.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = pe.nextDoc()) {
+                        luceneDocs.add(leaf.docBase + doc);
+                        freqs.add(pe.freq());
+                    }
+                }
+                topicDocs.addAll(luceneDocs);
+                postings.add(new int[][]{toArray(luceneDocs), toArray(freqs)});
+                fieldOrds.computeIfAbsent(clause.term.field(), f -> {
+                    try {
+                        collectionStats.add(searcher.collectionStatistics(f));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return fieldOrds.size();
+                });
+            }
+            allDocs.addAll(topicDocs);
+            extracted.add(new Object[]{entry.getKey(), clauses, postings, topicDocs, groups});
+        }
+
+        // global ordinals follow the docid order, so ties are broken as Lucene does
+        final int[] luceneDocs = toArray(allDocs);
+        final Map<Integer, Integer> globalOrd = new HashMap<>();
+        for (int i = 0; i < luceneDocs.length; i++) globalOrd.put(luceneDocs[i], i);
+
+        final String[] docIds = new String[luceneDocs.length];
+        final Set<String> idField = Set.of(ParsedDocument.FIELDS.ID);
+        for (int i = 0; i < luceneDocs.length; i++) {
+            docIds[i] = reader.document(luceneDocs[i], idField).get(ParsedDocument.FIELDS.ID);
+        }
+
+        final String[] fields = fieldOrds.keySet().toArray(new String[0]);
+        final long[][] norms = new long[fields.length][];
+        for (int f = 0; f < fields.length; f++) {
+            norms[f] = readNorms(reader, fields[f], luceneDocs);
+        }
+
+        final List<TopicPostings> topics = new ArrayList<>();
+        for (final var e : extracted) {
+            final String topicId = (String) e[0];
+            @SuppressWarnings("unchecked") final List<Clause> clauses = (List<Clause>) e[1];
+            @SuppressWarnings("unchecked") final List<int[][]> postings = (List<int[][]>) e[2];
+            @SuppressWarnings("unchecked") final SortedSet<Integer> topicDocs = (SortedSet<Integer>) e[3];
+            final int groups = (Integer) e[4];
+
+            final int[] docs = new int[topicDocs.size()];
+            final Map<Integer, Integer> localOrd = new HashMap<>();
+            int i = 0;
+            for (final var doc : topicDocs) {
+                localOrd.put(doc, i);
+                docs[i++] = globalOrd.get(doc);
+            }
+
+            final TermColumn[] terms = new TermColumn[clauses.size()];
+            for (int t = 0; t < terms.length; t++) {
+                final var clause = clauses.get(t);
+                final var p = postings.get(t);
+                final int[] local = new int[p[0].length];
+                for (int j = 0; j < local.length; j++) local[j] = localOrd.get(p[0][j]);
+                terms[t] = new TermColumn(fieldOrds.get(clause.term.field()), clause.term.text(), clause.boost,
+                        clause.group, reader.docFreq(clause.term), reader.totalTermFreq(clause.term), local, p[1]);
+            }
+            topics.add(new TopicPostings(topicId, docs, groups, terms));
+        }
+
+        return new TermStatsSnapshot(commitOf(reader), queriesKey, fields,
+                collectionStats.toArray(new CollectionStatistics[0]), docIds, norms, topics);
+    }
+
+    /**
+     * A term clause of a flattened query
+     */
+    private record Clause(Term term, float boost, int group) {
+    }
+
+    /**
+     * Flatten a query into its term clauses
+     * @param query the query to flatten
+     * @param boost the boost inherited by the parent queries
+     * @param group the required group inherited by the parent queries, -1 if optional
+     * @param root whether @query is the top level query, the only one that may have MUST clauses
+     * @param nextGroup counter of the required groups
+     * @param clauses where to add the clauses
+     * @return the number of required groups
+     */
+    private static int flatten(Query query, float boost, int group, boolean root, int[] nextGroup,
+                               List<Clause> clauses) {
+        if (query instanceof BoostQuery) {
+            final var bq = (BoostQuery) query;
+            flatten(bq.getQuery(), boost * bq.getBoost(), group, root, nextGroup, clauses);
+        } else if (query instanceof TermQuery) {
+            clauses.add(new Clause(((TermQuery) query).getTerm(), boost, group));
+        } else if (query instanceof BooleanQuery && ((BooleanQuery) query).getMinimumNumberShouldMatch() == 0) {
+            for (final var clause : (BooleanQuery) query) {
+                switch (clause.getOccur()) {
+                    case SHOULD -> flatten(clause.getQuery(), boost, group, false, nextGroup, clauses);
+                    case MUST -> {
+                        if (!root) {
+                            throw new IllegalArgumentException("Nested required clauses are not supported: " + query);
+                        }
+                        if (nextGroup[0] == Long.SIZE - 1) {
+                            throw new IllegalArgumentException("Too many required clauses: " + query);
+                        }
+                        flatten(clause.getQuery(), boost, nextGroup[0]++, false, nextGroup, clauses);
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported clause " + clause);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported query " + query);
+        }
+        return nextGroup[0];
+    }
+
+    /**
+     * Read the norms of a field for the given documents
+     * @param luceneDocs the docids, in increasing order
+     * @return the norm of each document, 1 if the document has no norm (as done by Lucene scorers)
+     */
+    private static long[] readNorms(IndexReader reader, String field, int[] luceneDocs) throws IOException {
+        final long[] norms = new long[luceneDocs.length];
+        final var leaves = reader.leaves();
+        int leafIndex = -1;
+        LeafReaderContext leaf = null;
+        NumericDocValues values = null;
+        for (int i = 0; i < luceneDocs.length; i++) {
+            final int doc = luceneDocs[i];
+            while (leaf == null || doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(++leafIndex);
+                values = leaf.reader().getNormValues(field);
+            }
+            norms[i] = values != null && values.advanceExact(doc - leaf.docBase) ? values.longValue() : 1L;
+        }
+        return norms;
+    }
+
+    private static int[] toArray(Collection<Integer> list) {
+        return list.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Write the snapshot to a file
+     * @param file the file to be (over)written
+     * @throws IOException if the file cannot be written
+     */
+    public void write(final Path file) throws IOException {
+        try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(indexCommit);
+            out.writeUTF(queriesKey);
+
+            out.writeInt(fields.length);
+            for (final var cs : collectionStats) {
+                out.writeUTF(cs.field());
+                out.writeLong(cs.maxDoc());
+                out.writeLong(cs.docCount());
+                out.writeLong(cs.sumTotalTermFreq());
+                out.writeLong(cs.sumDocFreq());
+            }
+
+            out.writeInt(docIds.length);
+            for (final var id : docIds) out.writeUTF(id);
+            for (final var fieldNorms : norms) {
+                for (final var norm : fieldNorms) out.writeLong(norm);
+            }
+
+            out.writeInt(topics.size());
+            for (final var topic : topics) {
+                out.writeUTF(topic.topicId());
+                writeInts(out, topic.docs());
+                out.writeInt(topic.groups());
+                out.writeInt(topic.terms().length);
+                for (final var term : topic.terms()) {
+                    out.writeInt(term.field());
+                    out.writeUTF(term.text());
+                    out.writeFloat(term.boost());
+                    out.writeInt(term.group());
+                    out.writeLong(term.docFreq());
+                    out.writeLong(term.totalTermFreq());
+                    writeInts(out, term.docs());
+                    writeInts(out, term.freqs());
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a snapshot from a file
+     * @param file the file written by {@link #write(Path)}
+     * @return the snapshot
+     * @throws IOException if the file cannot be read or is not a snapshot
+     */
+    public static TermStatsSnapshot read(final Path file) throws IOException {
+        try (final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("%s is not a term statistics snapshot".formatted(file));
+            }
+            final var indexCommit = in.readUTF();
+            final var queriesKey = in.readUTF();
+
+            final int numFields = in.readInt();
+            final var fields = new String[numFields];
+            final var collectionStats = new CollectionStatistics[numFields];
+            for (int f = 0; f < numFields; f++) {
+                fields[f] = in.readUTF();
+                collectionStats[f] = new CollectionStatistics(fields[f], in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong());
+            }
+
+            final var docIds = new String[in.readInt()];
+            for (int i = 0; i < docIds.length; i++) docIds[i] = in.readUTF();
+            final var norms = new long[numFields][docIds.length];
+            for (final var fieldNorms : norms) {
+                for (int i = 0; i < fieldNorms.length; i++) fieldNorms[i] = in.readLong();
+            }
+
+            final int numTopics = in.readInt();
+            final List<TopicPostings> topics = new ArrayList<>(numTopics);
+            for (int t = 0; t < numTopics; t++) {
+                final var topicId = in.readUTF();
+                final var docs = readInts(in);
+                final int groups = in.readInt();
+                final var terms = new TermColumn[in.readInt()];
+                for (int i = 0; i < terms.length; i++) {
+                    terms[i] = new TermColumn(in.readInt(), in.readUTF(), in.readFloat(), in.readInt(), in.readLong(),
+                            in.readLong(), readInts(in), readInts(in));
+                }
+                topics.add(new TopicPostings(topicId, docs, groups, terms));
+            }
+            return new TermStatsSnapshot(indexCommit, queriesKey, fields, collectionStats, docIds, norms, topics);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (final var v : values) out.writeInt(v);
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        final var values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readInt();
+        return values;
+    }
+
+    /**
+     * Returns the term statistics of a column, as seen by the similarity
+     * @param term the term column
+     * @return the {@link TermStatistics} of the term
+     */
+    static TermStatistics termStatistics(final TermColumn term) {
+        return new TermStatistics(new BytesRef(term.text()), term.docFreq(), term.totalTermFreq());
+    }
+}
@@ -6,4 +6,15 @@ import java.io.IOException;
 
 public interface BasicSearcher {
     void search() throws IOException, ParseException;
+
+    long getElapsedTime();
+
+    /**
+     * Replay a sample of the topics before {@link #search()}, see {@link WarmUp}; nothing by default
+     * @param queries the number of queries to replay
+     * @throws IOException if something goes wrong while searching
+     * @throws ParseException if a topic cannot be parsed
+     */
+    default void warmUp(int queries) throws IOException, ParseException {
+    }
 }
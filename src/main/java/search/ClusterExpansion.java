@@ -0,0 +1,92 @@
+package search;
+
+import index.NearDuplicateDetector;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Puts back in the top documents of a query the near duplicates collapsed into their representatives at index time
+ * (see {@link index.NearDuplicates#COLLAPSE}).
+ * <p>
+ * The near duplicates of each representative follow it, with its score, until {@code k} documents; on an index
+ * without collapsed near duplicates the top documents are returned as they are.
+ */
+public final class ClusterExpansion {
+
+    private ClusterExpansion() {
+    }
+
+    /**
+     * Returns whether an index has near duplicates collapsed into their representatives
+     * @param reader the reader of the index
+     * @return {@code true} if any segment has the {@link NearDuplicateDetector#DUPLICATE_OF} field
+     */
+    public static boolean hasCollapsedDuplicates(final IndexReader reader) {
+        for (final var leaf : reader.leaves()) {
+            if (leaf.reader().getFieldInfos().fieldInfo(NearDuplicateDetector.DUPLICATE_OF) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Expand the clusters of the top documents of a query
+     * @param reader the reader of the index searched
+     * @param docs the top documents
+     * @param k the maximum number of documents to return
+     * @return the top documents followed by their near duplicates, {@code docs} itself if nothing is collapsed
+     * @throws IOException if something goes wrong while reading the clusters
+     */
+    public static TopDocs expand(final IndexReader reader, final TopDocs docs, final int k) throws IOException {
+        if (!hasCollapsedDuplicates(reader)) {
+            return docs;
+        }
+        final List<LeafReaderContext> leaves = reader.leaves();
+        final List<ScoreDoc> expanded = new ArrayList<>(k);
+        PostingsEnum postings = null;
+        for (final var scoreDoc : docs.scoreDocs) {
+            if (expanded.size() >= k) {
+                break;
+            }
+            expanded.add(scoreDoc);
+
+            final var leaf = leaves.get(ReaderUtil.subIndex(scoreDoc.doc, leaves));
+            final var clusters = DocValues.getBinary(leaf.reader(), NearDuplicateDetector.CLUSTER);
+            if (!clusters.advanceExact(scoreDoc.doc - leaf.docBase)) {
+                continue;
+            }
+            final BytesRef cluster = BytesRef.deepCopyOf(clusters.binaryValue());
+            for (final var context : leaves) {
+                final var terms = context.reader().terms(NearDuplicateDetector.DUPLICATE_OF);
+                if (terms == null) {
+                    continue;
+                }
+                final var termsEnum = terms.iterator();
+                if (!termsEnum.seekExact(cluster)) {
+                    continue;
+                }
+                postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                final var live = context.reader().getLiveDocs();
+                for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS && expanded.size() < k;
+                     doc = postings.nextDoc()) {
+                    if (live == null || live.get(doc)) {
+                        expanded.add(new ScoreDoc(context.docBase + doc, scoreDoc.score, scoreDoc.shardIndex));
+                    }
+                }
+            }
+        }
+        return new TopDocs(docs.totalHits, expanded.toArray(ScoreDoc[]::new));
+    }
+}
@@ -0,0 +1,119 @@
+package search;
+
+import java.util.*;
+
+/**
+ * Enum of the rank fusion strategies for combining several {@link Run}s
+ */
+public enum Fusion {
+    /**
+     * Reciprocal Rank Fusion: sum of 1 / (60 + rank) over the runs retrieving the document
+     */
+    RRF {
+        @Override
+        protected void accumulate(List<Run.Entry> ranking, Map<String, double[]> fused) {
+            for (int i = 0; i < ranking.size(); i++) {
+                add(fused, ranking.get(i).docId(), 1.0 / (RRF_K + i + 1));
+            }
+        }
+    },
+    /**
+     * Sum of the min-max normalized scores
+     */
+    COMB_SUM {
+        @Override
+        protected void accumulate(List<Run.Entry> ranking, Map<String, double[]> fused) {
+            addNormalized(ranking, fused);
+        }
+    },
+    /**
+     * Sum of the min-max normalized scores multiplied by the number of runs retrieving the document
+     */
+    COMB_MNZ {
+        @Override
+        protected void accumulate(List<Run.Entry> ranking, Map<String, double[]> fused) {
+            addNormalized(ranking, fused);
+        }
+
+        @Override
+        protected double finalScore(double[] accumulator) {
+            return accumulator[0] * accumulator[1];
+        }
+    };
+
+    /**
+     * Rank constant of {@link #RRF}, as in the original paper
+     */
+    private static final int RRF_K = 60;
+
+    /**
+     * Add the contribution of a ranking to the fused scores
+     * @param ranking the ranking of a run for a topic
+     * @param fused document id -> {score, number of runs retrieving the document}
+     */
+    protected abstract void accumulate(List<Run.Entry> ranking, Map<String, double[]> fused);
+
+    /**
+     * Returns the fused score of a document
+     * @param accumulator {score, number of runs retrieving the document}
+     * @return the fused score
+     */
+    protected double finalScore(double[] accumulator) {
+        return accumulator[0];
+    }
+
+    private static void add(Map<String, double[]> fused, String docId, double score) {
+        final var accumulator = fused.computeIfAbsent(docId, k -> new double[2]);
+        accumulator[0] += score;
+        accumulator[1]++;
+    }
+
+    private static void addNormalized(List<Run.Entry> ranking, Map<String, double[]> fused) {
+        if (ranking.isEmpty()) return;
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (final var entry : ranking) {
+            min = Math.min(min, entry.score());
+            max = Math.max(max, entry.score());
+        }
+        final double range = max - min;
+        for (final var entry : ranking) {
+            add(fused, entry.docId(), range > 0 ? (entry.score() - min) / range : 1);
+        }
+    }
+
+    /**
+     * Fuse several runs
+     * @param runId the identifier of the fused run
+     * @param runs the runs to fuse
+     * @param k the max number of documents of each topic of the fused run
+     * @return the fused {@link Run}, with the topics in the order they appear in the runs
+     */
+    public Run fuse(final String runId, final List<Run> runs, final int k) {
+        final var topics = new LinkedHashSet<String>();
+        runs.forEach(run -> topics.addAll(run.topics()));
+
+        final var fusedRun = new Run(runId);
+        for (final var topic : topics) {
+            final Map<String, double[]> fused = new HashMap<>();
+            for (final var run : runs) {
+                accumulate(run.ranking(topic), fused);
+            }
+            final var ranking = new ArrayList<Run.Entry>(fused.size());
+            fused.forEach((docId, accumulator) -> ranking.add(new Run.Entry(docId, (float) finalScore(accumulator))));
+            // ties are broken by document id, so that the fused run does not depend on the hash order
+            ranking.sort(Comparator.comparing(Run.Entry::score).reversed().thenComparing(Run.Entry::docId));
+            fusedRun.add(topic, ranking.subList(0, Math.min(k, ranking.size())));
+        }
+        return fusedRun;
+    }
+
+    /**
+     * Parse a fusion name, case insensitive with dashes or underscores (e.g. {@code rrf}, {@code comb-sum})
+     * @param name the name of the fusion
+     * @return the corresponding {@link Fusion}
+     * @throws IllegalArgumentException if the name is not recognised
+     */
+    public static Fusion fromName(final String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,253 @@
+package search;
+
+import index.IndexStorage;
+import metrics.Metrics;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.Similarity;
+import parse.ParsedDocument;
+import topics.Topic;
+import topics.Topics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Searches the topics with several runs in one pass over a shared {@link IndexReader}, and fuses the runs in memory.
+ * <p>
+ * Each run has its own {@link IndexSearcher} (and so its own similarity) over the same reader, which is meant to be
+ * an index built with a {@link index.MultiAnalyzerSchema} where each run targets its own fields. For every topic all
+ * the runs are searched before moving to the next one; at the end each run is written to
+ * {@code <run_path>/<run_id>.txt} followed by each {@link Fusion} of all the runs.
+ */
+public class MultiRunSearcher implements BasicSearcher {
+    /**
+     * One of the runs to be searched
+     * @param runId the identifier of the run
+     * @param similarity the similarity of the run
+     * @param queryShape the shape of the queries of the run, targeting the fields of the run
+     */
+    public record RunSpec(String runId, Similarity similarity, QueryShape queryShape) {
+    }
+
+    /**
+     * The runs to be searched
+     */
+    private final List<RunSpec> specs;
+
+    /**
+     * The fusions to compute
+     */
+    private final List<Fusion> fusions;
+
+    /**
+     * Prefix of the identifier of the fused runs, followed by the name of the fusion
+     */
+    private final String fusedRunId;
+
+    /**
+     * The shared index reader
+     */
+    private final IndexReader reader;
+
+    /**
+     * The topics to be searched
+     */
+    private final List<Topic> topics;
+
+    /**
+     * The path where to store the runs
+     */
+    private final Path runPath;
+
+    /**
+     * The maximum number of documents to retrieve
+     */
+    private final int maxDocsRetrieved;
+
+    /**
+     * The number of hits to count before pruning non-competitive documents
+     */
+    private final int totalHitsThreshold;
+
+    /**
+     * The runs and their fusions, available after {@link #search()}
+     */
+    private final List<Run> results = new ArrayList<>();
+
+    /**
+     * The total elapsed time.
+     */
+    private long elapsedTime = Long.MIN_VALUE;
+
+    /**
+     * Creates a new searcher.
+     *
+     * @param specs              the runs to be searched.
+     * @param fusions            the fusions of the runs to be computed.
+     * @param fusedRunId         the prefix of the identifiers of the fused runs.
+     * @param indexPath          the directory containing the index to be searched.
+     * @param storage            where the index is stored.
+     * @param topicsFile         the file containing the topics to search for.
+     * @param runPath            the path where to store the runs.
+     * @param maxDocsRetrieved   the maximum number of documents to be retrieved.
+     * @param totalHitsThreshold the number of hits to count before pruning non-competitive documents.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     */
+    public MultiRunSearcher(final List<RunSpec> specs, final List<Fusion> fusions, final String fusedRunId,
+                            final String indexPath, final IndexStorage storage, final String topicsFile,
+                            final String runPath, final int maxDocsRetrieved, final int totalHitsThreshold) {
+        if (specs == null) {
+            throw new NullPointerException("Runs cannot be null.");
+        }
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException("Runs cannot be empty.");
+        }
+        this.specs = List.copyOf(specs);
+
+        if (fusions == null) {
+            throw new NullPointerException("Fusions cannot be null.");
+        }
+        this.fusions = List.copyOf(fusions);
+
+        if (fusedRunId == null) {
+            throw new NullPointerException("Fused run identifier cannot be null.");
+        }
+        this.fusedRunId = fusedRunId;
+
+        if (indexPath == null) {
+            throw new NullPointerException("Index path cannot be null.");
+        }
+        if (storage == null) {
+            throw new NullPointerException("Index storage cannot be null.");
+        }
+        try {
+            reader = DirectoryReader.open(storage.open(Paths.get(indexPath)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.format("Unable to create the index reader for directory %s: %s.",
+                    indexPath, e.getMessage()), e);
+        }
+
+        if (topicsFile == null) {
+            throw new NullPointerException("Topics file cannot be null.");
+        }
+        try {
+            topics = Topics.loadTopics(topicsFile).topics;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(
+                    String.format("Unable to process topic file %s: %s.", topicsFile, e.getMessage()), e);
+        }
+
+        if (runPath == null) {
+            throw new NullPointerException("Run path cannot be null.");
+        }
+        this.runPath = Paths.get(runPath);
+        if (!Files.isDirectory(this.runPath) || !Files.isWritable(this.runPath)) {
+            throw new IllegalArgumentException(
+                    String.format("%s expected to be a writable directory where to store the runs.", runPath));
+        }
+
+        if (maxDocsRetrieved <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of documents to be retrieved cannot be less than or equal to zero.");
+        }
+        this.maxDocsRetrieved = maxDocsRetrieved;
+
+        if (totalHitsThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "The total hits threshold cannot be less than or equal to zero.");
+        }
+        this.totalHitsThreshold = totalHitsThreshold;
+    }
+
+    @Override
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Returns the runs searched and their fusions, in the order they have been written
+     * @return the in-memory runs, empty before {@link #search()}
+     */
+    public List<Run> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Searches the topics with all the runs, then writes the runs and their fusions.
+     *
+     * @throws IOException    if something goes wrong while searching or writing the runs.
+     * @throws ParseException if something goes wrong while parsing topics.
+     */
+    @Override
+    @SuppressWarnings("try")
+    public void search() throws IOException, ParseException {
+        System.out.printf("%n#### Start searching %d runs ####%n", specs.size());
+
+        final long start = System.currentTimeMillis();
+        final var idField = Set.of(ParsedDocument.FIELDS.ID);
+
+        final List<IndexSearcher> searchers = new ArrayList<>();
+        final List<Run> runs = new ArrayList<>();
+        for (final var spec : specs) {
+            final var searcher = new IndexSearcher(reader);
+            searcher.setSimilarity(spec.similarity());
+            searchers.add(searcher);
+            runs.add(new Run(spec.runId()));
+        }
+
+        try {
+            for (final var topic : topics) {
+                final var topicId = Integer.toString(topic.number);
+                System.out.printf("Searching for topic %s.%n", topicId);
+
+                for (int r = 0; r < specs.size(); r++) {
+                    final Query query;
+                    try (final var ignored = Metrics.timer("search.query_parse").start()) {
+                        query = specs.get(r).queryShape().create(topic.title);
+                    }
+                    final var docs = TopKSearch.search(searchers.get(r), query, maxDocsRetrieved, totalHitsThreshold);
+                    final var ranking = new ArrayList<Run.Entry>(docs.scoreDocs.length);
+                    for (final var scoreDoc : docs.scoreDocs) {
+                        ranking.add(new Run.Entry(reader.document(scoreDoc.doc, idField).get(ParsedDocument.FIELDS.ID),
+                                scoreDoc.score));
+                    }
+                    runs.get(r).add(topicId, ranking);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        for (final var run : runs) {
+            try (final var ignored = Metrics.timer("search.run_write").start()) {
+                run.write(runPath.resolve(run.getRunId() + ".txt"));
+            }
+            results.add(run);
+        }
+        for (final var fusion : fusions) {
+            final Run fused;
+            try (final var ignored = Metrics.timer("search.fusion").start()) {
+                fused = fusion.fuse("%s-%s".formatted(fusedRunId, fusion), runs, maxDocsRetrieved);
+            }
+            try (final var ignored = Metrics.timer("search.run_write").start()) {
+                fused.write(runPath.resolve(fused.getRunId() + ".txt"));
+            }
+            results.add(fused);
+        }
+
+        elapsedTime = System.currentTimeMillis() - start;
+
+        System.out.printf("%d topic(s) searched with %d runs and %d fusions in %d seconds.%n", topics.size(),
+                specs.size(), fusions.size(), elapsedTime / 1000);
+
+        System.out.printf("#### Searching complete ####%n");
+    }
+}
@@ -17,6 +17,9 @@
 package search;
 
 import analyzers.OpenNlpAnalyzer;
+import index.IndexStorage;
+import index.MultiAnalyzerSchema;
+import metrics.Metrics;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
 import org.apache.lucene.analysis.core.StopFilterFactory;
@@ -26,15 +29,14 @@ import org.apache.lucene.benchmark.quality.QualityQuery;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.queryparser.classic.QueryParserBase;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.FSDirectory;
 import parse.ParsedDocument;
 import search.queries.PhraseQueryGenerator;
 import topics.Topics;
+import utils.ExecutionMode;
+import utils.TaskScope;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -45,9 +47,7 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * Searches a document collection parsed with {@link analyzers.OpenNlpAnalyzer}
@@ -101,21 +101,26 @@ public class OpenNlpTaskSearcher implements BasicSearcher {
     private final QualityQuery[] topics;
 
     /**
-     * The query parser
+     * The shape of the query built from the topic title
      */
-    private final QueryParser bodyQueryParser;
+    private final QueryShape queryShape;
 
-    private final QueryParser titleQueryParser;
-
-    private final QueryParser typedBodyQueryParser;
-
-    private final QueryParser typedTitleQueryParser;
+    /**
+     * The caches of the analysis of the topics, for original and typed tokens
+     */
+    private final TopicAnalysisCache analysisCache;
+    private final TopicAnalysisCache typedAnalysisCache;
 
     /**
      * The maximum number of documents to retrieve
      */
     private final int maxDocsRetrieved;
 
+    /**
+     * The number of hits to count before pruning non-competitive documents
+     */
+    private final int totalHitsThreshold;
+
     /**
      * The total elapsed time.
      */
@@ -139,9 +144,9 @@ public class OpenNlpTaskSearcher implements BasicSearcher {
     private final int numThreads;
 
     /**
-     * Dimension of the thread-task queue as a factor of @numThreads
+     * The threads searching the topics
      */
-    private final double threadsQueueFactor;
+    private final ExecutionMode executionMode;
 
 
     /**
@@ -153,19 +158,25 @@ public class OpenNlpTaskSearcher implements BasicSearcher {
      *                                  with {@link analyzers.OpenNlpAnalyzer.FilterStrategy} TYPED_ONLY
      * @param similarity                the {@code Similarity} to be used.
      * @param indexPath                 the directory where containing the index to be searched.
+     * @param storage                   where the index is stored.
      * @param topicsFile                the file containing the topics to search for.
      * @param expectedTopics            the total number of topics expected to be searched.
      * @param runID                     the identifier of the run to be created.
      * @param runPath                   the path where to store the run.
      * @param maxDocsRetrieved          the maximum number of documents to be retrieved.
+     * @param totalHitsThreshold        the number of hits to count before pruning non-competitive documents.
      * @param numThreads                Number ot thread to use
-     * @param threadsQueueFactor        Dimension of the thread-task queue as a factor of @numThreads
+     * @param executionMode             the threads searching the topics, one per topic with virtual threads
+     * @param fieldVariant              the variant of the title and body fields to search, {@code null} for the plain
+     *                                  fields.
      * @throws NullPointerException     if any of the parameters is {@code null}.
      * @throws IllegalArgumentException if any of the parameters assumes invalid values.
      */
     public OpenNlpTaskSearcher(final Analyzer originalTokensAnalyzer, final Analyzer typedTokensAnalyzer, final Similarity similarity, final String indexPath,
+                               final IndexStorage storage,
                                final String topicsFile, final int expectedTopics, final String runID, final String runPath,
-                               final int maxDocsRetrieved, int numThreads, double threadsQueueFactor) {
+                               final int maxDocsRetrieved, final int totalHitsThreshold, int numThreads, final ExecutionMode executionMode,
+                               final String fieldVariant) {
 
         if (originalTokensAnalyzer == null) {
             throw new NullPointerException("Analyzer cannot be null.");
@@ -189,19 +200,23 @@ public class OpenNlpTaskSearcher implements BasicSearcher {
             throw new IllegalArgumentException("Index path cannot be empty.");
         }
 
+        if (storage == null) {
+            throw new NullPointerException("Index storage cannot be null.");
+        }
+
         final Path indexDir = Paths.get(indexPath);
-        if (!Files.isReadable(indexDir)) {
+        if (storage.isOnDisk() && !Files.isReadable(indexDir)) {
             throw new IllegalArgumentException(
                     String.format("Index directory %s cannot be read.", indexDir.toAbsolutePath().toString()));
         }
 
-        if (!Files.isDirectory(indexDir)) {
+        if (storage.isOnDisk() && !Files.isDirectory(indexDir)) {
             throw new IllegalArgumentException(String.format("%s expected to be a directory where to search the index.",
                     indexDir.toAbsolutePath().toString()));
         }
 
         try {
-            reader = DirectoryReader.open(FSDirectory.open(indexDir));
+            reader = DirectoryReader.open(storage.open(indexDir));
         } catch (IOException e) {
             throw new IllegalArgumentException(String.format("Unable to create the index reader for directory %s: %s.",
                     indexDir.toAbsolutePath().toString(), e.getMessage()), e);
@@ -244,10 +259,10 @@ public class OpenNlpTaskSearcher implements BasicSearcher {
                     topics.length);
         }
 
-        bodyQueryParser = new QueryParser(ParsedDocument.FIELDS.BODY, originalTokensAnalyzer);
-        titleQueryParser = new QueryParser(ParsedDocument.FIELDS.TITLE, originalTokensAnalyzer);
-        typedBodyQueryParser = new QueryParser(ParsedDocument.FIELDS.BODY, typedTokensAnalyzer);
-        typedTitleQueryParser = new QueryParser(ParsedDocument.FIELDS.TITLE, typedTokensAnalyzer);
+        analysisCache = TopicAnalysisCache.open(topicsFile, originalTokensAnalyzer);
+        typedAnalysisCache = TopicAnalysisCache.open(topicsFile, typedTokensAnalyzer);
+        queryShape = QueryShapes.openNlp(analysisCache.analyzer(), typedAnalysisCache.analyzer(),
+                MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.BODY, fieldVariant), MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.TITLE, fieldVariant));
 
         if (runID == null) {
             throw new NullPointerException("Run identifier cannot be null.");
@@ -295,9 +310,20 @@ public class OpenNlpTaskSearcher implements BasicSearcher {
         }
 
         this.numThreads = numThreads;
-        this.threadsQueueFactor = threadsQueueFactor;
+
+        if (executionMode == null) {
+            throw new NullPointerException("Execution mode cannot be null.");
+        }
+        this.executionMode = executionMode;
 
         this.maxDocsRetrieved = maxDocsRetrieved;
+
+        if (totalHitsThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "The total hits threshold cannot be less than or equal to zero.");
+        }
+
+        this.totalHitsThreshold = totalHitsThreshold;
     }
 
     /**
@@ -309,12 +335,29 @@ public class OpenNlpTaskSearcher implements BasicSearcher {
         return elapsedTime;
     }
 
+    /**
+     * Replays a sample of the topics before searching, see {@link WarmUp}.
+     *
+     * @param queries the number of queries to replay.
+     * @throws IOException    if something goes wrong while searching.
+     * @throws ParseException if something goes wrong while parsing topics.
+     */
+    @Override
+    public void warmUp(final int queries) throws IOException, ParseException {
+        final List<String> titles = new ArrayList<>(topics.length);
+        for (QualityQuery topic_query : topics) {
+            titles.add(topic_query.getValue(TOPIC_FIELDS.TITLE));
+        }
+        WarmUp.replay(searcher, queryShape, titles, queries, maxDocsRetrieved, totalHitsThreshold);
+    }
+
     /**
      * /** Searches for the specified topics.
      *
      * @throws IOException    if something goes wrong while searching.
      * @throws ParseException if something goes wrong while parsing topics.
      */
+    @SuppressWarnings("try")
     public void search() throws IOException, ParseException {
 
         System.out.printf("%n#### Start searching ####%n");
@@ -325,84 +368,48 @@ public class OpenNlpTaskSearcher implements BasicSearcher {
         final Set<String> idField = new HashSet<>();
         idField.add(ParsedDocument.FIELDS.ID);
 
-        Queue<Future<FutureSearchResult>> futures = new LinkedList<>();
-        Queue<String[]> results = new LinkedList<>();
-        final var threadPool = (ThreadPoolExecutor) Executors.newFixedThreadPool(numThreads);
+        // results are written in the order of the topics, whatever the order in which the searches complete
+        final List<Future<FutureSearchResult>> futures = new ArrayList<>();
 
-        try {
+        try (final var scope = new TaskScope(executionMode, numThreads)) {
             for (QualityQuery topic_query : topics) {
 
                 System.out.printf("Searching for topic %s.%n", topic_query.getQueryID());
 
-                final var escapedTopic = QueryParserBase.escape(topic_query.getValue(TOPIC_FIELDS.TITLE));
-
-                //create queries
-
-                // NORMAL QUERY
-                Query bodyQuery = bodyQueryParser.parse(escapedTopic);
-
-                Query titleQuery = titleQueryParser.parse(escapedTopic);
-
-                Query normalQuery = new BooleanQuery.Builder()
-                    .add(bodyQuery, BooleanClause.Occur.SHOULD)
-                    .add(titleQuery, BooleanClause.Occur.SHOULD)
-                    .build();
-                normalQuery = new BoostQuery(normalQuery, 1f);
-                ////////////////////
-
-                // TYPED QUERY
-                Query typedBodyQuery = typedBodyQueryParser.parse(escapedTopic);
-
-                Query typedTitleQuery = typedTitleQueryParser.parse(escapedTopic);
-
-                Query typedQuery = new BooleanQuery.Builder()
-                        .add(typedBodyQuery, BooleanClause.Occur.SHOULD)
-                        .add(typedTitleQuery, BooleanClause.Occur.SHOULD)
-                        .build();
-                //////////////////////
+                // the query shape is not thread safe: queries are created here and only searched concurrently
+                final Query query;
+                try (final var ignored = Metrics.timer("search.query_parse").start()) {
+                    query = queryShape.create(topic_query.getValue(TOPIC_FIELDS.TITLE));
+                }
 
-                //FINAL QUERY
-                Query query = new BooleanQuery.Builder()
-                        .add(normalQuery, BooleanClause.Occur.SHOULD)
-                        .add(typedQuery, BooleanClause.Occur.SHOULD)
-                        .build();
-                /////////////
+                futures.add(scope.fork(() -> {
+                    final var docs = TopKSearch.search(searcher, query, maxDocsRetrieved, totalHitsThreshold);
+                    return new FutureSearchResult(docs, topic_query.getQueryID());
+                }));
+            }
+            analysisCache.save();
+            typedAnalysisCache.save();
 
+            scope.join();
 
-                //submit search
-                final var f = threadPool.submit(() -> {
-                    final var docs = searcher.search(query, maxDocsRetrieved);
-                    return new FutureSearchResult(docs, topic_query.getQueryID());
-                });
-                futures.add(f);
-
-                //prevent queue to grow too big
-                while (futures.size() > threadsQueueFactor * numThreads) {
-                    try {
-                        final var r = futures.remove().get();
-                        results.add(r.resultString(reader, idField, runID));
-                    } catch (InterruptedException | ExecutionException e) {
-                        throw new IllegalStateException(e);
-                    }
+            try (final var ignored = Metrics.timer("search.run_write").start()) {
+                for (final var f : futures) {
+                    Arrays.asList(f.get().resultString(reader, idField, runID)).forEach(run::print);
+                    run.flush();
                 }
             }
-            futures.forEach(f -> {
-                try {
-                    results.add(f.get().resultString(reader, idField, runID));
-                } catch (ExecutionException | InterruptedException e) {
-                    throw new IllegalStateException(e);
-                }
-            });
-            results.forEach(res -> {
-                Arrays.asList(res).forEach(run::print);
-                run.flush();
-            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Unable to search the topics.", e.getCause());
         } finally {
             run.close();
 
             reader.close();
-
-            threadPool.shutdown();
         }
 
         elapsedTime = System.currentTimeMillis() - start;
@@ -433,7 +440,8 @@ public class OpenNlpTaskSearcher implements BasicSearcher {
         final Analyzer a = CustomAnalyzer.builder().withTokenizer(StandardTokenizerFactory.class).addTokenFilter(
                 LowerCaseFilterFactory.class).addTokenFilter(StopFilterFactory.class).build();
 
-        Searcher s = new Searcher(a, new BM25Similarity(), indexPath, topics, 50, runID, runPath, maxDocsRetrieved);
+        Searcher s = new Searcher(a, new BM25Similarity(), indexPath, IndexStorage.FS, topics, 50, runID, runPath,
+                maxDocsRetrieved);
 
         s.search();
 
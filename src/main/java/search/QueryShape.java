@@ -0,0 +1,21 @@
+package search;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+
+/**
+ * Builds the {@link Query} of a run for the title of a topic.
+ * Implementations are backed by {@link org.apache.lucene.queryparser.classic.QueryParser}s, so they are not thread-safe.
+ *
+ * @see QueryShapes
+ */
+@FunctionalInterface
+public interface QueryShape {
+    /**
+     * Create the query for a topic
+     * @param topicTitle the title of the topic, not escaped
+     * @return the query to search
+     * @throws ParseException if the title cannot be parsed
+     */
+    Query create(String topicTitle) throws ParseException;
+}
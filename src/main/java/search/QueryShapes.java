@@ -0,0 +1,190 @@
+package search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.queryparser.classic.QueryParserBase;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.Query;
+import parse.ParsedDocument;
+import search.queries.PhraseQueryGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The {@link QueryShape}s of the searchers
+ */
+public class QueryShapes {
+    /**
+     * Query on the body only, used by {@link TaskBodySearcher}
+     * @param analyzer the analyzer of the topic title
+     * @return a new {@link QueryShape}
+     */
+    public static QueryShape body(final Analyzer analyzer) {
+        return body(analyzer, ParsedDocument.FIELDS.BODY);
+    }
+
+    /**
+     * Query on the body only, used by {@link TaskBodySearcher}
+     * @param analyzer the analyzer of the topic title
+     * @param bodyField the name of the body field, see {@link index.MultiAnalyzerSchema#nameFor(String, String)}
+     * @return a new {@link QueryShape}
+     */
+    public static QueryShape body(final Analyzer analyzer, final String bodyField) {
+        final var bodyQueryParser = new QueryParser(bodyField, analyzer);
+        return title -> bodyQueryParser.parse(QueryParserBase.escape(title));
+    }
+
+    /**
+     * Query on body and title, used by {@link SimpleSearcher} (body SHOULD) and {@link TaskSearcher1} (body MUST)
+     * @param analyzer the analyzer of the topic title
+     * @param bodyOccur whether the body has to match
+     * @return a new {@link QueryShape}
+     */
+    public static QueryShape bodyAndTitle(final Analyzer analyzer, final BooleanClause.Occur bodyOccur) {
+        return bodyAndTitle(analyzer, bodyOccur, ParsedDocument.FIELDS.BODY, ParsedDocument.FIELDS.TITLE);
+    }
+
+    /**
+     * Query on body and title, used by {@link SimpleSearcher} (body SHOULD) and {@link TaskSearcher1} (body MUST)
+     * @param analyzer the analyzer of the topic title
+     * @param bodyOccur whether the body has to match
+     * @param bodyField the name of the body field, see {@link index.MultiAnalyzerSchema#nameFor(String, String)}
+     * @param titleField the name of the title field
+     * @return a new {@link QueryShape}
+     */
+    public static QueryShape bodyAndTitle(final Analyzer analyzer, final BooleanClause.Occur bodyOccur,
+                                          final String bodyField, final String titleField) {
+        final var bodyQueryParser = new QueryParser(bodyField, analyzer);
+        final var titleQueryParser = new QueryParser(titleField, analyzer);
+        return title -> {
+            final var escapedTopic = QueryParserBase.escape(title);
+            return new BooleanQuery.Builder()
+                    .add(bodyQueryParser.parse(escapedTopic), bodyOccur)
+                    .add(titleQueryParser.parse(escapedTopic), BooleanClause.Occur.SHOULD)
+                    .build();
+        };
+    }
+
+    /**
+     * Query on body and title of both original and typed tokens, used by {@link OpenNlpTaskSearcher}
+     * @param originalTokensAnalyzer analyzer for normal search, should be an {@link analyzers.OpenNlpAnalyzer}
+     *                               with {@link analyzers.OpenNlpAnalyzer.FilterStrategy} ORIGINAL_ONLY
+     * @param typedTokensAnalyzer analyzer for typed search, should be an {@link analyzers.OpenNlpAnalyzer}
+     *                            with {@link analyzers.OpenNlpAnalyzer.FilterStrategy} TYPED_ONLY
+     * @return a new {@link QueryShape}
+     */
+    public static QueryShape openNlp(final Analyzer originalTokensAnalyzer, final Analyzer typedTokensAnalyzer) {
+        return openNlp(originalTokensAnalyzer, typedTokensAnalyzer, ParsedDocument.FIELDS.BODY,
+                ParsedDocument.FIELDS.TITLE);
+    }
+
+    /**
+     * Query on body and title of both original and typed tokens, used by {@link OpenNlpTaskSearcher}
+     * @param originalTokensAnalyzer analyzer for normal search
+     * @param typedTokensAnalyzer analyzer for typed search
+     * @param bodyField the name of the body field, see {@link index.MultiAnalyzerSchema#nameFor(String, String)}
+     * @param titleField the name of the title field
+     * @return a new {@link QueryShape}
+     */
+    public static QueryShape openNlp(final Analyzer originalTokensAnalyzer, final Analyzer typedTokensAnalyzer,
+                                     final String bodyField, final String titleField) {
+        final var bodyQueryParser = new QueryParser(bodyField, originalTokensAnalyzer);
+        final var titleQueryParser = new QueryParser(titleField, originalTokensAnalyzer);
+        final var typedBodyQueryParser = new QueryParser(bodyField, typedTokensAnalyzer);
+        final var typedTitleQueryParser = new QueryParser(titleField, typedTokensAnalyzer);
+        return title -> {
+            final var escapedTopic = QueryParserBase.escape(title);
+
+            // NORMAL QUERY
+            Query normalQuery = new BooleanQuery.Builder()
+                    .add(bodyQueryParser.parse(escapedTopic), BooleanClause.Occur.SHOULD)
+                    .add(titleQueryParser.parse(escapedTopic), BooleanClause.Occur.SHOULD)
+                    .build();
+            normalQuery = new BoostQuery(normalQuery, 1f);
+
+            // TYPED QUERY
+            Query typedQuery = new BooleanQuery.Builder()
+                    .add(typedBodyQueryParser.parse(escapedTopic), BooleanClause.Occur.SHOULD)
+                    .add(typedTitleQueryParser.parse(escapedTopic), BooleanClause.Occur.SHOULD)
+                    .build();
+
+            //FINAL QUERY
+            return new BooleanQuery.Builder()
+                    .add(normalQuery, BooleanClause.Occur.SHOULD)
+                    .add(typedQuery, BooleanClause.Occur.SHOULD)
+                    .build();
+        };
+    }
+
+    /**
+     * Query on the body and optionally the title, with a boost for each field and the phrases of the body, used by
+     * the parameter sweeps.
+     * With unit boosts and no phrases it is the same query as {@link #bodyAndTitle} (or {@link #body} without title).
+     * @param analyzer the analyzer of the topic title
+     * @param bodyOccur whether the body has to match
+     * @param bodyField the name of the body field
+     * @param bodyBoost the boost of the body clauses
+     * @param titleField the name of the title field, {@code null} for querying the body only
+     * @param titleBoost the boost of the title clause
+     * @param phraseSize the size of the phrases matched on the body (needs positions), 0 to disable them
+     * @param reader the reader of the searched index, whose shingles of {@code phraseSize} tokens (see
+     *               {@link index.ShingleField}) match the phrases as terms; {@code null} for positional phrases only
+     * @return a new {@link QueryShape}
+     */
+    public static QueryShape weighted(final Analyzer analyzer, final BooleanClause.Occur bodyOccur,
+                                      final String bodyField, final float bodyBoost, final String titleField,
+                                      final float titleBoost, final int phraseSize, final IndexReader reader) {
+        final var bodyQueryParser = new QueryParser(bodyField, analyzer);
+        final var titleQueryParser = titleField != null ? new QueryParser(titleField, analyzer) : null;
+        return title -> {
+            final var escapedTopic = QueryParserBase.escape(title);
+            final var bodyQuery = boost(bodyQueryParser.parse(escapedTopic), bodyBoost);
+            if (titleQueryParser == null && phraseSize == 0) {
+                return bodyQuery;
+            }
+
+            final var builder = new BooleanQuery.Builder().add(bodyQuery, bodyOccur);
+            if (titleQueryParser != null) {
+                builder.add(boost(titleQueryParser.parse(escapedTopic), titleBoost), BooleanClause.Occur.SHOULD);
+            }
+            if (phraseSize > 0) {
+                try {
+                    final var phrases = reader == null
+                            ? PhraseQueryGenerator.create(analyzer, bodyField, title, phraseSize)
+                            : PhraseQueryGenerator.create(reader, analyzer, bodyField, title, phraseSize);
+                    builder.add(boost(phrases, bodyBoost), BooleanClause.Occur.SHOULD);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return builder.build();
+        };
+    }
+
+    /**
+     * Query matching any of the queries of other shapes, e.g. the original and typed tokens of
+     * {@link #openNlp(Analyzer, Analyzer)}
+     * @param shapes the shapes to combine
+     * @return a new {@link QueryShape}
+     */
+    public static QueryShape any(final QueryShape... shapes) {
+        if (shapes.length == 1) {
+            return shapes[0];
+        }
+        return title -> {
+            final var builder = new BooleanQuery.Builder();
+            for (final var shape : shapes) {
+                builder.add(shape.create(title), BooleanClause.Occur.SHOULD);
+            }
+            return builder.build();
+        };
+    }
+
+    private static Query boost(final Query query, final float boost) {
+        return boost == 1f ? query : new BoostQuery(query, boost);
+    }
+}
@@ -0,0 +1,130 @@
+package search;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * In-memory representation of a run: the ranked list of documents retrieved for each topic
+ */
+public class Run {
+    /**
+     * A retrieved document
+     * @param docId the identifier of the document
+     * @param score the score of the document
+     */
+    public record Entry(String docId, float score) {
+    }
+
+    /**
+     * The identifier of the run
+     */
+    private final String runId;
+
+    /**
+     * topic id -> ranked documents, in the order the topics have been added
+     */
+    private final Map<String, List<Entry>> rankings = new LinkedHashMap<>();
+
+    /**
+     * Create a new empty run
+     * @param runId the identifier of the run
+     */
+    public Run(final String runId) {
+        if (runId == null) {
+            throw new NullPointerException("Run identifier cannot be null.");
+        }
+        this.runId = runId;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    /**
+     * Set the ranking of a topic
+     * @param topicId the identifier of the topic
+     * @param ranking the retrieved documents, by decreasing score
+     */
+    public synchronized void add(final String topicId, final List<Entry> ranking) {
+        rankings.put(topicId, List.copyOf(ranking));
+    }
+
+    /**
+     * Returns the ranking of a topic
+     * @param topicId the identifier of the topic
+     * @return the retrieved documents, empty if the topic is not in the run
+     */
+    public synchronized List<Entry> ranking(final String topicId) {
+        return rankings.getOrDefault(topicId, List.of());
+    }
+
+    /**
+     * Returns the topics of the run
+     * @return the identifiers of the topics, in the order they have been added
+     */
+    public synchronized List<String> topics() {
+        return new ArrayList<>(rankings.keySet());
+    }
+
+    /**
+     * Write the run in TREC format
+     * @param out where to write the run
+     */
+    public synchronized void write(final PrintWriter out) {
+        rankings.forEach((topicId, ranking) -> {
+            for (int i = 0, n = ranking.size(); i < n; i++) {
+                out.printf(Locale.ENGLISH, "%s\tQ0\t%s\t%d\t%.6f\t%s%n", topicId, ranking.get(i).docId(), i,
+                        ranking.get(i).score(), runId);
+            }
+        });
+        out.flush();
+    }
+
+    /**
+     * Read a run in TREC format
+     * @param file the run file
+     * @return the {@link Run}, with the identifier of its first line (or the file name if empty)
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line is not valid
+     */
+    public static Run read(final Path file) throws IOException {
+        final Map<String, List<Entry>> rankings = new LinkedHashMap<>();
+        String runId = null;
+        int lineNumber = 0;
+        for (final var line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.isBlank()) continue;
+            final var cols = line.trim().split("\\s+");
+            if (cols.length != 6) {
+                throw new IllegalArgumentException("Invalid run line %d in %s: %s".formatted(lineNumber, file, line));
+            }
+            if (runId == null) runId = cols[5];
+            try {
+                rankings.computeIfAbsent(cols[0], k -> new ArrayList<>())
+                        .add(new Entry(cols[2], Float.parseFloat(cols[4])));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid score at line %d in %s: %s"
+                        .formatted(lineNumber, file, line), e);
+            }
+        }
+
+        final var run = new Run(runId != null ? runId : file.getFileName().toString().replaceFirst("\\.txt$", ""));
+        rankings.forEach(run::add);
+        return run;
+    }
+
+    /**
+     * Write the run in TREC format
+     * @param file the run file to be (over)written
+     * @throws IOException if the file cannot be written
+     */
+    public void write(final Path file) throws IOException {
+        try (final var out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            write(out);
+        }
+    }
+}
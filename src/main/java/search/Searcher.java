@@ -16,6 +16,7 @@
 
 package search;
 
+import index.IndexStorage;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
 import org.apache.lucene.analysis.core.StopFilterFactory;
@@ -31,7 +32,6 @@ import org.apache.lucene.queryparser.classic.QueryParserBase;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.FSDirectory;
 import parse.ParsedDocument;
 
 import java.io.BufferedReader;
@@ -129,6 +129,7 @@ public class Searcher {
      * @param analyzer         the {@code Analyzer} to be used.
      * @param similarity       the {@code Similarity} to be used.
      * @param indexPath        the directory where containing the index to be searched.
+     * @param storage          where the index is stored.
      * @param topicsFile       the file containing the topics to search for.
      * @param expectedTopics   the total number of topics expected to be searched.
      * @param runID            the identifier of the run to be created.
@@ -138,8 +139,8 @@ public class Searcher {
      * @throws IllegalArgumentException if any of the parameters assumes invalid values.
      */
     public Searcher(final Analyzer analyzer, final Similarity similarity, final String indexPath,
-                    final String topicsFile, final int expectedTopics, final String runID, final String runPath,
-                    final int maxDocsRetrieved) {
+                    final IndexStorage storage, final String topicsFile, final int expectedTopics,
+                    final String runID, final String runPath, final int maxDocsRetrieved) {
 
         if (analyzer == null) {
             throw new NullPointerException("Analyzer cannot be null.");
@@ -157,19 +158,23 @@ public class Searcher {
             throw new IllegalArgumentException("Index path cannot be empty.");
         }
 
+        if (storage == null) {
+            throw new NullPointerException("Index storage cannot be null.");
+        }
+
         final Path indexDir = Paths.get(indexPath);
-        if (!Files.isReadable(indexDir)) {
+        if (storage.isOnDisk() && !Files.isReadable(indexDir)) {
             throw new IllegalArgumentException(
                     String.format("Index directory %s cannot be read.", indexDir.toAbsolutePath().toString()));
         }
 
-        if (!Files.isDirectory(indexDir)) {
+        if (storage.isOnDisk() && !Files.isDirectory(indexDir)) {
             throw new IllegalArgumentException(String.format("%s expected to be a directory where to search the index.",
                                                              indexDir.toAbsolutePath().toString()));
         }
 
         try {
-            reader = DirectoryReader.open(FSDirectory.open(indexDir));
+            reader = DirectoryReader.open(storage.open(indexDir));
         } catch (IOException e) {
             throw new IllegalArgumentException(String.format("Unable to create the index reader for directory %s: %s.",
                                                              indexDir.toAbsolutePath().toString(), e.getMessage()), e);
@@ -349,7 +354,8 @@ public class Searcher {
         final Analyzer a = CustomAnalyzer.builder().withTokenizer(StandardTokenizerFactory.class).addTokenFilter(
                 LowerCaseFilterFactory.class).addTokenFilter(StopFilterFactory.class).build();
 
-        Searcher s = new Searcher(a, new BM25Similarity(), indexPath, topics, 50, runID, runPath, maxDocsRetrieved);
+        Searcher s = new Searcher(a, new BM25Similarity(), indexPath, IndexStorage.FS, topics, 50, runID, runPath,
+                maxDocsRetrieved);
 
         s.search();
 
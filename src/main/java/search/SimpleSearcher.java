@@ -16,6 +16,9 @@
 
 package search;
 
+import index.IndexStorage;
+import index.MultiAnalyzerSchema;
+import metrics.Metrics;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
 import org.apache.lucene.analysis.core.StopFilterFactory;
@@ -25,12 +28,9 @@ import org.apache.lucene.benchmark.quality.QualityQuery;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.queryparser.classic.QueryParserBase;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.Similarity;
-import org.apache.lucene.store.FSDirectory;
 import parse.ParsedDocument;
 import topics.Topics;
 
@@ -94,17 +94,25 @@ public class SimpleSearcher implements BasicSearcher {
     private final QualityQuery[] topics;
 
     /**
-     * The query parser
+     * The shape of the query built from the topic title
      */
-    private final QueryParser bodyQueryParser;
+    private final QueryShape queryShape;
 
-    private final QueryParser titleQueryParser;
+    /**
+     * The cache of the analysis of the topics
+     */
+    private final TopicAnalysisCache analysisCache;
 
     /**
      * The maximum number of documents to retrieve
      */
     private final int maxDocsRetrieved;
 
+    /**
+     * The number of hits to count before pruning non-competitive documents
+     */
+    private final int totalHitsThreshold;
+
     /**
      * The total elapsed time.
      */
@@ -117,17 +125,21 @@ public class SimpleSearcher implements BasicSearcher {
      * @param analyzer         the {@code Analyzer} to be used.
      * @param similarity       the {@code Similarity} to be used.
      * @param indexPath        the directory where containing the index to be searched.
+     * @param storage          where the index is stored.
      * @param topicsFile       the file containing the topics to search for.
      * @param expectedTopics   the total number of topics expected to be searched.
      * @param runID            the identifier of the run to be created.
      * @param runPath          the path where to store the run.
      * @param maxDocsRetrieved the maximum number of documents to be retrieved.
+     * @param totalHitsThreshold the number of hits to count before pruning non-competitive documents.
+     * @param fieldVariant the variant of the title and body fields to search, {@code null} for the plain fields.
      * @throws NullPointerException     if any of the parameters is {@code null}.
      * @throws IllegalArgumentException if any of the parameters assumes invalid values.
      */
     public SimpleSearcher(final Analyzer analyzer, final Similarity similarity, final String indexPath,
+                          final IndexStorage storage,
                          final String topicsFile, final int expectedTopics, final String runID, final String runPath,
-                         final int maxDocsRetrieved) {
+                         final int maxDocsRetrieved, final int totalHitsThreshold, final String fieldVariant) {
 
         if (analyzer == null) {
             throw new NullPointerException("Analyzer cannot be null.");
@@ -145,19 +157,23 @@ public class SimpleSearcher implements BasicSearcher {
             throw new IllegalArgumentException("Index path cannot be empty.");
         }
 
+        if (storage == null) {
+            throw new NullPointerException("Index storage cannot be null.");
+        }
+
         final Path indexDir = Paths.get(indexPath);
-        if (!Files.isReadable(indexDir)) {
+        if (storage.isOnDisk() && !Files.isReadable(indexDir)) {
             throw new IllegalArgumentException(
                     String.format("Index directory %s cannot be read.", indexDir.toAbsolutePath().toString()));
         }
 
-        if (!Files.isDirectory(indexDir)) {
+        if (storage.isOnDisk() && !Files.isDirectory(indexDir)) {
             throw new IllegalArgumentException(String.format("%s expected to be a directory where to search the index.",
                     indexDir.toAbsolutePath().toString()));
         }
 
         try {
-            reader = DirectoryReader.open(FSDirectory.open(indexDir));
+            reader = DirectoryReader.open(storage.open(indexDir));
         } catch (IOException e) {
             throw new IllegalArgumentException(String.format("Unable to create the index reader for directory %s: %s.",
                     indexDir.toAbsolutePath().toString(), e.getMessage()), e);
@@ -200,8 +216,9 @@ public class SimpleSearcher implements BasicSearcher {
                     topics.length);
         }
 
-        bodyQueryParser = new QueryParser(ParsedDocument.FIELDS.BODY, analyzer);
-        titleQueryParser = new QueryParser(ParsedDocument.FIELDS.TITLE, analyzer);
+        analysisCache = TopicAnalysisCache.open(topicsFile, analyzer);
+        queryShape = QueryShapes.bodyAndTitle(analysisCache.analyzer(), BooleanClause.Occur.SHOULD,
+                MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.BODY, fieldVariant), MultiAnalyzerSchema.nameFor(ParsedDocument.FIELDS.TITLE, fieldVariant));
 
         if (runID == null) {
             throw new NullPointerException("Run identifier cannot be null.");
@@ -249,6 +266,13 @@ public class SimpleSearcher implements BasicSearcher {
         }
 
         this.maxDocsRetrieved = maxDocsRetrieved;
+
+        if (totalHitsThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "The total hits threshold cannot be less than or equal to zero.");
+        }
+
+        this.totalHitsThreshold = totalHitsThreshold;
     }
 
     /**
@@ -260,12 +284,29 @@ public class SimpleSearcher implements BasicSearcher {
         return elapsedTime;
     }
 
+    /**
+     * Replays a sample of the topics before searching, see {@link WarmUp}.
+     *
+     * @param queries the number of queries to replay.
+     * @throws IOException    if something goes wrong while searching.
+     * @throws ParseException if something goes wrong while parsing topics.
+     */
+    @Override
+    public void warmUp(final int queries) throws IOException, ParseException {
+        final List<String> titles = new ArrayList<>(topics.length);
+        for (QualityQuery topic_query : topics) {
+            titles.add(topic_query.getValue(TOPIC_FIELDS.TITLE));
+        }
+        WarmUp.replay(searcher, queryShape, titles, queries, maxDocsRetrieved, totalHitsThreshold);
+    }
+
     /**
      * /** Searches for the specified topics.
      *
      * @throws IOException    if something goes wrong while searching.
      * @throws ParseException if something goes wrong while parsing topics.
      */
+    @SuppressWarnings("try")
     public void search() throws IOException, ParseException {
 
         System.out.printf("%n#### Start searching ####%n");
@@ -276,7 +317,6 @@ public class SimpleSearcher implements BasicSearcher {
         final Set<String> idField = new HashSet<>();
         idField.add(ParsedDocument.FIELDS.ID);
 
-        BooleanQuery.Builder booleanQueryBuilder = null;
         Query query = null;
         TopDocs docs = null;
         ScoreDoc[] scoreDocs = null;
@@ -287,28 +327,28 @@ public class SimpleSearcher implements BasicSearcher {
 
                 System.out.printf("Searching for topic %s.%n", topic_query.getQueryID());
 
-                booleanQueryBuilder = new BooleanQuery.Builder();
-
-                booleanQueryBuilder.add(bodyQueryParser.parse(QueryParserBase.escape(topic_query.getValue(TOPIC_FIELDS.TITLE))), BooleanClause.Occur.SHOULD);
-
-                booleanQueryBuilder.add(titleQueryParser.parse(QueryParserBase.escape(topic_query.getValue(TOPIC_FIELDS.TITLE))), BooleanClause.Occur.SHOULD);
-
-                query = booleanQueryBuilder.build();
+                try (final var ignored = Metrics.timer("search.query_parse").start()) {
+                    query = queryShape.create(topic_query.getValue(TOPIC_FIELDS.TITLE));
+                }
 
-                docs = searcher.search(query, maxDocsRetrieved);
+                docs = TopKSearch.search(searcher, query, maxDocsRetrieved, totalHitsThreshold);
 
                 scoreDocs = docs.scoreDocs;
 
-                for (int i = 0, n = scoreDocs.length; i < n; i++) {
-                    docID = reader.document(scoreDocs[i].doc, idField).get(ParsedDocument.FIELDS.ID);
+                try (final var ignored = Metrics.timer("search.run_write").start()) {
+                    for (int i = 0, n = scoreDocs.length; i < n; i++) {
+                        docID = reader.document(scoreDocs[i].doc, idField).get(ParsedDocument.FIELDS.ID);
 
-                    run.printf(Locale.ENGLISH, "%s\tQ0\t%s\t%d\t%.6f\t%s%n", topic_query.getQueryID(), docID, i, scoreDocs[i].score,
-                            runID);
-                }
+                        run.printf(Locale.ENGLISH, "%s\tQ0\t%s\t%d\t%.6f\t%s%n", topic_query.getQueryID(), docID, i, scoreDocs[i].score,
+                                runID);
+                    }
 
-                run.flush();
+                    run.flush();
+                }
 
             }
+
+            analysisCache.save();
         } finally {
             run.close();
 
@@ -343,7 +383,8 @@ public class SimpleSearcher implements BasicSearcher {
         final Analyzer a = CustomAnalyzer.builder().withTokenizer(StandardTokenizerFactory.class).addTokenFilter(
                 LowerCaseFilterFactory.class).addTokenFilter(StopFilterFactory.class).build();
 
-        Searcher s = new Searcher(a, new BM25Similarity(), indexPath, topics, 50, runID, runPath, maxDocsRetrieved);
+        Searcher s = new Searcher(a, new BM25Similarity(), indexPath, IndexStorage.FS, topics, 50, runID, runPath,
+                maxDocsRetrieved);
 
         s.search();
 
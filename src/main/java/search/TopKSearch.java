@@ -0,0 +1,53 @@
+package search;
+
+import metrics.Metrics;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+
+import java.io.IOException;
+
+/**
+ * Utility for retrieving the top-k documents of a query with a bounded count of the total hits.
+ * <p>
+ * Once {@code totalHitsThreshold} hits have been counted the {@link TopScoreDocCollector} stops counting and lets the
+ * scorers skip the blocks of documents that cannot enter the top-k (WAND/MAXSCORE over the index impacts).
+ * Runs never use the total number of hits, so the threshold can be as low as the number of documents retrieved.
+ * <p>
+ * The near duplicates collapsed at index time are put back next to their representatives, see
+ * {@link ClusterExpansion}.
+ */
+public class TopKSearch {
+    /**
+     * Threshold that disables dynamic pruning: every matching document is counted and scored
+     */
+    public static final int EXACT_TOTAL_HITS = Integer.MAX_VALUE;
+
+    /**
+     * Search the top-k documents of a query
+     * @param searcher the {@link IndexSearcher} to use
+     * @param query the query to execute
+     * @param k the number of documents to retrieve
+     * @param totalHitsThreshold number of hits to count exactly before pruning non-competitive documents
+     *                           (values lower than @k are raised to @k)
+     * @return the top-k documents, with a total hits count that is a lower bound once the threshold is reached
+     * @throws IOException if something goes wrong while searching
+     */
+    @SuppressWarnings("try")
+    public static TopDocs search(final IndexSearcher searcher, final Query query, final int k,
+                                 final int totalHitsThreshold) throws IOException {
+        final TopDocs docs;
+        try (final var ignored = Metrics.timer("search.search").start()) {
+            final var collector = TopScoreDocCollector.create(k, totalHitsThreshold);
+            searcher.search(query, collector);
+            docs = collector.topDocs();
+        }
+        if (!ClusterExpansion.hasCollapsedDuplicates(searcher.getIndexReader())) {
+            return docs;
+        }
+        try (final var ignored = Metrics.timer("search.expand_clusters").start()) {
+            return ClusterExpansion.expand(searcher.getIndexReader(), docs, k);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package search;
+
+import analyzers.AnalyzerFingerprint;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.*;
+import org.apache.lucene.util.Version;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of the analysis of the topics, stored next to the topics file and keyed by the fingerprint of the analyzer.
+ * <p>
+ * The {@link #analyzer()} of the cache replays the cached tokens (terms, types, position increments and lengths) of
+ * the texts already analyzed, so the query parsers build the same queries without running the real analyzer, which
+ * for {@link analyzers.OpenNlpAnalyzer} also means without loading the OpenNLP models. Texts not in the cache are
+ * analyzed by the real analyzer and added to the cache, which is written back by {@link #save()}.
+ */
+public class TopicAnalysisCache {
+    /**
+     * Magic number of the cache file
+     */
+    private static final int MAGIC = 0x54414331; // "TAC1"
+
+    /**
+     * code source location -> checksum of its contents, read once per JVM: a directory of classes can be large
+     */
+    private static final Map<String, Long> CODE_SOURCE_CHECKSUMS = new ConcurrentHashMap<>();
+
+    /**
+     * An analyzed token
+     */
+    private record Token(String term, String type, int positionIncrement, int positionLength) {
+    }
+
+    /**
+     * The real analyzer
+     */
+    private final Analyzer delegate;
+
+    /**
+     * The fingerprint of the real analyzer
+     */
+    private final String fingerprint;
+
+    /**
+     * The cache file
+     */
+    private final Path file;
+
+    /**
+     * field + text -> tokens
+     */
+    private final Map<String, List<Token>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The keys looked up since the cache has been opened, the only ones written by {@link #save()}
+     */
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * The analyzer replaying the cached tokens
+     */
+    private final Analyzer analyzer = new Analyzer(Analyzer.PER_FIELD_REUSE_STRATEGY) {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            return new TokenStreamComponents(new ReplayTokenizer(fieldName));
+        }
+    };
+
+    private TopicAnalysisCache(final Analyzer delegate, final String fingerprint, final Path file) {
+        this.delegate = delegate;
+        this.fingerprint = fingerprint;
+        this.file = file;
+    }
+
+    /**
+     * Open the cache of the analysis of a topics file
+     * @param topicsFile the topics file
+     * @param analyzer the analyzer of the topics
+     * @return the cache, empty if it has never been saved or has been saved by a different analyzer
+     * @throws NullPointerException if any of the parameters is {@code null}
+     */
+    public static TopicAnalysisCache open(final String topicsFile, final Analyzer analyzer) {
+        if (topicsFile == null) {
+            throw new NullPointerException("Topics file cannot be null.");
+        }
+        if (analyzer == null) {
+            throw new NullPointerException("Analyzer cannot be null.");
+        }
+
+        final var fingerprint = fingerprint(analyzer);
+        final var crc = new CRC32();
+        crc.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        final var file = Path.of("%s.%08x.analysis".formatted(topicsFile, crc.getValue()));
+
+        final var cache = new TopicAnalysisCache(analyzer, fingerprint, file);
+        if (Files.exists(file)) {
+            try {
+                cache.load();
+            } catch (IOException e) {
+                cache.entries.clear();
+                System.out.printf("Ignoring topic analysis cache %s: %s%n", file, e.getMessage());
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the fingerprint of an analyzer: its class, the checksum of the code source it is loaded from and the
+     * parameters provided by {@link AnalyzerFingerprint}.
+     * <p>
+     * The code source holds the filters the analyzer builds, its stop lists and the OpenNLP models, so that a change
+     * to any of them is a different fingerprint; the Lucene version covers the filters of Lucene. The checksum of each
+     * code source is computed only once.
+     * @param analyzer the analyzer
+     * @return the fingerprint
+     */
+    public static String fingerprint(final Analyzer analyzer) {
+        final var type = analyzer.getClass();
+        final var crc = new CRC32();
+        crc.update(Version.LATEST.toString().getBytes(StandardCharsets.UTF_8));
+        final Long codeSource = codeSourceChecksum(type);
+        if (codeSource != null) {
+            crc.update(Long.toString(codeSource).getBytes(StandardCharsets.UTF_8));
+        }
+        final var parameters = analyzer instanceof AnalyzerFingerprint ?
+                ((AnalyzerFingerprint) analyzer).fingerprint() : "";
+        return "%s@%08x(%s)".formatted(type.getName(), crc.getValue(), parameters);
+    }
+
+    /**
+     * Returns the checksum of the code source of a class, computed on the first call for its location
+     * @return the checksum, {@code null} if the code source cannot be read
+     */
+    private static Long codeSourceChecksum(final Class<?> type) {
+        final var codeSource = type.getProtectionDomain().getCodeSource();
+        final var key = codeSource == null || codeSource.getLocation() == null ? type.getName()
+                : codeSource.getLocation().toString();
+        return CODE_SOURCE_CHECKSUMS.computeIfAbsent(key, k -> {
+            final var crc = new CRC32();
+            try {
+                updateWithCodeSource(crc, type);
+                return crc.getValue();
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                // the class name and the parameters are still a valid, if weaker, fingerprint
+                System.out.printf("Unable to read the code source of %s: %s%n", type.getName(), e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Add to a checksum the contents of the code source of a class: the files of a directory, in the order of their
+     * paths, or the bytes of a jar. Without a code source only the class file is added. The properties files are
+     * skipped, being the configuration of the runs: what it sets for the analyzer is in its parameters.
+     */
+    private static void updateWithCodeSource(final CRC32 crc, final Class<?> type)
+            throws IOException, URISyntaxException {
+        final var codeSource = type.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            try (final var in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+                if (in != null) {
+                    crc.update(in.readAllBytes());
+                }
+            }
+            return;
+        }
+        final var location = Path.of(codeSource.getLocation().toURI());
+        if (!Files.isDirectory(location)) {
+            crc.update(Files.readAllBytes(location));
+            return;
+        }
+        final List<Path> files;
+        try (final var walk = Files.walk(location)) {
+            files = walk.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".properties")).sorted().toList();
+        }
+        for (final var file : files) {
+            crc.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+            crc.update(Files.readAllBytes(file));
+        }
+    }
+
+    /**
+     * Returns the analyzer replaying the cached analysis, to be used in place of the real one
+     * @return the caching {@link Analyzer}
+     */
+    public Analyzer analyzer() {
+        return analyzer;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Write the cache file if new texts have been analyzed or some cached ones are no more used.
+     * Failures (e.g. a read-only topics directory) are reported and ignored: the cache is only an optimization.
+     */
+    public void save() {
+        if (misses.get() == 0 && used.size() == entries.size()) {
+            return;
+        }
+        try {
+            final var tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+                    ".tmp");
+            try (final var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(fingerprint);
+                final var keys = new ArrayList<>(used);
+                Collections.sort(keys);
+                out.writeInt(keys.size());
+                for (final var key : keys) {
+                    final var tokens = entries.get(key);
+                    out.writeUTF(key);
+                    out.writeInt(tokens.size());
+                    for (final var token : tokens) {
+                        out.writeUTF(token.term());
+                        out.writeUTF(token.type());
+                        out.writeInt(token.positionIncrement());
+                        out.writeInt(token.positionLength());
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.printf("Topic analysis cache %s saved: %d texts analyzed, %d replayed.%n", file, misses.get(),
+                    hits.get());
+        } catch (IOException e) {
+            System.out.printf("Unable to save topic analysis cache %s: %s%n", file, e.getMessage());
+        }
+    }
+
+    private void load() throws IOException {
+        try (final var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a topic analysis cache");
+            }
+            if (!in.readUTF().equals(fingerprint)) {
+                throw new IOException("written by a different analyzer");
+            }
+            final int numEntries = in.readInt();
+            for (int i = 0; i < numEntries; i++) {
+                final var key = in.readUTF();
+                final var tokens = new Token[in.readInt()];
+                for (int j = 0; j < tokens.length; j++) {
+                    tokens[j] = new Token(in.readUTF(), in.readUTF(), in.readInt(), in.readInt());
+                }
+                entries.put(key, List.of(tokens));
+            }
+        }
+    }
+
+    /**
+     * Returns the tokens of a text, analyzing it with the real analyzer if it is not cached
+     */
+    private List<Token> tokens(final String field, final String text) throws IOException {
+        final var key = field + '\u0000' + text;
+        used.add(key);
+        var tokens = entries.get(key);
+        if (tokens != null) {
+            hits.incrementAndGet();
+            return tokens;
+        }
+        misses.incrementAndGet();
+        final var analyzed = new ArrayList<Token>();
+        try (final TokenStream stream = delegate.tokenStream(field, text)) {
+            final var termAtt = stream.addAttribute(CharTermAttribute.class);
+            final var typeAtt = stream.addAttribute(TypeAttribute.class);
+            final var posIncAtt = stream.addAttribute(PositionIncrementAttribute.class);
+            final var posLenAtt = stream.addAttribute(PositionLengthAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                analyzed.add(new Token(termAtt.toString(), typeAtt.type(), posIncAtt.getPositionIncrement(),
+                        posLenAtt.getPositionLength()));
+            }
+            stream.end();
+        }
+        tokens = List.copyOf(analyzed);
+        entries.put(key, tokens);
+        return tokens;
+    }
+
+    /**
+     * Tokenizer replaying the cached tokens of its whole input
+     */
+    private final class ReplayTokenizer extends Tokenizer {
+        private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+        private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+        private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+        private final PositionLengthAttribute posLenAtt = addAttribute(PositionLengthAttribute.class);
+        private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+
+        private final String field;
+        private final StringBuilder text = new StringBuilder();
+        private final char[] buffer = new char[1024];
+        private List<Token> tokens = List.of();
+        private int next;
+
+        private ReplayTokenizer(final String field) {
+            this.field = field;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            text.setLength(0);
+            for (int read = input.read(buffer); read != -1; read = input.read(buffer)) {
+                text.append(buffer, 0, read);
+            }
+            tokens = tokens(field, text.toString());
+            next = 0;
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (next >= tokens.size()) {
+                return false;
+            }
+            clearAttributes();
+            final var token = tokens.get(next++);
+            termAtt.setEmpty().append(token.term());
+            typeAtt.setType(token.type());
+            posIncAtt.setPositionIncrement(token.positionIncrement());
+            posLenAtt.setPositionLength(token.positionLength());
+            return true;
+        }
+
+        @Override
+        public void end() throws IOException {
+            super.end();
+            final int finalOffset = correctOffset(text.length());
+            offsetAtt.setOffset(finalOffset, finalOffset);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package search;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TopScoreDocCollector;
+import parse.ParsedDocument;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Warm-up pass of a searcher, run before the timing of the search starts.
+ * <p>
+ * A sample of the topics is searched as the timed search does, identifiers of the hits included, but without
+ * recording the metrics nor writing the run: the first timed topics then find the scorers compiled by the JIT and
+ * the pages of the index they read already in memory. Fewer queries than topics are sampled evenly across the topics;
+ * more queries cycle over them.
+ */
+public final class WarmUp {
+
+    private WarmUp() {
+    }
+
+    /**
+     * Replay a sample of the topics
+     * @param searcher the {@link IndexSearcher} of the timed search
+     * @param queryShape creates the queries of the topics
+     * @param titles the titles of the topics, in order
+     * @param queries the number of queries to replay, 0 for none
+     * @param k the number of documents to retrieve
+     * @param totalHitsThreshold number of hits to count exactly before pruning non-competitive documents
+     * @return the elapsed milliseconds
+     * @throws IOException if something goes wrong while searching
+     * @throws ParseException if a title cannot be parsed
+     * @throws IllegalArgumentException if the number of queries is negative
+     */
+    public static long replay(final IndexSearcher searcher, final QueryShape queryShape, final List<String> titles,
+                              final int queries, final int k, final int totalHitsThreshold)
+            throws IOException, ParseException {
+        if (queries < 0) {
+            throw new IllegalArgumentException("The number of warm-up queries cannot be negative.");
+        }
+        if (queries == 0 || titles.isEmpty()) {
+            return 0;
+        }
+
+        final long start = System.currentTimeMillis();
+        final int n = titles.size();
+        final Set<String> idField = Set.of(ParsedDocument.FIELDS.ID);
+        long hits = 0;
+        for (int i = 0; i < queries; i++) {
+            final var title = titles.get(queries >= n ? i % n : (int) ((long) i * n / queries));
+            final var collector = TopScoreDocCollector.create(k, totalHitsThreshold);
+            searcher.search(queryShape.create(title), collector);
+            for (final var scoreDoc : collector.topDocs().scoreDocs) {
+                searcher.doc(scoreDoc.doc, idField);
+                hits++;
+            }
+        }
+        final long elapsed = System.currentTimeMillis() - start;
+        System.out.printf("Warm-up: %d queries replayed, %d hits read in %d ms.%n", queries, hits, elapsed);
+        return elapsed;
+    }
+}
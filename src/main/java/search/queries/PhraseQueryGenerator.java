@@ -1,9 +1,12 @@
 package search.queries;
 
+import analyzers.ShingleAnalyzer;
+import index.ShingleField;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 
@@ -25,25 +28,51 @@ public class PhraseQueryGenerator {
      * @throws IOException
      */
     public static Query create(final Analyzer analyzer, final String fieldName, final String queryText, final int size) throws IOException {
+        return create(analyzer, fieldName, null, queryText, size);
+    }
+
+    /**
+     * Create a {@link Query} that search for phrases of @size dimension (considering also synonyms),
+     * matching them as terms of the {@link ShingleField} of @fieldName when the index contains shingles of @size tokens
+     * @param reader the reader of the index to search
+     * @param analyzer the analyzer to use for tokenization
+     * @param fieldName name of the field to search
+     * @param queryText the text of the query
+     * @param size the dimension of the phrases
+     * @return a new {@link Query} that fuse all the generated term and phrase queries
+     * @throws IOException
+     */
+    public static Query create(final IndexReader reader, final Analyzer analyzer, final String fieldName, final String queryText, final int size) throws IOException {
+        final var shingleField = ShingleField.indexedSize(reader, fieldName) == size ? ShingleField.nameFor(fieldName) : null;
+        return create(analyzer, fieldName, shingleField, queryText, size);
+    }
+
+    /**
+     * Create the phrase queries, using term queries on @shingleFieldName for the phrases without synonyms
+     * @param shingleFieldName name of the field with the shingles of @size tokens, {@code null} for positional phrases only
+     */
+    private static Query create(final Analyzer analyzer, final String fieldName, final String shingleFieldName,
+                                final String queryText, final int size) throws IOException {
         final var queryBuilder = new BooleanQuery.Builder();
-        final List<Term[][]> phraseList = new ArrayList<>();
-        final Queue<Term[]> tmpQueue = new LinkedList<>();
+        final List<Term[]> words = queryToTerms(analyzer, fieldName, queryText);
 
-        queryToTerms(analyzer, fieldName, queryText).forEach(word -> {
-            if (tmpQueue.size() == size) {
-                phraseList.add(tmpQueue.toArray(new Term[0][0]));
-                tmpQueue.remove();
-            }
-            tmpQueue.add(word);
-        });
-        if (tmpQueue.size() == size) phraseList.add(tmpQueue.toArray(new Term[0][0]));
-        phraseList.forEach(phrase -> {
-            final var phraseQueryBuilder = new MultiPhraseQuery.Builder();
-            for (final var terms: phrase) {
-                phraseQueryBuilder.add(terms);
+        for (int i = 0; i + size <= words.size(); i++) {
+            final var phrase = words.subList(i, i + size);
+            final var hasSynonyms = phrase.stream().anyMatch(terms -> terms.length > 1);
+            if (shingleFieldName != null && !hasSynonyms) {
+                // the phrase is a single shingle: plain term lookup
+                final var shingle = phrase.stream()
+                        .map(terms -> terms[0].text())
+                        .collect(Collectors.joining(ShingleAnalyzer.TOKEN_SEPARATOR));
+                queryBuilder.add(new TermQuery(new Term(shingleFieldName, shingle)), BooleanClause.Occur.SHOULD);
+            } else {
+                final var phraseQueryBuilder = new MultiPhraseQuery.Builder();
+                for (final var terms: phrase) {
+                    phraseQueryBuilder.add(terms);
+                }
+                queryBuilder.add(phraseQueryBuilder.build(), BooleanClause.Occur.SHOULD);
             }
-            queryBuilder.add(phraseQueryBuilder.build(), BooleanClause.Occur.SHOULD);
-        });
+        }
         return queryBuilder.build();
     }
 
@@ -65,6 +94,7 @@ public class PhraseQueryGenerator {
                 list.add(nl);
             }
         }
+        stream.end();
         stream.close();
         return list.stream().map(l -> l.toArray(new Term[0])).collect(Collectors.toList());
     }
@@ -0,0 +1,52 @@
+package server;
+
+import metrics.Histogram;
+
+import java.util.Locale;
+
+/**
+ * Thread-safe recorder of request latencies, reporting their percentiles.
+ * <p>
+ * The latencies are counted in a {@link Histogram}, so the memory is fixed however long the server runs and the
+ * percentiles are within its relative error.
+ */
+public class LatencyRecorder {
+    /**
+     * Latencies in nanoseconds
+     */
+    private final Histogram latencies = new Histogram();
+
+    /**
+     * Record the latency of a request
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(final long nanos) {
+        latencies.record(nanos);
+    }
+
+    /**
+     * Snapshot of the recorded latencies
+     * @param count number of requests
+     * @param p50 median latency in milliseconds
+     * @param p90 90th percentile in milliseconds
+     * @param p99 99th percentile in milliseconds
+     * @param max max latency in milliseconds
+     */
+    public record Percentiles(long count, double p50, double p90, double p99, double max) {
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "%d requests, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    count, p50, p90, p99, max);
+        }
+    }
+
+    /**
+     * Returns the percentiles of the latencies recorded so far
+     * @return a new {@link Percentiles}, all zeros if nothing has been recorded
+     */
+    public Percentiles percentiles() {
+        final var snapshot = latencies.snapshot();
+        return new Percentiles(snapshot.count(), snapshot.p50() / 1e6, snapshot.p90() / 1e6, snapshot.p99() / 1e6,
+                snapshot.max() / 1e6);
+    }
+}
@@ -0,0 +1,271 @@
+package server;
+
+import metrics.Metrics;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import search.BasicSearcher;
+import search.Run;
+import topics.Topic;
+import topics.Topics;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Coordinator searching the topics on the shards of an index, each one served by a {@link ShardServer}.
+ * <p>
+ * For each topic the query is broadcast twice (see {@link ShardProtocol}): first for the statistics of its terms in
+ * each shard, summed into the global statistics, then for the top documents of each shard scored with the global
+ * statistics, so that the scores are the ones of a single index with all the documents. The top documents of the
+ * shards are merged with {@link TopDocs#merge(int, TopDocs[])} and the run is written to
+ * {@code <run_path>/<run_id>.txt}.
+ */
+public class ScatterGatherSearcher implements BasicSearcher {
+    /**
+     * The addresses of the shard servers
+     */
+    private final List<InetSocketAddress> shards;
+
+    /**
+     * The topics to be searched
+     */
+    private final List<Topic> topics;
+
+    /**
+     * The identifier of the run
+     */
+    private final String runId;
+
+    /**
+     * The file of the run
+     */
+    private final Path runFile;
+
+    /**
+     * The maximum number of documents to retrieve
+     */
+    private final int maxDocsRetrieved;
+
+    /**
+     * The total elapsed time.
+     */
+    private long elapsedTime = Long.MIN_VALUE;
+
+    /**
+     * Creates a new searcher.
+     *
+     * @param shards           the addresses of the shard servers.
+     * @param topicsFile       the file containing the topics to search for.
+     * @param expectedTopics   the total number of topics expected to be searched.
+     * @param runId            the identifier of the run to be created.
+     * @param runPath          the path where to store the run.
+     * @param maxDocsRetrieved the maximum number of documents to be retrieved.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     */
+    public ScatterGatherSearcher(final List<InetSocketAddress> shards, final String topicsFile,
+                                 final int expectedTopics, final String runId, final String runPath,
+                                 final int maxDocsRetrieved) {
+        if (shards == null) {
+            throw new NullPointerException("Shards cannot be null.");
+        }
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Shards cannot be empty.");
+        }
+        this.shards = List.copyOf(shards);
+
+        if (topicsFile == null) {
+            throw new NullPointerException("Topics file cannot be null.");
+        }
+        try {
+            topics = Topics.loadTopics(topicsFile).topics;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(
+                    String.format("Unable to process topic file %s: %s.", topicsFile, e.getMessage()), e);
+        }
+        if (expectedTopics <= 0) {
+            throw new IllegalArgumentException(
+                    "The expected number of topics to be searched cannot be less than or equal to zero.");
+        }
+        if (topics.size() != expectedTopics) {
+            System.out.printf("Expected to search for %s topics; %s topics found instead.%n", expectedTopics,
+                    topics.size());
+        }
+
+        if (runId == null) {
+            throw new NullPointerException("Run identifier cannot be null.");
+        }
+        if (runId.isEmpty()) {
+            throw new IllegalArgumentException("Run identifier cannot be empty.");
+        }
+        this.runId = runId;
+
+        if (runPath == null) {
+            throw new NullPointerException("Run path cannot be null.");
+        }
+        final Path runDir = Paths.get(runPath);
+        if (!Files.isDirectory(runDir) || !Files.isWritable(runDir)) {
+            throw new IllegalArgumentException(
+                    String.format("%s expected to be a writable directory where to store the run.", runPath));
+        }
+        this.runFile = runDir.resolve(runId + ".txt");
+
+        if (maxDocsRetrieved <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of documents to be retrieved cannot be less than or equal to zero.");
+        }
+        this.maxDocsRetrieved = maxDocsRetrieved;
+    }
+
+    @Override
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Searches the topics on all the shards and writes the merged run.
+     *
+     * @throws IOException if something goes wrong while searching or writing the run.
+     */
+    @Override
+    @SuppressWarnings("try")
+    public void search() throws IOException {
+        System.out.printf("%n#### Start searching %d shards ####%n", shards.size());
+        final long start = System.currentTimeMillis();
+
+        final List<Connection> connections = new ArrayList<>(shards.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+        try {
+            for (final var address : shards) {
+                connections.add(new Connection(address));
+            }
+
+            final var run = new Run(runId);
+            for (final var topic : topics) {
+                System.out.printf("Searching for topic %d.%n", topic.number);
+                try (final var ignored = Metrics.timer("search.scatter_gather").start()) {
+                    run.add(Integer.toString(topic.number), search(topic.title, connections, executor));
+                }
+            }
+            run.write(runFile);
+        } finally {
+            executor.shutdownNow();
+            for (final var connection : connections) {
+                connection.close();
+            }
+        }
+
+        elapsedTime = System.currentTimeMillis() - start;
+        System.out.printf("%d topic(s) searched in %d seconds.", topics.size(), elapsedTime / 1000);
+        System.out.printf("#### Searching complete ####%n");
+    }
+
+    /**
+     * Searches a topic on all the shards
+     */
+    private List<Run.Entry> search(final String title, final List<Connection> connections,
+                                   final ExecutorService executor) throws IOException {
+        final var shardStats = broadcast(new ShardProtocol.Request(ShardProtocol.STATS, title, 0, null),
+                connections, executor);
+        final var stats = ShardProtocol.Stats.sum(shardStats.stream().map(ShardProtocol.Response::stats).toList());
+
+        final var responses = broadcast(new ShardProtocol.Request(ShardProtocol.SEARCH, title, maxDocsRetrieved,
+                stats), connections, executor);
+        final var shardHits = new TopDocs[responses.size()];
+        final List<Map<Integer, String>> ids = new ArrayList<>(responses.size());
+        for (int i = 0; i < shardHits.length; i++) {
+            final var hits = responses.get(i).hits();
+            final var scoreDocs = new ScoreDoc[hits.size()];
+            final Map<Integer, String> shardIds = new HashMap<>();
+            for (int j = 0; j < scoreDocs.length; j++) {
+                scoreDocs[j] = new ScoreDoc(hits.get(j).doc(), hits.get(j).score());
+                shardIds.put(hits.get(j).doc(), hits.get(j).id());
+            }
+            shardHits[i] = new TopDocs(new TotalHits(responses.get(i).totalHits(),
+                    TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO), scoreDocs);
+            ids.add(shardIds);
+        }
+
+        // ties are broken by shard, then by document, as in a single index of the concatenated shards
+        final var merged = TopDocs.merge(maxDocsRetrieved, shardHits);
+        final var ranking = new ArrayList<Run.Entry>(merged.scoreDocs.length);
+        for (final var scoreDoc : merged.scoreDocs) {
+            ranking.add(new Run.Entry(ids.get(scoreDoc.shardIndex).get(scoreDoc.doc), scoreDoc.score));
+        }
+        return ranking;
+    }
+
+    /**
+     * Sends a request to all the shards at the same time
+     * @return the responses, in the order of the shards
+     * @throws IOException if a shard cannot be reached or fails
+     */
+    private static List<ShardProtocol.Response> broadcast(final ShardProtocol.Request request,
+                                                          final List<Connection> connections,
+                                                          final ExecutorService executor) throws IOException {
+        final List<Future<ShardProtocol.Response>> futures = new ArrayList<>(connections.size());
+        for (final var connection : connections) {
+            futures.add(executor.submit(() -> connection.send(request)));
+        }
+        final List<ShardProtocol.Response> responses = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            final ShardProtocol.Response response;
+            try {
+                response = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while searching.");
+            } catch (ExecutionException e) {
+                throw new IOException("Unable to reach shard %d: %s.".formatted(i, e.getCause().getMessage()),
+                        e.getCause());
+            }
+            if (response.error() != null) {
+                throw new IOException("Shard %d failed: %s.".formatted(i, response.error()));
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    /**
+     * Connection to a shard server, used by one request at a time
+     */
+    private static final class Connection implements Closeable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        private Connection(final InetSocketAddress address) throws IOException {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        private ShardProtocol.Response send(final ShardProtocol.Request request) throws IOException {
+            out.println(ShardProtocol.MAPPER.writeValueAsString(request));
+            out.flush();
+            final var line = in.readLine();
+            if (line == null) {
+                throw new EOFException("Connection closed by the shard.");
+            }
+            return ShardProtocol.MAPPER.readValue(line, ShardProtocol.Response.class);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import index.IndexStorage;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import parse.ParsedDocument;
+import search.QueryShape;
+import search.Run;
+import search.TopKSearch;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Long-running searcher keeping the index and the analyzers warm between requests.
+ * <p>
+ * The index is shared through a {@link SearcherManager}, refreshed periodically so that a rebuilt index is picked up
+ * without restarting. Requests are executed by a fixed pool of threads, each with its own {@link QueryShape} (query
+ * parsers are not thread-safe) and warmed up by {@link #warmUp(List)}, which matters for analyzers loading models
+ * lazily per thread such as {@link analyzers.OpenNlpAnalyzer}.
+ * <p>
+ * Two front ends are available:
+ * <ul>
+ *     <li>HTTP on the loopback interface: {@code GET /search?q=<title>[&k=<n>]} returns the hits as JSON, {@code k}
+ *     being at most the default number of documents to retrieve,
+ *     {@code GET /stats} returns the latency percentiles</li>
+ *     <li>line protocol: every line is a topic title, answered by one {@code rank id score} line for each hit
+ *     and an empty line; the line {@code :stats} prints the latency percentiles</li>
+ * </ul>
+ */
+public class SearchServer implements Closeable {
+    /**
+     * Seconds between two refreshes of the searcher
+     */
+    private static final int REFRESH_SECONDS = 5;
+
+    /**
+     * The directory of the index
+     */
+    private final Directory directory;
+
+    /**
+     * Manager of the searcher of the index
+     */
+    private final SearcherManager manager;
+
+    /**
+     * The query shape of each request thread
+     */
+    private final ThreadLocal<QueryShape> queryShapes;
+
+    /**
+     * The default number of documents to retrieve
+     */
+    private final int maxDocsRetrieved;
+
+    /**
+     * The number of hits to count before pruning non-competitive documents
+     */
+    private final int totalHitsThreshold;
+
+    /**
+     * The threads executing the requests
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The number of threads of @executor
+     */
+    private final int numThreads;
+
+    /**
+     * Thread refreshing the searcher
+     */
+    private final ScheduledExecutorService refresher;
+
+    private final LatencyRecorder latencies = new LatencyRecorder();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private HttpServer httpServer;
+
+    /**
+     * Create a new server
+     * @param indexPath the directory containing the index
+     * @param storage where the index is stored
+     * @param similarity the similarity to use
+     * @param queryShapeFactory creates the {@link QueryShape} of each thread
+     * @param maxDocsRetrieved the default and maximum number of documents to retrieve
+     * @param totalHitsThreshold the number of hits to count before pruning non-competitive documents
+     * @param numThreads the number of threads executing the requests
+     * @throws IOException if the index cannot be opened
+     * @throws NullPointerException if any of the parameters is {@code null}
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values
+     */
+    public SearchServer(final String indexPath, final IndexStorage storage, final Similarity similarity,
+                        final Supplier<QueryShape> queryShapeFactory, final int maxDocsRetrieved,
+                        final int totalHitsThreshold, final int numThreads) throws IOException {
+        if (indexPath == null) {
+            throw new NullPointerException("Index path cannot be null.");
+        }
+        if (storage == null) {
+            throw new NullPointerException("Index storage cannot be null.");
+        }
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+        if (queryShapeFactory == null) {
+            throw new NullPointerException("Query shape factory cannot be null.");
+        }
+        if (maxDocsRetrieved <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of documents to be retrieved cannot be less than or equal to zero.");
+        }
+        if (totalHitsThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "The total hits threshold cannot be less than or equal to zero.");
+        }
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads cannot be less than 1.");
+        }
+
+        directory = storage.open(Path.of(indexPath));
+        manager = new SearcherManager(directory, new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+                final var searcher = new IndexSearcher(reader);
+                searcher.setSimilarity(similarity);
+                return searcher;
+            }
+        });
+        queryShapes = ThreadLocal.withInitial(queryShapeFactory);
+        this.maxDocsRetrieved = maxDocsRetrieved;
+        this.totalHitsThreshold = totalHitsThreshold;
+        this.numThreads = numThreads;
+        executor = Executors.newFixedThreadPool(numThreads);
+
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final var thread = new Thread(r, "searcher-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                manager.maybeRefresh();
+            } catch (IOException e) {
+                System.out.printf("Unable to refresh the searcher: %s%n", e.getMessage());
+            }
+        }, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Search the given titles on every request thread, so that analyzers and index are warm before the first
+     * request. Warm-up searches are not included in the latencies.
+     * @param titles the titles to search, e.g. those of the topics
+     * @throws InterruptedException if interrupted while waiting for the warm-up
+     * @throws ExecutionException if a warm-up search fails
+     */
+    public void warmUp(final List<String> titles) throws InterruptedException, ExecutionException {
+        // the barrier forces every task on a different thread of the pool
+        final var barrier = new CyclicBarrier(numThreads);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                for (final var title : titles) {
+                    execute(title, maxDocsRetrieved);
+                }
+                return null;
+            }));
+        }
+        for (final var future : futures) {
+            future.get();
+        }
+    }
+
+    /**
+     * Search a topic title
+     * @param title the title of the topic
+     * @param k the number of documents to retrieve
+     * @return the retrieved documents, by decreasing score
+     * @throws IOException if something goes wrong while searching
+     * @throws ParseException if the title cannot be parsed
+     */
+    public List<Run.Entry> search(final String title, final int k) throws IOException, ParseException {
+        try {
+            return executor.submit(() -> timedExecute(title, k)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while searching.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof ParseException) throw (ParseException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Search a topic title in the current thread, recording the latency
+     */
+    private List<Run.Entry> timedExecute(final String title, final int k) throws IOException, ParseException {
+        final long start = System.nanoTime();
+        final var hits = execute(title, k);
+        latencies.record(System.nanoTime() - start);
+        return hits;
+    }
+
+    /**
+     * Search a topic title in the current thread
+     */
+    private List<Run.Entry> execute(final String title, final int k) throws IOException, ParseException {
+        final var query = queryShapes.get().create(title);
+        final var searcher = manager.acquire();
+        try {
+            // the queue of the top documents is sized on k, which cannot exceed the documents of the index
+            final int topK = Math.min(k, Math.max(1, searcher.getIndexReader().maxDoc()));
+            final var docs = TopKSearch.search(searcher, query, topK, totalHitsThreshold);
+            final var idField = Set.of(ParsedDocument.FIELDS.ID);
+            final var hits = new ArrayList<Run.Entry>(docs.scoreDocs.length);
+            for (final var scoreDoc : docs.scoreDocs) {
+                hits.add(new Run.Entry(searcher.doc(scoreDoc.doc, idField).get(ParsedDocument.FIELDS.ID),
+                        scoreDoc.score));
+            }
+            return hits;
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    /**
+     * Returns the latency percentiles of the requests served so far
+     * @return the {@link LatencyRecorder.Percentiles}
+     */
+    public LatencyRecorder.Percentiles getLatencies() {
+        return latencies.percentiles();
+    }
+
+    /**
+     * Start serving HTTP requests on the loopback interface
+     * @param port the port to listen to, 0 for any free port
+     * @return the address the server is listening to
+     * @throws IOException if the server cannot be started
+     */
+    public InetSocketAddress startHttp(final int port) throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/search", this::handleSearch);
+        httpServer.createContext("/stats", exchange -> respond(exchange, 200, latencies.percentiles()));
+        // requests are handled directly by the warm search threads
+        httpServer.setExecutor(executor);
+        httpServer.start();
+        return httpServer.getAddress();
+    }
+
+    private void handleSearch(final HttpExchange exchange) throws IOException {
+        final Map<String, String> params = new HashMap<>();
+        final var rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery != null) {
+            for (final var param : rawQuery.split("&")) {
+                final var kv = param.split("=", 2);
+                params.put(URLDecoder.decode(kv[0], StandardCharsets.UTF_8),
+                        kv.length > 1 ? URLDecoder.decode(kv[1], StandardCharsets.UTF_8) : "");
+            }
+        }
+        final var title = params.get("q");
+        if (title == null || title.isBlank()) {
+            respond(exchange, 400, Map.of("error", "Missing parameter q."));
+            return;
+        }
+        try {
+            final int k = params.containsKey("k") ? Integer.parseInt(params.get("k")) : maxDocsRetrieved;
+            if (k <= 0) {
+                throw new NumberFormatException("k must be positive");
+            }
+            if (k > maxDocsRetrieved) {
+                throw new NumberFormatException("k cannot be greater than %d".formatted(maxDocsRetrieved));
+            }
+            respond(exchange, 200, Map.of("q", title, "hits", timedExecute(title, k)));
+        } catch (NumberFormatException | ParseException e) {
+            respond(exchange, 400, Map.of("error", e.getMessage()));
+        } catch (IOException | RuntimeException e) {
+            respond(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final Object body) throws IOException {
+        final var bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Serve the line protocol until the end of the input
+     * @param in where the titles are read
+     * @param out where the hits are written
+     * @throws IOException if the input cannot be read
+     */
+    public void serveLines(final BufferedReader in, final PrintWriter out) throws IOException {
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            line = line.strip();
+            if (line.isEmpty()) continue;
+            if (line.equals(":stats")) {
+                out.println(latencies.percentiles());
+            } else {
+                try {
+                    final var hits = search(line, maxDocsRetrieved);
+                    for (int i = 0; i < hits.size(); i++) {
+                        out.printf(Locale.ENGLISH, "%d\t%s\t%.6f%n", i, hits.get(i).docId(), hits.get(i).score());
+                    }
+                } catch (ParseException e) {
+                    out.printf("error\t%s%n", e.getMessage().replace('\n', ' '));
+                }
+            }
+            out.println();
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+        refresher.shutdownNow();
+        executor.shutdown();
+        manager.close();
+        directory.close();
+    }
+}
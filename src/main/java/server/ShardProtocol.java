@@ -0,0 +1,138 @@
+package server;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.Similarity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Messages exchanged by the {@link ScatterGatherSearcher} and its {@link ShardServer}s, one JSON object per line.
+ * <p>
+ * A topic is searched in two rounds: {@code stats} asks each shard the statistics of the terms of the query, which the
+ * coordinator sums into the global ones; {@code search} sends them back with the query, so that every shard scores
+ * its documents as if it held the whole collection and the top documents of the shards can be merged by score.
+ */
+final class ShardProtocol {
+    static final String STATS = "stats";
+    static final String SEARCH = "search";
+
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private ShardProtocol() {
+    }
+
+    /**
+     * Statistics of a field, see {@link CollectionStatistics}
+     */
+    record FieldStats(String field, long maxDoc, long docCount, long sumTotalTermFreq, long sumDocFreq) {
+    }
+
+    /**
+     * Statistics of a term, see {@link TermStatistics}
+     */
+    record TermStats(String field, String text, long docFreq, long totalTermFreq) {
+    }
+
+    /**
+     * Statistics of the fields and terms of a query
+     */
+    record Stats(List<FieldStats> fields, List<TermStats> terms) {
+        /**
+         * Returns the sum of the statistics of the shards
+         * @param shards the statistics of each shard
+         * @return the global statistics
+         */
+        static Stats sum(final List<Stats> shards) {
+            final Map<String, FieldStats> fields = new LinkedHashMap<>();
+            final Map<String, TermStats> terms = new LinkedHashMap<>();
+            for (final var shard : shards) {
+                for (final var f : shard.fields()) {
+                    fields.merge(f.field(), f, (a, b) -> new FieldStats(a.field(), a.maxDoc() + b.maxDoc(),
+                            a.docCount() + b.docCount(), a.sumTotalTermFreq() + b.sumTotalTermFreq(),
+                            a.sumDocFreq() + b.sumDocFreq()));
+                }
+                for (final var t : shard.terms()) {
+                    terms.merge(t.field() + '\u0000' + t.text(), t, (a, b) -> new TermStats(a.field(), a.text(),
+                            a.docFreq() + b.docFreq(), a.totalTermFreq() + b.totalTermFreq()));
+                }
+            }
+            return new Stats(new ArrayList<>(fields.values()), new ArrayList<>(terms.values()));
+        }
+    }
+
+    /**
+     * A request of the coordinator
+     * @param op {@link #STATS} or {@link #SEARCH}
+     * @param q the title of the topic
+     * @param k the number of documents to retrieve, for {@link #SEARCH}
+     * @param stats the global statistics, for {@link #SEARCH}
+     */
+    record Request(String op, String q, int k, Stats stats) {
+    }
+
+    /**
+     * A document retrieved by a shard
+     * @param doc the Lucene id of the document in its shard
+     * @param score the score of the document
+     * @param id the identifier of the document
+     */
+    record Hit(int doc, float score, String id) {
+    }
+
+    /**
+     * The answer of a shard: the statistics for {@link #STATS}, the hits for {@link #SEARCH}, or an error
+     */
+    record Response(Stats stats, List<Hit> hits, long totalHits, String error) {
+    }
+
+    /**
+     * Searcher scoring with the global statistics of a query instead of the ones of its shard
+     */
+    static final class GlobalStatsSearcher extends IndexSearcher {
+        private final Map<String, CollectionStatistics> fields = new HashMap<>();
+        private final Map<Term, TermStatistics> terms = new HashMap<>();
+
+        GlobalStatsSearcher(final IndexReader reader, final Similarity similarity, final Stats stats) {
+            super(reader);
+            setSimilarity(similarity);
+            for (final var f : stats.fields()) {
+                // a field without documents in any shard matches nothing, so it has no statistics
+                if (f.docCount() > 0 && f.sumDocFreq() > 0) {
+                    fields.put(f.field(), new CollectionStatistics(f.field(), f.maxDoc(), f.docCount(),
+                            f.sumTotalTermFreq(), f.sumDocFreq()));
+                }
+            }
+            for (final var t : stats.terms()) {
+                if (t.docFreq() > 0) {
+                    final var term = new Term(t.field(), t.text());
+                    terms.put(term, new TermStatistics(term.bytes(), t.docFreq(), t.totalTermFreq()));
+                }
+            }
+        }
+
+        @Override
+        public CollectionStatistics collectionStatistics(final String field) throws IOException {
+            final var global = fields.get(field);
+            return global != null ? global : super.collectionStatistics(field);
+        }
+
+        @Override
+        public TermStatistics termStatistics(final Term term, final int docFreq, final long totalTermFreq)
+                throws IOException {
+            final var global = terms.get(term);
+            return global != null ? global : super.termStatistics(term, docFreq, totalTermFreq);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package server;
+
+import index.IndexStorage;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import parse.ParsedDocument;
+import search.QueryShape;
+import search.TopKSearch;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Worker serving one shard of a sharded index to a {@link ScatterGatherSearcher}, over a socket on the loopback
+ * interface.
+ * <p>
+ * Every connection is served by its own thread, with its own {@link QueryShape} (query parsers are not thread-safe):
+ * each line is a {@link ShardProtocol.Request} answered by one {@link ShardProtocol.Response} line.
+ */
+public class ShardServer implements Closeable {
+    /**
+     * The directory of the shard
+     */
+    private final Directory directory;
+
+    /**
+     * The reader of the shard
+     */
+    private final IndexReader reader;
+
+    /**
+     * The similarity of the run
+     */
+    private final Similarity similarity;
+
+    /**
+     * The query shape of each connection thread
+     */
+    private final ThreadLocal<QueryShape> queryShapes;
+
+    /**
+     * The number of hits to count before pruning non-competitive documents
+     */
+    private final int totalHitsThreshold;
+
+    /**
+     * The threads serving the connections
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private ServerSocket serverSocket;
+
+    /**
+     * Create a new server
+     * @param indexPath the directory containing the shard
+     * @param storage where the shard is stored
+     * @param similarity the similarity of the run
+     * @param queryShapeFactory creates the {@link QueryShape} of each connection
+     * @param totalHitsThreshold the number of hits to count before pruning non-competitive documents
+     * @throws IOException if the shard cannot be opened
+     * @throws NullPointerException if any of the parameters is {@code null}
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values
+     */
+    public ShardServer(final String indexPath, final IndexStorage storage, final Similarity similarity,
+                       final Supplier<QueryShape> queryShapeFactory, final int totalHitsThreshold)
+            throws IOException {
+        if (indexPath == null) {
+            throw new NullPointerException("Index path cannot be null.");
+        }
+        if (storage == null) {
+            throw new NullPointerException("Index storage cannot be null.");
+        }
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+        if (queryShapeFactory == null) {
+            throw new NullPointerException("Query shape factory cannot be null.");
+        }
+        if (totalHitsThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "The total hits threshold cannot be less than or equal to zero.");
+        }
+
+        directory = storage.open(Path.of(indexPath));
+        reader = DirectoryReader.open(directory);
+        this.similarity = similarity;
+        queryShapes = ThreadLocal.withInitial(queryShapeFactory);
+        this.totalHitsThreshold = totalHitsThreshold;
+    }
+
+    /**
+     * Start accepting connections on the loopback interface
+     * @param port the port to listen to, 0 for any free port
+     * @return the port the server is listening to
+     * @throws IOException if the server cannot be started
+     */
+    public int start(final int port) throws IOException {
+        serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        executor.execute(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    final var socket = serverSocket.accept();
+                    executor.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    if (!serverSocket.isClosed()) {
+                        System.out.printf("Unable to accept a connection: %s%n", e.getMessage());
+                    }
+                }
+            }
+        });
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Answer the requests of a connection until it is closed
+     */
+    private void serve(final Socket socket) {
+        try (socket;
+             final var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             final var out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                ShardProtocol.Response response;
+                try {
+                    response = handle(ShardProtocol.MAPPER.readValue(line, ShardProtocol.Request.class));
+                } catch (ParseException | IOException | RuntimeException e) {
+                    response = new ShardProtocol.Response(null, null, 0, String.valueOf(e.getMessage()));
+                }
+                out.println(ShardProtocol.MAPPER.writeValueAsString(response));
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.out.printf("Connection closed: %s%n", e.getMessage());
+        }
+    }
+
+    /**
+     * Answer a request
+     * @param request the request of the coordinator
+     * @return the response
+     * @throws IOException if something goes wrong while searching
+     * @throws ParseException if the title cannot be parsed
+     */
+    ShardProtocol.Response handle(final ShardProtocol.Request request) throws IOException, ParseException {
+        final var query = queryShapes.get().create(request.q());
+        switch (request.op()) {
+            case ShardProtocol.STATS -> {
+                final var searcher = new IndexSearcher(reader);
+                searcher.setSimilarity(similarity);
+                final Set<Term> terms = new LinkedHashSet<>();
+                searcher.rewrite(query).visit(QueryVisitor.termCollector(terms));
+
+                final Map<String, ShardProtocol.FieldStats> fields = new LinkedHashMap<>();
+                final List<ShardProtocol.TermStats> termStats = new ArrayList<>(terms.size());
+                for (final var term : terms) {
+                    fields.computeIfAbsent(term.field(), field -> {
+                        try {
+                            final var stats = searcher.collectionStatistics(field);
+                            return stats == null ? new ShardProtocol.FieldStats(field, reader.maxDoc(), 0, 0, 0)
+                                    : new ShardProtocol.FieldStats(field, stats.maxDoc(), stats.docCount(),
+                                    stats.sumTotalTermFreq(), stats.sumDocFreq());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    termStats.add(new ShardProtocol.TermStats(term.field(), term.text(), reader.docFreq(term),
+                            reader.totalTermFreq(term)));
+                }
+                return new ShardProtocol.Response(new ShardProtocol.Stats(new ArrayList<>(fields.values()),
+                        termStats), null, 0, null);
+            }
+            case ShardProtocol.SEARCH -> {
+                if (request.stats() == null) {
+                    throw new IllegalArgumentException("Search request without global statistics.");
+                }
+                final var searcher = new ShardProtocol.GlobalStatsSearcher(reader, similarity, request.stats());
+                final var docs = TopKSearch.search(searcher, query, request.k(), totalHitsThreshold);
+                final var idField = Set.of(ParsedDocument.FIELDS.ID);
+                final var hits = new ArrayList<ShardProtocol.Hit>(docs.scoreDocs.length);
+                for (final var scoreDoc : docs.scoreDocs) {
+                    hits.add(new ShardProtocol.Hit(scoreDoc.doc, scoreDoc.score,
+                            searcher.doc(scoreDoc.doc, idField).get(ParsedDocument.FIELDS.ID)));
+                }
+                return new ShardProtocol.Response(null, hits, docs.totalHits.value, null);
+            }
+            default -> throw new IllegalArgumentException("Unknown operation %s.".formatted(request.op()));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        executor.shutdownNow();
+        reader.close();
+        directory.close();
+    }
+}
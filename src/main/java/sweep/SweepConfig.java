@@ -0,0 +1,33 @@
+package sweep;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.similarities.Similarity;
+import search.QueryShape;
+
+import java.util.function.Function;
+
+/**
+ * One configuration of a parameter sweep, searched by {@link SweepRunner}
+ * @param name the name of the configuration, used as run id
+ * @param indexKey the key of the index to search: configurations with the same analyzer share the same index
+ * @param similarity the similarity used for searching
+ * @param queryShape creates the shape of the queries for the reader of the index, once for each search since shapes
+ *                   are not thread-safe
+ */
+public record SweepConfig(String name, String indexKey, Similarity similarity,
+                          Function<IndexReader, QueryShape> queryShape) {
+    public SweepConfig {
+        if (name == null) {
+            throw new NullPointerException("Name cannot be null.");
+        }
+        if (indexKey == null) {
+            throw new NullPointerException("Index key cannot be null.");
+        }
+        if (similarity == null) {
+            throw new NullPointerException("Similarity cannot be null.");
+        }
+        if (queryShape == null) {
+            throw new NullPointerException("Query shape cannot be null.");
+        }
+    }
+}
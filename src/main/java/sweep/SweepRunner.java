@@ -0,0 +1,241 @@
+package sweep;
+
+import index.IndexStorage;
+import index.ShingleField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import parse.ParsedDocument;
+import search.Run;
+import search.TopKSearch;
+import topics.Topic;
+import topics.Topics;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches the topics with many {@link SweepConfig}s in parallel, keeping the runs in memory.
+ * <p>
+ * Each index is opened once and shared by all the configurations with its key; the document ids are loaded once
+ * per index, instead of reading the stored fields of every retrieved document of every configuration. Each
+ * configuration is a task of a fixed thread pool, searching all the topics with its own {@link IndexSearcher} and
+ * query shape, so the cores are kept busy as long as there are more configurations than threads.
+ */
+public class SweepRunner {
+    /**
+     * index key -> directory of the index
+     */
+    private final Map<String, String> indexPaths;
+
+    /**
+     * Where the indexes are stored
+     */
+    private final IndexStorage storage;
+
+    /**
+     * The topics to be searched
+     */
+    private final List<Topic> topics;
+
+    /**
+     * The maximum number of documents to retrieve
+     */
+    private final int maxDocsRetrieved;
+
+    /**
+     * The number of hits to count before pruning non-competitive documents
+     */
+    private final int totalHitsThreshold;
+
+    /**
+     * The number of threads searching the configurations
+     */
+    private final int numThreads;
+
+    /**
+     * Creates a new runner.
+     *
+     * @param indexPaths         index key -> directory of the index.
+     * @param storage            where the indexes are stored.
+     * @param topicsFile         the file containing the topics to search for.
+     * @param maxDocsRetrieved   the maximum number of documents to be retrieved.
+     * @param totalHitsThreshold the number of hits to count before pruning non-competitive documents.
+     * @param numThreads         the number of threads searching the configurations.
+     * @throws NullPointerException     if any of the parameters is {@code null}.
+     * @throws IllegalArgumentException if any of the parameters assumes invalid values.
+     */
+    public SweepRunner(final Map<String, String> indexPaths, final IndexStorage storage, final String topicsFile,
+                       final int maxDocsRetrieved, final int totalHitsThreshold, final int numThreads) {
+        if (indexPaths == null) {
+            throw new NullPointerException("Index paths cannot be null.");
+        }
+        this.indexPaths = Map.copyOf(indexPaths);
+
+        if (storage == null) {
+            throw new NullPointerException("Index storage cannot be null.");
+        }
+        this.storage = storage;
+
+        if (topicsFile == null) {
+            throw new NullPointerException("Topics file cannot be null.");
+        }
+        try {
+            topics = Topics.loadTopics(topicsFile).topics;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(
+                    String.format("Unable to process topic file %s: %s.", topicsFile, e.getMessage()), e);
+        }
+
+        if (maxDocsRetrieved <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of documents to be retrieved cannot be less than or equal to zero.");
+        }
+        this.maxDocsRetrieved = maxDocsRetrieved;
+
+        if (totalHitsThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "The total hits threshold cannot be less than or equal to zero.");
+        }
+        this.totalHitsThreshold = totalHitsThreshold;
+
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads cannot be less than 1.");
+        }
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Search the topics with all the configurations
+     * @param configs the configurations, whose index keys must have an index path
+     * @return the run of each configuration, in the same order
+     * @throws IOException if an index cannot be opened
+     * @throws InterruptedException if interrupted while waiting for the searching threads
+     * @throws ExecutionException if the search of a configuration fails
+     * @throws IllegalArgumentException if a configuration has an unknown index key
+     */
+    public List<Run> run(final List<SweepConfig> configs)
+            throws IOException, InterruptedException, ExecutionException {
+        final Map<String, IndexReader> readers = new HashMap<>();
+        final Map<String, String[]> docIds = new HashMap<>();
+        final var executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (final var config : configs) {
+                if (readers.containsKey(config.indexKey())) continue;
+                final var indexPath = indexPaths.get(config.indexKey());
+                if (indexPath == null) {
+                    throw new IllegalArgumentException("No index for key %s.".formatted(config.indexKey()));
+                }
+                final var reader = DirectoryReader.open(storage.open(Path.of(indexPath)));
+                readers.put(config.indexKey(), reader);
+                docIds.put(config.indexKey(), loadDocIds(reader));
+            }
+
+            final long start = System.currentTimeMillis();
+            final var done = new AtomicInteger();
+            final List<Future<Run>> futures = new ArrayList<>();
+            for (final var config : configs) {
+                futures.add(executor.submit(() -> {
+                    final var run = search(config, readers.get(config.indexKey()), docIds.get(config.indexKey()));
+                    final int n = done.incrementAndGet();
+                    if (n % 10 == 0 || n == configs.size()) {
+                        System.out.printf("%d/%d configurations searched in %d seconds%n", n, configs.size(),
+                                (System.currentTimeMillis() - start) / 1000);
+                    }
+                    return run;
+                }));
+            }
+
+            final List<Run> runs = new ArrayList<>(configs.size());
+            for (final var future : futures) {
+                runs.add(future.get());
+            }
+            return runs;
+        } finally {
+            executor.shutdownNow();
+            for (final var reader : readers.values()) {
+                reader.close();
+            }
+        }
+    }
+
+    private Run search(final SweepConfig config, final IndexReader reader, final String[] ids)
+            throws IOException, ParseException {
+        final var searcher = new IndexSearcher(reader);
+        searcher.setSimilarity(config.similarity());
+        final var queryShape = config.queryShape().apply(reader);
+
+        final var run = new Run(config.name());
+        for (final var topic : topics) {
+            final var docs = TopKSearch.search(searcher, queryShape.create(topic.title), maxDocsRetrieved,
+                    totalHitsThreshold);
+            final var ranking = new ArrayList<Run.Entry>(docs.scoreDocs.length);
+            for (final var scoreDoc : docs.scoreDocs) {
+                ranking.add(new Run.Entry(ids[scoreDoc.doc], scoreDoc.score));
+            }
+            run.add(Integer.toString(topic.number), ranking);
+        }
+        return run;
+    }
+
+    /**
+     * Load the stored id of every document of the index
+     * @param reader the reader of the index
+     * @return document number -> id
+     * @throws IOException if the stored fields cannot be read
+     */
+    private static String[] loadDocIds(final IndexReader reader) throws IOException {
+        final var ids = new String[reader.maxDoc()];
+        final var idField = Set.of(ParsedDocument.FIELDS.ID);
+        for (final LeafReaderContext leaf : reader.leaves()) {
+            for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+                ids[leaf.docBase + doc] = leaf.reader().document(doc, idField).get(ParsedDocument.FIELDS.ID);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Check whether an index already built can be searched by the configurations
+     * @param indexPath the directory of the index
+     * @param storage where the index is stored
+     * @param positions whether the configurations match phrases, so that the body needs positions
+     * @param shingleSize the size of the shingles of the body needed by the phrases, 0 for none
+     * @return {@code true} if the index exists and has the needed postings
+     * @throws IOException if the index cannot be read
+     */
+    public static boolean isReusable(final String indexPath, final IndexStorage storage, final boolean positions,
+                                     final int shingleSize) throws IOException {
+        final Directory opened;
+        try {
+            opened = storage.open(Path.of(indexPath));
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try (final var directory = opened) {
+            if (!DirectoryReader.indexExists(directory)) {
+                return false;
+            }
+            if (!positions) {
+                return true;
+            }
+            try (final var reader = DirectoryReader.open(directory)) {
+                final var body = FieldInfos.getMergedFieldInfos(reader).fieldInfo(ParsedDocument.FIELDS.BODY);
+                return body != null
+                        && body.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0
+                        && ShingleField.indexedSize(reader, ParsedDocument.FIELDS.BODY) == shingleSize;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Enum that define the threads running the tasks of the indexers and searchers
+ */
+public enum ExecutionMode {
+    /**
+     * A fixed pool of {@code numThreads} platform threads
+     */
+    PLATFORM {
+        @Override
+        public ExecutorService newExecutor(int numThreads) {
+            return Executors.newFixedThreadPool(numThreads);
+        }
+    },
+    /**
+     * A new virtual thread for each task (Java 21+): blocked tasks, e.g. parsers waiting for memory, cost no
+     * platform thread, so files can be parsed concurrently and nothing waits for a free thread. On older JDKs it
+     * falls back to {@link #PLATFORM}.
+     */
+    VIRTUAL {
+        @Override
+        public ExecutorService newExecutor(int numThreads) {
+            if (VirtualThreads.FACTORY == null) {
+                return PLATFORM.newExecutor(numThreads);
+            }
+            try {
+                return (ExecutorService) VirtualThreads.FACTORY.invoke();
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to create the virtual threads executor.", e);
+            }
+        }
+    };
+
+    /**
+     * Creates the executor of the tasks
+     * @param numThreads the number of threads of a platform pool, ignored by virtual threads
+     * @return a new {@link ExecutorService}, to be shut down by the caller
+     */
+    public abstract ExecutorService newExecutor(int numThreads);
+
+    /**
+     * Returns the mode actually used on this JDK, i.e. {@link #PLATFORM} instead of an unsupported {@link #VIRTUAL}
+     * @return the effective mode
+     */
+    public ExecutionMode effective() {
+        if (this == VIRTUAL && VirtualThreads.FACTORY == null) {
+            VirtualThreads.warnOnce();
+            return PLATFORM;
+        }
+        return this;
+    }
+
+    /**
+     * Lookup of {@code Executors.newVirtualThreadPerTaskExecutor()}, by reflection so that the code still compiles
+     * and runs on Java 17
+     */
+    private static final class VirtualThreads {
+        private static final MethodHandle FACTORY = lookup();
+        private static volatile boolean warned = false;
+
+        private static MethodHandle lookup() {
+            try {
+                final var handle = MethodHandles.publicLookup().findStatic(Executors.class,
+                        "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+                // on Java 19 and 20 virtual threads are a preview feature: the method exists but throws
+                ((ExecutorService) handle.invoke()).shutdown();
+                return handle;
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        private static void warnOnce() {
+            if (!warned) {
+                warned = true;
+                System.out.printf("Virtual threads not available on Java %s, using platform threads.%n",
+                        Runtime.version().feature());
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Utility for comparing two run files in TREC format
+ */
+public class RunDiff {
+    /**
+     * Result of the comparison of two runs
+     * @param topics number of topics found in at least one run
+     * @param differentRankings number of topics whose ranked list of document ids differs
+     * @param maxScoreDelta max absolute difference of the scores of the same document at the same rank
+     */
+    public record Result(int topics, int differentRankings, double maxScoreDelta) {
+        public boolean sameRankings() {
+            return differentRankings == 0;
+        }
+    }
+
+    /**
+     * Compare the rankings of two runs
+     * @param first path of the first run
+     * @param second path of the second run
+     * @return the {@link Result} of the comparison
+     * @throws IOException if one of the runs cannot be read
+     */
+    public static Result compare(final Path first, final Path second) throws IOException {
+        return compare(load(first), load(second));
+    }
+
+    /**
+     * Compare the rankings of two runs, ordering the documents with the same score (to 4 decimals) by id and ignoring
+     * the ones with the lowest score, which may be cut at different documents: runs searched on indexes built by
+     * multiple threads rank tied documents in the order they were indexed, and sum scores in different orders
+     * @param first path of the first run
+     * @param second path of the second run
+     * @return the {@link Result} of the comparison
+     * @throws IOException if one of the runs cannot be read
+     */
+    public static Result compareIgnoringTies(final Path first, final Path second) throws IOException {
+        return compare(sortTies(load(first)), sortTies(load(second)));
+    }
+
+    private static Map<String, List<String[]>> sortTies(final Map<String, List<String[]>> run) {
+        final Map<String, List<String[]>> sorted = new HashMap<>();
+        run.forEach((topic, ranking) -> {
+            final List<String[]> rounded = new ArrayList<>();
+            for (final var r : ranking) {
+                rounded.add(new String[]{r[0], String.format(Locale.ROOT, "%.4f", Double.parseDouble(r[1]))});
+            }
+            final double lowest = rounded.stream().mapToDouble(r -> Double.parseDouble(r[1])).min().orElse(0);
+            rounded.removeIf(r -> Double.parseDouble(r[1]) <= lowest);
+            rounded.sort(Comparator.<String[]>comparingDouble(r -> -Double.parseDouble(r[1])).thenComparing(r -> r[0]));
+            sorted.put(topic, rounded);
+        });
+        return sorted;
+    }
+
+    private static Result compare(final Map<String, List<String[]>> a, final Map<String, List<String[]>> b) {
+        final var topics = new HashSet<>(a.keySet());
+        topics.addAll(b.keySet());
+
+        int different = 0;
+        double maxDelta = 0;
+        for (final var topic : topics) {
+            final var ra = a.getOrDefault(topic, List.of());
+            final var rb = b.getOrDefault(topic, List.of());
+            boolean same = ra.size() == rb.size();
+            for (int i = 0; same && i < ra.size(); i++) {
+                same = ra.get(i)[0].equals(rb.get(i)[0]);
+                if (same) {
+                    final double delta = Math.abs(Double.parseDouble(ra.get(i)[1]) - Double.parseDouble(rb.get(i)[1]));
+                    maxDelta = Math.max(maxDelta, delta);
+                }
+            }
+            if (!same) different++;
+        }
+        return new Result(topics.size(), different, maxDelta);
+    }
+
+    /**
+     * Load a run as topic -> ranked list of (document id, score)
+     */
+    private static Map<String, List<String[]>> load(final Path run) throws IOException {
+        final Map<String, List<String[]>> map = new HashMap<>();
+        for (final var line : Files.readAllLines(run, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) continue;
+            final var cols = line.split("\\s+");
+            map.computeIfAbsent(cols[0], k -> new ArrayList<>()).add(new String[]{cols[2], cols[4]});
+        }
+        return map;
+    }
+}
@@ -0,0 +1,160 @@
+package utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Structured execution of the tasks of an indexer or searcher, in the spirit of the {@code ShutdownOnFailure}
+ * structured task scope of Java 21 (still a preview there): tasks are forked in the scope, possibly by other tasks,
+ * {@link #join()} waits for all of them and rethrows the first failure, and no task outlives the scope.
+ * <p>
+ * After the first failure the tasks not yet started are skipped, so that the owner sees the error as soon as the
+ * running ones complete, instead of after the whole workload.
+ */
+public class TaskScope implements AutoCloseable {
+    private final ExecutorService executor;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition done = lock.newCondition();
+    private long pending;
+
+    /**
+     * Creates a scope.
+     *
+     * @param mode       the threads running the tasks.
+     * @param numThreads the number of threads of a platform pool.
+     * @throws NullPointerException if the mode is {@code null}.
+     */
+    public TaskScope(final ExecutionMode mode, final int numThreads) {
+        if (mode == null) {
+            throw new NullPointerException("Execution mode cannot be null.");
+        }
+        this.executor = mode.effective().newExecutor(numThreads);
+    }
+
+    /**
+     * Runs a task in the scope.
+     *
+     * @param task the task.
+     * @param <T>  the type of the result.
+     * @return the future result of the task, cancelled if the task was skipped after a failure; the actions added
+     *         to it run in both cases, before {@link #join()} returns.
+     */
+    public <T> CompletableFuture<T> fork(final Callable<T> task) {
+        final var result = new CompletableFuture<T>();
+        lock.lock();
+        try {
+            pending++;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    if (failure.get() != null) {
+                        result.cancel(false);
+                    } else {
+                        result.complete(task.call());
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    result.completeExceptionally(t);
+                } finally {
+                    completed();
+                }
+            });
+        } catch (RuntimeException e) {
+            // rejected: the scope is closing
+            failure.compareAndSet(null, e);
+            completed();
+            throw e;
+        }
+        return result;
+    }
+
+    private void completed() {
+        lock.lock();
+        try {
+            if (--pending == 0) {
+                done.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether a task has failed, for tasks that want to stop early.
+     *
+     * @return {@code true} if a task has failed.
+     */
+    public boolean isFailed() {
+        return failure.get() != null;
+    }
+
+    /**
+     * Rethrows the first failure of the tasks, if any, without waiting.
+     *
+     * @throws ExecutionException wrapping the failure.
+     */
+    public void throwIfFailed() throws ExecutionException {
+        final var t = failure.get();
+        if (t != null) {
+            throw new ExecutionException(t);
+        }
+    }
+
+    /**
+     * Waits for all the tasks, including the ones they forked, then rethrows the first failure.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws ExecutionException   wrapping the first failure.
+     */
+    public void join() throws InterruptedException, ExecutionException {
+        lock.lock();
+        try {
+            while (pending > 0) {
+                done.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+        throwIfFailed();
+    }
+
+    /**
+     * Skips the tasks not yet started, if not joined, and waits for the running ones.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (pending > 0) {
+                failure.compareAndSet(null, new CancellationException("Scope closed before joining its tasks."));
+            }
+        } finally {
+            lock.unlock();
+        }
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}